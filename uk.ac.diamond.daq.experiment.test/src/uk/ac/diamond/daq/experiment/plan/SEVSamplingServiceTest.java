@@ -0,0 +1,135 @@
+package uk.ac.diamond.daq.experiment.plan;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import uk.ac.diamond.daq.experiment.api.plan.SEVListener;
+
+public class SEVSamplingServiceTest {
+
+	private SEVSamplingService service;
+	private AtomicInteger reads;
+	private ExternalSourceWrapper source;
+	private volatile double signal;
+
+	@Before
+	public void setUp() {
+		service = new SEVSamplingService(2);
+		reads = new AtomicInteger();
+		source = new ExternalSourceWrapper(() -> {
+			reads.incrementAndGet();
+			return signal;
+		});
+		source.setName("source");
+	}
+
+	@After
+	public void tearDown() {
+		service.shutdown();
+	}
+
+	@Test
+	public void sevsOfTheSameScannableShareReadings() throws InterruptedException {
+		SampleEnvironmentVariable sev1 = createSev();
+		SampleEnvironmentVariable sev2 = createSev();
+		sev1.setSamplingPeriod(10);
+		sev2.setSamplingPeriod(10);
+
+		LatchSEVListener listener1 = new LatchSEVListener();
+		LatchSEVListener listener2 = new LatchSEVListener();
+		sev1.addListener(listener1);
+		sev2.addListener(listener2);
+		assertThat(service.getNumberOfSources(), is(1));
+
+		int readsBefore = reads.get();
+		TimeUnit.MILLISECONDS.sleep(200);
+		int readsDuring = reads.get() - readsBefore;
+		// one source polled every 10 ms; two independent pollers would read it about 40 times
+		assertTrue("Too many reads: " + readsDuring, readsDuring <= 30);
+
+		signal = 5;
+		assertTrue(listener1.await());
+		assertTrue(listener2.await());
+		assertNotNull(sev1.getSamplingJitter());
+	}
+
+	@Test
+	public void samplingStopsWhenLastListenerRemoved() throws InterruptedException {
+		SampleEnvironmentVariable sev = createSev();
+		SEVListener listener = position -> {};
+		sev.addListener(listener);
+		TimeUnit.MILLISECONDS.sleep(20);
+		sev.removeListener(listener);
+		assertThat(service.getNumberOfSources(), is(0));
+
+		TimeUnit.MILLISECONDS.sleep(20);
+		int readsAfterRemoval = reads.get();
+		TimeUnit.MILLISECONDS.sleep(50);
+		assertThat(reads.get(), is(readsAfterRemoval));
+	}
+
+	@Test
+	public void subscriptionsReceiveReadingsAtTheirOwnRate() throws InterruptedException {
+		AtomicInteger fast = new AtomicInteger();
+		AtomicInteger slow = new AtomicInteger();
+		SEVSamplingService.Subscription fastSubscription = service.subscribe(source, 5, false, reading -> fast.incrementAndGet());
+		SEVSamplingService.Subscription slowSubscription = service.subscribe(source, 50, false, reading -> slow.incrementAndGet());
+
+		TimeUnit.MILLISECONDS.sleep(300);
+		fastSubscription.close();
+		slowSubscription.close();
+
+		assertTrue("Slow subscription received " + slow.get(), slow.get() <= 8);
+		assertTrue("Fast subscription received " + fast.get(), fast.get() > 3 * slow.get());
+	}
+
+	@Test
+	public void eventDrivenSevDoesNotPoll() throws InterruptedException {
+		SampleEnvironmentVariable sev = createSev();
+		sev.setEventDriven(true);
+		LatchSEVListener listener = new LatchSEVListener();
+		sev.addListener(listener);
+
+		TimeUnit.MILLISECONDS.sleep(50);
+		int readsBefore = reads.get();
+		TimeUnit.MILLISECONDS.sleep(50);
+		assertThat(reads.get(), is(readsBefore));
+
+		source.notifyIObservers(source, 3.0);
+		assertTrue(listener.await());
+		assertEquals(3.0, listener.position, 1e-8);
+	}
+
+	private SampleEnvironmentVariable createSev() {
+		SampleEnvironmentVariable sev = new SampleEnvironmentVariable(source);
+		sev.setSamplingService(service);
+		return sev;
+	}
+
+	private class LatchSEVListener implements SEVListener {
+
+		private final CountDownLatch latch = new CountDownLatch(1);
+		private volatile double position;
+
+		@Override
+		public void signalChanged(double signal) {
+			position = signal;
+			latch.countDown();
+		}
+
+		boolean await() throws InterruptedException {
+			return latch.await(1, TimeUnit.SECONDS);
+		}
+	}
+}
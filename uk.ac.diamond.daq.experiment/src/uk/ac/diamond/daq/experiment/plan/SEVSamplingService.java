@@ -0,0 +1,286 @@
+package uk.ac.diamond.daq.experiment.plan;
+
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.DoubleConsumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import gda.configuration.properties.LocalProperties;
+import gda.device.DeviceException;
+import gda.device.Scannable;
+import gda.device.scannable.ScannablePositionChangeEvent;
+import gda.device.scannable.ScannableStatus;
+import gda.observable.IObserver;
+import gda.util.LatencyHistogram;
+
+/**
+ * Samples the {@link Scannable}s of {@link SampleEnvironmentVariable}s using a fixed number of shared threads.
+ * <p>
+ * Each source is read once per sampling period no matter how many subscriptions it has, and the reading is passed to
+ * every subscription which is due one. The sampling period of a source is the shortest period of its subscriptions.
+ * Event driven subscriptions do not poll; the source is read when it notifies its observers instead.
+ * <p>
+ * The difference between the actual and requested interval between samples of each polled source is recorded as its
+ * sampling jitter.
+ */
+public class SEVSamplingService {
+
+	private static final Logger logger = LoggerFactory.getLogger(SEVSamplingService.class);
+
+	/** Property setting the number of threads of the default service. Default is 2. */
+	public static final String GDA_EXPERIMENT_SEV_SAMPLING_THREADS = "gda.experiment.sev.samplingThreads";
+
+	private static SEVSamplingService defaultService;
+
+	private final ScheduledThreadPoolExecutor executor;
+
+	/** Guarded by this */
+	private final Map<Scannable, Sampler> pollingSamplers = new IdentityHashMap<>();
+
+	/** Guarded by this */
+	private final Map<Scannable, Sampler> eventSamplers = new IdentityHashMap<>();
+
+	/**
+	 * @return the service shared by all {@link SampleEnvironmentVariable}s unless they are given another
+	 */
+	public static synchronized SEVSamplingService getDefault() {
+		if (defaultService == null) {
+			defaultService = new SEVSamplingService(LocalProperties.getAsInt(GDA_EXPERIMENT_SEV_SAMPLING_THREADS, 2));
+		}
+		return defaultService;
+	}
+
+	public SEVSamplingService(int threads) {
+		final AtomicInteger threadCount = new AtomicInteger();
+		executor = new ScheduledThreadPoolExecutor(threads, runnable -> {
+			Thread thread = new Thread(runnable);
+			thread.setName("Sample Environment Variable sampler " + threadCount.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+		executor.setRemoveOnCancelPolicy(true);
+	}
+
+	/**
+	 * Start receiving readings of a source
+	 *
+	 * @param source
+	 * @param periodMillis
+	 *            the minimum interval between readings passed to the consumer. For polled sources this is also the
+	 *            maximum interval; event driven sources are only read when they change.
+	 * @param eventDriven
+	 *            true to read the source when it notifies its observers rather than by polling
+	 * @param consumer
+	 *            receives the readings. It is called from a sampling thread, or for event driven sources the thread
+	 *            which notified the observers, and must not block.
+	 * @return the subscription, which must be closed to stop receiving readings
+	 */
+	public synchronized Subscription subscribe(Scannable source, long periodMillis, boolean eventDriven, DoubleConsumer consumer) {
+		if (periodMillis < 0) {
+			throw new IllegalArgumentException("Sampling period must not be negative: " + periodMillis);
+		}
+		final Map<Scannable, Sampler> samplers = eventDriven ? eventSamplers : pollingSamplers;
+		final Sampler sampler = samplers.computeIfAbsent(source, scannable -> new Sampler(scannable, eventDriven));
+		final Subscription subscription = new Subscription(sampler, TimeUnit.MILLISECONDS.toNanos(periodMillis), consumer);
+		sampler.add(subscription);
+		return subscription;
+	}
+
+	/**
+	 * @return the sampling jitter of the polled source, or null if it is not being sampled
+	 */
+	public synchronized LatencyHistogram getSamplingJitter(Scannable source) {
+		final Sampler sampler = pollingSamplers.get(source);
+		return sampler == null ? null : sampler.jitter;
+	}
+
+	/**
+	 * @return the number of sources currently being sampled, by polling or by events
+	 */
+	public synchronized int getNumberOfSources() {
+		return pollingSamplers.size() + eventSamplers.size();
+	}
+
+	/**
+	 * Stop all sampling. The service cannot be used afterwards.
+	 */
+	public void shutdown() {
+		executor.shutdownNow();
+	}
+
+	private synchronized void unsubscribe(Subscription subscription) {
+		final Sampler sampler = subscription.sampler;
+		sampler.remove(subscription);
+		if (sampler.subscriptions.isEmpty()) {
+			(sampler.eventDriven ? eventSamplers : pollingSamplers).remove(sampler.source);
+		}
+	}
+
+	/**
+	 * Receives readings of a source until closed
+	 */
+	public class Subscription implements AutoCloseable {
+
+		private final Sampler sampler;
+		private final long periodNanos;
+		private final DoubleConsumer consumer;
+		private long lastDeliveredNanos;
+		private volatile boolean closed;
+
+		private Subscription(Sampler sampler, long periodNanos, DoubleConsumer consumer) {
+			this.sampler = sampler;
+			this.periodNanos = periodNanos;
+			this.consumer = consumer;
+		}
+
+		/**
+		 * Pass the reading to the consumer if at least the subscription period has passed since the last one. Half the
+		 * sampler's own period is allowed as slack, so that a subscription with the same period as the sampler is
+		 * never skipped because of jitter.
+		 */
+		private synchronized void offer(double reading, long nowNanos, long slackNanos) {
+			if (closed) {
+				return;
+			}
+			if (lastDeliveredNanos != 0 && nowNanos - lastDeliveredNanos < periodNanos - slackNanos) {
+				return;
+			}
+			lastDeliveredNanos = nowNanos;
+			try {
+				consumer.accept(reading);
+			} catch (RuntimeException e) {
+				logger.error("Error handling reading {} of {}", reading, sampler.source.getName(), e);
+			}
+		}
+
+		@Override
+		public void close() {
+			if (!closed) {
+				closed = true;
+				unsubscribe(this);
+			}
+		}
+	}
+
+	/**
+	 * Reads one source for all its subscriptions
+	 */
+	private class Sampler implements IObserver {
+
+		private final Scannable source;
+		private final boolean eventDriven;
+		private final List<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+		private final LatencyHistogram jitter;
+		private ScheduledFuture<?> task;
+		private long periodNanos = -1;
+		private long lastSampleNanos;
+		private boolean failing;
+
+		Sampler(Scannable source, boolean eventDriven) {
+			this.source = source;
+			this.eventDriven = eventDriven;
+			jitter = new LatencyHistogram(source.getName() + " sampling jitter");
+		}
+
+		/** Called holding the service lock */
+		void add(Subscription subscription) {
+			subscriptions.add(subscription);
+			if (eventDriven) {
+				if (subscriptions.size() == 1) {
+					source.addIObserver(this);
+				}
+				// Give the new subscriber the current value rather than waiting for a change
+				executor.execute(this::sample);
+			} else {
+				reschedule();
+			}
+		}
+
+		/** Called holding the service lock */
+		void remove(Subscription subscription) {
+			subscriptions.remove(subscription);
+			if (eventDriven) {
+				if (subscriptions.isEmpty()) {
+					source.deleteIObserver(this);
+				}
+			} else {
+				reschedule();
+			}
+		}
+
+		private void reschedule() {
+			final long newPeriod = subscriptions.stream().mapToLong(s -> s.periodNanos).min().orElse(-1);
+			if (newPeriod == periodNanos) {
+				return;
+			}
+			if (task != null) {
+				task.cancel(false);
+				task = null;
+			}
+			periodNanos = newPeriod;
+			lastSampleNanos = 0;
+			if (newPeriod < 0) {
+				logger.debug("Stopped sampling {}. {}", source.getName(), jitter);
+				return;
+			}
+			// A period of zero means as fast as possible; sample every millisecond as SEVs always have
+			task = executor.scheduleAtFixedRate(this::sample, 0, Math.max(newPeriod, TimeUnit.MILLISECONDS.toNanos(1)), TimeUnit.NANOSECONDS);
+			logger.debug("Sampling {} every {} ms", source.getName(), newPeriod / 1e6);
+		}
+
+		private synchronized void sample() {
+			final long now = System.nanoTime();
+			if (!eventDriven) {
+				if (lastSampleNanos != 0) {
+					jitter.record(Math.abs(now - lastSampleNanos - Math.max(periodNanos, TimeUnit.MILLISECONDS.toNanos(1))));
+				}
+				lastSampleNanos = now;
+			}
+			final double reading;
+			try {
+				reading = ((Number) source.getPosition()).doubleValue();
+			} catch (DeviceException | RuntimeException e) {
+				if (!failing) {
+					logger.error("Could not read {}. Further errors will not be logged until it is read successfully", source.getName(), e);
+					failing = true;
+				}
+				return;
+			}
+			failing = false;
+			deliver(reading, now);
+		}
+
+		private void deliver(double reading, long now) {
+			final long slack = eventDriven ? 0 : Math.max(periodNanos, 0) / 2;
+			subscriptions.forEach(subscription -> subscription.offer(reading, now, slack));
+		}
+
+		@Override
+		public void update(Object source, Object arg) {
+			if (arg instanceof ScannableStatus) {
+				return; // not a change of position
+			}
+			Object position = arg instanceof ScannablePositionChangeEvent ? ((ScannablePositionChangeEvent) arg).newPosition : arg;
+			if (position instanceof Number) {
+				deliver(((Number) position).doubleValue(), System.nanoTime());
+			} else {
+				// Position not included in the event - read it without blocking the notifying thread
+				executor.execute(this::sample);
+			}
+		}
+
+		@Override
+		public String toString() {
+			return "Sampler [source=" + Objects.toString(source.getName()) + ", eventDriven=" + eventDriven + "]";
+		}
+	}
+}
@@ -2,9 +2,6 @@ package uk.ac.diamond.daq.experiment.plan;
 
 import java.util.Set;
 import java.util.concurrent.CopyOnWriteArraySet;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.TimeUnit;
 import java.util.function.DoubleSupplier;
 
 import org.slf4j.Logger;
@@ -13,6 +10,7 @@ import org.slf4j.LoggerFactory;
 import gda.device.DeviceException;
 import gda.device.Scannable;
 import gda.factory.FindableBase;
+import gda.util.LatencyHistogram;
 import uk.ac.diamond.daq.experiment.api.ExperimentException;
 import uk.ac.diamond.daq.experiment.api.plan.ISampleEnvironmentVariable;
 import uk.ac.diamond.daq.experiment.api.plan.SEVListener;
@@ -21,6 +19,10 @@ import uk.ac.diamond.daq.experiment.api.plan.SEVListener;
  * Instances of this class will poll a {@link Scannable} at a specified frequency, and
  * when the signal changes significantly (i.e. change >= tolerance), will notify its {@link SEVListener}s.
  * It will stop sampling if there are no listeners registered.
+ * <p>
+ * Sampling is done by a {@link SEVSamplingService}, shared by default, so SEVs of the same scannable
+ * share one reading per period and the number of sampling threads does not grow with the number of SEVs.
+ * Alternatively an SEV can be event driven, reading its scannable only when it notifies its observers.
  *
  */
 public class SampleEnvironmentVariable extends FindableBase implements ISampleEnvironmentVariable {
@@ -29,11 +31,17 @@ public class SampleEnvironmentVariable extends FindableBase implements ISampleEn
 	
 	private static final double DEFAULT_TOLERANCE = 0.01;
 	
+	private static final long DEFAULT_SAMPLING_PERIOD = 1;
+	
 	private Scannable externalSource;
 	private Set<SEVListener> listeners;
 	private boolean enabled;
-	private double lastPosition;
+	private volatile double lastPosition;
 	private double tolerance;
+	private long samplingPeriod = DEFAULT_SAMPLING_PERIOD;
+	private boolean eventDriven;
+	private SEVSamplingService samplingService;
+	private SEVSamplingService.Subscription subscription;
 	
 	
 	public SampleEnvironmentVariable(Scannable scannable) {
@@ -56,26 +64,29 @@ public class SampleEnvironmentVariable extends FindableBase implements ISampleEn
 		this(new ExternalSourceWrapper(externalSource), tolerance);
 	}
 	
-	private void begin() {
+	private synchronized void begin() {
 		if (listeners.isEmpty()) {
 			enabled = false;
 			logger.info("No listeners registered to this SEV. Disabling.");
 			return;
 		}
-		final ScheduledExecutorService executorService = Executors.newSingleThreadScheduledExecutor(runnable -> {
-			Thread thread = new Thread(runnable);
-			thread.setName("Sample Environment Variable");
-			thread.setDaemon(true);
-			return thread;
-		});
-		
-		executorService.scheduleAtFixedRate(()->{
-			double newPosition = read();
-			if (Math.abs(lastPosition - newPosition) >= tolerance) {
-				listeners.forEach(listener -> listener.signalChanged(newPosition));
-				lastPosition = newPosition;
-			}
-		}, 0, 1, TimeUnit.MILLISECONDS);
+		if (subscription == null) {
+			subscription = getSamplingService().subscribe(externalSource, samplingPeriod, eventDriven, this::sampled);
+		}
+	}
+	
+	private synchronized void end() {
+		if (subscription != null) {
+			subscription.close();
+			subscription = null;
+		}
+	}
+	
+	private void sampled(double newPosition) {
+		if (Math.abs(lastPosition - newPosition) >= tolerance) {
+			listeners.forEach(listener -> listener.signalChanged(newPosition));
+			lastPosition = newPosition;
+		}
 	}
 	
 	@Override
@@ -96,7 +107,11 @@ public class SampleEnvironmentVariable extends FindableBase implements ISampleEn
 	
 	private void setEnabled(boolean enabled) {
 		this.enabled = enabled;
-		if (enabled) begin();
+		if (enabled) {
+			begin();
+		} else {
+			end();
+		}
 	}
 	
 	@Override
@@ -118,6 +133,51 @@ public class SampleEnvironmentVariable extends FindableBase implements ISampleEn
 		return listeners;
 	}
 	
+	/**
+	 * @param samplingPeriod interval in milliseconds between readings of the scannable (default 1).
+	 * 		  Takes effect the next time this SEV is enabled.
+	 */
+	public void setSamplingPeriod(long samplingPeriod) {
+		this.samplingPeriod = samplingPeriod;
+	}
+	
+	public long getSamplingPeriod() {
+		return samplingPeriod;
+	}
+	
+	/**
+	 * @param eventDriven if true, the scannable is read when it notifies its observers of a change
+	 * 		  rather than by polling (default false). Takes effect the next time this SEV is enabled.
+	 */
+	public void setEventDriven(boolean eventDriven) {
+		this.eventDriven = eventDriven;
+	}
+	
+	public boolean isEventDriven() {
+		return eventDriven;
+	}
+	
+	/**
+	 * @param samplingService to use instead of {@link SEVSamplingService#getDefault()}
+	 */
+	public void setSamplingService(SEVSamplingService samplingService) {
+		this.samplingService = samplingService;
+	}
+	
+	private SEVSamplingService getSamplingService() {
+		if (samplingService == null) {
+			samplingService = SEVSamplingService.getDefault();
+		}
+		return samplingService;
+	}
+	
+	/**
+	 * @return the jitter of the polling of this SEV's scannable, or null if it is not being polled
+	 */
+	public LatencyHistogram getSamplingJitter() {
+		return getSamplingService().getSamplingJitter(externalSource);
+	}
+	
 	private void clear() {
 		listeners = new CopyOnWriteArraySet<>();
 		setEnabled(false);
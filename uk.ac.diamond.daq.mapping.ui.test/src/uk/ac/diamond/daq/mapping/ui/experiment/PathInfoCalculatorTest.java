@@ -0,0 +1,105 @@
+/*-
+ * Copyright © 2019 Diamond Light Source Ltd.
+ *
+ * This file is part of GDA.
+ *
+ * GDA is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License version 3 as published by the Free
+ * Software Foundation.
+ *
+ * GDA is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with GDA. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package uk.ac.diamond.daq.mapping.ui.experiment;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class PathInfoCalculatorTest {
+
+	@Test
+	public void shortPathIsPlottedInFull() {
+		final PathInfoCalculator calculator = new PathInfoCalculator(10);
+		calculator.addPoint(0, 0);
+		calculator.addPoint(0.5, 0);
+		calculator.addPoint(1.5, 0);
+		calculator.addPoint(1.5, 0.25);
+
+		final PathInfo pathInfo = calculator.getPathInfo();
+		assertEquals(4, pathInfo.pointCount);
+		assertFalse(pathInfo.isSimplified());
+		assertArrayEquals(new double[] { 0, 0.5, 1.5, 1.5 }, pathInfo.getXCoordinates(), 0);
+		assertArrayEquals(new double[] { 0, 0, 0, 0.25 }, pathInfo.getYCoordinates(), 0);
+		assertEquals(0.5, pathInfo.smallestXStep, 1e-12);
+		assertEquals(0.25, pathInfo.smallestYStep, 1e-12);
+		assertEquals(0.25, pathInfo.smallestAbsStep, 1e-12);
+	}
+
+	@Test
+	public void emptyPath() {
+		final PathInfo pathInfo = new PathInfoCalculator(10).getPathInfo();
+		assertEquals(0, pathInfo.pointCount);
+		assertEquals("N/A", pathInfo.getFormattedSmallestAbsStep());
+		assertEquals(0, pathInfo.getXCoordinates().length);
+	}
+
+	@Test
+	public void longRasterIsSimplifiedToTheEndsOfEachLine() {
+		final int columns = 500;
+		final int rows = 300;
+		final PathInfoCalculator calculator = new PathInfoCalculator(1000);
+		for (int row = 0; row < rows; row++) {
+			for (int column = 0; column < columns; column++) {
+				final int x = row % 2 == 0 ? column : columns - 1 - column;
+				calculator.addPoint(x * 0.1, row * 0.2);
+			}
+		}
+
+		final PathInfo pathInfo = calculator.getPathInfo();
+		assertEquals(columns * rows, pathInfo.pointCount);
+		assertTrue(pathInfo.isSimplified());
+		assertEquals(2 * rows, pathInfo.xCoordinates.length);
+		for (int row = 0; row < rows; row++) {
+			assertEquals(row * 0.2, pathInfo.yCoordinates[2 * row], 1e-12);
+			assertEquals(row * 0.2, pathInfo.yCoordinates[2 * row + 1], 1e-12);
+		}
+		assertEquals(0.1, pathInfo.smallestXStep, 1e-12);
+		assertEquals(0.2, pathInfo.smallestYStep, 1e-12);
+		assertEquals(0.1, pathInfo.smallestAbsStep, 1e-12);
+	}
+
+	@Test
+	public void longCurveIsThinnedOutKeepingTheEnds() {
+		final int points = 1_000_000;
+		final int maxPlotted = 1000;
+		final PathInfoCalculator calculator = new PathInfoCalculator(maxPlotted);
+		double lastX = 0;
+		double lastY = 0;
+		for (int i = 0; i < points; i++) {
+			final double radius = Math.sqrt(i);
+			final double angle = 0.1 * radius;
+			lastX = radius * Math.cos(angle);
+			lastY = radius * Math.sin(angle);
+			calculator.addPoint(lastX, lastY);
+		}
+
+		final PathInfo pathInfo = calculator.getPathInfo();
+		assertEquals(points, pathInfo.pointCount);
+		final int plotted = pathInfo.xCoordinates.length;
+		assertTrue("Plotted " + plotted + " points", plotted <= maxPlotted && plotted > maxPlotted / 4);
+		assertEquals(0, pathInfo.xCoordinates[0], 0);
+		assertEquals(0, pathInfo.yCoordinates[0], 0);
+		assertEquals(lastX, pathInfo.xCoordinates[plotted - 1], 0);
+		assertEquals(lastY, pathInfo.yCoordinates[plotted - 1], 0);
+	}
+}
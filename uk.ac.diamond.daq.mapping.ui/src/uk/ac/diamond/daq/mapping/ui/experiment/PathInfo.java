@@ -18,11 +18,11 @@
 
 package uk.ac.diamond.daq.mapping.ui.experiment;
 
-import java.util.ArrayList;
-import java.util.List;
-
 /**
  * Simple class to hold information about a scan path
+ * <p>
+ * The coordinates are those of the path to plot, which for long paths is a simplified version of the scan path: see
+ * {@link PathInfoCalculator}.
  */
 public class PathInfo {
 
@@ -30,8 +30,8 @@ public class PathInfo {
 	double smallestXStep = Double.MAX_VALUE;
 	double smallestYStep = Double.MAX_VALUE;
 	double smallestAbsStep = Double.MAX_VALUE;
-	List<Double> xCoordinates = new ArrayList<>();
-	List<Double> yCoordinates = new ArrayList<>();
+	double[] xCoordinates = new double[0];
+	double[] yCoordinates = new double[0];
 
 	private String pointCountFormat = "%,d";
 	private String doubleFormat = "%.4g";
@@ -49,18 +49,16 @@ public class PathInfo {
 		return formatDouble(smallestAbsStep);
 	}
 	double[] getXCoordinates() {
-		double[] xCoords = new double[xCoordinates.size()];
-		for (int index = 0; index < xCoordinates.size(); index++) {
-			xCoords[index] = xCoordinates.get(index).doubleValue();
-		}
-		return xCoords;
+		return xCoordinates.clone();
 	}
 	double[] getYCoordinates() {
-		double[] yCoords = new double[yCoordinates.size()];
-		for (int index = 0; index < yCoordinates.size(); index++) {
-			yCoords[index] = yCoordinates.get(index).doubleValue();
-		}
-		return yCoords;
+		return yCoordinates.clone();
+	}
+	/**
+	 * @return true if the plotted path has fewer points than the scan path
+	 */
+	boolean isSimplified() {
+		return xCoordinates.length < pointCount;
 	}
 
 	private String formatDouble(double value) {
@@ -0,0 +1,219 @@
+/*-
+ * Copyright © 2019 Diamond Light Source Ltd.
+ *
+ * This file is part of GDA.
+ *
+ * GDA is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License version 3 as published by the Free
+ * Software Foundation.
+ *
+ * GDA is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with GDA. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package uk.ac.diamond.daq.mapping.ui.experiment;
+
+import java.util.Arrays;
+
+/**
+ * Calculates a {@link PathInfo} from the points of a scan path as they are generated, without keeping them all.
+ * <p>
+ * The point count and smallest steps are exact. All the points are kept for plotting until there are more than the
+ * given maximum; after that the plotted path is simplified. Points which lie on a straight line between their
+ * neighbours are dropped, which leaves only the ends of each line of a raster or grid scan. If there are still too many
+ * the remaining points are thinned out evenly, keeping the first and last.
+ */
+final class PathInfoCalculator {
+
+	private static final double COLLINEAR_TOLERANCE = 1e-9;
+
+	private final int maxPlottedPoints;
+
+	private int pointCount = 0;
+	private double smallestXStep = Double.MAX_VALUE;
+	private double smallestYStep = Double.MAX_VALUE;
+	private double smallestSquaredStep = Double.MAX_VALUE;
+	private double lastX = Double.NaN;
+	private double lastY = Double.NaN;
+
+	/** Every point, until there are too many to plot. Null once the path is being simplified. */
+	private PointBuffer allPoints;
+
+	private Simplifier simplifier;
+
+	/**
+	 * @param maxPlottedPoints
+	 *            the maximum number of points in the plotted path. Must be at least 2.
+	 */
+	PathInfoCalculator(int maxPlottedPoints) {
+		if (maxPlottedPoints < 2) {
+			throw new IllegalArgumentException("At least 2 points must be plotted, not " + maxPlottedPoints);
+		}
+		this.maxPlottedPoints = maxPlottedPoints;
+		allPoints = new PointBuffer(maxPlottedPoints);
+	}
+
+	void addPoint(double x, double y) {
+		pointCount++;
+		if (pointCount > 1) {
+			final double xStep = Math.abs(x - lastX);
+			final double yStep = Math.abs(y - lastY);
+			if (xStep > 0 && xStep < smallestXStep) {
+				smallestXStep = xStep;
+			}
+			if (yStep > 0 && yStep < smallestYStep) {
+				smallestYStep = yStep;
+			}
+			smallestSquaredStep = Math.min(smallestSquaredStep, xStep * xStep + yStep * yStep);
+		}
+		lastX = x;
+		lastY = y;
+
+		if (allPoints != null) {
+			if (allPoints.size < maxPlottedPoints) {
+				allPoints.add(x, y);
+				return;
+			}
+			simplifier = new Simplifier(new Decimator(maxPlottedPoints));
+			for (int i = 0; i < allPoints.size; i++) {
+				simplifier.add(allPoints.x[i], allPoints.y[i]);
+			}
+			allPoints = null;
+		}
+		simplifier.add(x, y);
+	}
+
+	PathInfo getPathInfo() {
+		final PathInfo pathInfo = new PathInfo();
+		pathInfo.pointCount = pointCount;
+		pathInfo.smallestXStep = smallestXStep;
+		pathInfo.smallestYStep = smallestYStep;
+		pathInfo.smallestAbsStep = smallestSquaredStep == Double.MAX_VALUE ? Double.MAX_VALUE : Math.sqrt(smallestSquaredStep);
+		final PointBuffer plotted = allPoints != null ? allPoints : simplifier.finish();
+		pathInfo.xCoordinates = Arrays.copyOf(plotted.x, plotted.size);
+		pathInfo.yCoordinates = Arrays.copyOf(plotted.y, plotted.size);
+		return pathInfo;
+	}
+
+	private static class PointBuffer {
+		private final double[] x;
+		private final double[] y;
+		private int size = 0;
+
+		PointBuffer(int capacity) {
+			x = new double[capacity];
+			y = new double[capacity];
+		}
+
+		void add(double newX, double newY) {
+			x[size] = newX;
+			y[size] = newY;
+			size++;
+		}
+	}
+
+	/**
+	 * Drops points which continue in the same direction as the line from the previous vertex, passing the remaining
+	 * vertices to a {@link Decimator}
+	 */
+	private static class Simplifier {
+		private final Decimator decimator;
+		private boolean hasAnchor = false;
+		private boolean hasPending = false;
+		private double anchorX, anchorY, pendingX, pendingY;
+
+		Simplifier(Decimator decimator) {
+			this.decimator = decimator;
+		}
+
+		void add(double x, double y) {
+			if (!hasAnchor) {
+				anchorX = x;
+				anchorY = y;
+				hasAnchor = true;
+				decimator.add(x, y);
+				return;
+			}
+			if (hasPending && !continuesLine(x, y)) {
+				decimator.add(pendingX, pendingY);
+				anchorX = pendingX;
+				anchorY = pendingY;
+			}
+			pendingX = x;
+			pendingY = y;
+			hasPending = true;
+		}
+
+		private boolean continuesLine(double x, double y) {
+			final double ax = pendingX - anchorX;
+			final double ay = pendingY - anchorY;
+			final double bx = x - pendingX;
+			final double by = y - pendingY;
+			final double cross = ax * by - ay * bx;
+			final double dot = ax * bx + ay * by;
+			return dot >= 0 && Math.abs(cross) <= COLLINEAR_TOLERANCE * Math.hypot(ax, ay) * Math.hypot(bx, by);
+		}
+
+		PointBuffer finish() {
+			if (hasPending) {
+				decimator.add(pendingX, pendingY);
+				hasPending = false;
+			}
+			return decimator.finish();
+		}
+	}
+
+	/**
+	 * Keeps every n-th point it is given, doubling n whenever its buffer fills, plus the last point
+	 */
+	private static class Decimator {
+		private final PointBuffer kept;
+		private int stride = 1;
+		private long index = 0;
+		private double lastX, lastY;
+		private boolean finished = false;
+
+		Decimator(int maxPoints) {
+			// leave room for the last point
+			kept = new PointBuffer(maxPoints);
+		}
+
+		void add(double x, double y) {
+			if (index % stride == 0) {
+				if (kept.size == kept.x.length - 1) {
+					halve();
+				}
+				if (index % stride == 0) {
+					kept.add(x, y);
+				}
+			}
+			lastX = x;
+			lastY = y;
+			index++;
+		}
+
+		private void halve() {
+			int size = 0;
+			for (int i = 0; i < kept.size; i += 2) {
+				kept.x[size] = kept.x[i];
+				kept.y[size] = kept.y[i];
+				size++;
+			}
+			kept.size = size;
+			stride *= 2;
+		}
+
+		PointBuffer finish() {
+			if (!finished && index > 0 && (index - 1) % stride != 0) {
+				kept.add(lastX, lastY);
+			}
+			finished = true;
+			return kept;
+		}
+	}
+}
@@ -18,7 +18,8 @@
 
 package uk.ac.diamond.daq.mapping.ui.experiment;
 
-
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.function.Consumer;
 
 import javax.inject.Inject;
@@ -27,9 +28,11 @@ import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.Status;
 import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.dawnsci.analysis.api.persistence.IMarshallerService;
 import org.eclipse.dawnsci.analysis.api.roi.IROI;
 import org.eclipse.dawnsci.analysis.api.roi.IRectangularROI;
 import org.eclipse.dawnsci.analysis.dataset.roi.LinearROI;
+import org.eclipse.e4.core.di.annotations.Optional;
 import org.eclipse.e4.core.services.events.IEventBroker;
 import org.eclipse.scanning.api.points.IPointGeneratorService;
 import org.eclipse.scanning.api.points.IPosition;
@@ -39,13 +42,25 @@ import org.eclipse.scanning.api.points.models.IBoundingBoxModel;
 import org.eclipse.scanning.api.points.models.IBoundingLineModel;
 import org.eclipse.scanning.api.points.models.IMapPathModel;
 import org.eclipse.scanning.api.points.models.IScanPathModel;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import uk.ac.diamond.daq.mapping.api.IMappingScanRegionShape;
 
+/**
+ * Calculates the {@link PathInfo} of a scan path within a region. The points are streamed from the generator so paths of
+ * any length can be calculated; the plotted path is simplified if there are more than {@link #MAX_PLOTTED_POINTS}.
+ * <p>
+ * The results for the last few combinations of path and region are cached, so changes which leave both the same do not
+ * cause the path to be recalculated.
+ */
 public class PathInfoCalculatorJob extends Job {
 
+	private static final Logger logger = LoggerFactory.getLogger(PathInfoCalculatorJob.class);
+
 	public static final String PATH_CALCULATION_TOPIC = "uk/ac/diamond/daq/mapping/client/events/PathCalculationEvent";
-	static final int MAX_POINTS_IN_ROI = 100000; // 100,000
+	static final int MAX_PLOTTED_POINTS = 100000; // 100,000
+	private static final int CACHE_SIZE = 8;
 
 	private String pathCalculationTopic = PATH_CALCULATION_TOPIC;
 
@@ -53,12 +68,23 @@ public class PathInfoCalculatorJob extends Job {
 	private IPointGeneratorService pointGeneratorFactory;
 	@Inject
 	private IEventBroker eventBroker;
+	@Inject
+	@Optional
+	private IMarshallerService marshaller;
 
 	private IScanPathModel scanPathModel;
 	private IMappingScanRegionShape scanRegion;
 
 	private Consumer<PathInfo> consumer;
 
+	/** Results keyed by the serialised path model and region, least recently used first. Only used by the job thread. */
+	private final Map<String, PathInfo> cache = new LinkedHashMap<String, PathInfo>(CACHE_SIZE, 0.75f, true) {
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, PathInfo> eldest) {
+			return size() > CACHE_SIZE;
+		}
+	};
+
 	PathInfoCalculatorJob() {
 		super("Calculating scan path");
 		setPriority(SHORT);
@@ -80,7 +106,6 @@ public class PathInfoCalculatorJob extends Job {
 	@Override
 	public IStatus run(IProgressMonitor monitor) {
 		monitor.beginTask("Calculating points for scan path", IProgressMonitor.UNKNOWN);
-		PathInfo pathInfo = new PathInfo();
 		String xAxisName = "x";
 		String yAxisName = "y";
 
@@ -126,33 +151,21 @@ public class PathInfoCalculatorJob extends Job {
 		}
 
 		try {
-			final Iterable<IPosition> pointIterable = pointGeneratorFactory.createGenerator(scanPathModel, scanRegion.toROI());
-			double lastX = Double.NaN;
-			double lastY = Double.NaN;
-			for (IPosition point : pointIterable) {
-				if (monitor.isCanceled()) {
-					return Status.CANCEL_STATUS;
-				}
-				pathInfo.pointCount++;
-
-				if (pathInfo.pointCount > 1) {
-					double thisXStep = Math.abs(point.getValue(xAxisName) - lastX);
-					double thisYStep = Math.abs(point.getValue(yAxisName) - lastY);
-					double thisAbsStep = Math.sqrt(Math.pow(thisXStep, 2) + Math.pow(thisYStep, 2));
-					if (thisXStep > 0) {
-						pathInfo.smallestXStep = Math.min(pathInfo.smallestXStep, thisXStep);
-					}
-					if (thisYStep > 0) {
-						pathInfo.smallestYStep = Math.min(pathInfo.smallestYStep, thisYStep);
+			final IROI roi = scanRegion.toROI();
+			final String cacheKey = getCacheKey(roi);
+			PathInfo pathInfo = cacheKey == null ? null : cache.get(cacheKey);
+			if (pathInfo == null) {
+				final PathInfoCalculator calculator = new PathInfoCalculator(MAX_PLOTTED_POINTS);
+				final Iterable<IPosition> pointIterable = pointGeneratorFactory.createGenerator(scanPathModel, roi);
+				for (IPosition point : pointIterable) {
+					if (monitor.isCanceled()) {
+						return Status.CANCEL_STATUS;
 					}
-					pathInfo.smallestAbsStep = Math.min(pathInfo.smallestAbsStep, thisAbsStep);
+					calculator.addPoint(point.getValue(xAxisName), point.getValue(yAxisName));
 				}
-
-				lastX = point.getValue(xAxisName);
-				lastY = point.getValue(yAxisName);
-				if (pathInfo.xCoordinates.size() <= MAX_POINTS_IN_ROI) {
-					pathInfo.xCoordinates.add(Double.valueOf(lastX));
-					pathInfo.yCoordinates.add(Double.valueOf(lastY));
+				pathInfo = calculator.getPathInfo();
+				if (cacheKey != null) {
+					cache.put(cacheKey, pathInfo);
 				}
 			}
 			monitor.done();
@@ -164,4 +177,20 @@ public class PathInfoCalculatorJob extends Job {
 		}
 		return Status.OK_STATUS;
 	}
-}
\ No newline at end of file
+
+	/**
+	 * @return a key identifying the current state of the path model and the region, or null if they cannot be
+	 *         serialised, in which case the result is not cached
+	 */
+	private String getCacheKey(IROI roi) {
+		if (marshaller == null) {
+			return null;
+		}
+		try {
+			return marshaller.marshal(scanPathModel) + "\n" + marshaller.marshal(roi);
+		} catch (Exception e) {
+			logger.debug("Cannot serialise {} and {}; scan path will not be cached", scanPathModel, roi, e);
+			return null;
+		}
+	}
+}
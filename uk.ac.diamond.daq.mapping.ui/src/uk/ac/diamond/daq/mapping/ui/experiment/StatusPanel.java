@@ -88,9 +88,9 @@ public class StatusPanel extends AbstractMappingSection {
 
 	private String getNumberOfPointsString() {
 		int totalPoints = getScanPoints();
-		if (totalPoints > PathInfoCalculatorJob.MAX_POINTS_IN_ROI) {
-			return String.format(" (Only displaying the first %,d points)",
-								PathInfoCalculatorJob.MAX_POINTS_IN_ROI);
+		if (pathInfo.isSimplified()) {
+			return String.format("Map points: %d (path simplified to %,d points)", totalPoints,
+								pathInfo.xCoordinates.length);
 		}
 		return "Map points: " + totalPoints;
 	}
@@ -0,0 +1,79 @@
+/*-
+ * Copyright © 2019 Diamond Light Source Ltd.
+ *
+ * This file is part of GDA.
+ *
+ * GDA is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License version 3 as published by the Free
+ * Software Foundation.
+ *
+ * GDA is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with GDA. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package uk.ac.diamond.daq.msgbus.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import uk.ac.diamond.daq.msgbus.MsgBusCodec;
+
+public class MsgBusCodecTest {
+
+	@Test
+	public void compactJsonRoundTrip() {
+		final MsgBusCodec codec = new MsgBusCodec(false);
+		final TestMsg expected = new TestMsg("7", 1);
+
+		final String json = codec.toJson(expected);
+		assertFalse(json.contains("\n"));
+
+		final TestMsg actual = codec.fromJson(json, TestMsg.class);
+		assertEquals(expected.mid, actual.mid);
+		assertEquals(expected.s, actual.s);
+		assertEquals(expected.i, actual.i);
+		assertEquals(expected.fs, actual.fs);
+	}
+
+	@Test
+	public void prettyJsonRoundTrip() {
+		final MsgBusCodec codec = new MsgBusCodec(true);
+		final TestMsg expected = new TestMsg("pretty", 2);
+
+		final String json = codec.toJson(expected);
+		assertTrue(json.contains("\n"));
+		assertEquals(expected.mid, codec.fromJson(json, TestMsg.class).mid);
+	}
+
+	@Test
+	public void bytesRoundTrip() {
+		final MsgBusCodec codec = new MsgBusCodec(false);
+		final TestMsg expected = new TestMsg("été", 3);
+
+		final TestMsg actual = codec.fromBytes(codec.toBytes(expected), TestMsg.class);
+		assertEquals(expected.mid, actual.mid);
+		assertEquals(expected.s, actual.s);
+	}
+
+	@Test
+	public void resolvedClassesAreReused() throws ClassNotFoundException {
+		final MsgBusCodec codec = new MsgBusCodec(false);
+		assertSame(TestMsg.class, codec.resolveClass(TestMsg.class.getName()));
+		assertSame(TestMsg.class, codec.resolveClass(TestMsg.class.getName()));
+	}
+
+	@Test(expected = ClassNotFoundException.class)
+	public void unknownClassIsNotFound() throws ClassNotFoundException {
+		new MsgBusCodec(false).resolveClass("uk.ac.diamond.daq.msgbus.test.NoSuchMsg");
+	}
+}
@@ -0,0 +1,79 @@
+/*-
+ * Copyright © 2019 Diamond Light Source Ltd.
+ *
+ * This file is part of GDA.
+ *
+ * GDA is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License version 3 as published by the Free
+ * Software Foundation.
+ *
+ * GDA is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with GDA. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package uk.ac.diamond.daq.msgbus.test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.eventbus.Subscribe;
+
+import gda.configuration.properties.LocalProperties;
+import uk.ac.diamond.daq.msgbus.MsgBus;
+
+/**
+ * Measures how many msgs per second MsgBus can publish as JSON and deliver back to a subscriber, using an embedded
+ * ActiveMQ broker. Not run as part of the unit tests.
+ * <p>
+ * Run with the argument {@code highThroughput} to measure the high throughput mode. As MsgBus is a singleton the two
+ * modes must be measured in separate runs. An optional second argument sets the number of msgs (default 100000).
+ */
+public class MsgBusThroughputBenchmark {
+
+	private static final int WARM_UP = 10_000;
+
+	private volatile CountDownLatch remaining;
+
+	@Subscribe
+	public void receive(TestMsg msg) {
+		remaining.countDown();
+	}
+
+	public static void main(String[] args) throws InterruptedException {
+		final boolean highThroughput = args.length > 0 && args[0].equals("highThroughput");
+		final int msgs = args.length > 1 ? Integer.parseInt(args[1]) : 100_000;
+
+		LocalProperties.forceActiveMQEmbeddedBroker();
+		LocalProperties.set(MsgBus.HIGH_THROUGHPUT_PROPERTY, Boolean.toString(highThroughput));
+
+		final MsgBusThroughputBenchmark benchmark = new MsgBusThroughputBenchmark();
+		MsgBus.subscribe(benchmark);
+		benchmark.run(WARM_UP);
+		final double seconds = benchmark.run(msgs);
+		MsgBus.unsubscribe(benchmark);
+
+		System.out.println(String.format("%s mode: %d msgs in %.2f s, %.0f msgs/s",
+				highThroughput ? "High throughput" : "Default", msgs, seconds, msgs / seconds));
+		MsgBus.INSTANCE._shutdown();
+		LocalProperties.unsetActiveMQBrokerURI();
+	}
+
+	private double run(int msgs) throws InterruptedException {
+		remaining = new CountDownLatch(msgs);
+		final TestMsg msg = new TestMsg("benchmark", 42);
+		final long start = System.nanoTime();
+		for (int i = 0; i < msgs; i++) {
+			MsgBus.publishAsJson(msg);
+		}
+		if (!remaining.await(5, TimeUnit.MINUTES)) {
+			System.out.println(remaining.getCount() + " msgs not received");
+		}
+		return (System.nanoTime() - start) / 1e9;
+	}
+}
@@ -0,0 +1,199 @@
+/*-
+ * Copyright © 2019 Diamond Light Source Ltd.
+ *
+ * This file is part of GDA.
+ *
+ * GDA is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License version 3 as published by the Free
+ * Software Foundation.
+ *
+ * GDA is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with GDA. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package uk.ac.diamond.daq.msgbus.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.eventbus.DeadEvent;
+import com.google.common.eventbus.Subscribe;
+import com.google.common.eventbus.SubscriberExceptionContext;
+
+import uk.ac.diamond.daq.msgbus.SubscriberOrderedEventBus;
+
+public class SubscriberOrderedEventBusTest {
+
+	private static final int EVENTS = 10_000;
+
+	private ExecutorService executor;
+	private SubscriberOrderedEventBus bus;
+
+	private final List<Throwable> exceptions = Collections.synchronizedList(new ArrayList<Throwable>());
+	private final List<SubscriberExceptionContext> exceptionContexts = Collections.synchronizedList(new ArrayList<SubscriberExceptionContext>());
+	private final CountDownLatch exceptionHandled = new CountDownLatch(1);
+
+	private static class IntegerSubscriber {
+		final List<Integer> received = Collections.synchronizedList(new ArrayList<Integer>());
+		final CountDownLatch done;
+		IntegerSubscriber(int expected) {
+			done = new CountDownLatch(expected);
+		}
+		@Subscribe void receive(Integer event) {
+			received.add(event);
+			done.countDown();
+		}
+	}
+
+	private static class NumberSubscriber {
+		final CountDownLatch done = new CountDownLatch(2);
+		@Subscribe public void receive(Number event) {
+			done.countDown();
+		}
+	}
+
+	private static class DeadEventSubscriber {
+		final CountDownLatch done = new CountDownLatch(1);
+		volatile Object event;
+		@Subscribe public void receive(DeadEvent deadEvent) {
+			event = deadEvent.getEvent();
+			done.countDown();
+		}
+	}
+
+	private interface StringListener {
+		@Subscribe void receive(String event);
+	}
+
+	private static class InterfaceSubscriber implements StringListener {
+		final CountDownLatch done = new CountDownLatch(1);
+		@Override
+		public void receive(String event) {
+			done.countDown();
+		}
+	}
+
+	private static class FailingSubscriber {
+		final RuntimeException failure = new IllegalStateException("subscriber failed");
+		final CountDownLatch done = new CountDownLatch(2);
+		@Subscribe public void receive(Integer event) {
+			done.countDown();
+			if (event == 0) {
+				throw failure;
+			}
+		}
+	}
+
+	@Before
+	public void setUp() {
+		executor = Executors.newFixedThreadPool(4);
+		bus = new SubscriberOrderedEventBus(executor, (exception, context) -> {
+			exceptions.add(exception);
+			exceptionContexts.add(context);
+			exceptionHandled.countDown();
+		});
+	}
+
+	@After
+	public void tearDown() {
+		executor.shutdownNow();
+	}
+
+	@Test
+	public void eachSubscriberReceivesEventsInOrder() throws InterruptedException {
+		final IntegerSubscriber first = new IntegerSubscriber(EVENTS);
+		final IntegerSubscriber second = new IntegerSubscriber(EVENTS);
+		bus.register(first);
+		bus.register(second);
+
+		for (int i = 0; i < EVENTS; i++) {
+			bus.post(i);
+		}
+
+		assertTrue(first.done.await(5, TimeUnit.SECONDS));
+		assertTrue(second.done.await(5, TimeUnit.SECONDS));
+		for (int i = 0; i < EVENTS; i++) {
+			assertEquals(i, first.received.get(i).intValue());
+			assertEquals(i, second.received.get(i).intValue());
+		}
+	}
+
+	@Test
+	public void subscribersReceiveSubtypes() throws InterruptedException {
+		final NumberSubscriber subscriber = new NumberSubscriber();
+		bus.register(subscriber);
+		bus.post(1);
+		bus.post(2.0);
+		assertTrue(subscriber.done.await(5, TimeUnit.SECONDS));
+	}
+
+	@Test
+	public void subscriberMethodsDeclaredByInterfacesAreFound() throws InterruptedException {
+		final InterfaceSubscriber subscriber = new InterfaceSubscriber();
+		bus.register(subscriber);
+		bus.post("event");
+		assertTrue(subscriber.done.await(5, TimeUnit.SECONDS));
+	}
+
+	@Test
+	public void subscriberExceptionsGoToTheHandler() throws InterruptedException {
+		final FailingSubscriber subscriber = new FailingSubscriber();
+		bus.register(subscriber);
+		bus.post(0);
+		bus.post(1);
+
+		assertTrue(exceptionHandled.await(5, TimeUnit.SECONDS));
+		assertSame(subscriber.failure, exceptions.get(0));
+		assertSame(subscriber, exceptionContexts.get(0).getSubscriber());
+		assertEquals(0, exceptionContexts.get(0).getEvent());
+		assertEquals("receive", exceptionContexts.get(0).getSubscriberMethod().getName());
+		// Later events are still delivered
+		assertTrue(subscriber.done.await(5, TimeUnit.SECONDS));
+		assertEquals(1, exceptions.size());
+	}
+
+	@Test
+	public void unhandledEventsArePostedAsDeadEvents() throws InterruptedException {
+		final DeadEventSubscriber deadEvents = new DeadEventSubscriber();
+		bus.register(new IntegerSubscriber(1));
+		bus.register(deadEvents);
+
+		bus.post("not an integer");
+
+		assertTrue(deadEvents.done.await(5, TimeUnit.SECONDS));
+		assertEquals("not an integer", deadEvents.event);
+	}
+
+	@Test
+	public void unregisteredSubscriberReceivesNothing() throws InterruptedException {
+		final IntegerSubscriber subscriber = new IntegerSubscriber(1);
+		bus.register(subscriber);
+		bus.unregister(subscriber);
+		bus.post(1);
+		assertTrue(!subscriber.done.await(200, TimeUnit.MILLISECONDS));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void unregisteringUnknownSubscriberFails() {
+		bus.unregister(new IntegerSubscriber(1));
+	}
+}
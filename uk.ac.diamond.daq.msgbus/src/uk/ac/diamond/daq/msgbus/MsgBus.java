@@ -28,6 +28,7 @@ import java.util.UUID;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 
+import javax.jms.BytesMessage;
 import javax.jms.Connection;
 import javax.jms.DeliveryMode;
 import javax.jms.Destination;
@@ -45,25 +46,37 @@ import org.apache.activemq.ActiveMQConnectionFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.google.common.base.Supplier;
 import com.google.common.eventbus.AsyncEventBus;
 import com.google.common.eventbus.DeadEvent;
 import com.google.common.eventbus.EventBus;
 import com.google.common.eventbus.Subscribe;
 import com.google.common.eventbus.SubscriberExceptionContext;
 import com.google.common.eventbus.SubscriberExceptionHandler;
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
 import gda.configuration.properties.LocalProperties;
 
 /**
  * Eagerly-initialised singleton (per-process but linked by JMS destination).
+ * <p>
+ * Setting {@value #HIGH_THROUGHPUT_PROPERTY} to true before first use selects a mode for high msg rates: JSON msgs are
+ * published without indentation, written straight to UTF-8 in a bytes message rather than built as a String for a text
+ * message (the JSON is the same, this is not a binary format), and posts are delivered by a fixed number of threads
+ * ({@value #DELIVERY_THREADS_PROPERTY}, default {@value #DEFAULT_DELIVERY_THREADS}) with each subscriber receiving msgs
+ * in the order they were posted. Both modes receive msgs published in either format.
  *
  */
 public enum MsgBus {
 	INSTANCE;
 
+	/** Property selecting high throughput mode. Default is false. */
+	public static final String HIGH_THROUGHPUT_PROPERTY = "gda.msgbus.highThroughput";
+
+	/** Property setting the number of threads delivering posts in high throughput mode */
+	public static final String DELIVERY_THREADS_PROPERTY = "gda.msgbus.deliveryThreads";
+
+	public static final int DEFAULT_DELIVERY_THREADS = 4;
+
 	private final Logger logger = LoggerFactory.getLogger(MsgBus.class.getSimpleName()+"."+ManagementFactory.getRuntimeMXBean().getName()); // static precluded by use in constructor (of enum)
 
 	/**
@@ -94,14 +107,28 @@ public enum MsgBus {
 
 	private ExecutorService threadPool;
 
+	private final boolean highThroughput;
+
+	private final MsgBusCodec codec;
+
 	/**
 	 * Private constructor prevents sub-classing.
 	 */
 	private MsgBus() {
 
 		try {
-			threadPool = Executors.newCachedThreadPool();
-			eventBus = new AsyncEventBus(threadPool, subscriberExceptionHandler);
+			highThroughput = LocalProperties.check(HIGH_THROUGHPUT_PROPERTY, false);
+			codec = new MsgBusCodec(!highThroughput);
+			if (highThroughput) {
+				final int deliveryThreads = LocalProperties.getAsInt(DELIVERY_THREADS_PROPERTY, DEFAULT_DELIVERY_THREADS);
+				threadPool = Executors.newFixedThreadPool(deliveryThreads,
+						new ThreadFactoryBuilder().setNameFormat("MsgBus-delivery-%d").setDaemon(true).build());
+				eventBus = new SubscriberOrderedEventBus(threadPool, subscriberExceptionHandler);
+				logger.info("high throughput mode: compact JSON, {} delivery threads", deliveryThreads);
+			} else {
+				threadPool = Executors.newCachedThreadPool();
+				eventBus = new AsyncEventBus(threadPool, subscriberExceptionHandler);
+			}
 //			eventBus = new EventBus(subscriberExceptionHandler);
 
 			// Connection
@@ -212,34 +239,27 @@ public enum MsgBus {
 	private void _publishAsJson(Serializable msg) {
 		//FIXME same problem and fix as described in _publish
 		try {
-			logger.debug("publishing {} as JSON:", msg);
-			String json = gson.get().toJson(msg);
-			logger.debug(json);
-			final TextMessage message = session.createTextMessage(json);
+			final Message message;
+			if (highThroughput) {
+				logger.trace("publishing {} as JSON bytes", msg);
+				final BytesMessage bytesMessage = session.createBytesMessage();
+				bytesMessage.writeBytes(codec.toBytes(msg));
+				message = bytesMessage;
+			} else {
+				logger.debug("publishing {} as JSON:", msg);
+				String json = codec.toJson(msg);
+				logger.debug(json);
+				message = session.createTextMessage(json);
+			}
 			final String className = msg.getClass().getName();
-			logger.debug("setting string property = {}", className);
-			message.setStringProperty("className", className);
+			logger.trace("setting string property = {}", className);
+			message.setStringProperty(MsgBusCodec.CLASS_NAME_PROPERTY, className);
 			producer.send(message);
 		} catch (JMSException e) {
 			logger.error("JMSException while publishing {}", msg, e);
 		}
 	}
 
-	private Supplier<Gson> gson =
-//		Suppliers.memoize(
-			new Supplier<Gson>() {
-				@Override
-				public Gson get() {
-					return new GsonBuilder()
-						.registerTypeAdapterFactory(OptionalTypeAdapter.FACTORY)
-						.setPrettyPrinting()
-						.serializeSpecialFloatingPointValues() // handle Infinity
-						.create();
-				}
-			}
-//		)
-	;
-
 	/**
 	 * Send a Msg object to all consumers of topic,
 	 * i.e. each process's MsgBus singleton,
@@ -284,7 +304,7 @@ public enum MsgBus {
 				}
 				else if (message instanceof TextMessage) {
 					final String text = ((TextMessage) message).getText();
-					final String className = message.getStringProperty("className");
+					final String className = message.getStringProperty(MsgBusCodec.CLASS_NAME_PROPERTY);
 					if (className == null) {
 						logger.info("missing string property 'className' for text message");
 						logger.info("cannot recreate object from text without class information");
@@ -292,12 +312,11 @@ public enum MsgBus {
 						return;
 					}
 					else{
-						logger.info("trying to recreate {} object from text message", className);
+						logger.debug("trying to recreate {} object from text message", className);
 						try {
-							Class<?> clazz = Class.forName(className);
-							logger.info("loaded Class {}", clazz.getCanonicalName());
-							msg = gson.get().fromJson(text, clazz);
-							logger.info("successfully recreated {}", msg);
+							Class<?> clazz = codec.resolveClass(className);
+							msg = codec.fromJson(text, clazz);
+							logger.debug("successfully recreated {}", msg);
 						} catch (ClassNotFoundException e) {
 							logger.error("failed to recreate object from text message");
 							logger.warn("discarding text:\n{}", text);
@@ -305,6 +324,23 @@ public enum MsgBus {
 						}
 					}
 				}
+				else if (message instanceof BytesMessage) {
+					final BytesMessage bytesMessage = (BytesMessage) message;
+					final String className = message.getStringProperty(MsgBusCodec.CLASS_NAME_PROPERTY);
+					if (className == null) {
+						logger.warn("discarding bytes message without string property 'className'");
+						return;
+					}
+					final byte[] bytes = new byte[(int) bytesMessage.getBodyLength()];
+					bytesMessage.readBytes(bytes);
+					try {
+						msg = codec.fromBytes(bytes, codec.resolveClass(className));
+						logger.trace("recreated {} from bytes message", msg);
+					} catch (ClassNotFoundException e) {
+						logger.error("failed to recreate {} object from bytes message", className);
+						return;
+					}
+				}
 				logger.trace("posting published {}", msg);
 				INSTANCE._post(msg);
 			} catch (JMSException e) {
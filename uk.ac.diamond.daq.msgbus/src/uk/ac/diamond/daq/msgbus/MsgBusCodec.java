@@ -0,0 +1,120 @@
+/*-
+ * Copyright © 2019 Diamond Light Source Ltd.
+ *
+ * This file is part of GDA.
+ *
+ * GDA is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License version 3 as published by the Free
+ * Software Foundation.
+ *
+ * GDA is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with GDA. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package uk.ac.diamond.daq.msgbus;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonIOException;
+
+/**
+ * Converts msgs to and from JSON for publishing, either as a String for a text message or as UTF-8 encoded JSON for a
+ * bytes message. There is no binary encoding.
+ * <p>
+ * A single {@link Gson} is built per codec, and Gson keeps the type adapter of each msg type once it has been created,
+ * so repeated msgs of the same type do not pay for reflection again. Classes named in received messages are resolved
+ * once and remembered. Instances are thread safe.
+ */
+public class MsgBusCodec {
+
+	/** Message property naming the class of a msg published as JSON */
+	public static final String CLASS_NAME_PROPERTY = "className";
+
+	private final Gson gson;
+
+	private final ConcurrentMap<String, Class<?>> classes = new ConcurrentHashMap<>();
+
+	/**
+	 * @param prettyPrinting
+	 *            true to produce indented JSON, which is easier to read in logs but larger and slower
+	 */
+	public MsgBusCodec(boolean prettyPrinting) {
+		final GsonBuilder builder = new GsonBuilder()
+				.registerTypeAdapterFactory(OptionalTypeAdapter.FACTORY)
+				.serializeSpecialFloatingPointValues(); // handle Infinity
+		if (prettyPrinting) {
+			builder.setPrettyPrinting();
+		}
+		gson = builder.create();
+	}
+
+	public String toJson(Object msg) {
+		return gson.toJson(msg, msg.getClass());
+	}
+
+	public <T> T fromJson(String json, Class<T> type) {
+		return gson.fromJson(json, type);
+	}
+
+	/**
+	 * Encode a msg for the body of a bytes message. This is not a binary encoding: the bytes are the same JSON that
+	 * {@link #toJson(Object)} returns, encoded as UTF-8. The only saving over a text message is that no intermediate
+	 * String is built. The JSON is neither smaller nor quicker to parse.
+	 *
+	 * @return the msg as UTF-8 encoded JSON
+	 */
+	public byte[] toBytes(Object msg) {
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+		try (Writer writer = new OutputStreamWriter(bytes, UTF_8)) {
+			gson.toJson(msg, msg.getClass(), writer);
+		} catch (IOException e) {
+			throw new JsonIOException(e);
+		}
+		return bytes.toByteArray();
+	}
+
+	/**
+	 * @param bytes
+	 *            UTF-8 encoded JSON, as produced by {@link #toBytes(Object)}
+	 */
+	public <T> T fromBytes(byte[] bytes, Class<T> type) {
+		try (Reader reader = new InputStreamReader(new ByteArrayInputStream(bytes), UTF_8)) {
+			return gson.fromJson(reader, type);
+		} catch (IOException e) {
+			throw new JsonIOException(e);
+		}
+	}
+
+	/**
+	 * Load the named class, or return it if it has been loaded by this codec before. Classes which cannot be found
+	 * are not remembered, so that a msg type from a bundle which is not yet available is found once it is.
+	 *
+	 * @throws ClassNotFoundException
+	 */
+	public Class<?> resolveClass(String className) throws ClassNotFoundException {
+		Class<?> clazz = classes.get(className);
+		if (clazz == null) {
+			clazz = Class.forName(className);
+			classes.putIfAbsent(className, clazz);
+		}
+		return clazz;
+	}
+}
@@ -0,0 +1,204 @@
+/*-
+ * Copyright © 2019 Diamond Light Source Ltd.
+ *
+ * This file is part of GDA.
+ *
+ * GDA is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License version 3 as published by the Free
+ * Software Foundation.
+ *
+ * GDA is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with GDA. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package uk.ac.diamond.daq.msgbus;
+
+import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.eventbus.DeadEvent;
+import com.google.common.eventbus.EventBus;
+import com.google.common.eventbus.Subscribe;
+import com.google.common.eventbus.SubscriberExceptionHandler;
+import com.google.common.reflect.TypeToken;
+
+/**
+ * An {@link EventBus} which delivers events on a shared executor while guaranteeing that each subscriber receives
+ * events in the order they were posted.
+ * <p>
+ * {@link com.google.common.eventbus.AsyncEventBus AsyncEventBus} submits a separate task for every event and
+ * subscriber, so with more than one thread a subscriber may see events out of order, and with an unbounded pool a
+ * burst of events creates a burst of threads. Here each subscriber has its own queue, and at most one task per
+ * subscriber runs on the executor at a time, so a fixed size pool can be shared without reordering. A slow subscriber
+ * only delays its own events.
+ * <p>
+ * Each subscriber is registered on its own {@link EventBus}, which that task posts its events to, so subscriber
+ * methods are found and called by Guava, and exceptions they throw are passed to the
+ * {@link SubscriberExceptionHandler}. Events no subscriber accepts are posted as {@link DeadEvent}s.
+ */
+public class SubscriberOrderedEventBus extends EventBus {
+
+	private static final Logger logger = LoggerFactory.getLogger(SubscriberOrderedEventBus.class);
+
+	/** Maximum number of events delivered to one subscriber before its task yields to others */
+	private static final int MAX_EVENTS_PER_TASK = 64;
+
+	private final Executor executor;
+
+	private final SubscriberExceptionHandler exceptionHandler;
+
+	/** Replaced, never modified, so posting does not need to lock */
+	private volatile Map<Object, SubscriberQueue> subscribers = Collections.emptyMap();
+
+	public SubscriberOrderedEventBus(Executor executor, SubscriberExceptionHandler exceptionHandler) {
+		super(exceptionHandler);
+		this.executor = executor;
+		this.exceptionHandler = exceptionHandler;
+	}
+
+	@Override
+	public synchronized void register(Object subscriber) {
+		if (subscribers.containsKey(subscriber)) {
+			return;
+		}
+		final EventBus subscriberBus = new EventBus(exceptionHandler);
+		subscriberBus.register(subscriber);
+		final Set<Class<?>> eventTypes = findEventTypes(subscriber.getClass());
+		if (eventTypes.isEmpty()) {
+			return;
+		}
+		final Map<Object, SubscriberQueue> updated = new IdentityHashMap<>(subscribers);
+		updated.put(subscriber, new SubscriberQueue(subscriber, subscriberBus, eventTypes));
+		subscribers = updated;
+	}
+
+	@Override
+	public synchronized void unregister(Object subscriber) {
+		if (!subscribers.containsKey(subscriber)) {
+			throw new IllegalArgumentException("missing event subscriber for an annotated method. Is " + subscriber + " registered?");
+		}
+		final Map<Object, SubscriberQueue> updated = new IdentityHashMap<>(subscribers);
+		updated.remove(subscriber).close();
+		subscribers = updated;
+	}
+
+	@Override
+	public void post(Object event) {
+		boolean delivered = false;
+		for (SubscriberQueue queue : subscribers.values()) {
+			delivered |= queue.offer(event);
+		}
+		if (!delivered && !(event instanceof DeadEvent)) {
+			post(new DeadEvent(this, event));
+		}
+	}
+
+	/**
+	 * The types of event a subscriber accepts, looking at the same methods as Guava: those annotated with
+	 * {@link Subscribe} in the subscriber's class, its superclasses and the interfaces they implement. Only used to
+	 * decide which subscribers to queue an event for, as the subscriber's own bus does the delivery.
+	 */
+	private static Set<Class<?>> findEventTypes(Class<?> subscriberClass) {
+		final Set<Class<?>> eventTypes = new HashSet<>();
+		for (Class<?> type : TypeToken.of(subscriberClass).getTypes().rawTypes()) {
+			for (Method method : type.getDeclaredMethods()) {
+				if (method.isAnnotationPresent(Subscribe.class) && !method.isSynthetic()
+						&& method.getParameterTypes().length == 1) {
+					eventTypes.add(method.getParameterTypes()[0]);
+				}
+			}
+		}
+		return eventTypes;
+	}
+
+	/**
+	 * The events waiting to be posted to one subscriber's bus
+	 */
+	private final class SubscriberQueue implements Runnable {
+
+		private final Object subscriber;
+		private final EventBus subscriberBus;
+		private final Set<Class<?>> eventTypes;
+		private final Queue<Object> events = new ConcurrentLinkedQueue<>();
+		private final AtomicBoolean scheduled = new AtomicBoolean();
+		private volatile boolean closed;
+
+		SubscriberQueue(Object subscriber, EventBus subscriberBus, Set<Class<?>> eventTypes) {
+			this.subscriber = subscriber;
+			this.subscriberBus = subscriberBus;
+			this.eventTypes = eventTypes;
+		}
+
+		/**
+		 * @return true if the subscriber accepts the event, in which case it has been queued for delivery
+		 */
+		boolean offer(Object event) {
+			if (!accepts(event)) {
+				return false;
+			}
+			events.add(event);
+			schedule();
+			return true;
+		}
+
+		private boolean accepts(Object event) {
+			for (Class<?> eventType : eventTypes) {
+				if (eventType.isInstance(event)) {
+					return true;
+				}
+			}
+			return false;
+		}
+
+		private void schedule() {
+			if (!events.isEmpty() && scheduled.compareAndSet(false, true)) {
+				try {
+					executor.execute(this);
+				} catch (RejectedExecutionException e) {
+					scheduled.set(false);
+					logger.debug("not delivering events to {}: executor has shut down", subscriber, e);
+				}
+			}
+		}
+
+		void close() {
+			closed = true;
+			events.clear();
+		}
+
+		@Override
+		public void run() {
+			try {
+				for (int i = 0; i < MAX_EVENTS_PER_TASK && !closed; i++) {
+					final Object event = events.poll();
+					if (event == null) {
+						break;
+					}
+					subscriberBus.post(event);
+				}
+			} finally {
+				scheduled.set(false);
+				// Events may have been added after the last poll, or more remain after yielding
+				schedule();
+			}
+		}
+	}
+}
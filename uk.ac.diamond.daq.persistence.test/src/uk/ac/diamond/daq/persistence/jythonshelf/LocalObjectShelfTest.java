@@ -0,0 +1,504 @@
+/*-
+ * Copyright © 2019 Diamond Light Source Ltd.
+ *
+ * This file is part of GDA.
+ *
+ * GDA is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License version 3 as published by the Free
+ * Software Foundation.
+ *
+ * GDA is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with GDA. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package uk.ac.diamond.daq.persistence.jythonshelf;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.EntityTransaction;
+import javax.persistence.Query;
+import javax.persistence.RollbackException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import uk.ac.diamond.daq.persistence.jythonshelf.entity.ObjectShelf;
+import uk.ac.diamond.daq.persistence.jythonshelf.entity.ObjectShelfEntry;
+
+/**
+ * Tests for {@link LocalObjectShelf}, using an in memory stand in for the database.
+ */
+public class LocalObjectShelfTest {
+
+	private FakeDatabase database;
+
+	private boolean keyIndexChecked;
+
+	@Before
+	public void setUp() {
+		keyIndexChecked = LocalObjectShelf.keyIndexChecked;
+		LocalObjectShelf.keyIndexChecked = true;
+		database = new FakeDatabase();
+		LocalObjectShelfManager.emf = database.createFactory();
+	}
+
+	@After
+	public void tearDown() {
+		LocalObjectShelfManager.emf = null;
+		LocalObjectShelf.keyIndexChecked = keyIndexChecked;
+	}
+
+	@Test
+	public void valuesAreWrittenToTheDatabase() throws Exception {
+		LocalObjectShelf shelf = new LocalObjectShelf("", "test");
+		shelf.addValue("a", 1);
+		shelf.addValue("b", "two");
+
+		assertEquals(1, database.read("test", "a"));
+		assertEquals("two", database.read("test", "b"));
+		assertEquals(2, database.writeTransactions);
+
+		LocalObjectShelf reopened = new LocalObjectShelf("", "test");
+		assertEquals(Arrays.asList("a", "b"), reopened.keys());
+		assertEquals(1, reopened.getValue("a"));
+		assertEquals("two", reopened.getValue("b"));
+	}
+
+	@Test
+	public void reloadSeesChangesMadeThroughAnotherShelf() throws Exception {
+		LocalObjectShelf shelf = new LocalObjectShelf("", "test");
+		LocalObjectShelf other = new LocalObjectShelf("", "test");
+		other.addValue("a", 1);
+
+		assertFalse(shelf.has_key("a"));
+		shelf.reload();
+		assertEquals(1, shelf.getValue("a"));
+	}
+
+	@Test
+	public void mutableValuesAreCopiedOnEachRead() throws Exception {
+		LocalObjectShelf shelf = new LocalObjectShelf("", "test");
+		shelf.addValue("list", new ArrayList<>(Arrays.asList(1, 2)));
+
+		@SuppressWarnings("unchecked")
+		List<Integer> read = (List<Integer>) shelf.getValue("list");
+		read.add(3);
+
+		assertEquals(Arrays.asList(1, 2), shelf.getValue("list"));
+	}
+
+	@Test
+	public void changesAreWrittenInBatches() throws Exception {
+		LocalObjectShelf shelf = new LocalObjectShelf("", "test");
+		shelf.setCommitBatchSize(3);
+
+		shelf.addValue("a", 1);
+		shelf.addValue("b", 2);
+		assertEquals(0, database.writeTransactions);
+		assertNull(database.read("test", "a"));
+		// Changes waiting to be written are still seen by this shelf
+		assertEquals(Arrays.asList("a", "b"), shelf.keys());
+		assertEquals(2, shelf.getValue("b"));
+		assertEquals(2, shelf.__len__().intValue());
+
+		shelf.addValue("c", 3);
+		assertEquals(1, database.writeTransactions);
+		assertEquals(1, database.read("test", "a"));
+		assertEquals(3, database.read("test", "c"));
+
+		shelf.delValue("a");
+		shelf.addValue("d", 4);
+		assertFalse(shelf.has_key("a"));
+		assertEquals(1, database.read("test", "a"));
+		assertNull(database.read("test", "d"));
+
+		shelf.sync();
+		assertEquals(2, database.writeTransactions);
+		assertNull(database.read("test", "a"));
+		assertEquals(4, database.read("test", "d"));
+		assertEquals(Arrays.asList("b", "c", "d"), shelf.keys());
+	}
+
+	@Test
+	public void reducingTheBatchSizeWritesOutstandingChanges() throws Exception {
+		LocalObjectShelf shelf = new LocalObjectShelf("", "test");
+		shelf.setCommitBatchSize(10);
+		shelf.addValue("a", 1);
+		shelf.setCommitBatchSize(1);
+		assertEquals(1, database.read("test", "a"));
+	}
+
+	@Test
+	public void failedWriteDiscardsTheChanges() throws Exception {
+		LocalObjectShelf shelf = new LocalObjectShelf("", "test");
+		shelf.addValue("a", 1);
+
+		database.failCommits = true;
+		assertWriteFails(() -> shelf.setValue("a", 2));
+		assertWriteFails(() -> shelf.addValue("b", 3));
+		assertWriteFails(() -> shelf.delValue("a"));
+
+		assertEquals(1, shelf.getValue("a"));
+		assertFalse(shelf.has_key("b"));
+		assertEquals(Arrays.asList("a"), shelf.keys());
+
+		database.failCommits = false;
+		shelf.reload();
+		assertEquals(1, shelf.getValue("a"));
+		assertFalse(shelf.has_key("b"));
+	}
+
+	@Test
+	public void failedWriteDiscardsTheWholeBatch() throws Exception {
+		LocalObjectShelf shelf = new LocalObjectShelf("", "test");
+		shelf.setCommitBatchSize(2);
+		shelf.addValue("a", 1);
+		assertTrue(shelf.has_key("a"));
+
+		database.failCommits = true;
+		assertWriteFails(() -> shelf.addValue("b", 2));
+
+		assertFalse(shelf.has_key("a"));
+		assertFalse(shelf.has_key("b"));
+		assertEquals(0, shelf.__len__().intValue());
+	}
+
+	@Test
+	public void setValueRequiresAnExistingKey() throws Exception {
+		LocalObjectShelf shelf = new LocalObjectShelf("", "test");
+		shelf.setCommitBatchSize(10);
+		try {
+			shelf.setValue("a", 1);
+			fail("setValue should not create an entry");
+		} catch (ObjectShelfException e) {
+			// expected
+		}
+		assertFalse(shelf.has_key("a"));
+
+		shelf.addValue("a", 1);
+		shelf.setValue("a", 2);
+		assertEquals(2, shelf.getValue("a"));
+		shelf.sync();
+		assertEquals(2, database.read("test", "a"));
+	}
+
+	@Test
+	public void delValueRequiresAnExistingKey() throws Exception {
+		LocalObjectShelf shelf = new LocalObjectShelf("", "test");
+		shelf.setCommitBatchSize(10);
+		try {
+			shelf.delValue("a");
+			fail("delValue of a missing key should fail");
+		} catch (ObjectShelfException e) {
+			// expected
+		}
+
+		// An entry added and deleted before it is written never reaches the database
+		shelf.addValue("a", 1);
+		shelf.delValue("a");
+		assertFalse(shelf.has_key("a"));
+		try {
+			shelf.delValue("a");
+			fail("delValue of a deleted key should fail");
+		} catch (ObjectShelfException e) {
+			// expected
+		}
+		shelf.sync();
+		assertEquals(0, database.writeTransactions);
+	}
+
+	@Test
+	public void valueReaddedAfterDeleteIsKept() throws Exception {
+		LocalObjectShelf shelf = new LocalObjectShelf("", "test");
+		shelf.addValue("a", 1);
+		shelf.setCommitBatchSize(10);
+		shelf.delValue("a");
+		shelf.addValue("a", 2);
+		shelf.sync();
+
+		assertEquals(2, shelf.getValue("a"));
+		assertEquals(2, database.read("test", "a"));
+	}
+
+	@Test
+	public void keyIndexIsCreatedWhenMissing() throws Exception {
+		FakeConnection connection = new FakeConnection("SQL_OTHER_INDEX");
+		assertTrue(LocalObjectShelf.ensureKeyIndex(connection.proxy()));
+		assertEquals(Arrays.asList(ObjectShelfEntry.CREATE_KEY_INDEX), connection.updates);
+	}
+
+	@Test
+	public void keyIndexIsNotCreatedTwice() throws Exception {
+		FakeConnection connection = new FakeConnection("SQL_OTHER_INDEX", ObjectShelfEntry.KEY_INDEX_NAME);
+		assertFalse(LocalObjectShelf.ensureKeyIndex(connection.proxy()));
+		assertTrue(connection.updates.isEmpty());
+	}
+
+	private interface ShelfChange {
+		void apply() throws ObjectShelfException;
+	}
+
+	private void assertWriteFails(ShelfChange change) {
+		try {
+			change.apply();
+			fail("Write should have failed");
+		} catch (ObjectShelfException e) {
+			// expected
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <T> T proxy(Class<T> type, java.lang.reflect.InvocationHandler handler) {
+		return (T) Proxy.newProxyInstance(LocalObjectShelfTest.class.getClassLoader(), new Class<?>[] { type }, handler);
+	}
+
+	/**
+	 * Committed shelf entries by shelf and key. Each entity manager sees copies of them, and its changes are applied
+	 * when its transaction commits.
+	 */
+	private static class FakeDatabase {
+		private final Map<String, Map<String, byte[]>> shelves = new LinkedHashMap<>();
+		private boolean failCommits;
+		/** Number of committed transactions which looked up entries by key, as only writes to the shelf do */
+		private int writeTransactions;
+
+		EntityManagerFactory createFactory() {
+			return proxy(EntityManagerFactory.class, (p, method, args) -> {
+				if (method.getName().equals("createEntityManager")) {
+					return new FakeEntityManager().manager;
+				}
+				return null;
+			});
+		}
+
+		Serializable read(String shelf, String key) throws Exception {
+			byte[] bytes = shelves.get(shelf).get(key);
+			if (bytes == null) {
+				return null;
+			}
+			try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+				return (Serializable) in.readObject();
+			}
+		}
+
+		private class FakeEntityManager {
+			private final List<ObjectShelf> created = new ArrayList<>();
+			private final List<ObjectShelfEntry> loaded = new ArrayList<>();
+			private final List<ObjectShelfEntry> persisted = new ArrayList<>();
+			private final List<ObjectShelfEntry> removed = new ArrayList<>();
+			private boolean active;
+			private boolean lookedUpKeys;
+
+			private final EntityTransaction transaction = proxy(EntityTransaction.class, (p, method, args) -> {
+				switch (method.getName()) {
+				case "begin":
+					active = true;
+					return null;
+				case "commit":
+					active = false;
+					if (failCommits) {
+						throw new RollbackException("Commit failed");
+					}
+					apply();
+					return null;
+				case "rollback":
+					active = false;
+					return null;
+				case "isActive":
+					return active;
+				default:
+					return null;
+				}
+			});
+
+			private final EntityManager manager = proxy(EntityManager.class, (p, method, args) -> {
+				switch (method.getName()) {
+				case "getTransaction":
+					return transaction;
+				case "persist":
+					if (args[0] instanceof ObjectShelf) {
+						created.add((ObjectShelf) args[0]);
+					} else {
+						persisted.add((ObjectShelfEntry) args[0]);
+					}
+					return null;
+				case "remove":
+					removed.add((ObjectShelfEntry) args[0]);
+					return null;
+				case "find":
+					return findShelf((String) args[1]);
+				case "createNamedQuery":
+					return new FakeQuery((String) args[0]).query;
+				case "createQuery":
+					return new FakeQuery(null).query;
+				default:
+					return null;
+				}
+			});
+
+			private ObjectShelf findShelf(String name) {
+				if (!shelves.containsKey(name)) {
+					return null;
+				}
+				ObjectShelf shelf = new ObjectShelf();
+				shelf.setName(name);
+				shelf.setEntries(new ArrayList<>());
+				return shelf;
+			}
+
+			private void apply() {
+				for (ObjectShelf shelf : created) {
+					shelves.put(shelf.getName(), new LinkedHashMap<>());
+				}
+				for (ObjectShelfEntry entry : removed) {
+					shelves.get(entry.getShelf().getName()).remove(entry.getKeyName());
+				}
+				for (ObjectShelfEntry entry : loaded) {
+					if (!removed.contains(entry)) {
+						shelves.get(entry.getShelf().getName()).put(entry.getKeyName(), entry.getData());
+					}
+				}
+				for (ObjectShelfEntry entry : persisted) {
+					shelves.get(entry.getShelf().getName()).put(entry.getKeyName(), entry.getData());
+				}
+				if (lookedUpKeys) {
+					writeTransactions++;
+				}
+			}
+
+			private class FakeQuery {
+				private final Map<String, Object> parameters = new HashMap<>();
+
+				private final Query query;
+
+				FakeQuery(String name) {
+					query = proxy(Query.class, (p, method, args) -> {
+						switch (method.getName()) {
+						case "setParameter":
+							parameters.put((String) args[0], args[1]);
+							return p;
+						case "getResultList":
+							return name == null ? allShelves() : entries(name);
+						default:
+							return null;
+						}
+					});
+				}
+
+				private List<ObjectShelf> allShelves() {
+					List<ObjectShelf> all = new ArrayList<>();
+					for (String shelfName : shelves.keySet()) {
+						all.add(findShelf(shelfName));
+					}
+					return all;
+				}
+
+				private List<ObjectShelfEntry> entries(String name) {
+					String shelfName = (String) parameters.get("shelf");
+					Object keyName = parameters.get("keyName");
+					lookedUpKeys |= name.equals(ObjectShelfEntry.FIND_BY_KEY);
+					List<ObjectShelfEntry> entries = new ArrayList<>();
+					for (Map.Entry<String, byte[]> stored : shelves.get(shelfName).entrySet()) {
+						if (name.equals(ObjectShelfEntry.FIND_BY_SHELF) || stored.getKey().equals(keyName)) {
+							ObjectShelfEntry entry = new ObjectShelfEntry();
+							entry.setShelf(findShelf(shelfName));
+							entry.setKeyName(stored.getKey());
+							entry.setData(stored.getValue());
+							entries.add(entry);
+						}
+					}
+					loaded.addAll(entries);
+					return entries;
+				}
+			}
+		}
+	}
+
+	/**
+	 * A connection to a database whose entry table has the given indexes, recording the updates made through it
+	 */
+	private static class FakeConnection {
+		private final List<String> indexes;
+		private final List<String> updates = new ArrayList<>();
+
+		FakeConnection(String... indexes) {
+			this.indexes = Arrays.asList(indexes);
+		}
+
+		Connection proxy() {
+			final DatabaseMetaData metaData = LocalObjectShelfTest.proxy(DatabaseMetaData.class, (p, method, args) -> {
+				if (method.getName().equals("getIndexInfo")) {
+					assertEquals(ObjectShelfEntry.TABLE_NAME, args[2]);
+					return indexInfo();
+				}
+				return null;
+			});
+			final Statement statement = LocalObjectShelfTest.proxy(Statement.class, (p, method, args) -> {
+				if (method.getName().equals("executeUpdate")) {
+					updates.add((String) args[0]);
+					return 0;
+				}
+				return null;
+			});
+			return LocalObjectShelfTest.proxy(Connection.class, (p, method, args) -> {
+				switch (method.getName()) {
+				case "getMetaData":
+					return metaData;
+				case "createStatement":
+					return statement;
+				default:
+					return null;
+				}
+			});
+		}
+
+		private ResultSet indexInfo() {
+			final Iterator<String> rows = indexes.iterator();
+			final String[] current = new String[1];
+			return LocalObjectShelfTest.proxy(ResultSet.class, (p, method, args) -> {
+				switch (method.getName()) {
+				case "next":
+					if (!rows.hasNext()) {
+						return false;
+					}
+					current[0] = rows.next();
+					return true;
+				case "getString":
+					assertEquals("INDEX_NAME", args[0]);
+					return current[0];
+				default:
+					return null;
+				}
+			});
+		}
+	}
+}
@@ -23,34 +23,81 @@ import java.io.ByteArrayOutputStream;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.io.Serializable;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
 import java.util.ArrayList;
-import java.util.Collection;
+import java.util.Arrays;
 import java.util.Dictionary;
 import java.util.Enumeration;
+import java.util.HashSet;
 import java.util.Hashtable;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
 
 import javax.persistence.EntityManager;
+import javax.persistence.Query;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import gda.configuration.properties.LocalProperties;
 import uk.ac.diamond.daq.persistence.jythonshelf.LocalDatabase.LocalDatabaseException;
 import uk.ac.diamond.daq.persistence.jythonshelf.entity.ObjectShelf;
 import uk.ac.diamond.daq.persistence.jythonshelf.entity.ObjectShelfEntry;
 
 /**
  * LocalObjectShelf Class
+ * <p>
+ * The keys of the shelf and their serialized values are held in memory, so reading the shelf does not touch the
+ * database. Changes are written through to the database in batches of {@link #getCommitBatchSize()} changes (one by
+ * default), each batch in a single transaction; call {@link #sync()} to write any outstanding changes. Changes waiting
+ * to be written are seen by reads of this object, and only become part of the in memory copy of the database once they
+ * have been written. If writing a batch fails, all its changes are discarded and the exception reports this. The in
+ * memory copy is loaded when the shelf is opened, so changes made to the same shelf through another LocalObjectShelf
+ * object are only seen after {@link #reload()}.
  */
 public class LocalObjectShelf {
 	private static final Logger logger = LoggerFactory.getLogger(LocalObjectShelf.class);
 
+	/** Property setting the default number of changes written to the database in each transaction. Default is 1. */
+	public static final String COMMIT_BATCH_SIZE_PROP = "gda.util.persistence.jythonshelf.commitBatchSize";
+
+	/**
+	 * Types whose deserialized values can be shared between callers. Values of other types are deserialized on each
+	 * read so that changing a value returned from the shelf does not change the shelf.
+	 */
+	private static final Set<Class<?>> IMMUTABLE_TYPES = new HashSet<>(Arrays.asList(String.class, Boolean.class,
+			Character.class, Byte.class, Short.class, Integer.class, Long.class, Float.class, Double.class,
+			BigInteger.class, BigDecimal.class));
+
+	/** Package private so that tests need not connect to a database */
+	static boolean keyIndexChecked = false;
+
 	EntityManager em;
 
 	private String shelfName;
 
 	private String shelfNamePrefix;
 
+	/** Entries of this shelf in the database by key name, in the order they were loaded or added */
+	private final Map<String, CachedValue> cache = new LinkedHashMap<>();
+
+	/** Values not yet written to the database, which take the place of any in the cache */
+	private final Map<String, CachedValue> pendingWrites = new LinkedHashMap<>();
+
+	/** Keys not yet deleted from the database, which are hidden in the cache */
+	private final Set<String> pendingDeletes = new LinkedHashSet<>();
+
+	private int commitBatchSize = LocalProperties.getAsInt(COMMIT_BATCH_SIZE_PROP, 1);
+
 	/**
 	 * Creates an object to access a shelf entity and its entries. Will create the underlying shelf entity if it does
 	 * not exists. More than one object may safely connect to the same underlying shelf.
@@ -69,6 +116,7 @@ public class LocalObjectShelf {
 
 		// Get the entity manager
 		LocalObjectShelfManager.emf.createEntityManager();
+		ensureKeyIndex();
 		// Set this shelf name
 		shelfName = _shelfName;
 		shelfNamePrefix = _shelfPrefix;
@@ -80,11 +128,48 @@ public class LocalObjectShelf {
 		}
 
 		// Fill the cache
+		reload();
 
 		// Shelf is ready to go
 		logger.info("LocalObjectShelf {}{} ready", shelfNamePrefix, shelfName);
 	}
 
+	/**
+	 * Create the index used to look up entries by shelf and key name if the database does not have it yet. Shelves
+	 * created before the index was introduced get it the first time they are opened.
+	 */
+	private static synchronized void ensureKeyIndex() {
+		if (keyIndexChecked) {
+			return;
+		}
+		keyIndexChecked = true;
+		try (Connection connection = new LocalDatabase().createJdbcConnection()) {
+			if (ensureKeyIndex(connection)) {
+				logger.info("Created index {} on {}", ObjectShelfEntry.KEY_INDEX_NAME, ObjectShelfEntry.TABLE_NAME);
+			}
+		} catch (LocalDatabaseException | SQLException e) {
+			// Only slower without it
+			logger.warn("Could not create index {} on {}", ObjectShelfEntry.KEY_INDEX_NAME, ObjectShelfEntry.TABLE_NAME, e);
+		}
+	}
+
+	/**
+	 * @return true if the index had to be created, false if the database already had it
+	 */
+	static boolean ensureKeyIndex(Connection connection) throws SQLException {
+		try (ResultSet indexes = connection.getMetaData().getIndexInfo(null, null, ObjectShelfEntry.TABLE_NAME, false, true)) {
+			while (indexes.next()) {
+				if (ObjectShelfEntry.KEY_INDEX_NAME.equalsIgnoreCase(indexes.getString("INDEX_NAME"))) {
+					return false;
+				}
+			}
+		}
+		try (Statement statement = connection.createStatement()) {
+			statement.executeUpdate(ObjectShelfEntry.CREATE_KEY_INDEX);
+		}
+		return true;
+	}
+
 	private void addShelf(String name) throws ObjectShelfException, LocalDatabaseException {
 
 		EntityManager em;
@@ -130,12 +215,7 @@ public class LocalObjectShelf {
 	 * @return true if key exists.
 	 */
 	synchronized public Boolean has_key(String keyName) {
-
-		List<String> keyList = keys();
-		if (keyList != null) {
-			return keyList.contains(keyName);
-		}
-		return false;
+		return lookup(keyName) != null;
 	}
 
 	/**
@@ -144,29 +224,21 @@ public class LocalObjectShelf {
 	 * @return a list of key names.
 	 */
 	synchronized public List<String> keys() {
-		List<String> toReturn = new ArrayList<>();
-		EntityManager em;
-		ObjectShelf shelf;
-
-		// i) find shelf
-		em = beginTransaction();
-		shelf = em.find(ObjectShelf.class, shelfNamePrefix + shelfName);
-		commitTransaction(em);
-		if (shelf == null) {
-			return null;
-		}
-
-		// ii) find entries
-		em = beginTransaction();
-		Collection<ObjectShelfEntry> entryList = shelf.getEntries();
+		final Set<String> keys = new LinkedHashSet<>(cache.keySet());
+		keys.removeAll(pendingDeletes);
+		keys.addAll(pendingWrites.keySet());
+		return new ArrayList<>(keys);
+	}
 
-		// KLUDGE:
-		// recover each shelf name
-		for (ObjectShelfEntry entry : entryList) {
-			toReturn.add(entry.getKeyName());
+	/**
+	 * @return the entry as this object sees it, including changes not yet written, or null if there is none
+	 */
+	private CachedValue lookup(String keyName) {
+		final CachedValue pending = pendingWrites.get(keyName);
+		if (pending != null) {
+			return pending;
 		}
-
-		return toReturn;
+		return pendingDeletes.contains(keyName) ? null : cache.get(keyName);
 	}
 
 	/**
@@ -179,7 +251,7 @@ public class LocalObjectShelf {
 	 *             If key does not exist already (or for any number of lower level problems)
 	 */
 	synchronized public void setValue(String keyName, Serializable data) throws ObjectShelfException {
-		if (hasKey(keyName)) {
+		if (!has_key(keyName)) {
 			throw new ObjectShelfException("Could not change shelf entry: an entry with key " + keyName
 					+ " does not exist. Use addValue() if to both change or create a value");
 		}
@@ -194,56 +266,27 @@ public class LocalObjectShelf {
 	 * @throws ObjectShelfException
 	 */
 	synchronized public void addValue(String keyName, Serializable data) throws ObjectShelfException {
-		EntityManager em;
-		ObjectShelf shelf;
-		ObjectShelfEntry newEntry;
-		boolean keyDidNotExist;
+		put(keyName, data);
+		commitIfDue();
+	}
 
+	private void put(String keyName, Serializable data) throws ObjectShelfException {
 		byte[] toStore = null;
 		try {
 			toStore = toByteArray(data);
 		} catch (Exception e) {
-			e.printStackTrace();
 			throw new ObjectShelfException("Could not serialize input data object", e);
 		}
 
-		// * Add the empty the configuration *
-		em = beginTransaction();
-
-		// i) get the mode entity
-		shelf = em.find(ObjectShelf.class, shelfNamePrefix + this.shelfName);
-
-		if (hasKey(keyName)) { // change the data
-			keyDidNotExist = false;
-			Collection<ObjectShelfEntry> entryList = shelf.getEntries();
-
-			for (ObjectShelfEntry entry : entryList) {
-				String entryKeyName = entry.getKeyName();
-				//TODO: an entry should not have a null keyname, but it can happen
-				if (entryKeyName != null && entryKeyName.equals(keyName)) {
-					entry.setData(toStore);
-					em.merge(entry);
-					em.persist(entry);
-				}
-			}
-		} else { // Create the key
-			//
-			keyDidNotExist = true;
-			newEntry = new ObjectShelfEntry();
-			newEntry.setShelf(shelf);
-			newEntry.setKeyName(keyName);
-			newEntry.setData(toStore);
-			shelf.getEntries().add(newEntry);
-			em.persist(newEntry);
+		final CachedValue cached = new CachedValue(toStore);
+		if (data != null && IMMUTABLE_TYPES.contains(data.getClass())) {
+			cached.value = data;
 		}
-
-		em.persist(shelf);
-
-		commitTransaction(em);
-
-		if (keyDidNotExist) {
-			logger.info("Added new entry={} to shelf={}.", keyName, this.shelfName);
+		if (!has_key(keyName)) {
+			logger.info("Adding new entry={} to shelf={}.", keyName, this.shelfName);
 		}
+		pendingDeletes.remove(keyName);
+		pendingWrites.put(keyName, cached);
 	}
 
 	/**
@@ -274,12 +317,61 @@ public class LocalObjectShelf {
 	}
 
 	/**
-	 * Included for compatability with anydbm and shelve only. Does nothing.
+	 * Writes any changes not yet written to the database. Included for compatability with anydbm and shelve, where
+	 * it flushes the shelf to file.
+	 *
+	 * @throws ObjectShelfException
 	 */
-	void sync() {
-		// Flushes to file in somy anydbm implementations. Not needed here but
-		// incuded
-		// for compatability with anydbm and shelve.
+	synchronized public void sync() throws ObjectShelfException {
+		commit();
+	}
+
+	/**
+	 * Writes any outstanding changes and then reloads the shelf from the database, picking up changes made through
+	 * other objects connected to the same shelf.
+	 *
+	 * @throws ObjectShelfException
+	 */
+	@SuppressWarnings("unchecked")
+	synchronized public void reload() throws ObjectShelfException {
+		commit();
+		EntityManager em = beginTransaction();
+		try {
+			Query query = em.createNamedQuery(ObjectShelfEntry.FIND_BY_SHELF);
+			query.setParameter("shelf", shelfNamePrefix + shelfName);
+			List<ObjectShelfEntry> entries = query.getResultList();
+			cache.clear();
+			for (ObjectShelfEntry entry : entries) {
+				//TODO: an entry should not have a null keyname, but it can happen
+				if (entry.getKeyName() != null) {
+					cache.put(entry.getKeyName(), new CachedValue(entry.getData()));
+				}
+			}
+			commitTransaction(em);
+		} catch (RuntimeException e) {
+			rollbackTransaction(em);
+			throw new ObjectShelfException("Could not load shelf " + shelfNamePrefix + shelfName, e);
+		}
+	}
+
+	/**
+	 * @return the number of changes written to the database in each transaction
+	 */
+	public synchronized int getCommitBatchSize() {
+		return commitBatchSize;
+	}
+
+	/**
+	 * @param commitBatchSize
+	 *            the number of changes to write to the database in each transaction. Values greater than one mean
+	 *            that up to that many changes can be lost if GDA stops before they are written, unless {@link #sync()}
+	 *            is called.
+	 * @throws ObjectShelfException
+	 *             if outstanding changes could not be written
+	 */
+	public synchronized void setCommitBatchSize(int commitBatchSize) throws ObjectShelfException {
+		this.commitBatchSize = Math.max(1, commitBatchSize);
+		commitIfDue();
 	}
 
 	/**
@@ -292,42 +384,24 @@ public class LocalObjectShelf {
 	 *             If the key does not exist.
 	 */
 	synchronized public Serializable getValue(String keyName) throws ObjectShelfException {
-		//TODO: code duplicated across set and get methods
-		EntityManager em;
-		ObjectShelf shelf;
-		ObjectShelfEntry entry = null;
-
-		// check key exists
-		if (!has_key(keyName)) {
+		final CachedValue cached = lookup(keyName);
+		if (cached == null) {
 			throw new ObjectShelfException("Could not read shelf entry: an entry with key " + keyName
 					+ " does not exist.");
 		}
-
-		// i) find shelf
-		em = beginTransaction();
-		shelf = em.find(ObjectShelf.class, shelfNamePrefix + shelfName);
-		commitTransaction(em);
-
-		// ii) find entry
-		em = beginTransaction();
-		Collection<ObjectShelfEntry> entryList = shelf.getEntries();
-
-		// KLUDGE:
-		for (ObjectShelfEntry anEntry : entryList) {
-			String entryKeyName = anEntry.getKeyName();
-			if (entryKeyName != null && entryKeyName.equals(keyName)) {
-				entry = anEntry;
-			}
-		}
-		if (entry == null) {
-			throw new ObjectShelfException("Unexpected error reading shelf entry with key " + keyName);
+		if (cached.value != null || cached.bytes == null) {
+			return cached.value;
 		}
+		final Serializable value;
 		try {
-			return fromByteArray(entry.getData());
+			value = fromByteArray(cached.bytes);
 		} catch (Exception e) {
-			e.printStackTrace();
 			throw new ObjectShelfException("Could not un-serialize stored data back to an object", e);
 		}
+		if (value != null && IMMUTABLE_TYPES.contains(value.getClass())) {
+			cached.value = value;
+		}
+		return value;
 	}
 
 	/**
@@ -337,30 +411,18 @@ public class LocalObjectShelf {
 	 * @throws ObjectShelfException
 	 */
 	synchronized public void delValue(String keyName) throws ObjectShelfException {
-		EntityManager em;
-		ObjectShelf shelf;
-		ObjectShelfEntry toDelete = null;
 		if (!hasKey(keyName)) {
 			throw new ObjectShelfException("Could not delete shelf entry: no entry with key " + keyName + " exists");
 		}
+		remove(keyName);
+		commitIfDue();
+	}
 
-		// i) find shelf
-		em = beginTransaction();
-		shelf = em.find(ObjectShelf.class, this.shelfName);
-
-		// ii) find entries
-		Collection<ObjectShelfEntry> entryList = shelf.getEntries();
-
-		// KLUDGE:
-		// delete shelf
-		for (ObjectShelfEntry entry : entryList) {
-			if (entry.getKeyName().equals(keyName)) {
-				toDelete = entry;
-			}
+	private void remove(String keyName) {
+		pendingWrites.remove(keyName);
+		if (cache.containsKey(keyName)) {
+			pendingDeletes.add(keyName);
 		}
-		shelf.getEntries().remove(toDelete);
-		em.remove(toDelete);
-		commitTransaction(em);
 	}
 
 	/**
@@ -369,10 +431,10 @@ public class LocalObjectShelf {
 	 * @throws ObjectShelfException
 	 */
 	synchronized public void clearShelf() throws ObjectShelfException {
-		List<String> keyList = keys();
-		for (String key : keyList) {
-			delValue(key);
+		for (String key : keys()) {
+			remove(key);
 		}
+		commitIfDue();
 	}
 
 	/**
@@ -413,12 +475,15 @@ public class LocalObjectShelf {
 	 * @throws ObjectShelfException
 	 */
 	synchronized public void importValues(Dictionary<String, Serializable> dict) throws ObjectShelfException {
-		clearShelf();
+		for (String key : keys()) {
+			remove(key);
+		}
 		Enumeration<String> keyList = dict.keys();
 		while (keyList.hasMoreElements()) {
 			String key = keyList.nextElement();
-			addValue(key.toString(), dict.get(key));
+			put(key.toString(), dict.get(key));
 		}
+		commitIfDue();
 	}
 
 	/**
@@ -467,7 +532,7 @@ public class LocalObjectShelf {
 	 *
 	 * @return number of elements.
 	 */
-	public Integer __len__() {
+	public synchronized Integer __len__() {
 		return keys().size();
 	}
 
@@ -483,7 +548,7 @@ public class LocalObjectShelf {
 	}
 
 	@Override
-	public String toString() {
+	public synchronized String toString() {
 		List<String> keyList = keys();
 		String toReturn = "";
 		if (keyList != null) {
@@ -539,6 +604,81 @@ public class LocalObjectShelf {
 		return null;
 	}
 
+	private void commitIfDue() throws ObjectShelfException {
+		if (pendingWrites.size() + pendingDeletes.size() >= commitBatchSize) {
+			commit();
+		}
+	}
+
+	/**
+	 * Write all outstanding changes to the database in one transaction. Entries are found with a query on shelf and
+	 * key name, which uses the key index, rather than by walking the shelf's entries. Only once the transaction has
+	 * been committed are the changes added to the cache. If it fails the changes are discarded, so that the shelf
+	 * never returns values which are not in the database.
+	 */
+	@SuppressWarnings("unchecked")
+	private void commit() throws ObjectShelfException {
+		if (pendingWrites.isEmpty() && pendingDeletes.isEmpty()) {
+			return;
+		}
+		EntityManager em = beginTransaction();
+		try {
+			final ObjectShelf shelf = em.find(ObjectShelf.class, shelfNamePrefix + shelfName);
+			if (shelf == null) {
+				throw new ObjectShelfException("Could not write to shelf " + shelfNamePrefix + shelfName + ": it no longer exists");
+			}
+			final Query query = em.createNamedQuery(ObjectShelfEntry.FIND_BY_KEY);
+			query.setParameter("shelf", shelfNamePrefix + shelfName);
+
+			for (String keyName : pendingDeletes) {
+				query.setParameter("keyName", keyName);
+				for (ObjectShelfEntry entry : (List<ObjectShelfEntry>) query.getResultList()) {
+					shelf.getEntries().remove(entry);
+					em.remove(entry);
+				}
+			}
+
+			for (Entry<String, CachedValue> write : pendingWrites.entrySet()) {
+				query.setParameter("keyName", write.getKey());
+				List<ObjectShelfEntry> existing = query.getResultList();
+				if (existing.isEmpty()) {
+					ObjectShelfEntry newEntry = new ObjectShelfEntry();
+					newEntry.setShelf(shelf);
+					newEntry.setKeyName(write.getKey());
+					newEntry.setData(write.getValue().bytes);
+					shelf.getEntries().add(newEntry);
+					em.persist(newEntry);
+				} else {
+					for (ObjectShelfEntry entry : existing) {
+						entry.setData(write.getValue().bytes);
+					}
+				}
+			}
+			commitTransaction(em);
+		} catch (RuntimeException e) {
+			rollbackTransaction(em);
+			discardPendingChanges();
+			throw new ObjectShelfException("Could not write changes to shelf " + shelfNamePrefix + shelfName
+					+ ". The changes have been discarded", e);
+		} catch (ObjectShelfException e) {
+			rollbackTransaction(em);
+			discardPendingChanges();
+			throw e;
+		}
+		for (String keyName : pendingDeletes) {
+			cache.remove(keyName);
+		}
+		cache.putAll(pendingWrites);
+		pendingWrites.clear();
+		pendingDeletes.clear();
+	}
+
+	private void discardPendingChanges() {
+		logger.warn("Discarding {} changes to shelf {}{}", pendingWrites.size() + pendingDeletes.size(), shelfNamePrefix, shelfName);
+		pendingWrites.clear();
+		pendingDeletes.clear();
+	}
+
 	private Serializable fromByteArray(byte[] regBytes) throws Exception {
 		ByteArrayInputStream regArrayStream = new ByteArrayInputStream(regBytes);
 		ObjectInputStream regObjectStream = new ObjectInputStream(regArrayStream);
@@ -571,4 +711,28 @@ public class LocalObjectShelf {
 		// Close this EntityManager
 		em.close();
 	}
+
+	/**
+	 * Short cut method to roll back a transaction, if still active, and close the entity manager.
+	 *
+	 * @param em
+	 */
+	private void rollbackTransaction(EntityManager em) {
+		if (em.getTransaction().isActive()) {
+			em.getTransaction().rollback();
+		}
+		em.close();
+	}
+
+	/**
+	 * The serialized value of an entry and, for immutable types, the value itself once it has been deserialized
+	 */
+	private static final class CachedValue {
+		private final byte[] bytes;
+		private Serializable value;
+
+		CachedValue(byte[] bytes) {
+			this.bytes = bytes;
+		}
+	}
 }
@@ -24,12 +24,30 @@ import javax.persistence.GeneratedValue;
 import javax.persistence.Id;
 import javax.persistence.JoinColumn;
 import javax.persistence.ManyToOne;
+import javax.persistence.NamedQueries;
+import javax.persistence.NamedQuery;
 
 /**
  * * Java persistence API entity used by LocalJythonShelf.
  */
 @Entity
+@NamedQueries({
+	@NamedQuery(name = ObjectShelfEntry.FIND_BY_SHELF, query = "select e from ObjectShelfEntry e where e.shelf.name = :shelf"),
+	@NamedQuery(name = ObjectShelfEntry.FIND_BY_KEY, query = "select e from ObjectShelfEntry e where e.shelf.name = :shelf and e.keyName = :keyName")
+})
 public class ObjectShelfEntry {
+
+	/** Query for all the entries of the shelf given by the parameter {@code shelf} */
+	public static final String FIND_BY_SHELF = "ObjectShelfEntry.findByShelf";
+
+	/** Query for the entries of the shelf given by the parameter {@code shelf} with the key {@code keyName} */
+	public static final String FIND_BY_KEY = "ObjectShelfEntry.findByKey";
+
+	/** The table holding the entries, and the name of its index on shelf and key name */
+	public static final String TABLE_NAME = "OBJECTSHELFENTRY";
+	public static final String KEY_INDEX_NAME = "OBJECTSHELFENTRY_SHELF_KEY";
+	public static final String CREATE_KEY_INDEX = "CREATE INDEX " + KEY_INDEX_NAME + " ON " + TABLE_NAME + " (SHELFID, KEYNAME)";
+
 	private int entryId;
 	private ObjectShelf shelf;
 	private String keyName;
@@ -23,6 +23,7 @@ import org.junit.Test;
 import org.python.core.Py;
 
 import gda.analysis.datastructure.DataVector;
+import gda.analysis.datastructure.DataVectorMath;
 import junit.framework.TestCase;
 
 /**
@@ -101,44 +102,44 @@ public class DataVectorTest extends TestCase {
 	 *
 	 */
 	public void testGetMin() {
-		assertEquals(dv0.getMin(), 1.0, 0.00001);
-		assertEquals(dv1.getMin(), 0.0, 0.00001);
-		assertEquals(dv2.getMin(), 1.0, 0.00001);
-		assertEquals(dv3.getMin(), 1.5, 0.00001);
-		assertEquals(dv4.getMin(), 1.8, 0.00001);
+		assertEquals(1.0, dv0.getMin(), 0.00001);
+		assertEquals(0.0, dv1.getMin(), 0.00001);
+		assertEquals(1.0, dv2.getMin(), 0.00001);
+		assertEquals(1.5, dv3.getMin(), 0.00001);
+		assertEquals(1.8, dv4.getMin(), 0.00001);
 	}
 
 	/**
 	 *
 	 */
 	public void testGetMax() {
-		assertEquals(dv0.getMax(), 3.0, 0.00001);
-		assertEquals(dv1.getMax(), 0.0, 0.00001);
-		assertEquals(dv2.getMax(), 3.0, 0.00001);
-		assertEquals(dv3.getMax(), 4.5, 0.00001);
-		assertEquals(dv4.getMax(), 8.8, 0.00001);
+		assertEquals(3.0, dv0.getMax(), 0.00001);
+		assertEquals(0.0, dv1.getMax(), 0.00001);
+		assertEquals(3.0, dv2.getMax(), 0.00001);
+		assertEquals(4.5, dv3.getMax(), 0.00001);
+		assertEquals(8.8, dv4.getMax(), 0.00001);
 	}
 
 	/**
 	 *
 	 */
 	public void testGetMean() {
-		assertEquals(dv0.getMean(), 2.0, 0.00001);
-		assertEquals(dv1.getMean(), 0.0, 0.00001);
-		assertEquals(dv2.getMean(), 2.0, 0.00001);
-		assertEquals(dv3.getMean(), 3.0, 0.00001);
-		assertEquals(dv4.getMean(), 5.3, 0.00001);
+		assertEquals(2.0, dv0.getMean(), 0.00001);
+		assertEquals(0.0, dv1.getMean(), 0.00001);
+		assertEquals(2.0, dv2.getMean(), 0.00001);
+		assertEquals(3.0, dv3.getMean(), 0.00001);
+		assertEquals(5.3, dv4.getMean(), 0.00001);
 	}
 
 	/**
 	 *
 	 */
 	public void testGetRMS() {
-		assertEquals(dv0.getRMS(), 2.160246899, 0.00001);
-		assertEquals(dv1.getRMS(), 0.0, 0.00001);
-		assertEquals(dv2.getRMS(), 2.160246899, 0.00001);
-		assertEquals(dv3.getRMS(), 3.201562119, 0.00001);
-		assertEquals(dv4.getRMS(), 5.77408013, 0.00001);
+		assertEquals(2.160246899, dv0.getRMS(), 0.00001);
+		assertEquals(0.0, dv1.getRMS(), 0.00001);
+		assertEquals(2.160246899, dv2.getRMS(), 0.00001);
+		assertEquals(3.201562119, dv3.getRMS(), 0.00001);
+		assertEquals(5.77408013, dv4.getRMS(), 0.00001);
 	}
 
 	/**
@@ -151,19 +152,19 @@ public class DataVectorTest extends TestCase {
 		dv7 = dv3.getSubset(1, 0, 1, 1);
 		dv8 = dv4.getSubset(0, 0, 0, 1, 0, 1);
 
-		assertEquals(dv5.getIndex(0), 1.0);
-		assertEquals(dv5.getIndex(1), 2.0);
+		assertEquals(1.0, dv5.getIndex(0));
+		assertEquals(2.0, dv5.getIndex(1));
 
-		assertEquals(dv6.getIndex(0, 0), 0.0);
-		assertEquals(dv6.getIndex(1, 0), 0.0);
+		assertEquals(0.0, dv6.getIndex(0, 0));
+		assertEquals(0.0, dv6.getIndex(1, 0));
 
-		assertEquals(dv7.getIndex(0, 0), 2.5);
-		assertEquals(dv7.getIndex(0, 1), 4.5);
+		assertEquals(2.5, dv7.getIndex(0, 0));
+		assertEquals(4.5, dv7.getIndex(0, 1));
 
-		assertEquals(dv8.getIndex(0, 0, 0), 1.8);
-		assertEquals(dv8.getIndex(1, 0, 0), 2.8);
-		assertEquals(dv8.getIndex(0, 0, 1), 5.8);
-		assertEquals(dv8.getIndex(1, 0, 1), 6.8);
+		assertEquals(1.8, dv8.getIndex(0, 0, 0));
+		assertEquals(2.8, dv8.getIndex(1, 0, 0));
+		assertEquals(5.8, dv8.getIndex(0, 0, 1));
+		assertEquals(6.8, dv8.getIndex(1, 0, 1));
 
 		// check out reversing the dirs, this should still work
 		dv5 = dv0.getSubset(1, 0);
@@ -171,19 +172,19 @@ public class DataVectorTest extends TestCase {
 		dv7 = dv3.getSubset(0, 1, 0, 0);
 		dv8 = dv4.getSubset(1, 1, 1, 0, 1, 0);
 
-		assertEquals(dv5.getIndex(0), 2.0);
-		assertEquals(dv5.getIndex(1), 1.0);
+		assertEquals(2.0, dv5.getIndex(0));
+		assertEquals(1.0, dv5.getIndex(1));
 
-		assertEquals(dv6.getIndex(0, 0), 0.0);
-		assertEquals(dv6.getIndex(1, 0), 0.0);
+		assertEquals(0.0, dv6.getIndex(0, 0));
+		assertEquals(0.0, dv6.getIndex(1, 0));
 
-		assertEquals(dv7.getIndex(0, 0), 3.5);
-		assertEquals(dv7.getIndex(0, 1), 1.5);
+		assertEquals(3.5, dv7.getIndex(0, 0));
+		assertEquals(1.5, dv7.getIndex(0, 1));
 
-		assertEquals(dv8.getIndex(0, 0, 0), 8.8);
-		assertEquals(dv8.getIndex(1, 0, 0), 7.8);
-		assertEquals(dv8.getIndex(0, 0, 1), 4.8);
-		assertEquals(dv8.getIndex(1, 0, 1), 3.8);
+		assertEquals(8.8, dv8.getIndex(0, 0, 0));
+		assertEquals(7.8, dv8.getIndex(1, 0, 0));
+		assertEquals(4.8, dv8.getIndex(0, 0, 1));
+		assertEquals(3.8, dv8.getIndex(1, 0, 1));
 
 	}
 
@@ -192,4 +193,46 @@ public class DataVectorTest extends TestCase {
 		Object equals = dv1.__eq__(null); // Should not throw NPE...
 		assertEquals(Py.False, equals);
 	}
+
+	/**
+	 *
+	 */
+	public void testFixedSizeAddDropsFirstElement() {
+		dv1.add(5.0);
+		assertEquals(4, dv1.size());
+		assertEquals(5.0, dv1.getDouble(3), 0.00001);
+
+		DataVector growing = new DataVector();
+		growing.add(1.0);
+		growing.addDouble(2.0);
+		assertEquals(2, growing.getDimensions()[0]);
+		assertEquals(1.5, growing.getMean(), 0.00001);
+	}
+
+	/**
+	 *
+	 */
+	public void testMathUsesAllElements() {
+		DataVector sum = DataVectorMath.sum(dv3, dv3);
+		DataVector scaled = DataVectorMath.mul(dv4, 2.0);
+		for (int i = 0; i < dv3.size(); i++) {
+			assertEquals(2 * dv3.getDouble(i), sum.getDouble(i), 0.00001);
+		}
+		for (int i = 0; i < dv4.size(); i++) {
+			assertEquals(2 * dv4.getIndex(i), scaled.getIndex(i), 0.00001);
+		}
+		assertEquals(2, scaled.getDimensions()[2]);
+		assertEquals(5.3, DataVectorMath.getMean(dv4), 0.00001);
+	}
+
+	/**
+	 *
+	 */
+	public void testCloneIsIndependent() {
+		DataVector copy = DataVectorMath.clone(dv0);
+		copy.setDouble(0, 10.0);
+		assertEquals(1.0, dv0.getDouble(0), 0.00001);
+		assertEquals(15.0, copy.doubleStream().sum(), 0.00001);
+		assertEquals(dv0, dv0.toVector());
+	}
 }
@@ -0,0 +1,150 @@
+/*-
+ * Copyright © 2019 Diamond Light Source Ltd.
+ *
+ * This file is part of GDA.
+ *
+ * GDA is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License version 3 as published by the Free
+ * Software Foundation.
+ *
+ * GDA is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with GDA. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package gda.analysis.numerical.linefunction;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import gda.analysis.datastructure.DataVector;
+import gda.analysis.numerical.optimization.objectivefunction.chisquared;
+
+public class LineFunctionBatchTest {
+
+	private static final double[] POSITIONS = new double[41];
+
+	static {
+		for (int i = 0; i < POSITIONS.length; i++) {
+			POSITIONS[i] = -3.03 + 0.15 * i;
+		}
+	}
+
+	private static AbstractFunction create(AbstractFunction function, double... values) {
+		function.setParameterValues(values);
+		return function;
+	}
+
+	private static AbstractFunction[] peaks() {
+		return new AbstractFunction[] {
+				create(new Gaussian1D(), 2.0, 0.3, 0.7),
+				create(new Lorentzian1D(), 1.5, -0.2, 1.0),
+				create(new PearsonVII(), 3.0, 0.2, 1.1, 1.7),
+				create(new PsuedoVoight1D(1, 0, 0.5, 1, 1), 2.5, 0.1, 0.6, 0.8, 1.2) };
+	}
+
+	@Test
+	public void addValuesMatchesVal() {
+		for (AbstractFunction function : peaks()) {
+			double[] values = new double[POSITIONS.length + 1];
+			values[POSITIONS.length] = 42.0;
+			function.addValues(POSITIONS, POSITIONS.length, values);
+			for (int i = 0; i < POSITIONS.length; i++) {
+				assertEquals(function.getClass().getSimpleName(), function.val(POSITIONS[i]), values[i], 1e-12);
+			}
+			assertEquals("Element beyond n changed", 42.0, values[POSITIONS.length], 0);
+		}
+	}
+
+	@Test
+	public void derivativesMatchFiniteDifferences() {
+		for (AbstractFunction function : peaks()) {
+			assertTrue(function.hasDerivatives());
+			int nParams = function.getNoOfParameters();
+			double[][] derivatives = new double[nParams][POSITIONS.length];
+			function.derivatives(POSITIONS, POSITIONS.length, derivatives);
+			for (int j = 0; j < nParams; j++) {
+				IParameter parameter = function.getParameter(j);
+				double value = parameter.getValue();
+				double h = 1e-6 * Math.max(1, Math.abs(value));
+				for (int i = 0; i < POSITIONS.length; i++) {
+					parameter.setValue(value + h);
+					double above = function.val(POSITIONS[i]);
+					parameter.setValue(value - h);
+					double below = function.val(POSITIONS[i]);
+					parameter.setValue(value);
+					double expected = (above - below) / (2 * h);
+					assertEquals(function.getClass().getSimpleName() + " parameter " + j + " at " + POSITIONS[i],
+							expected, derivatives[j][i], 1e-5 * Math.max(1, Math.abs(expected)));
+				}
+			}
+		}
+	}
+
+	@Test
+	public void compositeValuesIsSumOfFunctions() {
+		CompositeFunction composite = new CompositeFunction();
+		AbstractFunction[] peaks = peaks();
+		for (int i = 0; i < peaks.length; i++) {
+			composite.addFunction("peak" + i, peaks[i]);
+		}
+		double[] values = new double[POSITIONS.length];
+		composite.values(POSITIONS, POSITIONS.length, values);
+		for (int i = 0; i < POSITIONS.length; i++) {
+			assertEquals(composite.val(POSITIONS[i]), values[i], 1e-12);
+		}
+	}
+
+	@Test
+	public void chisquaredJacobianSkipsFixedParameters() {
+		CompositeFunction composite = new CompositeFunction();
+		composite.addFunction("g", create(new Gaussian1D(), 2.0, 0.3, 0.7));
+		composite.addFunction("l", create(new Lorentzian1D(), 1.5, -0.2, 1.0));
+		composite.getFunction(0).getParameter(1).setFixed(true);
+		double[] y = new double[POSITIONS.length];
+		chisquared chi = new chisquared(composite, new DataVector(new int[] { POSITIONS.length }, POSITIONS.clone()),
+				new DataVector(new int[] { POSITIONS.length }, y));
+
+		double[] parameters = { 2.0, 0.7, 1.5, -0.2, 1.0 };
+		double[][] jacobian = new double[POSITIONS.length][parameters.length];
+		assertTrue(chi.LMJacobian(parameters, jacobian));
+
+		double[] differences = new double[POSITIONS.length];
+		chi.LMEvaluate(parameters, differences);
+		double[] allocated = chi.LMEvaluate(parameters);
+		for (int j = 0; j < parameters.length; j++) {
+			double value = parameters[j];
+			double h = 1e-6;
+			parameters[j] = value + h;
+			double[] above = chi.LMEvaluate(parameters);
+			parameters[j] = value - h;
+			double[] below = chi.LMEvaluate(parameters);
+			parameters[j] = value;
+			for (int i = 0; i < POSITIONS.length; i++) {
+				double expected = (above[i] - below[i]) / (2 * h);
+				assertEquals(expected, jacobian[i][j], 1e-5 * Math.max(1, Math.abs(expected)));
+			}
+		}
+		for (int i = 0; i < POSITIONS.length; i++) {
+			assertEquals(allocated[i], differences[i], 0);
+		}
+	}
+
+	@Test
+	public void chisquaredHasNoJacobianWithoutDerivatives() {
+		CompositeFunction composite = new CompositeFunction();
+		composite.addFunction("g", create(new Gaussian1D(), 2.0, 0.3, 0.7));
+		composite.addFunction("p", new Polynomial(1.0, 2.0));
+		chisquared chi = new chisquared(composite, new DataVector(new int[] { POSITIONS.length }, POSITIONS.clone()),
+				new DataVector(new int[] { POSITIONS.length }, new double[POSITIONS.length]));
+		double[] parameters = new double[chi.getParameters().length];
+		assertFalse(chi.LMJacobian(parameters, new double[POSITIONS.length][parameters.length]));
+	}
+}
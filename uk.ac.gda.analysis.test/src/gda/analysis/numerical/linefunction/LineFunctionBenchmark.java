@@ -0,0 +1,124 @@
+/*-
+ * Copyright © 2019 Diamond Light Source Ltd.
+ *
+ * This file is part of GDA.
+ *
+ * GDA is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License version 3 as published by the Free
+ * Software Foundation.
+ *
+ * GDA is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with GDA. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package gda.analysis.numerical.linefunction;
+
+import gda.analysis.datastructure.DataVector;
+import gda.analysis.numerical.optimization.objectivefunction.chisquared;
+
+/**
+ * Compares evaluating a chi squared of several peaks one point at a time through {@link AbstractCompositeFunction#val}
+ * with the batch path, and the finite difference Jacobian with the analytic one, for typical peak fitting sizes.
+ * <p>
+ * Run as a Java application. The optional argument is the number of repetitions of each measurement (default 200).
+ */
+public class LineFunctionBenchmark {
+
+	private static final int[] SIZES = { 500, 2000, 10000 };
+
+	private static double sink;
+
+	public static void main(String[] args) {
+		final int repetitions = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+		System.out.printf("%8s %14s %14s %14s %14s%n", "points", "val (us)", "batch (us)", "fd jac (us)", "jac (us)");
+		for (int pass = 0; pass < 2; pass++) { // the first pass warms up
+			for (int size : SIZES) {
+				run(size, repetitions, pass == 1);
+			}
+		}
+		if (sink == 42) {
+			System.out.println();
+		}
+	}
+
+	private static void run(int size, int repetitions, boolean print) {
+		final CompositeFunction composite = new CompositeFunction();
+		composite.addFunction("g", new Gaussian1D(50, 20, 1.5));
+		composite.addFunction("l", new Lorentzian1D());
+		composite.addFunction("p", new PearsonVII());
+		composite.addFunction("v", new PsuedoVoight1D(30, 45, 0.5, 1, 1));
+		composite.getFunction(1).setParameterValues(40, 60, 2.0);
+		composite.getFunction(2).setParameterValues(10, 70, 2, 1.5);
+		composite.getFunction(3).setParameterValues(30, 45, 0.5, 1, 1);
+
+		final double[] x = new double[size];
+		final double[] y = new double[size];
+		for (int i = 0; i < size; i++) {
+			x[i] = 100.0 * i / size;
+			y[i] = composite.val(x[i]) + Math.sin(i);
+		}
+		final chisquared chi = new chisquared(composite, new DataVector(new int[] { size }, x),
+				new DataVector(new int[] { size }, y));
+		final double[] parameters = new double[chi.getParameters().length];
+		for (int i = 0; i < parameters.length; i++) {
+			parameters[i] = chi.getParameters()[i].getValue();
+		}
+		final double[] differences = new double[size];
+		final double[] shifted = new double[size];
+		final double[][] jacobian = new double[size][parameters.length];
+
+		long start = System.nanoTime();
+		for (int r = 0; r < repetitions; r++) {
+			double sum = 0;
+			for (int i = 0; i < size; i++) {
+				final double difference = composite.val(x[i]) - y[i];
+				sum += difference * difference;
+			}
+			sink += sum;
+		}
+		final double pointwise = elapsedMicros(start, repetitions);
+
+		start = System.nanoTime();
+		for (int r = 0; r < repetitions; r++) {
+			sink += chi.evaluate(parameters);
+		}
+		final double batch = elapsedMicros(start, repetitions);
+
+		start = System.nanoTime();
+		for (int r = 0; r < repetitions; r++) {
+			for (int j = 0; j < parameters.length; j++) {
+				final double value = parameters[j];
+				final double h = 1e-7 * Math.max(1, Math.abs(value));
+				parameters[j] = value + h;
+				chi.LMEvaluate(parameters, differences);
+				parameters[j] = value - h;
+				chi.LMEvaluate(parameters, shifted);
+				parameters[j] = value;
+				for (int i = 0; i < size; i++) {
+					jacobian[i][j] = (differences[i] - shifted[i]) / (2 * h);
+				}
+			}
+		}
+		final double finiteDifference = elapsedMicros(start, repetitions);
+
+		start = System.nanoTime();
+		for (int r = 0; r < repetitions; r++) {
+			chi.LMJacobian(parameters, jacobian);
+		}
+		final double analytic = elapsedMicros(start, repetitions);
+		sink += jacobian[size / 2][0];
+
+		if (print) {
+			System.out.printf("%8d %14.1f %14.1f %14.1f %14.1f%n", size, pointwise, batch, finiteDifference, analytic);
+		}
+	}
+
+	private static double elapsedMicros(long start, int repetitions) {
+		return (System.nanoTime() - start) / 1e3 / repetitions;
+	}
+}
@@ -0,0 +1,112 @@
+/*-
+ * Copyright © 2019 Diamond Light Source Ltd.
+ *
+ * This file is part of GDA.
+ *
+ * GDA is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License version 3 as published by the Free
+ * Software Foundation.
+ *
+ * GDA is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with GDA. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package gda.analysis.numerical.optimization;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import gda.analysis.numerical.linefunction.IParameter;
+import gda.analysis.numerical.linefunction.Parameter;
+import gda.analysis.numerical.optimization.objectivefunction.AbstractObjectiveFunction;
+import gda.analysis.numerical.optimization.optimizers.differentialevolution.DEOptimizer;
+
+/**
+ * Measures how differential evolution scales with the number of evaluation threads, using a thread safe objective
+ * function which is made artificially expensive to stand in for a beamline model.
+ * <p>
+ * Run as a Java application. The optional arguments are the number of generations (default 20) and the cost of one
+ * evaluation in microseconds (default 200).
+ */
+public class ParallelOptimizerBenchmark {
+
+	private static class ExpensiveFunction extends AbstractObjectiveFunction {
+
+		private final long costNanos;
+
+		ExpensiveFunction(long costNanos) {
+			this.costNanos = costNanos;
+		}
+
+		@Override
+		public double evaluate(double... p) {
+			final long end = System.nanoTime() + costNanos;
+			double sum = 0;
+			while (System.nanoTime() < end) {
+				sum = 0;
+				for (int i = 0; i < p.length - 1; i++) {
+					sum += 100 * Math.pow(p[i + 1] - p[i] * p[i], 2) + Math.pow(1 - p[i], 2);
+				}
+			}
+			return sum;
+		}
+
+		@Override
+		public IParameter[] getParameters() {
+			IParameter[] parameters = new IParameter[6];
+			for (int i = 0; i < parameters.length; i++) {
+				parameters[i] = new Parameter(0, -2, 2);
+			}
+			return parameters;
+		}
+
+		@Override
+		public boolean isThreadSafe() {
+			return true;
+		}
+	}
+
+	public static void main(String[] args) {
+		final int generations = args.length > 0 ? Integer.parseInt(args[0]) : 20;
+		final long costNanos = (args.length > 1 ? Long.parseLong(args[1]) : 200) * 1000;
+		final int processors = Runtime.getRuntime().availableProcessors();
+
+		final List<Integer> threadCounts = new ArrayList<>();
+		for (int threads = 1; threads < processors; threads *= 2) {
+			threadCounts.add(threads);
+		}
+		threadCounts.add(processors);
+
+		System.out.printf("%d generations of %d evaluations costing %d us on %d processors%n", generations,
+				new DEOptimizer(new ExpensiveFunction(0)).getPopulationSize() * (generations + 1), costNanos / 1000,
+				processors);
+		run(1, 2, costNanos); // warm up
+		double sequentialMillis = 0;
+		for (int threads : threadCounts) {
+			final long start = System.nanoTime();
+			final double minimum = run(threads, generations, costNanos);
+			final double millis = (System.nanoTime() - start) / 1e6;
+			if (threads == 1) {
+				sequentialMillis = millis;
+			}
+			System.out.printf("%3d threads: %9.1f ms, speed up %5.2f, minimum %.6g%n", threads, millis,
+					sequentialMillis / millis, minimum);
+		}
+	}
+
+	private static double run(int threads, int generations, long costNanos) {
+		final DEOptimizer optimizer = new DEOptimizer(new ExpensiveFunction(costNanos));
+		optimizer.setRandomSeed(42);
+		optimizer.setParallelism(threads);
+		for (int i = 0; i <= generations; i++) {
+			optimizer.runDE();
+		}
+		optimizer.setParallelism(1); // release the threads
+		return optimizer.getMinimum();
+	}
+}
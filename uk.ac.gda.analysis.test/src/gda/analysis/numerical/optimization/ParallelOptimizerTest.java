@@ -0,0 +1,306 @@
+/*-
+ * Copyright © 2019 Diamond Light Source Ltd.
+ *
+ * This file is part of GDA.
+ *
+ * GDA is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License version 3 as published by the Free
+ * Software Foundation.
+ *
+ * GDA is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with GDA. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package gda.analysis.numerical.optimization;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import gda.analysis.datastructure.DataVector;
+import gda.analysis.numerical.linefunction.CompositeFunction;
+import gda.analysis.numerical.linefunction.Gaussian1D;
+import gda.analysis.numerical.linefunction.IParameter;
+import gda.analysis.numerical.linefunction.Parameter;
+import gda.analysis.numerical.optimization.objectivefunction.AbstractObjectiveFunction;
+import gda.analysis.numerical.optimization.objectivefunction.chisquared;
+import gda.analysis.numerical.optimization.optimizers.ParallelEvaluator;
+import gda.analysis.numerical.optimization.optimizers.differentialevolution.DEOptimizer;
+import gda.analysis.numerical.optimization.optimizers.ga.Genetic;
+import gda.analysis.numerical.optimization.optimizers.mc.MonteCarlo;
+
+public class ParallelOptimizerTest {
+
+	/**
+	 * The Rosenbrock function, recording which threads evaluate it, the most evaluations running at once and the last
+	 * point evaluated
+	 */
+	static class Rosenbrock extends AbstractObjectiveFunction {
+
+		private final boolean threadSafe;
+
+		final Set<Thread> threads = ConcurrentHashMap.newKeySet();
+
+		private final AtomicInteger running = new AtomicInteger();
+
+		final AtomicInteger maxRunning = new AtomicInteger();
+
+		volatile double[] last;
+
+		Rosenbrock(boolean threadSafe) {
+			this.threadSafe = threadSafe;
+		}
+
+		@Override
+		public double evaluate(double... p) {
+			threads.add(Thread.currentThread());
+			maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+			try {
+				waitForOtherEvaluations();
+			} finally {
+				running.decrementAndGet();
+			}
+			last = p.clone();
+			return rosenbrock(p);
+		}
+
+		/**
+		 * Called during each evaluation, so that a test can hold evaluations until others have started
+		 */
+		void waitForOtherEvaluations() {
+			// don't wait by default
+		}
+
+		static double rosenbrock(double... p) {
+			double sum = 0;
+			for (int i = 0; i < p.length - 1; i++) {
+				sum += 100 * Math.pow(p[i + 1] - p[i] * p[i], 2) + Math.pow(1 - p[i], 2);
+			}
+			return sum;
+		}
+
+		@Override
+		public IParameter[] getParameters() {
+			IParameter[] parameters = new IParameter[4];
+			for (int i = 0; i < parameters.length; i++) {
+				parameters[i] = new Parameter(0, -2, 2);
+				parameters[i].setGroup(i);
+			}
+			return parameters;
+		}
+
+		@Override
+		public boolean isThreadSafe() {
+			return threadSafe;
+		}
+	}
+
+	private DEOptimizer runDE(AbstractObjectiveFunction function, int parallelism) {
+		DEOptimizer optimizer = new DEOptimizer(function);
+		optimizer.setRandomSeed(1234);
+		optimizer.setParallelism(parallelism);
+		for (int i = 0; i < 50; i++) {
+			optimizer.runDE();
+		}
+		optimizer.setParallelism(1); // release the threads
+		return optimizer;
+	}
+
+	@Test
+	public void parallelDifferentialEvolutionGivesSameResultAsSequential() {
+		DEOptimizer sequential = runDE(new Rosenbrock(true), 1);
+		Rosenbrock function = new Rosenbrock(true);
+		DEOptimizer parallel = runDE(function, 4);
+
+		assertEquals(sequential.getEvaluation(), parallel.getEvaluation());
+		assertEquals(sequential.getMinimum(), parallel.getMinimum(), 0);
+		assertArrayEquals(sequential.getBest(), parallel.getBest(), 0);
+		assertTrue(sequential.getMinimum() < Rosenbrock.rosenbrock(0, 0, 0, 0));
+	}
+
+	/**
+	 * A Rosenbrock function whose evaluations on threads other than the test's wait, for up to ten seconds, until two
+	 * are running at once. It only overlaps evaluations if they really are run in parallel.
+	 */
+	static class OverlappingRosenbrock extends Rosenbrock {
+
+		private final Thread testThread = Thread.currentThread();
+
+		private final CountDownLatch twoRunning = new CountDownLatch(2);
+
+		OverlappingRosenbrock() {
+			super(true);
+		}
+
+		@Override
+		void waitForOtherEvaluations() {
+			if (Thread.currentThread() == testThread) {
+				return;
+			}
+			twoRunning.countDown();
+			try {
+				twoRunning.await(10, TimeUnit.SECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	@Test
+	public void parallelDifferentialEvolutionEvaluatesConcurrently() {
+		Rosenbrock function = new OverlappingRosenbrock();
+		runDE(function, 4);
+		assertTrue("At most " + function.maxRunning.get() + " running at once", function.maxRunning.get() > 1);
+	}
+
+	@Test
+	public void functionWhichIsNotThreadSafeIsEvaluatedOnCallingThread() {
+		Rosenbrock function = new Rosenbrock(false);
+		runDE(function, 4);
+		assertEquals(1, function.threads.size());
+		assertTrue(function.threads.contains(Thread.currentThread()));
+	}
+
+	private double[] runGenetic(Rosenbrock function, int parallelism) {
+		Genetic optimizer = new Genetic(function);
+		optimizer.setRandomSeed(1234);
+		optimizer.setParallelism(parallelism);
+		optimizer.Optimize(40, 20, 0.5, 0.1);
+		return function.last;
+	}
+
+	@Test
+	public void parallelGeneticGivesSameResultAsSequential() {
+		double[] sequential = runGenetic(new Rosenbrock(true), 1);
+		double[] parallel = runGenetic(new Rosenbrock(true), 4);
+
+		assertArrayEquals(sequential, parallel, 0);
+		assertTrue(Rosenbrock.rosenbrock(sequential) < Rosenbrock.rosenbrock(0, 0, 0, 0));
+	}
+
+	@Test
+	public void parallelGeneticEvaluatesConcurrently() {
+		Rosenbrock function = new OverlappingRosenbrock();
+		runGenetic(function, 4);
+		assertTrue("At most " + function.maxRunning.get() + " running at once", function.maxRunning.get() > 1);
+	}
+
+	@Test
+	public void geneticEvaluatesFunctionWhichIsNotThreadSafeOnCallingThread() {
+		Rosenbrock function = new Rosenbrock(false);
+		runGenetic(function, 4);
+		assertEquals(1, function.threads.size());
+		assertTrue(function.threads.contains(Thread.currentThread()));
+	}
+
+	private double[] runMonteCarlo(Rosenbrock function, int parallelism) {
+		MonteCarlo optimizer = new MonteCarlo(function);
+		optimizer.setRandomSeed(1234);
+		optimizer.setParallelism(parallelism);
+		optimizer.Optimize(500, 0.1, 8);
+		return function.last;
+	}
+
+	@Test
+	public void parallelMonteCarloGivesSameResultAsSequential() {
+		double[] sequential = runMonteCarlo(new Rosenbrock(true), 1);
+		double[] parallel = runMonteCarlo(new Rosenbrock(true), 4);
+
+		assertArrayEquals(sequential, parallel, 0);
+	}
+
+	@Test
+	public void parallelMonteCarloRunsChainsConcurrently() {
+		Rosenbrock function = new OverlappingRosenbrock();
+		runMonteCarlo(function, 4);
+		assertTrue("At most " + function.maxRunning.get() + " running at once", function.maxRunning.get() > 1);
+	}
+
+	@Test
+	public void monteCarloRunsChainsOfFunctionWhichIsNotThreadSafeOnCallingThread() {
+		Rosenbrock function = new Rosenbrock(false);
+		runMonteCarlo(function, 4);
+		assertEquals(1, function.threads.size());
+		assertEquals(1, function.maxRunning.get());
+	}
+
+	@Test
+	public void evaluatorFillsEveryCost() {
+		ParallelEvaluator evaluator = new ParallelEvaluator(new Rosenbrock(true), 3);
+		double[][] points = new double[17][];
+		double[] costs = new double[points.length];
+		for (int i = 0; i < points.length; i++) {
+			points[i] = new double[] { i, i };
+		}
+		evaluator.evaluate(points, costs);
+		evaluator.shutdown();
+		for (int i = 0; i < points.length; i++) {
+			assertEquals(Rosenbrock.rosenbrock(i, i), costs[i], 0);
+		}
+	}
+
+	/**
+	 * @return a chisquared comparing a gaussian, starting in the middle of its limits, with data from another gaussian
+	 */
+	private static chisquared gaussianFit() {
+		double[] x = new double[50];
+		double[] y = new double[x.length];
+		Gaussian1D peak = new Gaussian1D(3.0, 0.3, 0.8);
+		for (int i = 0; i < x.length; i++) {
+			x[i] = -5 + 0.2 * i;
+			y[i] = peak.val(x[i]);
+		}
+		CompositeFunction composite = new CompositeFunction();
+		composite.addFunction("peak", new Gaussian1D(-2, 2, 5, 2));
+		return new chisquared(composite, new DataVector(new int[] { x.length }, x), new DataVector(new int[] { y.length }, y));
+	}
+
+	private static double[] values(IParameter[] parameters) {
+		double[] values = new double[parameters.length];
+		for (int i = 0; i < parameters.length; i++) {
+			values[i] = parameters[i].getValue();
+		}
+		return values;
+	}
+
+	@Test
+	public void chisquaredIsEvaluatedIndependentlyWithoutSettingItsParameters() {
+		chisquared function = gaussianFit();
+		double[] start = values(function.getParameters());
+		double[] point = { 2.0, 0.1, 0.5 };
+
+		double independent = function.evaluateIndependently(point);
+		assertArrayEquals(start, values(function.getParameters()), 0);
+
+		assertEquals(function.evaluate(point), independent, 0);
+		assertArrayEquals(point, values(function.getParameters()), 0);
+	}
+
+	@Test
+	public void parallelDifferentialEvolutionOfChisquaredGivesSameResultAsSequential() {
+		chisquared function = gaussianFit();
+		assertTrue(new ParallelEvaluator(function, 4).isParallel());
+		double[] start = values(function.getParameters());
+
+		DEOptimizer sequential = runDE(gaussianFit(), 1);
+		DEOptimizer parallel = runDE(function, 4);
+
+		assertEquals(sequential.getMinimum(), parallel.getMinimum(), 0);
+		assertArrayEquals(sequential.getBest(), parallel.getBest(), 0);
+		assertTrue(sequential.getMinimum() < function.evaluateIndependently(start));
+		assertArrayEquals(start, values(function.getParameters()), 0);
+	}
+}
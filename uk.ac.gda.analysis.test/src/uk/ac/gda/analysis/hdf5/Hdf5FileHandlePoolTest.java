@@ -0,0 +1,219 @@
+/*-
+ * Copyright © 2019 Diamond Light Source Ltd.
+ *
+ * This file is part of GDA.
+ *
+ * GDA is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License version 3 as published by the Free
+ * Software Foundation.
+ *
+ * GDA is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with GDA. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package uk.ac.gda.analysis.hdf5;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class Hdf5FileHandlePoolTest {
+
+	private static final long IDLE_TIMEOUT_MILLIS = 1000;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private final Set<Long> openIds = new HashSet<>();
+
+	private long nextId = 1;
+
+	/** The pool's clock, in nanoseconds, which only moves when a test advances it */
+	private final AtomicLong now = new AtomicLong();
+
+	private Hdf5FileHandlePool pool;
+
+	@Before
+	public void setUp() {
+		pool = new Hdf5FileHandlePool(2, IDLE_TIMEOUT_MILLIS, new Hdf5FileHandlePool.FileOpener() {
+			@Override
+			public long open(String fileName) {
+				openIds.add(nextId);
+				return nextId++;
+			}
+
+			@Override
+			public void close(long fileId) {
+				assertTrue("Closed twice: " + fileId, openIds.remove(fileId));
+			}
+		}, now::get);
+	}
+
+	@Test
+	public void fileIsOpenedOnceForRepeatedReads() throws Exception {
+		String file = folder.newFile("a.nxs").getPath();
+		for (int i = 0; i < 10; i++) {
+			try (Hdf5FileHandlePool.Handle handle = pool.acquire(file)) {
+				assertEquals(1, handle.getFileId());
+			}
+		}
+		assertEquals(1, pool.getOpens());
+		assertEquals(9, pool.getHits());
+		assertEquals(1, openIds.size());
+	}
+
+	@Test
+	public void leastRecentlyUsedIdleFileIsClosed() throws Exception {
+		String a = folder.newFile("a.nxs").getPath();
+		String b = folder.newFile("b.nxs").getPath();
+		String c = folder.newFile("c.nxs").getPath();
+		pool.acquire(a).close();
+		pool.acquire(b).close();
+		pool.acquire(a).close();
+		pool.acquire(c).close();
+
+		assertEquals(2, openIds.size());
+		assertEquals(2, pool.getNumberOfOpenFiles());
+		pool.acquire(a).close();
+		assertEquals("a should still be open", 3, pool.getOpens());
+		pool.acquire(b).close();
+		assertEquals("b should have been evicted", 4, pool.getOpens());
+	}
+
+	@Test
+	public void fileInUseIsNotClosed() throws Exception {
+		String a = folder.newFile("a.nxs").getPath();
+		try (Hdf5FileHandlePool.Handle handle = pool.acquire(a)) {
+			pool.acquire(folder.newFile("b.nxs").getPath()).close();
+			pool.acquire(folder.newFile("c.nxs").getPath()).close();
+			pool.acquire(folder.newFile("d.nxs").getPath()).close();
+			assertTrue(openIds.contains(handle.getFileId()));
+		}
+		assertEquals(2, openIds.size());
+	}
+
+	@Test
+	public void evictedFileIsClosedOnRelease() throws Exception {
+		String a = folder.newFile("a.nxs").getPath();
+		Hdf5FileHandlePool.Handle first = pool.acquire(a);
+		pool.evict(a);
+		assertTrue(openIds.contains(first.getFileId()));
+
+		try (Hdf5FileHandlePool.Handle second = pool.acquire(a)) {
+			assertNotEquals(first.getFileId(), second.getFileId());
+		}
+		first.close();
+		first.close();
+		assertEquals(1, openIds.size());
+		assertEquals(1, pool.getNumberOfOpenFiles());
+	}
+
+	@Test
+	public void changedFileIsReopened() throws Exception {
+		File a = folder.newFile("a.nxs");
+		pool.acquire(a.getPath()).close();
+		Files.write(a.toPath(), new byte[] { 1, 2, 3 });
+		try (Hdf5FileHandlePool.Handle handle = pool.acquire(a.getPath())) {
+			assertEquals(2, handle.getFileId());
+		}
+		assertEquals(1, openIds.size());
+	}
+
+	@Test
+	public void clearClosesIdleFiles() throws Exception {
+		pool.acquire(folder.newFile("a.nxs").getPath()).close();
+		pool.acquire(folder.newFile("b.nxs").getPath()).close();
+		pool.clear();
+		assertEquals(0, openIds.size());
+		assertEquals(0, pool.getNumberOfOpenFiles());
+	}
+
+	private void advanceClock(long millis) {
+		now.addAndGet(MILLISECONDS.toNanos(millis));
+	}
+
+	@Test
+	public void idleFileIsClosedWhenItTimesOut() throws Exception {
+		String a = folder.newFile("a.nxs").getPath();
+		String b = folder.newFile("b.nxs").getPath();
+		pool.acquire(a).close();
+		advanceClock(400);
+		pool.acquire(b).close();
+
+		advanceClock(IDLE_TIMEOUT_MILLIS - 401);
+		pool.closeTimedOutFiles();
+		assertEquals(2, openIds.size());
+
+		advanceClock(1);
+		pool.closeTimedOutFiles();
+		assertEquals("a should have timed out", 1, openIds.size());
+		assertEquals(1, pool.getNumberOfOpenFiles());
+
+		advanceClock(400);
+		pool.closeTimedOutFiles();
+		assertEquals("b should have timed out", 0, openIds.size());
+		assertEquals(0, pool.getNumberOfOpenFiles());
+	}
+
+	@Test
+	public void fileInUseIsNotTimedOut() throws Exception {
+		String a = folder.newFile("a.nxs").getPath();
+		try (Hdf5FileHandlePool.Handle handle = pool.acquire(a)) {
+			advanceClock(2 * IDLE_TIMEOUT_MILLIS);
+			pool.closeTimedOutFiles();
+			assertTrue(openIds.contains(handle.getFileId()));
+		}
+		pool.closeTimedOutFiles();
+		assertEquals("the idle time starts when the file is released", 1, openIds.size());
+	}
+
+	@Test
+	public void reusingFileRestartsItsIdleTime() throws Exception {
+		String a = folder.newFile("a.nxs").getPath();
+		pool.acquire(a).close();
+		advanceClock(IDLE_TIMEOUT_MILLIS - 1);
+		pool.acquire(a).close();
+		advanceClock(IDLE_TIMEOUT_MILLIS - 1);
+		pool.closeTimedOutFiles();
+		assertEquals(1, openIds.size());
+		assertEquals(1, pool.getOpens());
+	}
+
+	@Test
+	public void timerClosesIdleFiles() throws Exception {
+		CountDownLatch closed = new CountDownLatch(1);
+		pool = new Hdf5FileHandlePool(2, 1, new Hdf5FileHandlePool.FileOpener() {
+			@Override
+			public long open(String fileName) {
+				return 1;
+			}
+
+			@Override
+			public void close(long fileId) {
+				closed.countDown();
+			}
+		}, System::nanoTime);
+		pool.acquire(folder.newFile("a.nxs").getPath()).close();
+		assertTrue("Idle file was not closed", closed.await(5, SECONDS));
+		assertEquals(0, pool.getNumberOfOpenFiles());
+	}
+}
@@ -19,10 +19,17 @@
 
 package gda.analysis.datastructure;
 
+import java.util.AbstractList;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Enumeration;
 import java.util.Iterator;
 import java.util.List;
+import java.util.RandomAccess;
 import java.util.Vector;
+import java.util.stream.DoubleStream;
 
 import org.python.core.Py;
 import org.python.core.PyInteger;
@@ -38,14 +45,24 @@ import gda.analysis.datastructure.event.DataChangeObserver;
 /**
  * Data storage vector I originally created something more complex which overrode add methods to update the min max on
  * the fly but in the end I thought ended with a monster class. So I've scrapped that and opted for simplicity.
+ * <p>
+ * The data is held in a {@code double[]} rather than as boxed elements. It is still a {@code List<Double>} so existing
+ * callers work unchanged, but code which processes the whole vector should use {@link #getDouble(int)},
+ * {@link #setDouble(int, double)} or the bulk views {@link #getBuffer()} and {@link #doubleStream()}. The methods of
+ * {@link Vector} which this class used to inherit are kept, deprecated, for scripts which still call them, and
+ * {@link #toVector()} gives a copy for code which needs a real {@link Vector}.
+ * <p>
+ * Unlike {@link Vector}, access to the data is not synchronized. Only the change listeners are thread safe.
  */
-public class DataVector extends Vector<Double> implements java.io.Serializable, DataChangeObservable {
+public class DataVector extends AbstractList<Double> implements RandomAccess, Cloneable, java.io.Serializable, DataChangeObservable {
 
 	/**
 	 * Setup the logging facilities
 	 */
 	private static final Logger logger = LoggerFactory.getLogger(DataVector.class);
 
+	private static final double[] EMPTY = new double[0];
+
 	/**
 	 * The dimensions of the data set
 	 */
@@ -63,8 +80,13 @@ public class DataVector extends Vector<Double> implements java.io.Serializable,
 	 */
 	private boolean fixedSize = false;
 
-	/** use serialVersionUID from JDK 1.0.2 for interoperability */
-	private static final long serialVersionUID = -2767605614048989439L;
+	/** The serialized form is no longer that of Vector */
+	private static final long serialVersionUID = 2L;
+
+	/** The data. Only the first {@link #size} elements are used. */
+	private double[] data = EMPTY;
+
+	private int size;
 
 	/** Storage for registered change listeners. */
 	private List<DataChangeObserver> listeners;
@@ -142,6 +164,28 @@ public class DataVector extends Vector<Double> implements java.io.Serializable,
 		createListFromArray(data);
 	}
 
+	/**
+	 * Creates a vector of any dimensions which uses the given array, without copying it, as its data
+	 *
+	 * @param dimensions
+	 * @param data
+	 *            the data, whose length must be the product of the dimensions
+	 */
+	public DataVector(int[] dimensions, double[] data) {
+		super();
+		int length = 1;
+		for (int dimension : dimensions)
+			length *= dimension;
+		if (length != data.length)
+			throw new IllegalArgumentException("Data length " + data.length + " does not match dimensions "
+					+ Arrays.toString(dimensions));
+		this.dimensions = dimensions.clone();
+		this.fixedSize = true;
+		this.maxDataSetSize = length;
+		this.data = data;
+		this.size = data.length;
+	}
+
 	/**
 	 * @param inputMatrix
 	 */
@@ -172,16 +216,20 @@ public class DataVector extends Vector<Double> implements java.io.Serializable,
 		int length = dims[0];
 		for (int i = 1; i < dims.length; i++)
 			length *= dims[i];
+		ensureCapacity(size + length);
 		for (int i = 0; i < length; i++)
-			this.add(0.0);
+			appendDouble(0.0);
+		fireDataChanged();
 	}
 
 	/**
 	 * Creates the datavector from a single dimensional array of doubles @param data the data to put in the 1D array
 	 */
 	public void createListFromArray(double[] data) {
+		ensureCapacity(size + data.length);
 		for (int i = 0; i < data.length; i++)
-			this.add(data[i]);
+			appendDouble(data[i]);
+		fireDataChanged();
 	}
 
 	/**
@@ -190,7 +238,8 @@ public class DataVector extends Vector<Double> implements java.io.Serializable,
 	public void createListFromArray(double[][] data) {
 		for (int i = 0; i < data.length; i++)
 			for (int j = 0; j < data[0].length; j++)
-				this.add(data[j][i]);
+				appendDouble(data[j][i]);
+		fireDataChanged();
 	}
 
 	/**
@@ -202,7 +251,8 @@ public class DataVector extends Vector<Double> implements java.io.Serializable,
 		for (int i = 0; i < data.length; i++)
 			for (int j = 0; j < data[0].length; j++)
 				for (int k = 0; k < data[0][0].length; k++)
-					this.add(data[i][j][k]);
+					appendDouble(data[i][j][k]);
+		fireDataChanged();
 	}
 
 	/**
@@ -283,7 +333,7 @@ public class DataVector extends Vector<Double> implements java.io.Serializable,
 	/**
 	 * @return Dimensions of the data vector
 	 */
-	public synchronized int[] getDimensions() {
+	public int[] getDimensions() {
 		return this.dimensions;
 	}
 
@@ -292,10 +342,10 @@ public class DataVector extends Vector<Double> implements java.io.Serializable,
 	 *
 	 * @return The min of the data set
 	 */
-	public synchronized double getMin() {
+	public double getMin() {
 		double min = Double.MAX_VALUE;
-		for (Double x : this) {
-			min = Math.min(x, min);
+		for (int i = 0; i < size; i++) {
+			min = Math.min(data[i], min);
 		}
 		return min;
 	}
@@ -303,10 +353,10 @@ public class DataVector extends Vector<Double> implements java.io.Serializable,
 	/**
 	 * @return The max of the data set
 	 */
-	public synchronized double getMax() {
+	public double getMax() {
 		double max = Double.MIN_VALUE;
-		for (Double x : this) {
-			max = Math.max(x, max);
+		for (int i = 0; i < size; i++) {
+			max = Math.max(data[i], max);
 		}
 		return max;
 	}
@@ -314,10 +364,10 @@ public class DataVector extends Vector<Double> implements java.io.Serializable,
 	/**
 	 * @return The max of the data set
 	 */
-	public synchronized double getMean() {
+	public double getMean() {
 		double sum = 0.0;
-		for (Double x : this) {
-			sum += x;
+		for (int i = 0; i < size; i++) {
+			sum += data[i];
 		}
 		return sum / this.size();
 	}
@@ -325,10 +375,10 @@ public class DataVector extends Vector<Double> implements java.io.Serializable,
 	/**
 	 * @return The rms of the data set
 	 */
-	public synchronized double getRMS() {
+	public double getRMS() {
 		double sum = 0.0;
-		for (Double x : this) {
-			sum += x * x;
+		for (int i = 0; i < size; i++) {
+			sum += data[i] * data[i];
 		}
 		return Math.sqrt(sum / this.size());
 	}
@@ -340,69 +390,124 @@ public class DataVector extends Vector<Double> implements java.io.Serializable,
 	 * @param n
 	 * @return The index in the 1D List containing the data.
 	 */
-	public synchronized int get1DIndex(int... n) {
+	public int get1DIndex(int... n) {
 		if (n.length > this.dimensions.length)
 			throw new IllegalArgumentException("No of index parameters greater than dimensions of data\t" + n.length
 					+ "\t" + this.dimensions.length);
 		// Throw exception......
 		int index = 0;
+		int stride = 1;
 		for (int i = 0; i < n.length; i++) {
-			double var = 1.0;
-			for (int j = 0; j < i; j++) {
-				var *= dimensions[j];
-			}
-			index += n[i] * var;
+			index += n[i] * stride;
+			stride *= dimensions[i];
 		}
 
 		return index;
 
 	}
 
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public Double get(int index) {
+		return getDouble(index);
+	}
+
+	@Override
+	public Double set(int index, Double element) {
+		return setDouble(index, element);
+	}
+
+	/**
+	 * Get an element without boxing it
+	 *
+	 * @param index
+	 *            the index in the 1D list
+	 * @return the element
+	 */
+	public double getDouble(int index) {
+		checkIndex(index);
+		return data[index];
+	}
+
+	/**
+	 * Set an element without boxing it. Like {@link #set(int, Double)} this does not notify the change listeners.
+	 *
+	 * @param index
+	 *            the index in the 1D list
+	 * @param value
+	 * @return the previous element
+	 */
+	public double setDouble(int index, double value) {
+		checkIndex(index);
+		double previous = data[index];
+		data[index] = value;
+		return previous;
+	}
+
+	/**
+	 * The array holding the data, for loops over the whole vector. It is not a copy: writing to it changes this vector
+	 * without notifying the change listeners. Only the first {@link #size()} elements are used and the array is
+	 * replaced when the vector grows, so it should not be kept.
+	 *
+	 * @return the backing array
+	 */
+	public double[] getBuffer() {
+		return data;
+	}
+
+	/**
+	 * @return the elements as a stream without boxing them
+	 */
+	public DoubleStream doubleStream() {
+		return Arrays.stream(data, 0, size);
+	}
+
 	/**
 	 * Fixed data size means if we insert an element we remove {@inheritDoc}
 	 *
 	 * @see java.util.Vector#insertElementAt(java.lang.Object, int)
 	 */
-	@Override
-	public synchronized void insertElementAt(Double obj, int index) {
+	public void insertElementAt(Double obj, int index) {
 		if (this.size() > 0 && (this.size() == this.maxDataSetSize || this.fixedSize == true)) {
-			super.remove(0);
+			removeDouble(0);
 		}
-		super.insertElementAt(obj, index);
+		insertDouble(index, obj);
 		fireDataChanged();
 
 	}
 
 	/**
-	 * Fixed data size means if we insert an element we remove {@inheritDoc}
-	 *
-	 * @see java.util.Vector#insertElementAt(java.lang.Object, int)
+	 * Inserts as {@link #insertElementAt(Double, int)}, as it did when this class was a {@link Vector}
 	 */
 	@Override
-	// public synchronized boolean add(Double obj)
-	// {
-	// if (this.size() == this.maxDataSetSize)
-	// {
-	// super.remove(0);
-	// }
-	// return super.add(obj);
-	// }
+	public void add(int index, Double element) {
+		insertElementAt(element, index);
+	}
+
 	/**
 	 * Fixed data size means if we insert an element we remove
 	 *
 	 * @param obj
-	 * @return
+	 * @return true
 	 * @see java.util.Vector#insertElementAt(java.lang.Object, int)
 	 */
-	public synchronized boolean add(Double obj) {
-		if (this.size() == this.maxDataSetSize && this.fixedSize == true) {
-			super.remove(0);
-		}
-		if (this.fixedSize == false) {
-			this.dimensions[0]++;
-		}
+	@Override
+	public boolean add(Double obj) {
+		return addDouble(obj);
+	}
 
-		super.add(obj);
+	/**
+	 * As {@link #add(Double)} without boxing the value
+	 *
+	 * @param value
+	 * @return true
+	 */
+	public boolean addDouble(double value) {
+		appendDouble(value);
 		fireDataChanged();
 		return true;
 	}
@@ -414,23 +519,51 @@ public class DataVector extends Vector<Double> implements java.io.Serializable,
 	 * @return boolean
 	 * @see java.util.Vector#insertElementAt(java.lang.Object, int)
 	 */
-	public synchronized boolean add(Integer obj) {
+	public boolean add(Integer obj) {
 		if (this.size() == this.maxDataSetSize && this.fixedSize == true) {
-			super.remove(0);
+			removeDouble(0);
 		}
-		super.add(obj.doubleValue());
+		insertDouble(size, obj.doubleValue());
 		fireDataChanged();
 		return true;
 
 	}
 
+	/**
+	 * Appends the elements without notifying the change listeners or changing the dimensions, as {@link Vector} did
+	 */
 	@Override
-	public synchronized void addElement(Double obj) {
-		if (this.size() == this.maxDataSetSize && this.fixedSize == true) {
-			super.remove(0);
+	public boolean addAll(Collection<? extends Double> c) {
+		return addAll(size, c);
+	}
+
+	/**
+	 * Inserts the elements without notifying the change listeners or changing the dimensions, as {@link Vector} did
+	 */
+	@Override
+	public boolean addAll(int index, Collection<? extends Double> c) {
+		checkPositionIndex(index);
+		int count = c.size();
+		ensureCapacity(size + count);
+		System.arraycopy(data, index, data, index + count, size - index);
+		int i = index;
+		for (Double element : c) {
+			data[i++] = element;
 		}
-		super.addElement(obj);
-		fireDataChanged();
+		size += count;
+		modCount++;
+		return count != 0;
+	}
+
+	@Override
+	public Double remove(int index) {
+		return removeDouble(index);
+	}
+
+	@Override
+	public void clear() {
+		size = 0;
+		modCount++;
 	}
 
 	/**
@@ -441,8 +574,8 @@ public class DataVector extends Vector<Double> implements java.io.Serializable,
 	 *            getData(5,6); (index along dimensions 1 & 2) for 3d .... getData(5,6,1); (index dimensions 1 & 2 & 3)
 	 * @return the data at index n
 	 */
-	public synchronized double getIndex(int... n) {
-		return this.get(get1DIndex(n));
+	public double getIndex(int... n) {
+		return getDouble(get1DIndex(n));
 	}
 
 	/**
@@ -453,8 +586,158 @@ public class DataVector extends Vector<Double> implements java.io.Serializable,
 	 * @param n
 	 *            The point in the Vector to change
 	 */
-	public synchronized void setIndex(double value, int... n) {
-		this.set(get1DIndex(n), value);
+	public void setIndex(double value, int... n) {
+		setDouble(get1DIndex(n), value);
+	}
+
+	private void checkIndex(int index) {
+		if (index < 0 || index >= size)
+			throw new ArrayIndexOutOfBoundsException("Index " + index + " out of range for size " + size);
+	}
+
+	private void checkPositionIndex(int index) {
+		if (index < 0 || index > size)
+			throw new ArrayIndexOutOfBoundsException("Index " + index + " out of range for size " + size);
+	}
+
+	private void ensureCapacity(int capacity) {
+		if (capacity > data.length) {
+			data = Arrays.copyOf(data, Math.max(capacity, Math.max(10, data.length * 2)));
+		}
+	}
+
+	/**
+	 * Fixed data size means if we insert an element we remove
+	 */
+	private void appendDouble(double value) {
+		if (this.size() == this.maxDataSetSize && this.fixedSize == true) {
+			removeDouble(0);
+		}
+		if (this.fixedSize == false) {
+			this.dimensions[0]++;
+		}
+		insertDouble(size, value);
+	}
+
+	private void insertDouble(int index, double value) {
+		checkPositionIndex(index);
+		ensureCapacity(size + 1);
+		System.arraycopy(data, index, data, index + 1, size - index);
+		data[index] = value;
+		size++;
+		modCount++;
+	}
+
+	private double removeDouble(int index) {
+		checkIndex(index);
+		double removed = data[index];
+		System.arraycopy(data, index + 1, data, index, size - index - 1);
+		size--;
+		modCount++;
+		return removed;
+	}
+
+	/**
+	 * A copy of this vector, with the same dimensions and data but no change listeners
+	 */
+	@Override
+	public DataVector clone() {
+		try {
+			DataVector copy = (DataVector) super.clone();
+			copy.dimensions = dimensions.clone();
+			copy.data = Arrays.copyOf(data, size);
+			copy.listeners = null;
+			return copy;
+		} catch (CloneNotSupportedException e) {
+			throw new InternalError(e);
+		}
+	}
+
+	/**
+	 * @return a copy of the data as a {@link Vector}, for callers which still need one
+	 */
+	public Vector<Double> toVector() {
+		return new Vector<Double>(this);
+	}
+
+	// Methods once inherited from Vector
+
+	/**
+	 * @deprecated use {@link #getDouble(int)}
+	 */
+	@Deprecated
+	public Double elementAt(int index) {
+		return get(index);
+	}
+
+	/**
+	 * @deprecated use {@link #getDouble(int)}
+	 */
+	@Deprecated
+	public Double firstElement() {
+		return get(0);
+	}
+
+	/**
+	 * @deprecated use {@link #getDouble(int)}
+	 */
+	@Deprecated
+	public Double lastElement() {
+		return get(size - 1);
+	}
+
+	/**
+	 * @deprecated use {@link #setDouble(int, double)}
+	 */
+	@Deprecated
+	public void setElementAt(Double obj, int index) {
+		setDouble(index, obj);
+	}
+
+	/**
+	 * @deprecated use {@link #addDouble(double)}
+	 */
+	@Deprecated
+	public void addElement(Double obj) {
+		if (this.size() == this.maxDataSetSize && this.fixedSize == true) {
+			removeDouble(0);
+		}
+		insertDouble(size, obj);
+		fireDataChanged();
+	}
+
+	/**
+	 * @deprecated use {@link #remove(int)}
+	 */
+	@Deprecated
+	public void removeElementAt(int index) {
+		removeDouble(index);
+	}
+
+	/**
+	 * @deprecated use {@link #clear()}
+	 */
+	@Deprecated
+	public void removeAllElements() {
+		clear();
+	}
+
+	/**
+	 * @deprecated use {@link #iterator()} or {@link #doubleStream()}
+	 */
+	@Deprecated
+	public Enumeration<Double> elements() {
+		return Collections.enumeration(this);
+	}
+
+	/**
+	 * @deprecated use {@link #doubleArray()}
+	 */
+	@Deprecated
+	public void copyInto(Object[] anArray) {
+		for (int i = 0; i < size; i++) {
+			anArray[i] = data[i];
+		}
 	}
 
 	/**
@@ -677,19 +960,14 @@ public class DataVector extends Vector<Double> implements java.io.Serializable,
 	/**
 	 * @return double[]
 	 */
-	public synchronized double[] doubleArray() {
-
-		double[] result = new double[this.size()];
-		for (int i = 0; i < result.length; i++) {
-			result[i] = this.get(i);
-		}
-		return result;
+	public double[] doubleArray() {
+		return Arrays.copyOf(data, size);
 	}
 
 	/**
 	 * @return double[][]
 	 */
-	public synchronized double[][] doubleMatrix() {
+	public double[][] doubleMatrix() {
 
 		// only return if its a 2D dataVector
 		if (this.dimensions.length != 2) {
@@ -1342,7 +1620,7 @@ public class DataVector extends Vector<Double> implements java.io.Serializable,
 	}
 
 	@Override
-	public synchronized String toString() {
+	public String toString() {
 
 		String out = "";
 
@@ -19,8 +19,6 @@
 
 package gda.analysis.datastructure;
 
-import gda.analysis.utilities.ObjectCloner;
-
 import java.util.Arrays;
 
 /**
@@ -47,6 +45,19 @@ public class DataVectorMath {
 		if (!Arrays.equals(g1.getDimensions(), g2.getDimensions())) {
 			throw new IllegalArgumentException("Incompatible dimensions");
 		}
+		if (g1.size() != g2.size()) {
+			throw new IllegalArgumentException("Incompatible sizes");
+		}
+	}
+
+	/**
+	 * @return a zeroed array for the result of an operation on g, the length given by its dimensions
+	 */
+	private static double[] newBuffer(DataVector g) {
+		int length = 1;
+		for (int dimension : g.getDimensions())
+			length *= dimension;
+		return new double[length];
 	}
 
 	/**
@@ -64,10 +75,11 @@ public class DataVectorMath {
 		checkCompatibility(g1, g2);
 
 		DataVector newData = clone(g1);
-
+		double[] a = g1.getBuffer();
+		double[] b = g2.getBuffer();
+		double[] result = newData.getBuffer();
 		for (int i = 0; i < g1.size(); i++) {
-			double value = g1.getIndex(i) + g2.getIndex(i);
-			newData.set(i, value);
+			result[i] = a[i] + b[i];
 		}
 		return newData;
 	}
@@ -83,13 +95,12 @@ public class DataVectorMath {
 	 */
 	public static DataVector sum(DataVector g, double val) {
 
-		DataVector newData = new DataVector(g.getDimensions());
-
+		double[] values = g.getBuffer();
+		double[] result = newBuffer(g);
 		for (int i = 0; i < g.size(); i++) {
-			double value = g.getIndex(i) + val;
-			newData.set(i, value);
+			result[i] = values[i] + val;
 		}
-		return newData;
+		return new DataVector(g.getDimensions(), result);
 	}
 
 	/**
@@ -108,10 +119,11 @@ public class DataVectorMath {
 		checkCompatibility(g1, g2);
 
 		DataVector newData = clone(g1);
-
+		double[] a = g1.getBuffer();
+		double[] b = g2.getBuffer();
+		double[] result = newData.getBuffer();
 		for (int i = 0; i < g1.size(); i++) {
-			double value = g1.getIndex(i) - g2.getIndex(i);
-			newData.set(i, value);
+			result[i] = a[i] - b[i];
 		}
 		return newData;
 	}
@@ -127,13 +139,12 @@ public class DataVectorMath {
 	 */
 
 	public static DataVector sub(DataVector g, double val) {
-		DataVector newData = new DataVector(g.getDimensions());
-
+		double[] values = g.getBuffer();
+		double[] result = newBuffer(g);
 		for (int i = 0; i < g.size(); i++) {
-			double value = g.getIndex(i) - val;
-			newData.set(i, value);
+			result[i] = values[i] - val;
 		}
-		return newData;
+		return new DataVector(g.getDimensions(), result);
 	}
 
 	/**
@@ -152,10 +163,11 @@ public class DataVectorMath {
 		checkCompatibility(g1, g2);
 
 		DataVector newData = clone(g1);
-
+		double[] a = g1.getBuffer();
+		double[] b = g2.getBuffer();
+		double[] result = newData.getBuffer();
 		for (int i = 0; i < g1.size(); i++) {
-			double value = g1.getIndex(i) * g2.getIndex(i);
-			newData.set(i, value);
+			result[i] = a[i] * b[i];
 		}
 		return newData;
 	}
@@ -172,13 +184,12 @@ public class DataVectorMath {
 
 	public static DataVector mul(DataVector g, double val) {
 
-		DataVector newData = new DataVector(g.getDimensions());
-
+		double[] values = g.getBuffer();
+		double[] result = newBuffer(g);
 		for (int i = 0; i < g.size(); i++) {
-			double value = g.getIndex(i) * val;
-			newData.set(i, value);
+			result[i] = values[i] * val;
 		}
-		return newData;
+		return new DataVector(g.getDimensions(), result);
 	}
 
 	/**
@@ -196,10 +207,11 @@ public class DataVectorMath {
 		checkCompatibility(g1, g2);
 
 		DataVector newData = clone(g1);
-
+		double[] a = g1.getBuffer();
+		double[] b = g2.getBuffer();
+		double[] result = newData.getBuffer();
 		for (int i = 0; i < g1.size(); i++) {
-			double value = g1.getIndex(i) / g2.getIndex(i);
-			newData.set(i, value);
+			result[i] = a[i] / b[i];
 		}
 		return newData;
 	}
@@ -213,13 +225,12 @@ public class DataVectorMath {
 	 */
 	public static DataVector div(DataVector g, double val) {
 
-		DataVector newData = new DataVector(g.getDimensions());
-
+		double[] values = g.getBuffer();
+		double[] result = newBuffer(g);
 		for (int i = 0; i < g.size(); i++) {
-			double value = g.getIndex(i) / val;
-			newData.set(i, value);
+			result[i] = values[i] / val;
 		}
-		return newData;
+		return new DataVector(g.getDimensions(), result);
 	}
 
 	/**
@@ -234,13 +245,12 @@ public class DataVectorMath {
 			throw new IllegalArgumentException("Cannot log elements of the array are less than 0");
 		}
 
-		DataVector newData = new DataVector(g.getDimensions());
-
+		double[] values = g.getBuffer();
+		double[] result = newBuffer(g);
 		for (int i = 0; i < g.size(); i++) {
-			double value = Math.log10(g.getIndex(i));
-			newData.set(i, value);
+			result[i] = Math.log10(values[i]);
 		}
-		return newData;
+		return new DataVector(g.getDimensions(), result);
 	}
 
 	/**
@@ -253,13 +263,12 @@ public class DataVectorMath {
 			throw new IllegalArgumentException("Cannot ln the data vector as there are elements less than 0");
 		}
 
-		DataVector newData = new DataVector(g.getDimensions());
-
+		double[] values = g.getBuffer();
+		double[] result = newBuffer(g);
 		for (int i = 0; i < g.size(); i++) {
-			double value = Math.log(g.getIndex(i));
-			newData.set(i, value);
+			result[i] = Math.log(values[i]);
 		}
-		return newData;
+		return new DataVector(g.getDimensions(), result);
 	}
 
 	/**
@@ -270,13 +279,12 @@ public class DataVectorMath {
 	 */
 	public static DataVector pow(DataVector g, double pow) {
 
-		DataVector newData = new DataVector(g.getDimensions());
-
+		double[] values = g.getBuffer();
+		double[] result = newBuffer(g);
 		for (int i = 0; i < g.size(); i++) {
-			double value = Math.pow(g.getIndex(i), pow);
-			newData.set(i, value);
+			result[i] = Math.pow(values[i], pow);
 		}
-		return newData;
+		return new DataVector(g.getDimensions(), result);
 	}
 
 	/**
@@ -285,13 +293,12 @@ public class DataVectorMath {
 	 */
 	public static DataVector abs(DataVector g) {
 
-		DataVector newData = new DataVector(g.getDimensions());
-
+		double[] values = g.getBuffer();
+		double[] result = newBuffer(g);
 		for (int i = 0; i < g.size(); i++) {
-			double value = Math.abs(g.getIndex(i));
-			newData.set(i, value);
+			result[i] = Math.abs(values[i]);
 		}
-		return newData;
+		return new DataVector(g.getDimensions(), result);
 	}
 
 	/**
@@ -300,13 +307,12 @@ public class DataVectorMath {
 	 */
 	public static DataVector cos(DataVector g) {
 
-		DataVector newData = new DataVector(g.getDimensions());
-
+		double[] values = g.getBuffer();
+		double[] result = newBuffer(g);
 		for (int i = 0; i < g.size(); i++) {
-			double value = Math.cos(g.getIndex(i));
-			newData.set(i, value);
+			result[i] = Math.cos(values[i]);
 		}
-		return newData;
+		return new DataVector(g.getDimensions(), result);
 	}
 
 	/**
@@ -315,13 +321,12 @@ public class DataVectorMath {
 	 */
 	public static DataVector sin(DataVector g) {
 
-		DataVector newData = new DataVector(g.getDimensions());
-
+		double[] values = g.getBuffer();
+		double[] result = newBuffer(g);
 		for (int i = 0; i < g.size(); i++) {
-			double value = Math.sin(g.getIndex(i));
-			newData.set(i, value);
+			result[i] = Math.sin(values[i]);
 		}
-		return newData;
+		return new DataVector(g.getDimensions(), result);
 	}
 
 	/**
@@ -330,13 +335,12 @@ public class DataVectorMath {
 	 */
 	public static DataVector exp(DataVector g) {
 
-		DataVector newData = new DataVector(g.getDimensions());
-
+		double[] values = g.getBuffer();
+		double[] result = newBuffer(g);
 		for (int i = 0; i < g.size(); i++) {
-			double value = Math.exp(g.getIndex(i));
-			newData.set(i, value);
+			result[i] = Math.exp(values[i]);
 		}
-		return newData;
+		return new DataVector(g.getDimensions(), result);
 	}
 
 	/**
@@ -345,7 +349,9 @@ public class DataVectorMath {
 	 */
 	public static double getMin(DataVector g) {
 		double min = Double.MAX_VALUE;
-		for (Double x : g) {
+		double[] values = g.getBuffer();
+		for (int i = 0; i < g.size(); i++) {
+			double x = values[i];
 			min = Math.min(x, min);
 		}
 		return min;
@@ -357,7 +363,9 @@ public class DataVectorMath {
 	 */
 	public static double getMax(DataVector g) {
 		double max = Double.MIN_VALUE;
-		for (Double x : g) {
+		double[] values = g.getBuffer();
+		for (int i = 0; i < g.size(); i++) {
+			double x = values[i];
 			max = Math.max(x, max);
 		}
 		return max;
@@ -369,7 +377,9 @@ public class DataVectorMath {
 	 */
 	public static double getMean(DataVector g) {
 		double sum = 0.0;
-		for (Double x : g) {
+		double[] values = g.getBuffer();
+		for (int i = 0; i < g.size(); i++) {
+			double x = values[i];
 			sum += x;
 		}
 		return sum / (g.size());
@@ -381,7 +391,9 @@ public class DataVectorMath {
 	 */
 	public static double getStandardDeviation(DataVector g) {
 		double sum = 0.0;
-		for (Double x : g) {
+		double[] values = g.getBuffer();
+		for (int i = 0; i < g.size(); i++) {
+			double x = values[i];
 			sum += x * x;
 		}
 		return Math.sqrt(sum / (g.size()));
@@ -394,7 +406,9 @@ public class DataVectorMath {
 	public static double getAverageDeviation(DataVector g) {
 		double mean = getMean(g);
 		double sum = 0.0;
-		for (Double x : g) {
+		double[] values = g.getBuffer();
+		for (int i = 0; i < g.size(); i++) {
+			double x = values[i];
 			sum += Math.abs(x - mean);
 		}
 		return sum / g.size();
@@ -409,7 +423,9 @@ public class DataVectorMath {
 		double mean = getMean(g);
 		double rms = getStandardDeviation(g);
 		double sum = 0.0;
-		for (Double x : g) {
+		double[] values = g.getBuffer();
+		for (int i = 0; i < g.size(); i++) {
+			double x = values[i];
 			sum += Math.pow(((x - mean) / rms), 4.0);
 		}
 		return ((sum / g.size()) - 3);
@@ -424,7 +440,9 @@ public class DataVectorMath {
 		double mean = getMean(g);
 		double rms = getStandardDeviation(g);
 		double sum = 0.0;
-		for (Double x : g) {
+		double[] values = g.getBuffer();
+		for (int i = 0; i < g.size(); i++) {
+			double x = values[i];
 			sum += Math.pow(((x - mean) / rms), 3.0);
 		}
 		return sum / g.size();
@@ -437,7 +455,7 @@ public class DataVectorMath {
 	public static double count(DataVector g) {
 		double sum = 0.0;
 		for (int i = 0; i < g.size(); i++) {
-			sum += g.getIndex(i);
+			sum += g.getDouble(i);
 		}
 		return sum;
 	}
@@ -451,7 +469,7 @@ public class DataVectorMath {
 	public static double count(DataVector g, int start, int end) {
 		double sum = 0.0;
 		for (int i = start; i < end; i++) {
-			sum += g.getIndex(i);
+			sum += g.getDouble(i);
 		}
 		return sum;
 	}
@@ -461,13 +479,7 @@ public class DataVectorMath {
 	 * @return A new DataVector that is a clone of DataVector g
 	 */
 	public static DataVector clone(DataVector g) {
-		DataVector newData = null;
-		try {
-			newData = (DataVector) ObjectCloner.deepCopy(g);
-		} catch (Exception e) {
-			e.printStackTrace();
-		}
-		return newData;
+		return g.clone();
 	}
 
 	/**
@@ -476,12 +488,12 @@ public class DataVectorMath {
 	 * @return finds the value of nearest element value in array to the argument value
 	 */
 	public static double nearestElementValue(DataVector g, double value) {
-		double diff = Math.abs(g.get(0) - value);
-		double nearest = g.get(0);
+		double diff = Math.abs(g.getDouble(0) - value);
+		double nearest = g.getDouble(0);
 		for (int i = 1; i < g.size(); i++) {
-			if (Math.abs(g.get(i) - value) < diff) {
-				diff = Math.abs(g.get(i) - value);
-				nearest = g.get(i);
+			if (Math.abs(g.getDouble(i) - value) < diff) {
+				diff = Math.abs(g.getDouble(i) - value);
+				nearest = g.getDouble(i);
 			}
 		}
 		return nearest;
@@ -493,11 +505,11 @@ public class DataVectorMath {
 	 * @return finds the index of nearest element value in array to the argument value
 	 */
 	public static int nearestElementIndex(DataVector g, double value) {
-		double diff = Math.abs(g.get(0) - value);
+		double diff = Math.abs(g.getDouble(0) - value);
 		int nearest = 0;
 		for (int i = 1; i < g.size(); i++) {
-			if (Math.abs(g.get(i) - value) < diff) {
-				diff = Math.abs(g.get(i) - value);
+			if (Math.abs(g.getDouble(i) - value) < diff) {
+				diff = Math.abs(g.getDouble(i) - value);
 				nearest = i;
 			}
 		}
@@ -515,15 +527,15 @@ public class DataVectorMath {
 		int nearest = 0;
 		int ii = 0;
 		boolean test = true;
-		double min = g.get(0);
+		double min = g.getDouble(0);
 		int minI = 0;
 		while (test) {
-			if (g.get(ii) < min) {
-				min = g.get(ii);
+			if (g.getDouble(ii) < min) {
+				min = g.getDouble(ii);
 				minI = ii;
 			}
-			if ((value - g.get(ii)) >= 0.0) {
-				diff0 = value - g.get(ii);
+			if ((value - g.getDouble(ii)) >= 0.0) {
+				diff0 = value - g.getDouble(ii);
 				nearest = ii;
 				test = false;
 			} else {
@@ -536,7 +548,7 @@ public class DataVectorMath {
 			}
 		}
 		for (int i = 0; i < g.size(); i++) {
-			diff1 = value - g.get(i);
+			diff1 = value - g.getDouble(i);
 			if (diff1 >= 0.0 && diff1 < diff0) {
 				diff0 = diff1;
 				nearest = i;
@@ -556,13 +568,13 @@ public class DataVectorMath {
 		double nearest = 0.0D;
 		int ii = 0;
 		boolean test = true;
-		double min = g.get(0);
+		double min = g.getDouble(0);
 		while (test) {
-			if (g.get(ii) < min)
-				min = g.get(ii);
-			if ((value - g.get(ii)) >= 0.0D) {
-				diff0 = value - g.get(ii);
-				nearest = g.get(ii);
+			if (g.getDouble(ii) < min)
+				min = g.getDouble(ii);
+			if ((value - g.getDouble(ii)) >= 0.0D) {
+				diff0 = value - g.getDouble(ii);
+				nearest = g.getDouble(ii);
 				test = false;
 			} else {
 				ii++;
@@ -574,10 +586,10 @@ public class DataVectorMath {
 			}
 		}
 		for (int i = 0; i < g.size(); i++) {
-			diff1 = value - g.get(i);
+			diff1 = value - g.getDouble(i);
 			if (diff1 >= 0.0D && diff1 < diff0) {
 				diff0 = diff1;
-				nearest = g.get(i);
+				nearest = g.getDouble(i);
 			}
 		}
 		return nearest;
@@ -594,15 +606,15 @@ public class DataVectorMath {
 		int nearest = 0;
 		int ii = 0;
 		boolean test = true;
-		double max = g.get(0);
+		double max = g.getDouble(0);
 		int maxI = 0;
 		while (test) {
-			if (g.get(ii) > max) {
-				max = g.get(ii);
+			if (g.getDouble(ii) > max) {
+				max = g.getDouble(ii);
 				maxI = ii;
 			}
-			if ((g.get(ii) - value) >= 0.0D) {
-				diff0 = value - g.get(ii);
+			if ((g.getDouble(ii) - value) >= 0.0D) {
+				diff0 = value - g.getDouble(ii);
 				nearest = ii;
 				test = false;
 			} else {
@@ -615,7 +627,7 @@ public class DataVectorMath {
 			}
 		}
 		for (int i = 0; i < g.size(); i++) {
-			diff1 = g.get(i) - value;
+			diff1 = g.getDouble(i) - value;
 			if (diff1 >= 0.0D && diff1 < diff0) {
 				diff0 = diff1;
 				nearest = i;
@@ -635,13 +647,13 @@ public class DataVectorMath {
 		double nearest = 0.0D;
 		int ii = 0;
 		boolean test = true;
-		double max = g.get(0);
+		double max = g.getDouble(0);
 		while (test) {
-			if (g.get(ii) > max)
-				max = g.get(ii);
-			if ((g.get(ii) - value) >= 0.0D) {
-				diff0 = value - g.get(ii);
-				nearest = g.get(ii);
+			if (g.getDouble(ii) > max)
+				max = g.getDouble(ii);
+			if ((g.getDouble(ii) - value) >= 0.0D) {
+				diff0 = value - g.getDouble(ii);
+				nearest = g.getDouble(ii);
 				test = false;
 			} else {
 				ii++;
@@ -653,10 +665,10 @@ public class DataVectorMath {
 			}
 		}
 		for (int i = 0; i < g.size(); i++) {
-			diff1 = g.get(i) - value;
+			diff1 = g.getDouble(i) - value;
 			if (diff1 >= 0.0D && diff1 < diff0) {
 				diff0 = diff1;
-				nearest = g.get(i);
+				nearest = g.getDouble(i);
 			}
 		}
 		return nearest;
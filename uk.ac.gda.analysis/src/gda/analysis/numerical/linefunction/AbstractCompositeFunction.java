@@ -25,7 +25,7 @@ import gda.analysis.utilities.OrderedHashMap;
  * Fitting lineshapes generally involves fitting more than one function This class is used to sum together lineshape
  * functions which are then to be compared to experimental data
  */
-public abstract class AbstractCompositeFunction {
+public abstract class AbstractCompositeFunction implements Cloneable {
 
 	protected OrderedHashMap<String, AbstractFunction> functions = new OrderedHashMap<String, AbstractFunction>();
 
@@ -37,6 +37,24 @@ public abstract class AbstractCompositeFunction {
 	 */
 	public abstract double val(double... positions);
 
+	/**
+	 * Set the first n elements of values to the value of the multifunction at the corresponding positions. The default
+	 * calls {@link #val(double...)} for each position.
+	 *
+	 * @param positions
+	 * @param n
+	 *            the number of positions to evaluate
+	 * @param values
+	 *            at least n long
+	 */
+	public void values(double[] positions, int n, double[] values) {
+		final double[] position = new double[1];
+		for (int i = 0; i < n; i++) {
+			position[0] = positions[i];
+			values[i] = val(position);
+		}
+	}
+
 	/**
 	 * Add a function called name to the multifunction object
 	 *
@@ -67,6 +85,26 @@ public abstract class AbstractCompositeFunction {
 		functions.remove(name);
 	}
 
+	/**
+	 * Copy this multifunction and {@link AbstractFunction#copy() each of its functions}, so that the copy can be
+	 * evaluated with different parameter values without affecting this one.
+	 *
+	 * @return a copy of this multifunction
+	 */
+	public AbstractCompositeFunction copy() {
+		AbstractCompositeFunction copy;
+		try {
+			copy = (AbstractCompositeFunction) clone();
+		} catch (CloneNotSupportedException e) {
+			throw new IllegalStateException(e);
+		}
+		copy.functions = new OrderedHashMap<String, AbstractFunction>();
+		for (int i = 0; i < functions.size(); i++) {
+			copy.functions.put(functions.getKey(i), functions.get(i).copy());
+		}
+		return copy;
+	}
+
 	/**
 	 * @return The no of individual functions in the multifunction
 	 */
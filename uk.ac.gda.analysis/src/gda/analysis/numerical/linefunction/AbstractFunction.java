@@ -24,7 +24,7 @@ import gda.analysis.utilities.OrderedHashMap;
 /**
  * Implement this interface to specify the line function
  */
-public abstract class AbstractFunction {
+public abstract class AbstractFunction implements Cloneable {
 	/**
 	 * A list of parameters
 	 */
@@ -50,6 +50,48 @@ public abstract class AbstractFunction {
 	 */
 	public abstract double val(double... position);
 
+	/**
+	 * Add the value of the function at each of the first n positions to the corresponding element of values. This is
+	 * how fitting evaluates the function over a whole data set; the default calls {@link #val(double...)} for each
+	 * position, reusing one array for the argument, and subclasses should override it to avoid looking up their
+	 * parameters for every point.
+	 *
+	 * @param positions
+	 * @param n
+	 *            the number of positions to evaluate
+	 * @param values
+	 *            at least n long
+	 */
+	public void addValues(double[] positions, int n, double[] values) {
+		final double[] position = new double[1];
+		for (int i = 0; i < n; i++) {
+			position[0] = positions[i];
+			values[i] += val(position);
+		}
+	}
+
+	/**
+	 * @return true if this function implements {@link #derivatives(double[], int, double[][])}
+	 */
+	public boolean hasDerivatives() {
+		return false;
+	}
+
+	/**
+	 * Calculate the partial derivatives of the function with respect to each of its parameters at each of the first n
+	 * positions. Only supported if {@link #hasDerivatives()} returns true.
+	 *
+	 * @param positions
+	 * @param n
+	 *            the number of positions to evaluate
+	 * @param derivatives
+	 *            set so that derivatives[j][i] is the derivative with respect to parameter j at positions[i]. There
+	 *            must be an array of at least n for each parameter.
+	 */
+	public void derivatives(double[] positions, int n, double[][] derivatives) {
+		throw new UnsupportedOperationException(getClass().getSimpleName() + " has no analytic derivatives");
+	}
+
 	/**
 	 * @param index
 	 * @return Paramter at index
@@ -105,6 +147,29 @@ public abstract class AbstractFunction {
 
 	}
 
+	/**
+	 * Copy this function with its own copy of each parameter, so that the copy can be evaluated with different
+	 * parameter values without affecting this function. Subclasses with mutable fields of their own must override
+	 * this to copy them as well.
+	 *
+	 * @return a copy of this function
+	 */
+	public AbstractFunction copy() {
+		AbstractFunction copy;
+		try {
+			copy = (AbstractFunction) clone();
+		} catch (CloneNotSupportedException e) {
+			throw new IllegalStateException(e);
+		}
+		copy.parameters = new OrderedHashMap<String, IParameter>();
+		for (int i = 0; i < parameters.size(); i++) {
+			IParameter parameter = new Parameter(parameters.get(i));
+			parameter.setGroup(parameters.get(i).getGroup());
+			copy.parameters.put(parameters.getKey(i), parameter);
+		}
+		return copy;
+	}
+
 	/**
 	 * crude method for printing out the parameters of a function useful for testing and the jython environment
 	 */
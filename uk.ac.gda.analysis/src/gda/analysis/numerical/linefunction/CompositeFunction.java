@@ -19,6 +19,8 @@
 
 package gda.analysis.numerical.linefunction;
 
+import java.util.Arrays;
+
 import gda.analysis.datastructure.DataVector;
 
 /**
@@ -49,6 +51,14 @@ public class CompositeFunction extends AbstractCompositeFunction {
 		return y;
 	}
 
+	@Override
+	public void values(double[] positions, int n, double[] values) {
+		Arrays.fill(values, 0, n, 0.);
+		for (int j = 0; j < getNoOfFunctions(); j++) {
+			functions.get(j).addValues(positions, n, values);
+		}
+	}
+
 	/**
 	 * @param min
 	 * @param max
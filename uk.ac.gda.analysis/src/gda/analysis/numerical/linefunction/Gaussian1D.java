@@ -108,6 +108,39 @@ public class Gaussian1D extends AbstractFunction {
 		return y;
 	}
 
+	@Override
+	public void addValues(double[] positions, int n, double[] values) {
+		double area = getParameter(0).getValue();
+		double pos = getParameter(1).getValue();
+		double sigma = getParameter(2).getValue();
+		double scale = area / Math.sqrt(2.0 * Math.PI * sigma * sigma);
+		for (int i = 0; i < n; i++) {
+			double arg = (positions[i] - pos) / sigma;
+			values[i] += scale * Math.exp(-0.5 * arg * arg);
+		}
+	}
+
+	@Override
+	public boolean hasDerivatives() {
+		return true;
+	}
+
+	@Override
+	public void derivatives(double[] positions, int n, double[][] derivatives) {
+		double area = getParameter(0).getValue();
+		double pos = getParameter(1).getValue();
+		double sigma = getParameter(2).getValue();
+		double norm = Math.sqrt(2.0 * Math.PI * sigma * sigma);
+		for (int i = 0; i < n; i++) {
+			double arg = (positions[i] - pos) / sigma;
+			double shape = Math.exp(-0.5 * arg * arg) / norm;
+			double y = area * shape;
+			derivatives[0][i] = shape;
+			derivatives[1][i] = y * arg / sigma;
+			derivatives[2][i] = y * (arg * arg - 1.0) / sigma;
+		}
+	}
+
 	@Override
 	public String toString() {
 		String output = "";
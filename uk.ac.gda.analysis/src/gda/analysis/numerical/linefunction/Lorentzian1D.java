@@ -92,6 +92,41 @@ public class Lorentzian1D extends AbstractFunction {
 		return y;
 	}
 
+	@Override
+	public void addValues(double[] positions, int n, double[] values) {
+		double area = getParameter(0).getValue();
+		double pos = getParameter(1).getValue();
+		double gamma = getParameter(2).getValue();
+		double norm = 0.5 * gamma * area / Math.PI;
+		double halfWidthSquared = 0.25 * gamma * gamma;
+		for (int i = 0; i < n; i++) {
+			double dx = positions[i] - pos;
+			values[i] += norm / (dx * dx - halfWidthSquared);
+		}
+	}
+
+	@Override
+	public boolean hasDerivatives() {
+		return true;
+	}
+
+	@Override
+	public void derivatives(double[] positions, int n, double[][] derivatives) {
+		double area = getParameter(0).getValue();
+		double pos = getParameter(1).getValue();
+		double gamma = getParameter(2).getValue();
+		double norm = 0.5 * gamma * area / Math.PI;
+		double halfWidthSquared = 0.25 * gamma * gamma;
+		for (int i = 0; i < n; i++) {
+			double dx = positions[i] - pos;
+			double denominator = dx * dx - halfWidthSquared;
+			double y = norm / denominator;
+			derivatives[0][i] = 0.5 * gamma / (Math.PI * denominator);
+			derivatives[1][i] = 2.0 * dx * y / denominator;
+			derivatives[2][i] = 0.5 * area / (Math.PI * denominator) + 0.5 * gamma * y / denominator;
+		}
+	}
+
 	@Override
 	public String toString() {
 		String output = "";
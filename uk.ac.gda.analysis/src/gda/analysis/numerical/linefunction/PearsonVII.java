@@ -26,6 +26,8 @@ public class PearsonVII extends AbstractFunction {
 	// The parameter names
 	private static String[] parameterNames = { "amplitude", "position", "fwhm", "s" };
 
+	private static final double TINY = 1.0D - 10, HALF = 0.5, BIG = 1.0E03;
+
 	/**
 	 * Constructor.
 	 *
@@ -70,7 +72,6 @@ public class PearsonVII extends AbstractFunction {
 		double pos = getParameter("position").getValue();
 		double fwhm = getParameter("fwhm").getValue();
 		double s = getParameter("s").getValue();
-		double TINY = 1.0D - 10, HALF = 0.5, BIG = 1.0E03;
 
 		double arg, ex, fac;
 
@@ -91,4 +92,61 @@ public class PearsonVII extends AbstractFunction {
 		return y;
 	}
 
+	@Override
+	public void addValues(double[] positions, int n, double[] values) {
+		double amp = getParameter(0).getValue();
+		double pos = getParameter(1).getValue();
+		double fwhm = limitFwhm(getParameter(2).getValue());
+		double s = limitS(getParameter(3).getValue());
+		double ex = Math.pow(2.0, (1.0 / s)) - 1.0;
+		for (int i = 0; i < n; i++) {
+			double arg = (positions[i] - pos) / fwhm;
+			values[i] += amp / Math.pow(1.0 + 4.0 * arg * arg * ex, s);
+		}
+	}
+
+	@Override
+	public boolean hasDerivatives() {
+		return true;
+	}
+
+	/**
+	 * The derivatives with respect to fwhm and s are zero where they are outside the limits applied by
+	 * {@link #val(double...)}.
+	 */
+	@Override
+	public void derivatives(double[] positions, int n, double[][] derivatives) {
+		double amp = getParameter(0).getValue();
+		double pos = getParameter(1).getValue();
+		double fwhm = getParameter(2).getValue();
+		double s = getParameter(3).getValue();
+		boolean fwhmLimited = fwhm != limitFwhm(fwhm);
+		boolean sLimited = s != limitS(s);
+		fwhm = limitFwhm(fwhm);
+		s = limitS(s);
+		double ex = Math.pow(2.0, (1.0 / s)) - 1.0;
+		// derivative of ex with respect to s
+		double exS = -Math.pow(2.0, (1.0 / s)) * Math.log(2.0) / (s * s);
+		for (int i = 0; i < n; i++) {
+			double arg = (positions[i] - pos) / fwhm;
+			double fac = 1.0 + 4.0 * arg * arg * ex;
+			double shape = Math.pow(fac, -s);
+			double y = amp * shape;
+			// derivative of y with respect to fac
+			double yFac = -s * y / fac;
+			derivatives[0][i] = shape;
+			derivatives[1][i] = -yFac * 8.0 * arg * ex / fwhm;
+			derivatives[2][i] = fwhmLimited ? 0.0 : -yFac * 8.0 * arg * arg * ex / fwhm;
+			derivatives[3][i] = sLimited ? 0.0 : y * (-Math.log(fac) - s * 4.0 * arg * arg * exS / fac);
+		}
+	}
+
+	private static double limitFwhm(double fwhm) {
+		return fwhm < TINY ? TINY : fwhm;
+	}
+
+	private static double limitS(double s) {
+		return Math.min(Math.max(s, HALF), BIG);
+	}
+
 }
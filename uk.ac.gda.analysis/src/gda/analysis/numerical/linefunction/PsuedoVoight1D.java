@@ -82,4 +82,58 @@ public class PsuedoVoight1D extends AbstractFunction {
 		return y;
 	}
 
+	@Override
+	public void addValues(double[] positions, int n, double[] values) {
+		double area = getParameter(0).getValue();
+		double pos = getParameter(1).getValue();
+		double mixing = getParameter(2).getValue();
+		double sigma = getParameter(3).getValue();
+		double gamma = getParameter(4).getValue();
+		double lorentzianScale = (1.0 - mixing) * 0.5 * gamma * area / Math.PI;
+		double halfWidthSquared = 0.25 * gamma * gamma;
+		double gaussianScale = mixing * area / Math.sqrt(2.0 * Math.PI * sigma * sigma);
+		for (int i = 0; i < n; i++) {
+			double dx = positions[i] - pos;
+			double arg = dx / sigma;
+			values[i] += lorentzianScale / (dx * dx - halfWidthSquared) + gaussianScale * Math.exp(-0.5 * arg * arg);
+		}
+	}
+
+	@Override
+	public boolean hasDerivatives() {
+		return true;
+	}
+
+	@Override
+	public void derivatives(double[] positions, int n, double[][] derivatives) {
+		double area = getParameter(0).getValue();
+		double pos = getParameter(1).getValue();
+		double mixing = getParameter(2).getValue();
+		double sigma = getParameter(3).getValue();
+		double gamma = getParameter(4).getValue();
+		double halfWidthSquared = 0.25 * gamma * gamma;
+		double gaussianNorm = Math.sqrt(2.0 * Math.PI * sigma * sigma);
+		for (int i = 0; i < n; i++) {
+			double dx = positions[i] - pos;
+			// Lorentzian part, and its derivatives
+			double denominator = dx * dx - halfWidthSquared;
+			double lorentzianShape = 0.5 * gamma / (Math.PI * denominator);
+			double lorentzian = area * lorentzianShape;
+			double lorentzianPos = 2.0 * dx * lorentzian / denominator;
+			double lorentzianGamma = 0.5 * area / (Math.PI * denominator) + 0.5 * gamma * lorentzian / denominator;
+			// Gaussian part, and its derivatives
+			double arg = dx / sigma;
+			double gaussianShape = Math.exp(-0.5 * arg * arg) / gaussianNorm;
+			double gaussian = area * gaussianShape;
+			double gaussianPos = gaussian * arg / sigma;
+			double gaussianSigma = gaussian * (arg * arg - 1.0) / sigma;
+
+			derivatives[0][i] = (1.0 - mixing) * lorentzianShape + mixing * gaussianShape;
+			derivatives[1][i] = (1.0 - mixing) * lorentzianPos + mixing * gaussianPos;
+			derivatives[2][i] = gaussian - lorentzian;
+			derivatives[3][i] = mixing * gaussianSigma;
+			derivatives[4][i] = (1.0 - mixing) * lorentzianGamma;
+		}
+	}
+
 }
@@ -47,6 +47,34 @@ public abstract class AbstractLSQObjectiveFunction extends AbstractObjectiveFunc
 	 */
 	public abstract double[] LMEvaluate(double... parameters);
 
+	/**
+	 * As {@link #LMEvaluate(double...)} but writing the differences into an array supplied by the caller, so that
+	 * optimizers can evaluate repeatedly without allocating. The default copies the result of
+	 * {@link #LMEvaluate(double...)}.
+	 *
+	 * @param parameters
+	 * @param differences
+	 *            at least {@link #getNoOfDataPoints()} long
+	 */
+	public void LMEvaluate(double[] parameters, double[] differences) {
+		double[] data = LMEvaluate(parameters);
+		System.arraycopy(data, 0, differences, 0, data.length);
+	}
+
+	/**
+	 * Calculate the Jacobian of {@link #LMEvaluate(double...)} analytically, if possible.
+	 *
+	 * @param parameters
+	 * @param jacobian
+	 *            set so that jacobian[i][j] is the derivative of the difference at data point i with respect to
+	 *            parameter j
+	 * @return false if the Jacobian cannot be calculated analytically, in which case the optimizer must approximate it
+	 *         by finite differences. The default is false.
+	 */
+	public boolean LMJacobian(double[] parameters, double[][] jacobian) {
+		return false;
+	}
+
 	/**
 	 * @return int Number of data points
 	 */
@@ -29,6 +29,9 @@ import gda.analysis.numerical.linefunction.IParameter;
  * may really be interested in peak positions not peak amplitudes or sometimes chisquared fits emphasis fitting to the
  * high intensity regions of a curve. Anyway there are lots of R-factor functions out their for comparing computer
  * generated curves to experimental data.
+ * <p>
+ * The optimizers evaluate a function on one thread unless it declares that it is {@link #isThreadSafe() thread safe}, in
+ * which case {@link #evaluateIndependently(double...)} must not change any state shared between calls.
  */
 public abstract class AbstractObjectiveFunction {
 
@@ -49,4 +52,28 @@ public abstract class AbstractObjectiveFunction {
 	public int failedToEvaluate() {
 		return 0;
 	}
+
+	/**
+	 * Evaluate the function without leaving any trace of the evaluation in this object, for example without setting
+	 * the values of its parameters as {@link #evaluate(double...)} may. This is how the optimizers evaluate many
+	 * candidate points at once; they call {@link #evaluate(double...)} with the best point at the end to fix its values
+	 * into the model. The default calls {@link #evaluate(double...)}.
+	 *
+	 * @param parameters
+	 *            not changed, and not referred to after returning
+	 * @return the value of the function at parameters
+	 */
+	public double evaluateIndependently(double... parameters) {
+		return evaluate(parameters);
+	}
+
+	/**
+	 * Whether {@link #evaluateIndependently(double...)} may be called from several threads at once. The optimizers only
+	 * evaluate in parallel if this returns true. The default is false.
+	 *
+	 * @return true if the function can be evaluated concurrently
+	 */
+	public boolean isThreadSafe() {
+		return false;
+	}
 }
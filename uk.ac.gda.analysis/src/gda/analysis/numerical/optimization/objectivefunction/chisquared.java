@@ -23,17 +23,28 @@ import java.util.Vector;
 
 import gda.analysis.datastructure.DataVector;
 import gda.analysis.numerical.linefunction.AbstractCompositeFunction;
+import gda.analysis.numerical.linefunction.AbstractFunction;
 import gda.analysis.numerical.linefunction.IParameter;
 import gda.analysis.numerical.linefunction.Parameter;
 
 /**
  * A standard chi squared objective function for comparing an x and y data set to a composite function
+ * <p>
+ * {@link #evaluate(double...)} sets the free parameters of the composite function, so must only be called from one
+ * thread. {@link #evaluateIndependently(double...)} evaluates a copy of the composite function instead, so the
+ * optimizers can call it from several threads at once.
  */
 public class chisquared extends AbstractLSQObjectiveFunction {
 	private AbstractCompositeFunction function;
 
 	private DataVector[] dataSets;
 
+	/** Reused to hold the value of the function at each data point */
+	private double[] model;
+
+	/** Reused to hold the derivatives of each function at each data point */
+	private double[][][] derivatives;
+
 	/**
 	 * Constructor.
 	 *
@@ -68,15 +79,40 @@ public class chisquared extends AbstractLSQObjectiveFunction {
 	@Override
 	public double evaluate(double... parameters) {
 
-		DataVector xdata = this.getDatasets()[0];
 		DataVector ydata = this.getDatasets()[1];
 
-		setParameters(parameters);
 		// Now with these new values calculate the chisqaured
-		int noOfDataPoints = xdata.size();
+		int noOfDataPoints = ydata.size();
+		double[] values = getModelBuffer(noOfDataPoints);
+		evaluateModel(parameters, values);
+		return sumOfSquares(values, ydata.getBuffer(), noOfDataPoints);
+	}
+
+	/**
+	 * Evaluates a copy of the composite function, leaving the parameters of the composite function unchanged
+	 */
+	@Override
+	public double evaluateIndependently(double... parameters) {
+		DataVector xdata = this.getDatasets()[0];
+		DataVector ydata = this.getDatasets()[1];
+		int noOfDataPoints = ydata.size();
+		AbstractCompositeFunction copy = getCompositeFunction().copy();
+		setParameters(copy, parameters);
+		double[] values = new double[noOfDataPoints];
+		copy.values(xdata.getBuffer(), noOfDataPoints, values);
+		return sumOfSquares(values, ydata.getBuffer(), noOfDataPoints);
+	}
+
+	@Override
+	public boolean isThreadSafe() {
+		return true;
+	}
+
+	private static double sumOfSquares(double[] values, double[] y, int noOfDataPoints) {
 		double sum = 0.0;
 		for (int i = 0; i < noOfDataPoints; i++) {
-			sum += Math.pow(getCompositeFunction().val(xdata.getIndex(i)) - ydata.getIndex(i), 2);
+			double difference = values[i] - y[i];
+			sum += difference * difference;
 		}
 		return sum;
 	}
@@ -89,23 +125,81 @@ public class chisquared extends AbstractLSQObjectiveFunction {
 	 */
 	@Override
 	public double[] LMEvaluate(double... parameters) {
+		double[] differences = new double[getNoOfDataPoints()];
+		LMEvaluate(parameters, differences);
+		return differences;
+	}
 
-		DataVector xdata = this.getDatasets()[0];
+	@Override
+	public void LMEvaluate(double[] parameters, double[] differences) {
 		DataVector ydata = this.getDatasets()[1];
-		// set the parameters in the function(s)
-		setParameters(parameters);
-		int noOfDataPoints = xdata.size();
-		double[] differences = new double[noOfDataPoints];
+		int noOfDataPoints = ydata.size();
+		double[] y = ydata.getBuffer();
+		evaluateModel(parameters, differences);
 		for (int i = 0; i < noOfDataPoints; i++) {
-			differences[i] = getCompositeFunction().val(xdata.getIndex(i)) - ydata.getIndex(i);
-			// System.out.println("Differences\t"+i+"\t"+differences[i]);
+			differences[i] -= y[i];
 		}
-		return differences;
-
 	}
 
-	private void setParameters(double... parameters) {
+	/**
+	 * The Jacobian is calculated analytically if every function of the composite function
+	 * {@link AbstractFunction#hasDerivatives() has derivatives}.
+	 */
+	@Override
+	public boolean LMJacobian(double[] parameters, double[][] jacobian) {
 		AbstractCompositeFunction func = getCompositeFunction();
+		int nFunctions = func.getNoOfFunctions();
+		for (int i = 0; i < nFunctions; i++) {
+			if (!func.getFunction(i).hasDerivatives()) {
+				return false;
+			}
+		}
+		setParameters(func, parameters);
+		DataVector xdata = this.getDatasets()[0];
+		int noOfDataPoints = xdata.size();
+		double[] x = xdata.getBuffer();
+		if (derivatives == null || derivatives.length != nFunctions) {
+			derivatives = new double[nFunctions][][];
+		}
+		int column = 0;
+		for (int i = 0; i < nFunctions; i++) {
+			AbstractFunction function = func.getFunction(i);
+			int nParams = function.getNoOfParameters();
+			if (derivatives[i] == null || derivatives[i].length != nParams
+					|| (nParams > 0 && derivatives[i][0].length < noOfDataPoints)) {
+				derivatives[i] = new double[nParams][noOfDataPoints];
+			}
+			function.derivatives(x, noOfDataPoints, derivatives[i]);
+			for (int j = 0; j < nParams; j++) {
+				if (!function.getParameter(j).isFixed()) {
+					double[] derivative = derivatives[i][j];
+					for (int k = 0; k < noOfDataPoints; k++) {
+						jacobian[k][column] = derivative[k];
+					}
+					column++;
+				}
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Set the parameters and evaluate the composite function at every x value
+	 */
+	private void evaluateModel(double[] parameters, double[] values) {
+		setParameters(getCompositeFunction(), parameters);
+		DataVector xdata = this.getDatasets()[0];
+		getCompositeFunction().values(xdata.getBuffer(), xdata.size(), values);
+	}
+
+	private double[] getModelBuffer(int noOfDataPoints) {
+		if (model == null || model.length < noOfDataPoints) {
+			model = new double[noOfDataPoints];
+		}
+		return model;
+	}
+
+	private static void setParameters(AbstractCompositeFunction func, double... parameters) {
 		int nFunctions = func.getNoOfFunctions();
 		// I'm basically findingout which parameters are free
 		int pCounter = 0;
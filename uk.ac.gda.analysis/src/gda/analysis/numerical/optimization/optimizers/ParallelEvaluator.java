@@ -0,0 +1,158 @@
+/*-
+ * Copyright © 2019 Diamond Light Source Ltd.
+ *
+ * This file is part of GDA.
+ *
+ * GDA is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License version 3 as published by the Free
+ * Software Foundation.
+ *
+ * GDA is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with GDA. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package gda.analysis.numerical.optimization.optimizers;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntConsumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import gda.analysis.numerical.optimization.objectivefunction.AbstractObjectiveFunction;
+
+/**
+ * Evaluates an objective function at many independent points, in parallel on a fork-join pool if the function is
+ * {@link AbstractObjectiveFunction#isThreadSafe() thread safe} and more than one thread is allowed.
+ * <p>
+ * The optimizers generate all the points of a generation sequentially from their seeded random number generator, and
+ * only then evaluate them here. No random numbers are drawn during evaluation, so the result of an optimization does
+ * not depend on the number of threads or on how the evaluations are scheduled.
+ */
+public class ParallelEvaluator {
+
+	private static final Logger logger = LoggerFactory.getLogger(ParallelEvaluator.class);
+
+	private final AbstractObjectiveFunction function;
+
+	private final int parallelism;
+
+	private ForkJoinPool pool;
+
+	private boolean warnedNotThreadSafe;
+
+	/**
+	 * @param function
+	 * @param parallelism
+	 *            the maximum number of threads to evaluate on. 1 evaluates on the calling thread; 0 or less uses one
+	 *            thread per available processor.
+	 */
+	public ParallelEvaluator(AbstractObjectiveFunction function, int parallelism) {
+		this.function = function;
+		this.parallelism = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+	}
+
+	public int getParallelism() {
+		return parallelism;
+	}
+
+	/**
+	 * Evaluate the function at each point
+	 *
+	 * @param points
+	 *            the points to evaluate. They must not be changed until this method returns.
+	 * @param costs
+	 *            receives the value of the function at each point
+	 */
+	public void evaluate(double[][] points, double[] costs) {
+		evaluate(points.length, i -> costs[i] = function.evaluateIndependently(points[i]));
+	}
+
+	/**
+	 * Run an evaluation for each index from 0 to count - 1
+	 *
+	 * @param count
+	 * @param evaluation
+	 *            called once for each index. Calls for different indices may run at the same time.
+	 */
+	public void evaluate(int count, IntConsumer evaluation) {
+		if (!isParallel() || count < 2) {
+			for (int i = 0; i < count; i++) {
+				evaluation.accept(i);
+			}
+			return;
+		}
+		getPool().invoke(new EvaluationTask(evaluation, 0, count));
+	}
+
+	/**
+	 * @return true if evaluations will be run in parallel
+	 */
+	public boolean isParallel() {
+		if (parallelism < 2) {
+			return false;
+		}
+		if (!function.isThreadSafe()) {
+			if (!warnedNotThreadSafe) {
+				logger.warn("{} is not thread safe so it will be evaluated on one thread", function.getClass().getSimpleName());
+				warnedNotThreadSafe = true;
+			}
+			return false;
+		}
+		return true;
+	}
+
+	private synchronized ForkJoinPool getPool() {
+		if (pool == null) {
+			pool = parallelism == ForkJoinPool.getCommonPoolParallelism() ? ForkJoinPool.commonPool() : new ForkJoinPool(parallelism);
+		}
+		return pool;
+	}
+
+	/**
+	 * Release the threads of this evaluator. It may still be used afterwards; a new pool is created if needed.
+	 */
+	public synchronized void shutdown() {
+		if (pool != null && pool != ForkJoinPool.commonPool()) {
+			pool.shutdown();
+		}
+		pool = null;
+	}
+
+	/**
+	 * Splits a range of indices in half until each task has a single evaluation, since each evaluation is assumed to
+	 * be expensive compared with the cost of a task.
+	 */
+	private static class EvaluationTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final IntConsumer evaluation;
+
+		private final int start;
+
+		private final int end;
+
+		EvaluationTask(IntConsumer evaluation, int start, int end) {
+			this.evaluation = evaluation;
+			this.start = start;
+			this.end = end;
+		}
+
+		@Override
+		protected void compute() {
+			if (end - start == 1) {
+				evaluation.accept(start);
+				return;
+			}
+			final int middle = (start + end) >>> 1;
+			invokeAll(new EvaluationTask(evaluation, start, middle), new EvaluationTask(evaluation, middle, end));
+		}
+	}
+}
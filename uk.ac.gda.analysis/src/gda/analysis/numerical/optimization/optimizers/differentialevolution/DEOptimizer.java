@@ -4,6 +4,7 @@ package gda.analysis.numerical.optimization.optimizers.differentialevolution;
 
 import gda.analysis.numerical.linefunction.IParameter;
 import gda.analysis.numerical.optimization.objectivefunction.AbstractObjectiveFunction;
+import gda.analysis.numerical.optimization.optimizers.ParallelEvaluator;
 
 /**
  * D I F F E R E N T I A L E V O L U T I O N This is the kernel routine for the DE optimization. Authors: Mikal Keenan
@@ -16,11 +17,23 @@ import gda.analysis.numerical.optimization.objectivefunction.AbstractObjectiveFu
  * Modified by Paul Quinn at Diamond Light Source Removed GUI references Removed complete method from DEProblem Added
  * optimization termination if function doesn't change Altered DEProblem evaluate method Added max no of generations
  * Changed public to private classes Changed DeProblem to AbstractCostFunction
+ * <p>
+ * The trial vectors of a generation are all created before any of them is evaluated, so that they can be evaluated in
+ * parallel (see {@link #setParallelism(int)}). Only the evaluation is parallel, so with the same
+ * {@link #setRandomSeed(long) seed} the result is the same whatever the number of threads.
  */
 public class DEOptimizer {
 	/* ======Public variables====================================== */
 	private DERandom deRandom = new DERandom();
 
+	/** The random number generator of the strategies */
+	private DERandom strategyRandom = new DERandom();
+
+	/** The maximum number of threads used to evaluate a generation */
+	private int parallelism = 1;
+
+	private ParallelEvaluator evaluator;
+
 	private DEStrategy deStrategy = new DERand1Bin();
 
 	/**
@@ -111,6 +124,10 @@ public class DEOptimizer {
 
 	private double p2[][];// = new double [MaxN][MaxD];
 
+	private double trials[][]; // the trial vectors of a generation
+
+	private double trialCosts[]; // and their costs
+
 	private double rvec[][];// = new double [MaxR][MaxD]; // array of
 	// randomly
 
@@ -194,7 +211,7 @@ public class DEOptimizer {
 		// vectors
 		rnd = new int[6]; // array of random indices
 		// Set the strategy to uses
-		deStrategy.init(new DERandom());
+		deStrategy.init(strategyRandom);
 	}
 
 	/**
@@ -229,6 +246,10 @@ public class DEOptimizer {
 			// (defined in scroll panel)
 			// while (iterations-- > 0)
 			// {
+			if (trials == null || trials.length != NP || trials[0].length != dim) {
+				trials = new double[NP][dim];
+				trialCosts = new double[NP];
+			}
 			for (int i = 0; i < NP; i++) {
 				assign(trial, g0[i]); // trial vector
 
@@ -283,9 +304,15 @@ public class DEOptimizer {
 					if (trial[tp] > upperBounds[tp])
 						trial[tp] = upperBounds[tp];
 				}
+				assign(trials[i], trial);
+			}
+
+			/*---cost of trial vectors, which are independent---*/
+			getEvaluator().evaluate(trials, trialCosts);
 
-				/*---cost of trial vector------------------------*/
-				double testcost = function.evaluate(trial);
+			for (int i = 0; i < NP; i++) {
+				double[] trial = trials[i];
+				double testcost = trialCosts[i];
 				evaluation++;
 
 				if (testcost <= cost[i]) // Better solution than target
@@ -326,9 +353,9 @@ public class DEOptimizer {
 				for (j = 0; j < dim; j++) {
 					x[j] = deRandom.nextValue(lowerBounds[j], upperBounds[j]);
 				}
-				cost[i] = function.evaluate(x);
-				evaluation++;
 			}
+			getEvaluator().evaluate(p1, cost);
+			evaluation += NP;
 
 			mincost = cost[0];
 			min_index = 0;
@@ -464,6 +491,7 @@ public class DEOptimizer {
 			deStrategy = new DERand1Bin();
 			break;
 		}
+		deStrategy.init(strategyRandom);
 	}
 
 	/**
@@ -472,8 +500,50 @@ public class DEOptimizer {
 	 * @param deStrategy
 	 */
 	public void setStrategy(DEStrategy deStrategy) {
-		if (deStrategy != null)
+		if (deStrategy != null) {
 			this.deStrategy = deStrategy;
+			deStrategy.init(strategyRandom);
+		}
+	}
+
+	/**
+	 * Seed the random number generators so that optimizations can be repeated
+	 *
+	 * @param seed
+	 *            the seed, or 0 to seed from the clock (the default)
+	 */
+	public void setRandomSeed(long seed) {
+		deRandom.setMySeed(seed);
+		strategyRandom.setMySeed(seed == 0 ? 0 : seed + 1);
+	}
+
+	/**
+	 * Set the maximum number of threads used to evaluate the members of a generation. Evaluation is only parallel if
+	 * the function is {@link AbstractObjectiveFunction#isThreadSafe() thread safe}.
+	 *
+	 * @param parallelism
+	 *            1 to evaluate on the optimizing thread (the default), 0 for one thread per available processor
+	 */
+	public void setParallelism(int parallelism) {
+		if (evaluator != null) {
+			evaluator.shutdown();
+			evaluator = null;
+		}
+		this.parallelism = parallelism;
+	}
+
+	/**
+	 * @return The maximum number of threads used to evaluate a generation
+	 */
+	public int getParallelism() {
+		return parallelism;
+	}
+
+	private ParallelEvaluator getEvaluator() {
+		if (evaluator == null) {
+			evaluator = new ParallelEvaluator(function, parallelism);
+		}
+		return evaluator;
 	}
 
 	// Some helper methods
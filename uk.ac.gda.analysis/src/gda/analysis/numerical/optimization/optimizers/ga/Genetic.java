@@ -21,11 +21,17 @@ package gda.analysis.numerical.optimization.optimizers.ga;
 
 import gda.analysis.numerical.linefunction.IParameter;
 import gda.analysis.numerical.optimization.objectivefunction.AbstractObjectiveFunction;
+import gda.analysis.numerical.optimization.optimizers.ParallelEvaluator;
 
+import java.util.Arrays;
 import java.util.Random;
 
 /**
  * Genetic Class
+ * <p>
+ * Each epoc is bred completely before its members are evaluated, so that they can be evaluated in parallel (see
+ * {@link #setParallelism(int)}). With the same {@link #setRandomSeed(long) seed} the result does not depend on the
+ * number of threads.
  */
 public class Genetic {
 	AbstractObjectiveFunction func = null;
@@ -34,6 +40,10 @@ public class Genetic {
 
 	double mutantScaling = 0.1;
 
+	private Random rand = new Random();
+
+	private int parallelism = 1;
+
 	/**
 	 * @param function
 	 */
@@ -43,6 +53,37 @@ public class Genetic {
 
 	}
 
+	/**
+	 * Seed the random number generator so that optimizations can be repeated
+	 *
+	 * @param seed
+	 */
+	public void setRandomSeed(long seed) {
+		rand = new Random(seed);
+	}
+
+	/**
+	 * Set the maximum number of threads used to evaluate the members of an epoc. Evaluation is only parallel if the
+	 * function is {@link AbstractObjectiveFunction#isThreadSafe() thread safe}.
+	 *
+	 * @param parallelism
+	 *            1 to evaluate on the calling thread (the default), 0 for one thread per available processor
+	 */
+	public void setParallelism(int parallelism) {
+		this.parallelism = parallelism;
+	}
+
+	public int getParallelism() {
+		return parallelism;
+	}
+
+	/**
+	 * Calculate the fitness of every member of the epoc and put it in the last element
+	 */
+	private void evaluateEpoc(ParallelEvaluator evaluator, double[][] epoc, int noOfParameters) {
+		evaluator.evaluate(epoc.length, i -> epoc[i][noOfParameters] = func.evaluateIndependently(Arrays.copyOf(epoc[i], noOfParameters)));
+	}
+
 	/**
 	 * @param epocSize
 	 * @param Numberofepocs
@@ -67,7 +108,7 @@ public class Genetic {
 			pvals[i] = params[i].getValue();
 		}
 
-		Random rand = new Random();
+		ParallelEvaluator evaluator = new ParallelEvaluator(func, parallelism);
 
 		// generate the first epoch, each member will be a random pertabateion
 		// around the original
@@ -98,10 +139,9 @@ public class Genetic {
 				if (epoc[i][j] < params[j].getLowerLimit()) {
 					epoc[i][j] = (2 * params[j].getLowerLimit()) - epoc[i][j];
 				}
-				pvals[j] = epoc[i][j];
 			}
-			epoc[i][params.length] = func.evaluate(pvals);
 		}
+		evaluateEpoc(evaluator, epoc, params.length);
 
 		// now do the epocs,
 		for (int k = 0; k < Numberofepocs; k++) {
@@ -203,14 +243,11 @@ public class Genetic {
 						epoc[i][j] = (2 * params[j].getLowerLimit()) - epoc[i][j];
 					}
 				}
+			}
 
-				// finaly calculate the fitness and put it in the last digit
-				for (int m = 0; m < params.length; m++) {
-					pvals[m] = epoc[i][m];
-				}
-
-				epoc[i][params.length] = func.evaluate(pvals);
-
+			// finaly calculate the fitness and put it in the last digit
+			evaluateEpoc(evaluator, epoc, params.length);
+			for (int i = 0; i < epocSize; i++) {
 				mean = mean + epoc[i][params.length];
 			}
 
@@ -237,5 +274,6 @@ public class Genetic {
 
 		minval = func.evaluate(pvals);
 		System.out.println(minval);
+		evaluator.shutdown();
 	}
 }
@@ -95,6 +95,11 @@ public class minpackOptimizer implements IOptimizer {
 
 	private double[] functionAtDataPoints;
 
+	/**
+	 * Working array for the finite difference Jacobian
+	 */
+	private double[] jacobianWorkingArray;
+
 	/**
 	 *
 	 */
@@ -1098,6 +1103,9 @@ public class minpackOptimizer implements IOptimizer {
 		double[] wa2 = new double[noOfParams];
 		double[] wa3 = new double[noOfParams];
 		double[] wa4 = new double[noOfObservationsLocal];
+		if (functionAtDataPoints == null || functionAtDataPoints.length != noOfObservationsLocal) {
+			functionAtDataPoints = new double[noOfObservationsLocal];
+		}
 
 		delta = 0.0;
 		xnorm = 0.0;
@@ -1116,7 +1124,7 @@ public class minpackOptimizer implements IOptimizer {
 
 				// nlls.fcn(noOfObservations, noOfParameters, x,
 				// functionAtDataPoints, iflag);
-				functionAtDataPoints = function.LMEvaluate(x);
+				function.LMEvaluate(x, functionAtDataPoints);
 
 			}
 			return;
@@ -1135,7 +1143,7 @@ public class minpackOptimizer implements IOptimizer {
 
 						// nlls.fcn(noOfObservations, noOfParameters, x,
 						// functionAtDataPoints, iflag);
-						functionAtDataPoints = function.LMEvaluate(x);
+						function.LMEvaluate(x, functionAtDataPoints);
 					}
 					System.out.println("here 2");
 					return;
@@ -1153,7 +1161,7 @@ public class minpackOptimizer implements IOptimizer {
 
 		// nlls.fcn(noOfObservations, noOfParameters, x, functionAtDataPoints,
 		// iflag);
-		functionAtDataPoints = function.LMEvaluate(x);
+		function.LMEvaluate(x, functionAtDataPoints);
 		nfev[0] = 1;
 
 		if (iflag[0] < 0) {
@@ -1167,7 +1175,7 @@ public class minpackOptimizer implements IOptimizer {
 
 				// nlls.fcn(noOfObservations, noOfParameters, x,
 				// functionAtDataPoints, iflag);
-				functionAtDataPoints = function.LMEvaluate(x);
+				function.LMEvaluate(x, functionAtDataPoints);
 			}
 			return;
 
@@ -1203,7 +1211,7 @@ public class minpackOptimizer implements IOptimizer {
 
 					// nlls.fcn(noOfObservations, noOfParameters, x,
 					// functionAtDataPoints, iflag);
-					functionAtDataPoints = function.LMEvaluate(x);
+					function.LMEvaluate(x, functionAtDataPoints);
 
 				}
 				return;
@@ -1220,7 +1228,7 @@ public class minpackOptimizer implements IOptimizer {
 
 					// nlls.fcn(noOfObservations, noOfParameters, x,
 					// functionAtDataPoints, iflag);
-					functionAtDataPoints = function.LMEvaluate(x);
+					function.LMEvaluate(x, functionAtDataPoints);
 				}
 
 				if (iflag[0] < 0) {
@@ -1232,7 +1240,7 @@ public class minpackOptimizer implements IOptimizer {
 
 					// nlls.fcn(noOfObservations, noOfParameters, x,
 					// functionAtDataPoints, iflag);
-					functionAtDataPoints = function.LMEvaluate(x);
+					function.LMEvaluate(x, functionAtDataPoints);
 					return;
 
 				}
@@ -1385,7 +1393,7 @@ public class minpackOptimizer implements IOptimizer {
 
 					// nlls.fcn(noOfObservations, noOfParameters, x,
 					// functionAtDataPoints, iflag);
-					functionAtDataPoints = function.LMEvaluate(x);
+					function.LMEvaluate(x, functionAtDataPoints);
 				}
 				return;
 
@@ -1500,7 +1508,7 @@ public class minpackOptimizer implements IOptimizer {
 				iflag[0] = 1;
 
 				// nlls.fcn(noOfObservations, noOfParameters, wa2, wa4, iflag);
-				wa4 = function.LMEvaluate(wa2);
+				function.LMEvaluate(wa2, wa4);
 				nfev[0]++;
 
 				if (iflag[0] < 0) {
@@ -1514,7 +1522,7 @@ public class minpackOptimizer implements IOptimizer {
 
 						// nlls.fcn(noOfObservations, noOfParameters, x,
 						// functionAtDataPoints, iflag);
-						functionAtDataPoints = function.LMEvaluate(x);
+						function.LMEvaluate(x, functionAtDataPoints);
 					}
 					return;
 
@@ -1637,7 +1645,7 @@ public class minpackOptimizer implements IOptimizer {
 
 						// nlls.fcn(noOfObservations, noOfParameters, x,
 						// functionAtDataPoints, iflag);
-						functionAtDataPoints = function.LMEvaluate(x);
+						function.LMEvaluate(x, functionAtDataPoints);
 
 					}
 					return;
@@ -1670,7 +1678,7 @@ public class minpackOptimizer implements IOptimizer {
 
 						// nlls.fcn(noOfObservations, noOfParameters, x,
 						// functionAtDataPoints, iflag);
-						functionAtDataPoints = function.LMEvaluate(x);
+						function.LMEvaluate(x, functionAtDataPoints);
 					}
 					return;
 
@@ -1722,9 +1730,16 @@ public class minpackOptimizer implements IOptimizer {
 	private void fdjac2(int noOfObservationsLocal, int noOfParams, double x[], @SuppressWarnings("unused") double functionAtDataPointsLocal[],
 			double fjac[][], int iflag[], double epsfcnLocal, double workingArray[]) {
 
+		if (function.LMJacobian(x, fjac)) {
+			return;
+		}
+
 		int i, j;
 		double eps, h, temp;
-		double[] temp1 = new double[noOfObservationsLocal];
+		if (jacobianWorkingArray == null || jacobianWorkingArray.length != noOfObservationsLocal) {
+			jacobianWorkingArray = new double[noOfObservationsLocal];
+		}
+		double[] temp1 = jacobianWorkingArray;
 		// Loop over the parameters
 		eps = Math.sqrt(Math.max(epsfcnLocal, epsmch));
 		for (j = 0; j < noOfParams; j++) {
@@ -1737,29 +1752,21 @@ public class minpackOptimizer implements IOptimizer {
 			x[j] = temp + h;
 			// nlls.fcn(noOfObservations, noOfParameters, x, workingArray,
 			// iflag);
-			workingArray = function.LMEvaluate(x);
+			function.LMEvaluate(x, workingArray);
 			if (iflag[0] < 0) {
 				return;
 			}
 
-			x[j] = temp;
-
-			temp = x[j];
-			// Determine a reasonable step size for differentiation.....
-			h = eps * Math.abs(temp);
-			if (h == 0.0)
-				h = eps;
-			//
 			x[j] = temp - h;
 			// nlls.fcn(noOfObservations, noOfParameters, x, temp1, iflag);
-			temp1 = function.LMEvaluate(x);
+			function.LMEvaluate(x, temp1);
 			if (iflag[0] < 0) {
 				return;
 			}
 
 			x[j] = temp;
 
-			// Forward difference differentiation
+			// Centred difference differentiation
 			for (i = 0; i < noOfObservationsLocal; i++) {
 				fjac[i][j] = (workingArray[i] - temp1[i]) / (2.0 * h);
 			}
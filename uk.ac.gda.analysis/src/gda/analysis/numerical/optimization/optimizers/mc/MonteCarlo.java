@@ -21,16 +21,26 @@ package gda.analysis.numerical.optimization.optimizers.mc;
 
 import gda.analysis.numerical.linefunction.IParameter;
 import gda.analysis.numerical.optimization.objectivefunction.AbstractObjectiveFunction;
+import gda.analysis.numerical.optimization.optimizers.ParallelEvaluator;
 
 import java.util.Random;
 
 /**
  * MonteCarlo Class
+ * <p>
+ * A single chain of steps cannot be parallelised, as each step depends on the last, but several independent chains
+ * can be run in parallel with {@link #Optimize(int, double, int)}. Chain {@code c} uses a random number generator
+ * seeded with {@code seed + c}, so with the same {@link #setRandomSeed(long) seed} the result does not depend on the
+ * number of threads.
  */
 public class MonteCarlo {
 
 	AbstractObjectiveFunction func = null;
 
+	private Long seed;
+
+	private int parallelism = 1;
+
 	/**
 	 * @param function
 	 */
@@ -40,25 +50,90 @@ public class MonteCarlo {
 
 	}
 
+	/**
+	 * Seed the random number generators so that optimizations can be repeated
+	 *
+	 * @param seed
+	 */
+	public void setRandomSeed(long seed) {
+		this.seed = seed;
+	}
+
+	/**
+	 * Set the maximum number of threads used to run chains. Chains only run in parallel if the function is
+	 * {@link AbstractObjectiveFunction#isThreadSafe() thread safe}.
+	 *
+	 * @param parallelism
+	 *            1 to run on the calling thread (the default), 0 for one thread per available processor
+	 */
+	public void setParallelism(int parallelism) {
+		this.parallelism = parallelism;
+	}
+
+	public int getParallelism() {
+		return parallelism;
+	}
+
 	/**
 	 * @param NumberOfSteps
 	 * @param T
 	 */
 	public void Optimize(int NumberOfSteps, double T) {
+		Optimize(NumberOfSteps, T, 1);
+	}
+
+	/**
+	 * Run independent chains from the current parameter values and keep the best result
+	 *
+	 * @param NumberOfSteps
+	 *            the number of steps of each chain
+	 * @param T
+	 * @param numberOfChains
+	 */
+	public void Optimize(int NumberOfSteps, double T, int numberOfChains) {
 
 		// get the parameters
 		IParameter[] params = func.getParameters();
 
-		double[] pvals = new double[params.length];
+		double[] start = new double[params.length];
 
-		for (int i = 0; i < pvals.length; i++) {
-			pvals[i] = params[i].getValue();
+		for (int i = 0; i < start.length; i++) {
+			start[i] = params[i].getValue();
 		}
 
-		// find out the first Value
-		double minval = func.evaluate(pvals);
+		final long baseSeed = seed != null ? seed : new Random().nextLong();
+		final double[][] results = new double[numberOfChains][];
+		final double[] values = new double[numberOfChains];
+		final ParallelEvaluator evaluator = new ParallelEvaluator(func, parallelism);
+		try {
+			evaluator.evaluate(numberOfChains, c -> {
+				double[] pvals = start.clone();
+				values[c] = runChain(params, pvals, NumberOfSteps, T, new Random(baseSeed + c));
+				results[c] = pvals;
+			});
+		} finally {
+			evaluator.shutdown();
+		}
 
-		Random rand = new Random();
+		int best = 0;
+		for (int c = 1; c < numberOfChains; c++) {
+			if (values[c] < values[best]) {
+				best = c;
+			}
+		}
+
+		// evaluate the best on this thread, to fix the values into the model
+		double minval = func.evaluate(results[best]);
+		System.out.println(minval);
+	}
+
+	/**
+	 * @return the value of the function at the final position of the chain, which is left in pvals
+	 */
+	private double runChain(IParameter[] params, double[] pvals, int NumberOfSteps, double T, Random rand) {
+
+		// find out the first Value
+		double minval = func.evaluateIndependently(pvals);
 
 		// now loop for the number of staps
 		for (int i = 0; i < NumberOfSteps; i++) {
@@ -73,7 +148,7 @@ public class MonteCarlo {
 			if (pvals[pos] < params[pos].getLowerLimit()) {
 				pvals[pos] = params[pos].getLowerLimit();
 			}
-			double testval = func.evaluate(pvals);
+			double testval = func.evaluateIndependently(pvals);
 			if (testval < minval) {
 				minval = testval;
 				// System.out.println(minval);
@@ -93,8 +168,7 @@ public class MonteCarlo {
 
 		}
 
-		minval = func.evaluate(pvals);
-		System.out.println(minval);
+		return minval;
 	}
 
 }
@@ -0,0 +1,454 @@
+/*-
+ * Copyright © 2019 Diamond Light Source Ltd.
+ *
+ * This file is part of GDA.
+ *
+ * GDA is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License version 3 as published by the Free
+ * Software Foundation.
+ *
+ * GDA is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with GDA. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package uk.ac.gda.analysis.hdf5;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ScheduledFuture;
+import java.util.function.LongSupplier;
+
+import org.eclipse.dawnsci.hdf5.HDF5Utils;
+import org.eclipse.dawnsci.hdf5.HDF5Utils.DatasetType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import gda.configuration.properties.LocalProperties;
+import hdf.hdf5lib.H5;
+import hdf.hdf5lib.HDF5Constants;
+import uk.ac.diamond.daq.concurrent.Async;
+
+/**
+ * Keeps HDF5 files open for reading between calls to {@link Hdf5Helper} so that slicing many frames from the same
+ * file does not pay for {@code H5Fopen} every time.
+ * <p>
+ * Handles are reference counted: a file stays open while any {@link Handle} for it is open and, once idle, until it
+ * has been idle for {@link #GDA_ANALYSIS_HDF5_HANDLE_IDLE_TIMEOUT} or is evicted as the least recently used of more
+ * than {@link #GDA_ANALYSIS_HDF5_HANDLE_POOL_SIZE} idle files, whichever comes first. A file whose modification time or length has changed since it was opened is reopened on the next acquire. The shape, type
+ * and chunking of datasets are cached per open file and discarded with it.
+ * <p>
+ * Only read-only handles are pooled. Methods which write must call {@link #evict(String)} first so that the file is
+ * not held open read-only while it is written, and so that cached metadata is not used afterwards.
+ */
+public class Hdf5FileHandlePool {
+
+	private static final Logger logger = LoggerFactory.getLogger(Hdf5FileHandlePool.class);
+
+	/** Property giving the number of idle files kept open. Default is 16; 0 closes each file as soon as it is released. */
+	public static final String GDA_ANALYSIS_HDF5_HANDLE_POOL_SIZE = "gda.analysis.hdf5.handlePoolSize";
+
+	private static final int DEFAULT_POOL_SIZE = 16;
+
+	/**
+	 * Property giving the time in milliseconds an idle file is kept open. Default is 10000; 0 or less keeps idle files
+	 * open until they are evicted by newer ones.
+	 */
+	public static final String GDA_ANALYSIS_HDF5_HANDLE_IDLE_TIMEOUT = "gda.analysis.hdf5.handleIdleTimeout";
+
+	private static final int DEFAULT_IDLE_TIMEOUT_MILLIS = 10000;
+
+	/**
+	 * Opens and closes files. Separated from the pool so that its bookkeeping can be tested without the native library.
+	 */
+	interface FileOpener {
+		long open(String fileName) throws Exception;
+
+		void close(long fileId) throws Exception;
+	}
+
+	private static final FileOpener HDF5_OPENER = new FileOpener() {
+		@Override
+		public long open(String fileName) throws Exception {
+			return HDF5Utils.H5Fopen(fileName, HDF5Constants.H5F_ACC_RDONLY, HDF5Constants.H5P_DEFAULT);
+		}
+
+		@Override
+		public void close(long fileId) throws Exception {
+			H5.H5Fclose(fileId);
+		}
+	};
+
+	private final int maxIdle;
+
+	private final long idleTimeoutNanos;
+
+	private final FileOpener opener;
+
+	/** Gives the time in nanoseconds, for timing idle files */
+	private final LongSupplier clock;
+
+	/** All open files, guarded by this */
+	private final Map<String, Entry> entries = new HashMap<>();
+
+	/** Open files with no handles, least recently released first. Guarded by this */
+	private final LinkedHashMap<String, Entry> idle = new LinkedHashMap<>();
+
+	/** Files removed from the pool while still in use, which are closed on release. Guarded by this */
+	private int retired;
+
+	/** The task which will close idle files as they time out, or null if none is scheduled. Guarded by this */
+	private ScheduledFuture<?> idleTimer;
+
+	private long opens;
+
+	private long hits;
+
+	public Hdf5FileHandlePool() {
+		this(LocalProperties.getAsInt(GDA_ANALYSIS_HDF5_HANDLE_POOL_SIZE, DEFAULT_POOL_SIZE),
+				LocalProperties.getAsInt(GDA_ANALYSIS_HDF5_HANDLE_IDLE_TIMEOUT, DEFAULT_IDLE_TIMEOUT_MILLIS), HDF5_OPENER,
+				System::nanoTime);
+	}
+
+	Hdf5FileHandlePool(int maxIdle, long idleTimeoutMillis, FileOpener opener, LongSupplier clock) {
+		this.maxIdle = Math.max(0, maxIdle);
+		this.idleTimeoutNanos = MILLISECONDS.toNanos(Math.max(0, idleTimeoutMillis));
+		this.opener = opener;
+		this.clock = clock;
+	}
+
+	/**
+	 * Get a read-only handle to a file, opening it if it is not already open
+	 *
+	 * @param fileName
+	 * @return the handle, which must be closed when the caller has finished with the file
+	 * @throws Exception
+	 *             if the file cannot be opened
+	 */
+	public synchronized Handle acquire(String fileName) throws Exception {
+		final String key = keyFor(fileName);
+		final File file = new File(key);
+		Entry entry = entries.get(key);
+		if (entry != null && entry.isStale(file)) {
+			logger.debug("{} has changed since it was opened", key);
+			remove(entry);
+			entry = null;
+		}
+		if (entry == null) {
+			final long fileId = opener.open(fileName);
+			if (fileId < 0) {
+				throw new IllegalArgumentException("Unable to open file `" + fileName + "`");
+			}
+			opens++;
+			entry = new Entry(key, fileId, file.lastModified(), file.length());
+			entries.put(key, entry);
+		} else {
+			hits++;
+			idle.remove(key);
+		}
+		entry.references++;
+		return new Handle(entry);
+	}
+
+	/**
+	 * Close the file, if it is open and not in use, and discard its cached metadata. If it is in use it is closed
+	 * when its last handle is closed and the next acquire opens it again.
+	 *
+	 * @param fileName
+	 */
+	public synchronized void evict(String fileName) {
+		final Entry entry = entries.get(keyFor(fileName));
+		if (entry != null) {
+			remove(entry);
+		}
+	}
+
+	/**
+	 * Close all idle files
+	 */
+	public synchronized void clear() {
+		for (Entry entry : idle.values().toArray(new Entry[0])) {
+			remove(entry);
+		}
+	}
+
+	/**
+	 * Close the files which have been idle for at least the idle timeout. This is called by a timer while there are
+	 * idle files.
+	 */
+	synchronized void closeTimedOutFiles() {
+		final long now = clock.getAsLong();
+		final Iterator<Entry> oldest = idle.values().iterator();
+		while (oldest.hasNext()) {
+			final Entry entry = oldest.next();
+			if (now - entry.idleSince < idleTimeoutNanos) {
+				break;
+			}
+			logger.debug("Closing {} after it was idle for {}ms", entry.key, NANOSECONDS.toMillis(now - entry.idleSince));
+			oldest.remove();
+			entries.remove(entry.key);
+			closeFile(entry);
+		}
+		scheduleIdleTimer();
+	}
+
+	private synchronized void idleTimerExpired() {
+		idleTimer = null;
+		closeTimedOutFiles();
+	}
+
+	/**
+	 * Schedule the timer to run when the file which has been idle longest times out, unless it is already scheduled
+	 */
+	private void scheduleIdleTimer() {
+		if (idleTimeoutNanos == 0 || idleTimer != null || idle.isEmpty()) {
+			return;
+		}
+		final long delay = idle.values().iterator().next().idleSince + idleTimeoutNanos - clock.getAsLong();
+		idleTimer = Async.schedule(this::idleTimerExpired, Math.max(0, delay), NANOSECONDS, "HDF5 file handle pool");
+	}
+
+	/**
+	 * @return the number of files currently open, in use or idle
+	 */
+	public synchronized int getNumberOfOpenFiles() {
+		return entries.size() + retired;
+	}
+
+	/**
+	 * @return the number of times a file has been opened by this pool
+	 */
+	public synchronized long getOpens() {
+		return opens;
+	}
+
+	/**
+	 * @return the number of acquires served by a file which was already open
+	 */
+	public synchronized long getHits() {
+		return hits;
+	}
+
+	private void remove(Entry entry) {
+		entries.remove(entry.key);
+		idle.remove(entry.key);
+		entry.evicted = true;
+		if (entry.references == 0) {
+			closeFile(entry);
+		} else {
+			retired++;
+		}
+	}
+
+	private synchronized void release(Entry entry) {
+		entry.references--;
+		if (entry.references > 0) {
+			return;
+		}
+		if (entry.evicted) {
+			retired--;
+			closeFile(entry);
+			return;
+		}
+		entry.idleSince = clock.getAsLong();
+		idle.put(entry.key, entry);
+		final Iterator<Entry> oldest = idle.values().iterator();
+		while (idle.size() > maxIdle) {
+			final Entry evicted = oldest.next();
+			oldest.remove();
+			entries.remove(evicted.key);
+			closeFile(evicted);
+		}
+		scheduleIdleTimer();
+	}
+
+	private void closeFile(Entry entry) {
+		for (DatasetInfo info : entry.datasets.values()) {
+			info.close();
+		}
+		entry.datasets.clear();
+		try {
+			opener.close(entry.fileId);
+		} catch (Exception e) {
+			logger.error("Error closing {}", entry.key, e);
+		}
+	}
+
+	private static String keyFor(String fileName) {
+		return new File(fileName).getAbsolutePath();
+	}
+
+	@Override
+	public synchronized String toString() {
+		return "Hdf5FileHandlePool [open=" + getNumberOfOpenFiles() + ", idle=" + idle.size() + ", opens=" + opens
+				+ ", hits=" + hits + "]";
+	}
+
+	private static class Entry {
+		private final String key;
+		private final long fileId;
+		private final long lastModified;
+		private final long length;
+		private final Map<String, DatasetInfo> datasets = new HashMap<>();
+		private int references;
+		private boolean evicted;
+		private long idleSince;
+
+		Entry(String key, long fileId, long lastModified, long length) {
+			this.key = key;
+			this.fileId = fileId;
+			this.lastModified = lastModified;
+			this.length = length;
+		}
+
+		boolean isStale(File file) {
+			return file.lastModified() != lastModified || file.length() != length;
+		}
+	}
+
+	/**
+	 * An open, read-only file. Closing the handle releases it back to the pool.
+	 */
+	public class Handle implements AutoCloseable {
+
+		private final Entry entry;
+
+		private boolean closed;
+
+		private Handle(Entry entry) {
+			this.entry = entry;
+		}
+
+		public long getFileId() {
+			return entry.fileId;
+		}
+
+		/**
+		 * Get the shape, type and chunking of a dataset, reading them from the file the first time they are asked for
+		 *
+		 * @param groupName
+		 * @param dataSetName
+		 * @return the dataset information, valid until this handle is closed
+		 * @throws Exception
+		 */
+		public DatasetInfo getDatasetInfo(String groupName, String dataSetName) throws Exception {
+			final String path = groupName + "/" + dataSetName;
+			synchronized (Hdf5FileHandlePool.this) {
+				final DatasetInfo info = entry.datasets.get(path);
+				if (info != null) {
+					return info;
+				}
+			}
+			final DatasetInfo info = DatasetInfo.read(entry.fileId, groupName, dataSetName);
+			synchronized (Hdf5FileHandlePool.this) {
+				final DatasetInfo existing = entry.datasets.putIfAbsent(path, info);
+				if (existing == null) {
+					return info;
+				}
+			}
+			info.close();
+			return getDatasetInfo(groupName, dataSetName);
+		}
+
+		@Override
+		public void close() {
+			if (!closed) {
+				closed = true;
+				release(entry);
+			}
+		}
+	}
+
+	/**
+	 * The shape, type and chunking of a dataset
+	 */
+	public static class DatasetInfo {
+
+		public final long[] dims;
+
+		public final long[] maxDims;
+
+		/** The chunk dimensions, or null if the dataset is not chunked */
+		public final long[] chunkDims;
+
+		public final DatasetType datasetType;
+
+		/** The native memory type of the dataset. It is closed when the file is closed. */
+		public final long nativeType;
+
+		DatasetInfo(long[] dims, long[] maxDims, long[] chunkDims, DatasetType datasetType, long nativeType) {
+			this.dims = dims;
+			this.maxDims = maxDims;
+			this.chunkDims = chunkDims;
+			this.datasetType = datasetType;
+			this.nativeType = nativeType;
+		}
+
+		static DatasetInfo read(long fileId, String groupName, String dataSetName) throws Exception {
+			final long groupId = H5.H5Gopen(fileId, groupName, HDF5Constants.H5P_DEFAULT);
+			if (groupId <= 0) {
+				throw new IllegalArgumentException("Unable to open group " + groupName);
+			}
+			try {
+				final long datasetId = H5.H5Dopen(groupId, dataSetName, HDF5Constants.H5P_DEFAULT);
+				if (datasetId <= 0)
+					throw new IllegalArgumentException("Unable to open dataSetName " + dataSetName);
+				try {
+					final long dataspaceId = H5.H5Dget_space(datasetId);
+					if (dataspaceId <= 0)
+						throw new IllegalArgumentException("Unable to open dataspace ");
+					final int rank;
+					final long[] dims;
+					final long[] maxDims;
+					try {
+						rank = H5.H5Sget_simple_extent_ndims(dataspaceId);
+						dims = new long[rank];
+						maxDims = new long[rank];
+						H5.H5Sget_simple_extent_dims(dataspaceId, dims, maxDims);
+					} finally {
+						H5.H5Sclose(dataspaceId);
+					}
+					long[] chunkDims = null;
+					final long plistId = H5.H5Dget_create_plist(datasetId);
+					try {
+						if (H5.H5Pget_layout(plistId) == HDF5Constants.H5D_CHUNKED) {
+							chunkDims = new long[rank];
+							H5.H5Pget_chunk(plistId, rank, chunkDims);
+						}
+					} finally {
+						H5.H5Pclose(plistId);
+					}
+					final long typeId = H5.H5Dget_type(datasetId);
+					try {
+						final long nativeType = H5.H5Tget_native_type(typeId);
+						return new DatasetInfo(dims, maxDims, chunkDims, HDF5Utils.getDatasetType(typeId, nativeType), nativeType);
+					} finally {
+						H5.H5Tclose(typeId);
+					}
+				} finally {
+					H5.H5Dclose(datasetId);
+				}
+			} finally {
+				H5.H5Gclose(groupId);
+			}
+		}
+
+		void close() {
+			try {
+				H5.H5Tclose(nativeType);
+			} catch (Exception e) {
+				logger.debug("Error closing native type {}", nativeType, e);
+			}
+		}
+	}
+}
@@ -20,6 +20,7 @@ package uk.ac.gda.analysis.hdf5;
 
 import java.io.File;
 import java.nio.charset.Charset;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Vector;
@@ -48,6 +49,15 @@ public class Hdf5Helper {
 		return INSTANCE;
 	}
 
+	private final Hdf5FileHandlePool handlePool = new Hdf5FileHandlePool();
+
+	/**
+	 * @return the pool of files kept open for reading between calls
+	 */
+	public Hdf5FileHandlePool getHandlePool() {
+		return handlePool;
+	}
+
 	public enum TYPE {
 		GROUP, DATASET;
 	}
@@ -115,6 +125,7 @@ public class Hdf5Helper {
 				throw new IllegalArgumentException("offset == null || offset.length != extendible.length");
 		}
 
+		handlePool.evict(fileName);
 		// Create a new file using default properties.
 		try {
 			if ((new File(fileName)).exists()) {
@@ -249,6 +260,7 @@ public class Hdf5Helper {
 		boolean[] isDataSet = new boolean[groupIds.length];
 		Arrays.fill(groupIds, -1);
 
+		handlePool.evict(fileName);
 		// Create a new file using default properties.
 		try {
 			if ((new File(fileName)).exists()) {
@@ -310,6 +322,12 @@ public class Hdf5Helper {
 	public Hdf5HelperData readDataSetAll(String fileName, String location, String dataSetName, boolean getData)
 			throws Exception {
 		try{
+			if (!getData) {
+				try (Hdf5FileHandlePool.Handle handle = handlePool.acquire(fileName)) {
+					Hdf5FileHandlePool.DatasetInfo info = handle.getDatasetInfo(location, dataSetName);
+					return new Hdf5HelperData(info.dims.clone(), null, info.datasetType, H5.H5Tget_native_type(info.nativeType));
+				}
+			}
 			return readDataSet(fileName, location, dataSetName, null, null, null, null, null, null, 0, null, getData);
 		}
 		catch(Exception e){
@@ -327,12 +345,8 @@ public class Hdf5Helper {
 	 */
 	public String [] getListOfDatasets(String fileName, String location) throws Exception {
 		Vector<String> names = new Vector<String>();
-		long fileId = -1;
-		try {
-			fileId = HDF5Utils.H5Fopen(fileName, HDF5Constants.H5F_ACC_RDONLY, HDF5Constants.H5P_DEFAULT);
-			if (fileId < 0) {
-				throw new Exception("Unable to open file `" + fileName + "`");
-			}
+		try (Hdf5FileHandlePool.Handle handle = handlePool.acquire(fileName)) {
+			long fileId = handle.getFileId();
 			long groupId = H5.H5Gopen(fileId, location, HDF5Constants.H5P_DEFAULT);
 			if (groupId <= 0) {
 				throw new Exception("Unable to open location " + location);
@@ -360,9 +374,6 @@ public class Hdf5Helper {
 			} finally {
 				H5.H5Gclose(groupId);
 			}
-		} finally {
-			if (fileId >= 0)
-				H5.H5Fclose(fileId);
 		}
 		return names.toArray(new String[0]);
 	}
@@ -395,22 +406,106 @@ public class Hdf5Helper {
 
 	public Hdf5HelperData readDataSet(String fileName, String groupName, String dataSetName, long[] sstart,
 			long[] sstride, long[] dsize) throws Exception {
-		Hdf5HelperData data2 = Hdf5Helper.getInstance().readDataSetAll(fileName, groupName, dataSetName, false);
-		long[] dims = data2.dims;
+		try (Hdf5FileHandlePool.Handle handle = handlePool.acquire(fileName)) {
+			Hdf5FileHandlePool.DatasetInfo info = handle.getDatasetInfo(groupName, dataSetName);
+			checkSlice(info, sstart, sstride, dsize);
+			long length = lenFromDims(dsize);
+			long[] data_dims = new long[] { length };
+			Object data = allocateArray(info.datasetType, length);
+			return readDataSet(handle.getFileId(), groupName, dataSetName, sstart, sstride, dsize, null, null,
+					data_dims, info.nativeType, data, true);
+		}
+	}
+
+	/**
+	 * Read many hyperslabs of the same size from a dataset, opening the file, group and dataset only once.
+	 *
+	 * @param fileName
+	 * @param groupName
+	 * @param dataSetName
+	 * @param sstarts
+	 *            the start of each hyperslab
+	 * @param sstride
+	 *            source steps, common to all hyperslabs
+	 * @param dsize
+	 *            size of each hyperslab
+	 * @return the data of each hyperslab, in the order of sstarts
+	 * @throws Exception
+	 */
+	public List<Hdf5HelperData> readDataSetSlices(String fileName, String groupName, String dataSetName,
+			List<long[]> sstarts, long[] sstride, long[] dsize) throws Exception {
+		List<Hdf5HelperData> slices = new ArrayList<>(sstarts.size());
+		try (Hdf5FileHandlePool.Handle handle = handlePool.acquire(fileName)) {
+			Hdf5FileHandlePool.DatasetInfo info = handle.getDatasetInfo(groupName, dataSetName);
+			for (long[] sstart : sstarts) {
+				checkSlice(info, sstart, sstride, dsize);
+			}
+			long length = lenFromDims(dsize);
+			long[] data_dims = new long[] { length };
+			// one copy of the native type is shared by all the slices and belongs to the caller once they are returned
+			long nativeType = H5.H5Tget_native_type(info.nativeType);
+			boolean ownedBySlices = false;
+			try {
+				long groupId = H5.H5Gopen(handle.getFileId(), groupName, HDF5Constants.H5P_DEFAULT);
+				if (groupId <= 0) {
+					throw new IllegalArgumentException("Unable to open group " + groupName);
+				}
+				try {
+					long datasetId = H5.H5Dopen(groupId, dataSetName, HDF5Constants.H5P_DEFAULT);
+					if (datasetId <= 0)
+						throw new IllegalArgumentException("Unable to open dataSetName " + dataSetName);
+					try {
+						long dataspaceId = H5.H5Dget_space(datasetId);
+						if (dataspaceId <= 0)
+							throw new IllegalArgumentException("Unable to open dataspace ");
+						try {
+							long mem_dataspace_id = H5.H5Screate_simple(data_dims.length, data_dims, null);
+							try {
+								int status = H5.H5Sselect_all(mem_dataspace_id);
+								if (status < 0)
+									throw new Exception("Error calling H5Sselect_all:" + status);
+								for (long[] sstart : sstarts) {
+									status = H5.H5Sselect_hyperslab(dataspaceId, HDF5Constants.H5S_SELECT_SET, sstart,
+											sstride, dsize, null);
+									if (status < 0)
+										throw new Exception("Error calling H5Sselect_hyperslab:" + status);
+									Object data = allocateArray(info.datasetType, length);
+									status = H5.H5Dread(datasetId, info.nativeType, mem_dataspace_id, dataspaceId,
+											HDF5Constants.H5P_DEFAULT, data);
+									if (status < 0)
+										throw new Exception("Error calling H5Dread:" + status);
+									slices.add(new Hdf5HelperData(dsize.clone(), data, info.datasetType, nativeType));
+								}
+							} finally {
+								H5.H5Sclose(mem_dataspace_id);
+							}
+						} finally {
+							H5.H5Sclose(dataspaceId);
+						}
+					} finally {
+						H5.H5Dclose(datasetId);
+					}
+				} finally {
+					H5.H5Gclose(groupId);
+				}
+				ownedBySlices = !slices.isEmpty();
+			} finally {
+				if (!ownedBySlices) {
+					H5.H5Tclose(nativeType);
+				}
+			}
+		}
+		return slices;
+	}
+
+	private static void checkSlice(Hdf5FileHandlePool.DatasetInfo info, long[] sstart, long[] sstride, long[] dsize) {
+		long[] dims = info.dims;
 		if (sstart.length != dims.length)
 			throw new IllegalArgumentException("sstart.length != dims.length");
 		if (sstride.length != dims.length)
 			throw new IllegalArgumentException("sstride.length != dims.length");
 		if (dsize.length != dims.length)
 			throw new IllegalArgumentException("dsize.length != dims.length");
-		long[] block = null;
-		long length = lenFromDims(dsize);
-		long[] data_maxdims = null;
-		long[] data_dims = new long[] { length };
-		long mem_type_id = data2.native_type;
-		Object data = allocateArray(data2.datasetType, length);
-		return readDataSet(fileName, groupName, dataSetName, sstart, sstride, dsize, block, data_maxdims, data_dims,
-				mem_type_id, data, true);
 	}
 
 	public Hdf5HelperData readDataSet(String fileName, String groupName, String dataSetName, long[] sstart, // source
@@ -420,99 +515,98 @@ public class Hdf5Helper {
 			long[] block, // = null;
 			long[] data_maxdims, // = null
 			long[] data_dims, long native_mem_type, Object data, boolean getData) throws Exception {
-		long fileId = -1;
+		try (Hdf5FileHandlePool.Handle handle = handlePool.acquire(fileName)) {
+			return readDataSet(handle.getFileId(), groupName, dataSetName, sstart, sstride, dsize, block,
+					data_maxdims, data_dims, native_mem_type, data, getData);
+		}
+	}
+
+	private Hdf5HelperData readDataSet(long fileId, String groupName, String dataSetName, long[] sstart,
+			long[] sstride, long[] dsize, long[] block, long[] data_maxdims, long[] data_dims, long native_mem_type,
+			Object data, boolean getData) throws Exception {
+		long groupId = H5.H5Gopen(fileId, groupName, HDF5Constants.H5P_DEFAULT);
+		if (groupId <= 0) {
+			throw new IllegalArgumentException("Unable to open group " + groupName);
+		}
 		try {
-			fileId = HDF5Utils.H5Fopen(fileName, HDF5Constants.H5F_ACC_RDONLY, HDF5Constants.H5P_DEFAULT);
-			if (fileId < 0) {
-				throw new IllegalArgumentException("Unable to open file `" + fileName + "`");
-			}
-			long groupId = H5.H5Gopen(fileId, groupName, HDF5Constants.H5P_DEFAULT);
-			if (groupId <= 0) {
-				throw new IllegalArgumentException("Unable to open group " + groupName);
-			}
+			long datasetId = H5.H5Dopen(groupId, dataSetName, HDF5Constants.H5P_DEFAULT);
+			if (datasetId <= 0)
+				throw new IllegalArgumentException("Unable to open dataSetName " + dataSetName);
 			try {
-				long datasetId = H5.H5Dopen(groupId, dataSetName, HDF5Constants.H5P_DEFAULT);
-				if (datasetId <= 0)
-					throw new IllegalArgumentException("Unable to open dataSetName " + dataSetName);
+				long dataspaceId = H5.H5Dget_space(datasetId);
+				if (dataspaceId <= 0)
+					throw new IllegalArgumentException("Unable to open dataspace ");
 				try {
-					long dataspaceId = H5.H5Dget_space(datasetId);
-					if (dataspaceId <= 0)
-						throw new IllegalArgumentException("Unable to open dataspace ");
-					try {
-						long xfer_plist_id = HDF5Constants.H5P_DEFAULT;
+					long xfer_plist_id = HDF5Constants.H5P_DEFAULT;
 
-						if (sstart != null) {
-							if (data == null) {
-								data = AllocateMemory(native_mem_type, data_dims);
-							}
-							/*
-							 * Define hyperslab in the dataset.
-							 */
-
-							int status = H5.H5Sselect_hyperslab(dataspaceId, HDF5Constants.H5S_SELECT_SET, sstart,
-									sstride, dsize, block);
-							if (status < 0)
-								throw new Exception("Error calling H5Sselect_hyperslab:" + status);
-
-							/*
-							 * Read data from hyperslab in the file into the hyperslab in memory and display.
-							 */
-							// status ok if not -1
-							/*
-							 * Define the memory dataspace.
-							 */
-
-							long mem_dataspace_id = H5.H5Screate_simple(data_dims.length, data_dims, data_maxdims);
-							status = H5.H5Sselect_all(mem_dataspace_id);
-							if (status < 0)
-								throw new Exception("Error calling H5Sselect_all:" + status);
-
-							long native_type = H5.H5Tget_native_type(native_mem_type);
-							DatasetType dataset_type = HDF5Utils.getDatasetType(native_mem_type, native_type);
-							status = H5.H5Dread(datasetId, native_mem_type, mem_dataspace_id, dataspaceId,
-									xfer_plist_id, data);
-							if (status < 0)
-								throw new Exception("Error calling H5Dread:" + status);
-							return new Hdf5HelperData(dsize, data, dataset_type, native_type);
-						}
-						int rank = H5.H5Sget_simple_extent_ndims(dataspaceId);
-						long[] dims = new long[rank];
-						H5.H5Sget_simple_extent_dims(dataspaceId, dims, null);
-						int len = 1;
-						for (int i = 0; i < dims.length; i++) {
-							len *= dims[i];
+					if (sstart != null) {
+						if (data == null) {
+							data = AllocateMemory(native_mem_type, data_dims);
 						}
+						/*
+						 * Define hyperslab in the dataset.
+						 */
+
+						int status = H5.H5Sselect_hyperslab(dataspaceId, HDF5Constants.H5S_SELECT_SET, sstart,
+								sstride, dsize, block);
+						if (status < 0)
+							throw new Exception("Error calling H5Sselect_hyperslab:" + status);
+
+						/*
+						 * Read data from hyperslab in the file into the hyperslab in memory and display.
+						 */
+						// status ok if not -1
+						/*
+						 * Define the memory dataspace.
+						 */
+
+						long mem_dataspace_id = H5.H5Screate_simple(data_dims.length, data_dims, data_maxdims);
+						status = H5.H5Sselect_all(mem_dataspace_id);
+						if (status < 0)
+							throw new Exception("Error calling H5Sselect_all:" + status);
+
+						long native_type = H5.H5Tget_native_type(native_mem_type);
+						DatasetType dataset_type = HDF5Utils.getDatasetType(native_mem_type, native_type);
+						status = H5.H5Dread(datasetId, native_mem_type, mem_dataspace_id, dataspaceId,
+								xfer_plist_id, data);
+						if (status < 0)
+							throw new Exception("Error calling H5Dread:" + status);
+						return new Hdf5HelperData(dsize, data, dataset_type, native_type);
+					}
+					int rank = H5.H5Sget_simple_extent_ndims(dataspaceId);
+					long[] dims = new long[rank];
+					H5.H5Sget_simple_extent_dims(dataspaceId, dims, null);
+					int len = 1;
+					for (int i = 0; i < dims.length; i++) {
+						len *= dims[i];
+					}
 
-						long mem_type_id = H5.H5Dget_type(datasetId);// todo ensure it is closed in a finally block
-						try {
-							long native_type = H5.H5Tget_native_type(mem_type_id);
-							DatasetType datasetType = HDF5Utils.getDatasetType(mem_type_id, native_type);
-							if (data != null || getData) {
-								if (data == null) {
-									data = allocateArray(datasetType, len);
-								}
-								H5.H5Dread(datasetId, mem_type_id, HDF5Constants.H5S_ALL, HDF5Constants.H5S_ALL,
-										HDF5Constants.H5P_DEFAULT, data);
-
+					long mem_type_id = H5.H5Dget_type(datasetId);// todo ensure it is closed in a finally block
+					try {
+						long native_type = H5.H5Tget_native_type(mem_type_id);
+						DatasetType datasetType = HDF5Utils.getDatasetType(mem_type_id, native_type);
+						if (data != null || getData) {
+							if (data == null) {
+								data = allocateArray(datasetType, len);
 							}
-							return new Hdf5HelperData(dims, data, datasetType, native_type);
-						} finally {
-							if (mem_type_id > 0)
-								H5.H5Tclose(mem_type_id);
-						}
+							H5.H5Dread(datasetId, mem_type_id, HDF5Constants.H5S_ALL, HDF5Constants.H5S_ALL,
+									HDF5Constants.H5P_DEFAULT, data);
 
+						}
+						return new Hdf5HelperData(dims, data, datasetType, native_type);
 					} finally {
-						H5.H5Sclose(dataspaceId);
+						if (mem_type_id > 0)
+							H5.H5Tclose(mem_type_id);
 					}
+
 				} finally {
-					H5.H5Dclose(datasetId);
+					H5.H5Sclose(dataspaceId);
 				}
 			} finally {
-				H5.H5Gclose(groupId);
+				H5.H5Dclose(datasetId);
 			}
 		} finally {
-			if (fileId >= 0)
-				H5.H5Fclose(fileId);
+			H5.H5Gclose(groupId);
 		}
 	}
 
@@ -556,11 +650,10 @@ public class Hdf5Helper {
 		long filetypeId = -1;
 		long dataspaceId = -1;
 		long memtype_id = -1;
+		Hdf5FileHandlePool.Handle handle = null;
 		try {
-			fileId = HDF5Utils.H5Fopen(fileName, HDF5Constants.H5F_ACC_RDONLY, HDF5Constants.H5P_DEFAULT);
-			if (fileId < 0) {
-				throw new IllegalArgumentException("Unable to open file " + fileName);
-			}
+			handle = handlePool.acquire(fileName);
+			fileId = handle.getFileId();
 			try {
 				if (TYPE.GROUP.equals(attribHolder)) {
 					attribHolderId = H5.H5Gopen(fileId, attributeHolderName, HDF5Constants.H5P_DEFAULT);
@@ -633,8 +726,8 @@ public class Hdf5Helper {
 
 			if (memtype_id >= 0)
 				H5.H5Tclose(memtype_id);
-			if (fileId >= 0)
-				H5.H5Fclose(fileId);
+			if (handle != null)
+				handle.close();
 		}
 	}
 
@@ -660,11 +753,10 @@ public class Hdf5Helper {
 		long filetypeId = -1;
 		long dataspaceId = -1;
 		long memtype_id = -1;
+		Hdf5FileHandlePool.Handle handle = null;
 		try {
-			fileId = HDF5Utils.H5Fopen(fileName, HDF5Constants.H5F_ACC_RDONLY, HDF5Constants.H5P_DEFAULT);
-			if (fileId < 0) {
-				throw new IllegalArgumentException("Unable to open file " + fileName);
-			}
+			handle = handlePool.acquire(fileName);
+			fileId = handle.getFileId();
 			try {
 				if (TYPE.GROUP.equals(attribHolder)) {
 					attribHolderId = H5.H5Gopen(fileId, attributeHolderName, HDF5Constants.H5P_DEFAULT);
@@ -740,8 +832,8 @@ public class Hdf5Helper {
 
 			if (memtype_id >= 0)
 				H5.H5Tclose(memtype_id);
-			if (fileId >= 0)
-				H5.H5Fclose(fileId);
+			if (handle != null)
+				handle.close();
 		}
 
 		return result;
@@ -787,6 +879,7 @@ public class Hdf5Helper {
 		long dataspaceId = -1;
 		long memtype_id = -1;
 		String attributeHolderName = location.getLocationForOpen();
+		handlePool.evict(fileName);
 		try {
 			fileId = HDF5Utils.H5Fopen(fileName, HDF5Constants.H5F_ACC_RDWR, HDF5Constants.H5P_DEFAULT);
 			if (fileId < 0) {
@@ -20,11 +20,17 @@ package gda.factory;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 
 import org.junit.After;
@@ -57,6 +63,74 @@ public class FinderTest {
 		Finder.getInstance().findSingleton(SingletonService.class);
 	}
 
+	@SuppressWarnings("deprecation") // listAllObjects
+	@Test
+	public void findsObjectsOfIndexedFactoryByNameAndType() {
+		IndexedFactory factory = new IndexedFactory(true);
+		SingletonService service = new SingletonService("service");
+		SomeOtherFindable other = new SomeOtherFindable("other");
+		factory.addFindable(service);
+		factory.addFindable(other);
+		factory.addAlias("alias", other);
+		Finder.getInstance().addFactory(factory);
+
+		assertSame(service, Finder.getInstance().find("service"));
+		assertSame(other, Finder.getInstance().findLocal("alias"));
+		assertNull(Finder.getInstance().findNoWarn("missing"));
+
+		assertEquals(1, Finder.getInstance().listFindablesOfType(SingletonService.class).size());
+		Map<String, FindableBase> findables = Finder.getInstance().getFindablesOfType(FindableBase.class);
+		assertEquals(3, findables.size());
+		assertSame(other, findables.get("alias"));
+		assertEquals(3, Finder.getInstance().getLocalFindablesOfType(Findable.class).size());
+
+		assertEquals(Arrays.asList(service, other), Finder.getInstance().listAllObjects("Findable"));
+		assertEquals(Arrays.asList(service), Finder.getInstance().listAllObjects("FinderTest$SingletonService"));
+		assertEquals(Arrays.asList(service, other), Finder.getInstance().listAllObjects(FindableBase.class.getName()));
+		assertTrue(Finder.getInstance().listAllObjects("Runnable").isEmpty());
+	}
+
+	@Test
+	public void earlierFactoryWinsWhenFindingByName() throws FactoryException {
+		SomeOtherFindable first = new SomeOtherFindable("duplicate");
+		SomeOtherFindable second = new SomeOtherFindable("duplicate");
+		Factory mockFactory = mock(Factory.class);
+		when(mockFactory.getFindable("duplicate")).thenReturn(first);
+		IndexedFactory indexed = new IndexedFactory(true);
+		indexed.addFindable(second);
+		Finder.getInstance().addFactory(mockFactory);
+		Finder.getInstance().addFactory(indexed);
+
+		assertSame(first, Finder.getInstance().find("duplicate"));
+	}
+
+	@Test
+	public void remoteIndexedFactoryIsNotLocal() {
+		IndexedFactory local = new IndexedFactory(true);
+		local.addFindable(new SomeOtherFindable("local"));
+		IndexedFactory remote = new IndexedFactory(false);
+		remote.addFindable(new SomeOtherFindable("remote"));
+		Finder.getInstance().addFactory(local);
+		Finder.getInstance().addFactory(remote);
+
+		assertNotNull(Finder.getInstance().find("remote"));
+		assertNull(Finder.getInstance().findLocalNoWarn("remote"));
+		assertEquals(1, Finder.getInstance().listLocalFindablesOfType(SomeOtherFindable.class).size());
+		assertEquals(2, Finder.getInstance().listFindablesOfType(SomeOtherFindable.class).size());
+	}
+
+	@Test
+	public void changesToIndexedFactoryAreSeenAfterInvalidatingIndex() {
+		IndexedFactory factory = new IndexedFactory(true);
+		Finder.getInstance().addFactory(factory);
+		assertNull(Finder.getInstance().findNoWarn("late"));
+
+		factory.addFindable(new SomeOtherFindable("late"));
+		assertNull(Finder.getInstance().findNoWarn("late"));
+		Finder.getInstance().invalidateIndex();
+		assertNotNull(Finder.getInstance().findNoWarn("late"));
+	}
+
 	private void prepareFactoryForSingletonTests() {
 		SingletonService singleton = new SingletonService("singleton");
 		Findable notSingleton1 = new SomeOtherFindable("notASingleton1");
@@ -73,6 +147,57 @@ public class FinderTest {
 		Finder.getInstance().addFactory(testFactory);
 	}
 
+	private static class IndexedFactory extends ConfigurableBase implements IndexableFactory {
+
+		private final Map<String, Findable> findables = new LinkedHashMap<>();
+
+		private final boolean local;
+
+		IndexedFactory(boolean local) {
+			this.local = local;
+		}
+
+		@Override
+		public void addFindable(Findable findable) {
+			findables.put(findable.getName(), findable);
+		}
+
+		void addAlias(String alias, Findable findable) {
+			findables.put(alias, findable);
+		}
+
+		@Override
+		public List<Findable> getFindables() {
+			return new ArrayList<>(findables.values());
+		}
+
+		@Override
+		public List<String> getFindableNames() {
+			return new ArrayList<>(findables.keySet());
+		}
+
+		@SuppressWarnings("unchecked")
+		@Override
+		public <T extends Findable> T getFindable(String name) {
+			return (T) findables.get(name);
+		}
+
+		@Override
+		public <T extends Findable> Map<String, T> getFindablesOfType(Class<T> clazz) {
+			throw new UnsupportedOperationException("The Finder should use its index");
+		}
+
+		@Override
+		public boolean containsExportableObjects() {
+			return false;
+		}
+
+		@Override
+		public boolean isLocal() {
+			return local;
+		}
+	}
+
 	private class SingletonService extends FindableBase {
 		public SingletonService(String name) {
 			setName(name);
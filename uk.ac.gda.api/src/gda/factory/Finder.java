@@ -20,7 +20,9 @@
 package gda.factory;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -29,6 +31,8 @@ import java.util.concurrent.CopyOnWriteArraySet;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import gda.factory.FinderIndex.Source;
+
 /**
  * Finder, a singleton class, allows objects to be retrieved from local store, a name service or created by a factory.
  * <p>
@@ -45,6 +49,9 @@ import org.slf4j.LoggerFactory;
  * }
  * </code>
  * </pre>
+ * <p>
+ * The findables of {@link IndexableFactory}s are indexed by name and type when first looked up after a factory is
+ * added, so lookups do not depend on the number of objects. Other factories are asked on every lookup.
  */
 public enum Finder {
 	INSTANCE;
@@ -53,6 +60,9 @@ public enum Finder {
 
 	private final Set<Factory> factories = new CopyOnWriteArraySet<>();
 
+	/** Built when first needed after the factories change */
+	private volatile FinderIndex index;
+
 	/**
 	 * Getter to construct and/or return single instance of the finder.
 	 * <p>
@@ -131,15 +141,16 @@ public enum Finder {
 	 *            True to log a warning message in the case of a FactoryException
 	 * @return the findable object or null if it cannot be found
 	 */
+	@SuppressWarnings("unchecked")
 	private <T extends Findable> T findObjectByName(String name, boolean local, boolean warn) {
 		T findable = null;
-		for (Factory factory : factories) {
-			if (local && !factory.isLocal()) {
+		for (Source source : getSources()) {
+			if (local && !source.isLocal()) {
 				continue;
 			}
 			try {
-				if ((findable = factory.getFindable(name)) != null) {
-					logger.trace("Found '{}' using factory '{}' (local={})", name, factory, local);
+				if ((findable = (T) source.getFindable(name)) != null) {
+					logger.trace("Found '{}' using factory '{}' (local={})", name, source, local);
 					break;
 				}
 			} catch (FactoryException e) {
@@ -163,14 +174,40 @@ public enum Finder {
 	 */
 	public void addFactory(Factory factory) {
 		factories.add(factory);
+		invalidateIndex();
 		logger.debug("Added factory '{}' now have {} factories", factory, factories.size());
 	}
 
 	public void removeAllFactories(){
 		factories.clear();
+		invalidateIndex();
 		logger.debug("Cleared factories");
 	}
 
+	/**
+	 * Discard the index of the {@link IndexableFactory}s so that it is rebuilt on the next lookup. This must be called
+	 * if the findables of such a factory change after it has been added, e.g. when objects are reconfigured.
+	 */
+	public synchronized void invalidateIndex() {
+		index = null;
+	}
+
+	private List<Source> getSources() {
+		FinderIndex current = index;
+		if (current == null) {
+			synchronized (this) {
+				current = index;
+				if (current == null) {
+					final long start = System.nanoTime();
+					current = new FinderIndex(factories);
+					index = current;
+					logger.debug("Indexed {} factories in {} ms", factories.size(), (System.nanoTime() - start) / 1_000_000);
+				}
+			}
+		}
+		return current.getSources();
+	}
+
 
 	/**
 	 * List all the interfaces available on the Finder. This method is aimed at users of the scripting environment for
@@ -266,79 +303,20 @@ public enum Finder {
 		}
 
 		List<Findable> objectRefs = new ArrayList<>();
-		// loop through all factories
-		for (Factory factory : factories) {
-
-			if (localObjectsOnly && !factory.isLocal()){
+		Set<Findable> found = Collections.newSetFromMap(new IdentityHashMap<>());
+		for (Source source : getSources()) {
+			if (localObjectsOnly && !source.isLocal()) {
 				continue;
 			}
-
-			// loop through all objects in that factory
-			for (Findable findable : factory.getFindables()) {
-
-				// for this findable, check its class and interfaces to see if they match the reqested interface
-				if (classOrInterfacesMatchesString(findable.getClass(), interfaceName)
-						&& !objectRefs.contains(findable)) {
+			for (Findable findable : source.getFindablesOfTypeName(interfaceName)) {
+				if (found.add(findable)) {
 					objectRefs.add(findable);
 				}
-				// else loop over superclasses up the heirachy until java.lang.Object reached, testing each in turn
-				else {
-					Class<?> superclass = findable.getClass().getSuperclass();
-					boolean found = false;
-
-					while (!found && superclass != null) {
-						found = classOrInterfacesMatchesString(superclass, interfaceName);
-						superclass = superclass.getSuperclass();
-					}
-
-					if (found) {
-						objectRefs.add(findable);
-					}
-				}
-
 			}
 		}
 		return objectRefs;
 	}
 
-	/**
-	 * Tests the given class to see if its name, or the name of any interface it uses, matches the given interface name.
-	 *
-	 * @param classToTest
-	 * @param interfaceName
-	 * @return true if the same else false
-	 */
-	private boolean classOrInterfacesMatchesString(Class<?> classToTest, String interfaceName) {
-		// first check the actual class
-		if (classNameMatchesString(classToTest, interfaceName)) {
-			return true;
-		}
-
-		// then loop through all the interfaces that object uses
-		for (Class<?> objInterface : classToTest.getInterfaces()) {
-			if (classOrInterfacesMatchesString(objInterface, interfaceName)) {
-				return true;
-			}
-		}
-
-		// if get here then nothing found
-		return false;
-	}
-
-	/**
-	 * Tests if the given Class has a name which matches the given interface name. This works if the interface name is
-	 * either fully resolved or not.
-	 *
-	 * @param theClass
-	 * @param interfaceName
-	 * @return true if the same else false
-	 */
-	private boolean classNameMatchesString(Class<?> theClass, String interfaceName) {
-		String className = theClass.getName();
-		String shortName = className.substring(className.lastIndexOf('.') + 1);
-		return className.compareTo(interfaceName) == 0 || shortName.compareTo(interfaceName) == 0;
-	}
-
 	/**
 	 * Returns an array of all the objects in this finder's factories as defined by the XML.
 	 *
@@ -346,8 +324,8 @@ public enum Finder {
 	 */
 	private List<Findable> listAllObjects() {
 		List<Findable> allFindables = new ArrayList<>();
-		for (Factory factory : factories) {
-			allFindables.addAll(factory.getFindables());
+		for (Source source : getSources()) {
+			allFindables.addAll(source.getFindables());
 		}
 		return allFindables;
 	}
@@ -385,11 +363,11 @@ public enum Finder {
 	 */
 	private <T extends Findable> Map<String, T> getFindablesOfType(Class<T> clazz, boolean local) {
 		Map<String, T> findables = new HashMap<>();
-		for (Factory factory : factories) {
-			if (local && !factory.isLocal()) {
+		for (Source source : getSources()) {
+			if (local && !source.isLocal()) {
 				continue;
 			}
-			findables.putAll(factory.getFindablesOfType(clazz));
+			findables.putAll(source.getFindablesOfType(clazz));
 		}
 		return findables;
 	}
@@ -0,0 +1,245 @@
+/*-
+ * Copyright © 2019 Diamond Light Source Ltd.
+ *
+ * This file is part of GDA.
+ *
+ * GDA is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License version 3 as published by the Free
+ * Software Foundation.
+ *
+ * GDA is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with GDA. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package gda.factory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A snapshot of the factories known to the {@link Finder}, in the order they are searched.
+ * <p>
+ * Consecutive {@link IndexableFactory}s with the same locality are merged into one source whose findables are indexed
+ * by name, by every class and interface they are assignable to, and by the full and simple names of those types.
+ * Other factories are wrapped so that they are asked on each lookup, as they always have been.
+ */
+final class FinderIndex {
+
+	/**
+	 * Somewhere to look for findables
+	 */
+	interface Source {
+
+		boolean isLocal();
+
+		Findable getFindable(String name) throws FactoryException;
+
+		<T extends Findable> Map<String, T> getFindablesOfType(Class<T> clazz);
+
+		List<Findable> getFindables();
+
+		/**
+		 * @param typeName
+		 *            the full or simple name of a class or interface
+		 * @return the findables which are instances of the named type
+		 */
+		List<Findable> getFindablesOfTypeName(String typeName);
+	}
+
+	private final List<Source> sources;
+
+	FinderIndex(Collection<Factory> factories) {
+		final List<Source> newSources = new ArrayList<>();
+		final List<IndexableFactory> group = new ArrayList<>();
+		for (Factory factory : factories) {
+			if (factory instanceof IndexableFactory) {
+				if (!group.isEmpty() && group.get(0).isLocal() != factory.isLocal()) {
+					newSources.add(new IndexedSource(group));
+					group.clear();
+				}
+				group.add((IndexableFactory) factory);
+			} else {
+				if (!group.isEmpty()) {
+					newSources.add(new IndexedSource(group));
+					group.clear();
+				}
+				newSources.add(new FactorySource(factory));
+			}
+		}
+		if (!group.isEmpty()) {
+			newSources.add(new IndexedSource(group));
+		}
+		sources = Collections.unmodifiableList(newSources);
+	}
+
+	List<Source> getSources() {
+		return sources;
+	}
+
+	/**
+	 * The findables of one or more {@link IndexableFactory}s, indexed when this is created
+	 */
+	private static final class IndexedSource implements Source {
+
+		private final boolean local;
+
+		private final Map<String, Findable> byName = new HashMap<>();
+
+		private final Map<Class<?>, Map<String, Findable>> byType = new HashMap<>();
+
+		private final Map<String, List<Findable>> byTypeName = new HashMap<>();
+
+		private final List<Findable> findables = new ArrayList<>();
+
+		IndexedSource(List<IndexableFactory> factories) {
+			local = factories.get(0).isLocal();
+			final Map<Class<?>, Set<Class<?>>> typeCache = new HashMap<>();
+			final Map<Findable, Boolean> seen = new IdentityHashMap<>();
+			for (Factory factory : factories) {
+				for (String name : factory.getFindableNames()) {
+					final Findable findable;
+					try {
+						findable = factory.getFindable(name);
+					} catch (FactoryException e) {
+						throw new IllegalStateException("Could not index '" + name + "' in " + factory, e);
+					}
+					if (findable == null) {
+						continue;
+					}
+					// The first factory wins when looking up by name, the last when listing by type
+					byName.putIfAbsent(name, findable);
+					final Set<Class<?>> types = typeCache.computeIfAbsent(findable.getClass(), FinderIndex::getAllTypes);
+					for (Class<?> type : types) {
+						byType.computeIfAbsent(type, t -> new HashMap<>()).put(name, findable);
+					}
+					if (seen.put(findable, Boolean.TRUE) == null) {
+						findables.add(findable);
+						for (Class<?> type : types) {
+							final String typeName = type.getName();
+							final String shortName = typeName.substring(typeName.lastIndexOf('.') + 1);
+							byTypeName.computeIfAbsent(typeName, n -> new ArrayList<>()).add(findable);
+							if (!shortName.equals(typeName)) {
+								byTypeName.computeIfAbsent(shortName, n -> new ArrayList<>()).add(findable);
+							}
+						}
+					}
+				}
+			}
+		}
+
+		@Override
+		public boolean isLocal() {
+			return local;
+		}
+
+		@Override
+		public Findable getFindable(String name) {
+			return byName.get(name);
+		}
+
+		@SuppressWarnings("unchecked") // only instances of T are indexed under T
+		@Override
+		public <T extends Findable> Map<String, T> getFindablesOfType(Class<T> clazz) {
+			final Map<String, Findable> ofType = byType.get(clazz);
+			return ofType == null ? Collections.emptyMap() : (Map<String, T>) Collections.unmodifiableMap(ofType);
+		}
+
+		@Override
+		public List<Findable> getFindables() {
+			return Collections.unmodifiableList(findables);
+		}
+
+		@Override
+		public List<Findable> getFindablesOfTypeName(String typeName) {
+			return byTypeName.getOrDefault(typeName, Collections.emptyList());
+		}
+
+		@Override
+		public String toString() {
+			return "IndexedSource [local=" + local + ", findables=" + findables.size() + "]";
+		}
+	}
+
+	/**
+	 * A factory which is asked on every lookup
+	 */
+	private static final class FactorySource implements Source {
+
+		private final Factory factory;
+
+		FactorySource(Factory factory) {
+			this.factory = factory;
+		}
+
+		@Override
+		public boolean isLocal() {
+			return factory.isLocal();
+		}
+
+		@Override
+		public Findable getFindable(String name) throws FactoryException {
+			return factory.getFindable(name);
+		}
+
+		@Override
+		public <T extends Findable> Map<String, T> getFindablesOfType(Class<T> clazz) {
+			return factory.getFindablesOfType(clazz);
+		}
+
+		@Override
+		public List<Findable> getFindables() {
+			return factory.getFindables();
+		}
+
+		@Override
+		public List<Findable> getFindablesOfTypeName(String typeName) {
+			final List<Findable> matches = new ArrayList<>();
+			for (Findable findable : factory.getFindables()) {
+				for (Class<?> type : getAllTypes(findable.getClass())) {
+					final String name = type.getName();
+					if (name.equals(typeName) || name.substring(name.lastIndexOf('.') + 1).equals(typeName)) {
+						matches.add(findable);
+						break;
+					}
+				}
+			}
+			return matches;
+		}
+
+		@Override
+		public String toString() {
+			return factory.toString();
+		}
+	}
+
+	/**
+	 * @return the class, all its superclasses and all the interfaces they implement
+	 */
+	static Set<Class<?>> getAllTypes(Class<?> clazz) {
+		final Set<Class<?>> types = new LinkedHashSet<>();
+		for (Class<?> c = clazz; c != null; c = c.getSuperclass()) {
+			addWithInterfaces(c, types);
+		}
+		return types;
+	}
+
+	private static void addWithInterfaces(Class<?> type, Set<Class<?>> types) {
+		if (types.add(type)) {
+			for (Class<?> superInterface : type.getInterfaces()) {
+				addWithInterfaces(superInterface, types);
+			}
+		}
+	}
+}
@@ -0,0 +1,28 @@
+/*-
+ * Copyright © 2019 Diamond Light Source Ltd.
+ *
+ * This file is part of GDA.
+ *
+ * GDA is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License version 3 as published by the Free
+ * Software Foundation.
+ *
+ * GDA is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with GDA. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package gda.factory;
+
+/**
+ * A {@link Factory} whose {@link Findable}s do not change once it has been added to the {@link Finder}, so that the
+ * Finder can index them by name and type rather than asking the factory on every lookup.
+ * <p>
+ * If the contents of such a factory do change, {@link Finder#invalidateIndex()} must be called.
+ */
+public interface IndexableFactory extends Factory {
+}
@@ -36,6 +36,8 @@ import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Predicate;
 import java.util.regex.Pattern;
 import java.util.stream.Stream;
@@ -53,10 +55,17 @@ import gda.factory.Finder;
 import gda.observable.IObservable;
 import gda.observable.IObserver;
 import gda.observable.ObservableComponent;
+import gda.util.DirectoryWatcher;
 import uk.ac.diamond.daq.concurrent.Async;
 import uk.ac.gda.beamline.synoptics.events.DirectoryChangeEvent;
 import uk.ac.gda.beamline.synoptics.events.LatestFilenameEvent;
 
+/**
+ * Keeps the list of data files in the visit directory, adding files as a file provider (normally a detector) reports
+ * them and, if {@link #setWatchDataDirectory(boolean) watching} is enabled, as the filesystem reports their creation.
+ * If the visit directory cannot be watched it is rescanned every {@link #setRescanPeriod(long) rescan period}
+ * instead.
+ */
 public class NewFileListener implements DataDirectoryMonitor, IObserver, Configurable {
 
 	private static final Logger logger = LoggerFactory.getLogger(NewFileListener.class);
@@ -95,8 +104,18 @@ public class NewFileListener implements DataDirectoryMonitor, IObserver, Configu
 
 	private boolean configured;
 
+	/** Whether to watch the data directory for new files rather than relying only on the file provider */
+	private boolean watchDataDirectory;
+
+	/** Interval in ms between rescans of the data directory when it cannot be watched */
+	private long rescanPeriod = 30000;
+
+	private DirectoryWatcher watcher;
+
+	private ScheduledFuture<?> rescan;
+
 	@Override
-	public List<Path> getDataFilesCollected() {
+	public synchronized List<Path> getDataFilesCollected() {
 		return new ArrayList<>(dataFiles);
 	}
 
@@ -115,7 +134,7 @@ public class NewFileListener implements DataDirectoryMonitor, IObserver, Configu
 		}, "NewFileUpdate");
 	}
 
-	private void addFile(String file) {
+	private synchronized void addFile(String file) {
 		Path newPath = Paths.get(file);
 		if (dataDirectory != null && !newPath.startsWith(dataDirectory)) {
 			// Ignore this file
@@ -135,6 +154,23 @@ public class NewFileListener implements DataDirectoryMonitor, IObserver, Configu
 		fileProviderName = fileProvider;
 	}
 
+	/**
+	 * Watch the data directory and its subdirectories for new files as well as listening to the file provider (which
+	 * then need not be set). Default is false.
+	 * @param watchDataDirectory true to watch the data directory
+	 */
+	public void setWatchDataDirectory(boolean watchDataDirectory) {
+		this.watchDataDirectory = watchDataDirectory;
+	}
+
+	/**
+	 * Set how often the data directory is rescanned if it is to be watched but the filesystem does not support it
+	 * @param rescanPeriod interval in ms
+	 */
+	public void setRescanPeriod(long rescanPeriod) {
+		this.rescanPeriod = rescanPeriod;
+	}
+
 	/**
 	 * Set the filters to use when adding new files
 	 * <p>
@@ -153,7 +189,7 @@ public class NewFileListener implements DataDirectoryMonitor, IObserver, Configu
 		if (newFileProvider != null) {
 			newFileProvider.deleteIObserver(this);
 		}
-		IObservable fileProvider = Finder.getInstance().find(fileProviderName);
+		IObservable fileProvider = fileProviderName == null ? null : Finder.getInstance().find(fileProviderName);
 		newFileProvider = fileProvider;
 		if (newFileProvider != null) {
 			newFileProvider.addIObserver(this);
@@ -172,12 +208,16 @@ public class NewFileListener implements DataDirectoryMonitor, IObserver, Configu
 	 * Checks to see if the data directory has changed and repopulate it with the new files
 	 * if it has. Adds all files in the current datadirectory except those ignored by the preset filters.
 	 */
-	private void updateDataDirectory() {
+	private synchronized void updateDataDirectory() {
 		Path newDataDirectory = Paths.get(PathConstructor.getVisitDirectory());
 		if (!newDataDirectory.equals(dataDirectory)) {
 			dataDirectory = newDataDirectory;
 			dataFiles.clear();
 			fileTimeCache.clear();
+			if (watchDataDirectory) {
+				// Watch before listing the directory so that no new files are missed
+				watchDataDirectory();
+			}
 			try (Stream<Path> files = Files.walk(dataDirectory)) {
 				dataFiles.addAll(files
 						.filter(Files::isRegularFile)
@@ -191,6 +231,54 @@ public class NewFileListener implements DataDirectoryMonitor, IObserver, Configu
 		}
 	}
 
+	private void watchDataDirectory() {
+		stopWatching();
+		try {
+			watcher = new DirectoryWatcher(dataDirectory, true, this::fileCreated, this::rescan);
+			if (watcher.isNative()) {
+				return;
+			}
+			logger.info("No native file events for {}", dataDirectory);
+			watcher.close();
+			watcher = null;
+		} catch (IOException | RuntimeException e) {
+			logger.info("Could not watch data directory {}", dataDirectory, e);
+		}
+		logger.info("Rescanning {} for new files every {} ms", dataDirectory, rescanPeriod);
+		rescan = Async.scheduleWithFixedDelay(this::rescan, rescanPeriod, rescanPeriod, TimeUnit.MILLISECONDS, "NewFileRescan");
+	}
+
+	private void stopWatching() {
+		if (watcher != null) {
+			watcher.close();
+			watcher = null;
+		}
+		if (rescan != null) {
+			rescan.cancel(false);
+			rescan = null;
+		}
+	}
+
+	private void fileCreated(Path file) {
+		if (Files.isRegularFile(file)) {
+			addFile(file.toString());
+		}
+	}
+
+	/**
+	 * Add any files in the data directory which have not been reported
+	 */
+	private void rescan() {
+		final Path directory = dataDirectory;
+		try (Stream<Path> files = Files.walk(directory)) {
+			files.filter(Files::isRegularFile)
+				.map(Path::toString)
+				.forEach(this::addFile);
+		} catch (IOException | RuntimeException e) {
+			logger.warn("Could not rescan data directory {}", directory, e);
+		}
+	}
+
 	/** Check if a file should be included in the set of collected files.
 	 *
 	 * @param file The file to check
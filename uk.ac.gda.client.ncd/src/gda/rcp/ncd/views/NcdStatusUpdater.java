@@ -194,7 +194,9 @@ public class NcdStatusUpdater implements IScanDataPointObserver {
 						for (Object odr : (Collection<?>) arg) {
 							if (odr instanceof DetectorRates) {
 								DetectorRates dr = (DetectorRates) odr;
-								if (NcdDetectorSystem.WAXS_DETECTOR.equalsIgnoreCase(dr.detType)) {
+								if (dr.isReadoutTime()) {
+									logger.debug("{}", dr);
+								} else if (NcdDetectorSystem.WAXS_DETECTOR.equalsIgnoreCase(dr.detType)) {
 									client.waxsCountRate.setText(String.format("%,6.5G cps", dr.integratedCounts / dr.countingTime));
 									client.waxsCount.setText(String.format("%,6.6G counts", dr.integratedCounts));
 									client.waxsPeakRate.setText(String.format("%,6.5G cps", dr.maxCounts / dr.countingTime));
@@ -28,7 +28,8 @@ import org.junit.runners.Suite;
 @RunWith(Suite.class)
 @Suite.SuiteClasses({
 	gda.data.metadata.XMLIcatTest.class,
-	gda.data.metadata.MetadataEntryTest.class
+	gda.data.metadata.MetadataEntryTest.class,
+	gda.data.metadata.MetadataSnapshotServiceTest.class
 })
 
 public class AllJUnitTests {
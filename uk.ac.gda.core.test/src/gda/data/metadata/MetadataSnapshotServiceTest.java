@@ -0,0 +1,150 @@
+/*-
+ * Copyright © 2019 Diamond Light Source Ltd.
+ *
+ * This file is part of GDA.
+ *
+ * GDA is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License version 3 as published by the Free
+ * Software Foundation.
+ *
+ * GDA is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with GDA. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package gda.data.metadata;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import gda.data.metadata.MetadataSnapshotService.Snapshot;
+import gda.device.DeviceException;
+import gda.device.Scannable;
+
+public class MetadataSnapshotServiceTest {
+
+	private final AtomicInteger reads = new AtomicInteger();
+
+	private Scannable createScannable(String name, Object position) throws DeviceException {
+		return createScannable(name, position, () -> null);
+	}
+
+	/**
+	 * @param read
+	 *            called on the reading thread before the position is returned
+	 */
+	private Scannable createScannable(String name, Object position, Callable<?> read) throws DeviceException {
+		Scannable scannable = mock(Scannable.class);
+		when(scannable.getName()).thenReturn(name);
+		when(scannable.getPosition()).thenAnswer(invocation -> {
+			reads.incrementAndGet();
+			read.call();
+			return position;
+		});
+		return scannable;
+	}
+
+	@Test
+	public void scannablesAreReadConcurrently() throws Exception {
+		// each read waits for the other two to start, so the reads only succeed if they all run at once
+		CyclicBarrier allReading = new CyclicBarrier(3);
+		Callable<?> read = () -> allReading.await(5, TimeUnit.SECONDS);
+		MetadataSnapshotService service = new MetadataSnapshotService(10000, 0);
+		Scannable a = createScannable("a", 1.0, read);
+		Scannable b = createScannable("b", 2.0, read);
+		Scannable c = createScannable("c", 3.0, read);
+
+		Map<String, Snapshot> snapshots = service.capture(Arrays.asList(a, b, c));
+
+		for (Snapshot snapshot : snapshots.values()) {
+			assertTrue(snapshot.getScannableName() + " was not read", snapshot.isSuccessful());
+		}
+		assertEquals(Arrays.asList("a", "b", "c"), Arrays.asList(snapshots.keySet().toArray()));
+		assertEquals(2.0, snapshots.get("b").getPosition());
+		assertTrue(snapshots.get("c").getReadNanos() > 0);
+	}
+
+	@Test
+	public void slowScannableTimesOutWithoutHoldingUpOthers() throws Exception {
+		CountDownLatch neverReleased = new CountDownLatch(1);
+		MetadataSnapshotService service = new MetadataSnapshotService(100, 0);
+		Scannable fast = createScannable("fast", 1.0);
+		Scannable slow = createScannable("slow", 2.0, () -> {
+			neverReleased.await();
+			return null;
+		});
+
+		try {
+			Map<String, Snapshot> snapshots = service.capture(Arrays.asList(slow, fast));
+
+			assertTrue(snapshots.get("fast").isSuccessful());
+			assertFalse(snapshots.get("slow").isSuccessful());
+		} finally {
+			// let the abandoned read finish
+			neverReleased.countDown();
+		}
+	}
+
+	@Test(expected = DeviceException.class)
+	public void failedReadIsReportedByPosition() throws Exception {
+		MetadataSnapshotService service = new MetadataSnapshotService(1000, 0);
+		Scannable broken = mock(Scannable.class);
+		when(broken.getName()).thenReturn("broken");
+		when(broken.getPosition()).thenThrow(new DeviceException("broken"));
+
+		service.capture(Arrays.asList(broken)).get("broken").getPosition();
+	}
+
+	@Test
+	public void positionsAreReusedWithinStalenessWindow() throws Exception {
+		MetadataSnapshotService service = new MetadataSnapshotService(1000, 0);
+		Scannable slowChanging = createScannable("slowChanging", 1.0);
+		Scannable other = createScannable("other", 2.0);
+		service.setStalenessMillis("slowChanging", 60000);
+
+		service.capture(Arrays.asList(slowChanging, other));
+		Map<String, Snapshot> snapshots = service.capture(Arrays.asList(slowChanging, other));
+
+		assertEquals(3, reads.get());
+		assertTrue(snapshots.get("slowChanging").isCached());
+		assertFalse(snapshots.get("other").isCached());
+
+		service.clearCache();
+		service.capture(slowChanging);
+		assertEquals(4, reads.get());
+	}
+
+	@Test
+	public void scannablesAreRecordedUnderTheNamesGiven() throws Exception {
+		MetadataSnapshotService service = new MetadataSnapshotService(1000, 0);
+		Scannable scannable = createScannable("real", 1.0);
+		Map<String, Scannable> aliases = new LinkedHashMap<>();
+		aliases.put("alias1", scannable);
+		aliases.put("alias2", scannable);
+
+		Map<String, Snapshot> snapshots = service.capture(aliases);
+
+		assertEquals(Arrays.asList("alias1", "alias2"), Arrays.asList(snapshots.keySet().toArray()));
+		assertEquals("alias1", snapshots.get("alias1").getScannableName());
+		assertEquals(1.0, snapshots.get("alias2").getPosition());
+	}
+}
@@ -0,0 +1,107 @@
+/*-
+ * Copyright © 2019 Diamond Light Source Ltd.
+ *
+ * This file is part of GDA.
+ *
+ * GDA is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License version 3 as published by the Free
+ * Software Foundation.
+ *
+ * GDA is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with GDA. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package gda.data.scan.datawriter;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+
+import org.eclipse.january.dataset.DatasetFactory;
+import org.eclipse.january.dataset.IDataset;
+import org.eclipse.january.dataset.ILazyWriteableDataset;
+import org.eclipse.january.dataset.SliceND;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+public class WriteBehindSliceBufferTest {
+
+	private ILazyWriteableDataset lazy;
+
+	@Before
+	public void setUp() {
+		lazy = mock(ILazyWriteableDataset.class);
+		when(lazy.getShape()).thenReturn(new int[] { 0, 0 });
+		when(lazy.getMaxShape()).thenReturn(new int[] { ILazyWriteableDataset.UNLIMITED, ILazyWriteableDataset.UNLIMITED });
+	}
+
+	private void writePoint(WriteBehindSliceBuffer buffer, int outer, int inner) throws Exception {
+		buffer.write("x", lazy, DatasetFactory.createFromObject(10.0 * outer + inner), new int[] { outer, inner },
+				new int[] { outer + 1, inner + 1 });
+	}
+
+	@Test
+	public void testUnbufferedWritesEveryPoint() throws Exception {
+		final WriteBehindSliceBuffer buffer = new WriteBehindSliceBuffer(1, 0);
+		writePoint(buffer, 0, 0);
+		writePoint(buffer, 0, 1);
+		verify(lazy, times(2)).setSlice(eq(null), any(IDataset.class), any(SliceND.class));
+		assertTrue(buffer.getWritingTimes().containsKey("x"));
+	}
+
+	@Test
+	public void testContiguousPointsWrittenAsOneHyperslab() throws Exception {
+		final WriteBehindSliceBuffer buffer = new WriteBehindSliceBuffer(3, 0);
+		writePoint(buffer, 0, 0);
+		writePoint(buffer, 0, 1);
+		verify(lazy, never()).setSlice(eq(null), any(IDataset.class), any(SliceND.class));
+		writePoint(buffer, 0, 2);
+
+		final ArgumentCaptor<IDataset> data = ArgumentCaptor.forClass(IDataset.class);
+		final ArgumentCaptor<SliceND> slice = ArgumentCaptor.forClass(SliceND.class);
+		verify(lazy).setSlice(eq(null), data.capture(), slice.capture());
+		assertArrayEquals(new int[] { 1, 3 }, data.getValue().getShape());
+		assertEquals(2.0, data.getValue().getDouble(0, 2), 0);
+		assertArrayEquals(new int[] { 0, 0 }, slice.getValue().getStart());
+		assertArrayEquals(new int[] { 1, 3 }, slice.getValue().getStop());
+	}
+
+	@Test
+	public void testNonContiguousPointStartsNewRun() throws Exception {
+		final WriteBehindSliceBuffer buffer = new WriteBehindSliceBuffer(10, 0);
+		writePoint(buffer, 0, 0);
+		writePoint(buffer, 0, 1);
+		writePoint(buffer, 1, 0);
+		buffer.writeAll();
+
+		final ArgumentCaptor<SliceND> slice = ArgumentCaptor.forClass(SliceND.class);
+		verify(lazy, times(2)).setSlice(eq(null), any(IDataset.class), slice.capture());
+		final List<SliceND> slices = slice.getAllValues();
+		assertArrayEquals(new int[] { 1, 2 }, slices.get(0).getStop());
+		assertArrayEquals(new int[] { 1, 0 }, slices.get(1).getStart());
+	}
+
+	@Test
+	public void testWriteDueAfterDelay() throws Exception {
+		final WriteBehindSliceBuffer buffer = new WriteBehindSliceBuffer(100, 1);
+		writePoint(buffer, 0, 0);
+		Thread.sleep(5);
+		buffer.writeDue();
+		verify(lazy).setSlice(eq(null), any(IDataset.class), any(SliceND.class));
+	}
+}
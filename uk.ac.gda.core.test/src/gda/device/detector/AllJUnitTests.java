@@ -30,8 +30,11 @@ import org.junit.runners.Suite;
 	gda.device.detector.odccd.AllJUnitTests.class,
 	gda.device.detector.pco4000.AllJUnitTests.class,
 	gda.device.detector.countertimer.AllJUnitTests.class,
+	gda.device.detector.DAServerSelectorTransportTest.class,
+	gda.device.detector.DirectBufferPoolTest.class,
 	gda.device.detector.DummyHardwareTriggerableAreaDetectorTest.class,
 	gda.device.detector.DummyHardwareTriggerableDetectorTest.class,
-	gda.device.detector.NXDetectorTest.class})
+	gda.device.detector.NXDetectorTest.class,
+	gda.device.detector.nxdetector.plugin.PositionQueueTest.class})
 public class AllJUnitTests {
 }
\ No newline at end of file
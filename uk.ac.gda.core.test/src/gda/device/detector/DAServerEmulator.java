@@ -0,0 +1,181 @@
+/*-
+ * Copyright © 2019 Diamond Light Source Ltd.
+ *
+ * This file is part of GDA.
+ *
+ * GDA is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License version 3 as published by the Free
+ * Software Foundation.
+ *
+ * GDA is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with GDA. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package gda.device.detector;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.StringTokenizer;
+
+import uk.ac.diamond.daq.concurrent.Async;
+
+/**
+ * Serves the da.server socket protocol on a local port, passing commands to a {@link DummyDAServer} and sending the
+ * data it creates back over a data connection. This allows the socket transports of {@link DAServer} to be tested and
+ * benchmarked without hardware.
+ * <p>
+ * Binary reads ("read x y t dx dy dt ... float|raw from handle") send dx*dy*dt big endian floats or 32 bit ints taken
+ * from {@link DummyDAServer#getLongBinaryData(String, int)}. Only one client is served at a time.
+ */
+public class DAServerEmulator implements Closeable {
+
+	private final DummyDAServer dummy;
+
+	private final ServerSocket serverSocket;
+
+	private final boolean keepDataConnectionOpen;
+
+	private volatile boolean running = true;
+
+	private volatile int dataConnections;
+
+	private volatile long[] lastDataSent;
+
+	private String clientHost;
+
+	private int dataPort = -1;
+
+	private Socket dataSocket;
+
+	/**
+	 * @param dummy
+	 *            the dummy to pass commands to
+	 * @param keepDataConnectionOpen
+	 *            true to reuse the data connection for every read, false to connect for each read and close afterwards
+	 *            as da.server does
+	 * @throws IOException
+	 */
+	public DAServerEmulator(DummyDAServer dummy, boolean keepDataConnectionOpen) throws IOException {
+		this.dummy = dummy;
+		this.keepDataConnectionOpen = keepDataConnectionOpen;
+		serverSocket = new ServerSocket(0);
+		Async.execute(this::serve, "DAServerEmulator on port %d", getPort());
+	}
+
+	public int getPort() {
+		return serverSocket.getLocalPort();
+	}
+
+	/**
+	 * @return the number of data connections made to the client
+	 */
+	public int getDataConnections() {
+		return dataConnections;
+	}
+
+	/**
+	 * @return the values sent by the last binary read
+	 */
+	public long[] getLastDataSent() {
+		return lastDataSent;
+	}
+
+	private void serve() {
+		while (running) {
+			try (Socket client = serverSocket.accept();
+					BufferedReader in = new BufferedReader(new InputStreamReader(client.getInputStream()));
+					BufferedWriter out = new BufferedWriter(new OutputStreamWriter(client.getOutputStream()))) {
+				client.setTcpNoDelay(true);
+				clientHost = client.getInetAddress().getHostAddress();
+				String command;
+				while ((command = in.readLine()) != null) {
+					out.write("* " + formatReply(execute(command.trim())) + "\r\n> ");
+					out.flush();
+				}
+			} catch (IOException e) {
+				// client disconnected, or closed
+			} finally {
+				closeDataSocket();
+			}
+		}
+	}
+
+	private Object execute(String command) throws IOException {
+		if (command.startsWith("port ")) {
+			dataPort = Integer.parseInt(command.substring(5).trim());
+			closeDataSocket();
+			return 0;
+		}
+		if (command.startsWith("read") && (command.contains(" float ") || command.contains(" raw ")) && !command.contains(" to-")) {
+			sendData(command);
+			return 0;
+		}
+		return dummy.sendCommand(command);
+	}
+
+	private void sendData(String command) throws IOException {
+		final StringTokenizer tokenizer = new StringTokenizer(command);
+		tokenizer.nextToken(); // read
+		for (int i = 0; i < 3; i++) {
+			tokenizer.nextToken(); // x y t
+		}
+		final int size = Integer.parseInt(tokenizer.nextToken()) * Integer.parseInt(tokenizer.nextToken())
+				* Integer.parseInt(tokenizer.nextToken());
+		final long[] values = dummy.getLongBinaryData(command, size);
+		final boolean asFloat = command.contains(" float ");
+
+		if (dataSocket == null) {
+			dataSocket = new Socket();
+			dataSocket.connect(new InetSocketAddress(clientHost, dataPort));
+			dataConnections++;
+		}
+		final DataOutputStream data = new DataOutputStream(dataSocket.getOutputStream());
+		for (int i = 0; i < size; i++) {
+			final long value = values != null && i < values.length ? values[i] : 0;
+			if (asFloat) {
+				data.writeFloat(value);
+			} else {
+				data.writeInt((int) value);
+			}
+		}
+		data.flush();
+		lastDataSent = values;
+		if (!keepDataConnectionOpen) {
+			closeDataSocket();
+		}
+	}
+
+	private static String formatReply(Object reply) {
+		return reply instanceof String ? "\"" + reply + "\"" : String.valueOf(reply);
+	}
+
+	private void closeDataSocket() {
+		if (dataSocket != null) {
+			try {
+				dataSocket.close();
+			} catch (IOException e) {
+				// nothing to do
+			}
+			dataSocket = null;
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		running = false;
+		serverSocket.close();
+	}
+}
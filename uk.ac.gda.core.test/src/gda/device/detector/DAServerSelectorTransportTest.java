@@ -0,0 +1,119 @@
+/*-
+ * Copyright © 2019 Diamond Light Source Ltd.
+ *
+ * This file is part of GDA.
+ *
+ * GDA is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License version 3 as published by the Free
+ * Software Foundation.
+ *
+ * GDA is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with GDA. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package gda.device.detector;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.net.ServerSocket;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class DAServerSelectorTransportTest {
+
+	private DAServerEmulator emulator;
+
+	private DAServer daServer;
+
+	private void connect(boolean keepDataConnectionOpen) throws Exception {
+		final DummyDAServer dummy = new DummyDAServer();
+		dummy.setName("dummy");
+		dummy.setNonRandomTestData(true);
+		emulator = new DAServerEmulator(dummy, keepDataConnectionOpen);
+
+		daServer = new DAServer();
+		daServer.setName("daserver");
+		daServer.setHost("localhost");
+		daServer.setPort(emulator.getPort());
+		daServer.setDataPort(freePort());
+		daServer.setUseSelectorTransport(true);
+		daServer.configure();
+		assertTrue(daServer.isConnected());
+	}
+
+	private static int freePort() throws Exception {
+		try (ServerSocket socket = new ServerSocket(0)) {
+			return socket.getLocalPort();
+		}
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		if (daServer != null) {
+			daServer.close();
+		}
+		if (emulator != null) {
+			emulator.close();
+		}
+	}
+
+	@Test
+	public void testCommandReplies() throws Exception {
+		connect(false);
+		final Object handle = daServer.sendCommand("scaler open");
+		assertTrue(handle instanceof Integer);
+		assertEquals(0, daServer.sendCommand("clear " + handle));
+		assertEquals(0, daServer.sendCommand("enable " + handle));
+	}
+
+	@Test
+	public void testBinaryReadsWithNewDataConnectionEachTime() throws Exception {
+		connect(false);
+		final int handle = (Integer) daServer.sendCommand("scaler open");
+		for (int i = 0; i < 3; i++) {
+			final int[] data = daServer.getIntBinaryData("read 0 0 0 4 2 1 motorola raw from " + handle, 8);
+			assertArrayEquals(toInts(emulator.getLastDataSent()), data);
+		}
+		assertEquals(3, emulator.getDataConnections());
+	}
+
+	@Test
+	public void testBinaryReadsReusePersistentDataConnection() throws Exception {
+		connect(true);
+		final int handle = (Integer) daServer.sendCommand("scaler open");
+		for (int i = 0; i < 3; i++) {
+			final double[] data = daServer.getBinaryData("read 0 0 0 5 1 1 motorola float from " + handle, 5);
+			final long[] sent = emulator.getLastDataSent();
+			for (int j = 0; j < sent.length; j++) {
+				assertEquals(sent[j], data[j], 0);
+			}
+			final float[] floats = daServer.getFloatBinaryData("read 0 0 0 5 1 1 motorola float from " + handle, 5);
+			assertEquals(emulator.getLastDataSent()[4], floats[4], 0);
+		}
+		assertEquals(1, emulator.getDataConnections());
+	}
+
+	@Test
+	public void testCommandsStillWorkAfterBinaryRead() throws Exception {
+		connect(true);
+		final int handle = (Integer) daServer.sendCommand("scaler open");
+		daServer.getIntBinaryData("read 0 0 0 2 1 1 motorola raw from " + handle, 2);
+		assertEquals(0, daServer.sendCommand("clear " + handle));
+	}
+
+	private static int[] toInts(long[] values) {
+		final int[] ints = new int[values.length];
+		for (int i = 0; i < ints.length; i++) {
+			ints[i] = (int) values[i];
+		}
+		return ints;
+	}
+}
@@ -0,0 +1,78 @@
+/*-
+ * Copyright © 2019 Diamond Light Source Ltd.
+ *
+ * This file is part of GDA.
+ *
+ * GDA is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License version 3 as published by the Free
+ * Software Foundation.
+ *
+ * GDA is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with GDA. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package gda.device.detector;
+
+import java.net.ServerSocket;
+
+/**
+ * Compares the time taken for commands and binary reads using the original polling transport of {@link DAServer} and
+ * the selector transport, against a {@link DAServerEmulator} backed by a {@link DummyDAServer}.
+ * <p>
+ * This is not a unit test and is not part of any suite; run it as a Java application.
+ */
+public class DAServerTransportBenchmark {
+
+	private static final int ITERATIONS = 200;
+
+	private static final int VALUES_PER_READ = 4 * 1024;
+
+	public static void main(String[] args) throws Exception {
+		run("polling", false, false);
+		run("selector", true, false);
+		run("selector, persistent data connection", true, true);
+	}
+
+	private static void run(String name, boolean useSelectorTransport, boolean keepDataConnectionOpen) throws Exception {
+		final DummyDAServer dummy = new DummyDAServer();
+		dummy.setName("dummy");
+		try (DAServerEmulator emulator = new DAServerEmulator(dummy, keepDataConnectionOpen)) {
+			final DAServer daServer = new DAServer();
+			daServer.setName("benchmark");
+			daServer.setHost("localhost");
+			daServer.setPort(emulator.getPort());
+			try (ServerSocket socket = new ServerSocket(0)) {
+				daServer.setDataPort(socket.getLocalPort());
+			}
+			daServer.setUseSelectorTransport(useSelectorTransport);
+			daServer.configure();
+			try {
+				final int handle = (Integer) daServer.sendCommand("scaler open");
+				final String read = "read 0 0 0 " + VALUES_PER_READ + " 1 1 motorola raw from " + handle;
+				daServer.getIntBinaryData(read, VALUES_PER_READ); // binds the data port
+
+				long start = System.nanoTime();
+				for (int i = 0; i < ITERATIONS; i++) {
+					daServer.sendCommand("clear " + handle);
+				}
+				final double commandMillis = (System.nanoTime() - start) / 1e6 / ITERATIONS;
+
+				start = System.nanoTime();
+				for (int i = 0; i < ITERATIONS; i++) {
+					daServer.getIntBinaryData(read, VALUES_PER_READ);
+				}
+				final double readMillis = (System.nanoTime() - start) / 1e6 / ITERATIONS;
+
+				System.out.println(String.format("%-40s command: %8.3f ms    read of %d values: %8.3f ms", name,
+						commandMillis, VALUES_PER_READ, readMillis));
+			} finally {
+				daServer.close();
+			}
+		}
+	}
+}
@@ -0,0 +1,70 @@
+/*-
+ * Copyright © 2019 Diamond Light Source Ltd.
+ *
+ * This file is part of GDA.
+ *
+ * GDA is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License version 3 as published by the Free
+ * Software Foundation.
+ *
+ * GDA is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with GDA. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package gda.device.detector;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import org.junit.Test;
+
+public class DirectBufferPoolTest {
+
+	@Test
+	public void testBuffersAreReused() {
+		final DirectBufferPool pool = new DirectBufferPool(2);
+		final ByteBuffer first = pool.acquire(1000);
+		assertTrue(first.isDirect());
+		assertEquals(1000, first.limit());
+		assertEquals(1024, first.capacity());
+		assertEquals(ByteOrder.BIG_ENDIAN, first.order());
+		first.order(ByteOrder.LITTLE_ENDIAN).putInt(1);
+		pool.release(first);
+
+		final ByteBuffer second = pool.acquire(600);
+		assertSame(first, second);
+		assertEquals(0, second.position());
+		assertEquals(600, second.limit());
+		assertEquals(ByteOrder.BIG_ENDIAN, second.order());
+		assertEquals(1, pool.getAllocations());
+	}
+
+	@Test
+	public void testNumberOfPooledBuffersIsLimited() {
+		final DirectBufferPool pool = new DirectBufferPool(1);
+		final ByteBuffer a = pool.acquire(100);
+		final ByteBuffer b = pool.acquire(100);
+		pool.release(a);
+		pool.release(b);
+		assertSame(a, pool.acquire(100));
+		pool.acquire(100);
+		assertEquals(3, pool.getAllocations());
+	}
+
+	@Test
+	public void testHeapBuffersIgnored() {
+		final DirectBufferPool pool = new DirectBufferPool(1);
+		pool.release(ByteBuffer.allocate(64));
+		pool.release(null);
+		assertTrue(pool.acquire(64).isDirect());
+	}
+}
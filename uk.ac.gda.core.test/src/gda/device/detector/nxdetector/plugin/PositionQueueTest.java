@@ -0,0 +1,143 @@
+/*-
+ * Copyright © 2019 Diamond Light Source Ltd.
+ *
+ * This file is part of GDA.
+ *
+ * GDA is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License version 3 as published by the Free
+ * Software Foundation.
+ *
+ * GDA is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with GDA. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package gda.device.detector.nxdetector.plugin;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class PositionQueueTest {
+
+	@Test
+	public void readReturnsUpToMaxInOrder() throws Exception {
+		final PositionQueue<Integer> queue = new PositionQueue<>();
+		for (int i = 0; i < 5; i++) {
+			queue.addToCache(i);
+		}
+		assertEquals(Arrays.asList(0, 1, 2), queue.read(3));
+		assertEquals(Arrays.asList(3, 4), queue.read(10));
+		assertEquals(0, queue.getLateReads());
+	}
+
+	@Test(expected = NoSuchElementException.class)
+	public void readTimesOutWhenEmpty() throws Exception {
+		new PositionQueue<Integer>(10, 10, 10).read(1);
+	}
+
+	@Test
+	public void readBlocksForTheTimeoutBeforeFailing() throws Exception {
+		final PositionQueue<Integer> queue = new PositionQueue<>(10, 10, 200);
+		final long start = System.nanoTime();
+		try {
+			queue.read(1);
+			fail("Expected NoSuchElementException");
+		} catch (NoSuchElementException e) {
+			// expected
+		}
+		assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= 200);
+		assertEquals(1, queue.getLateReads());
+	}
+
+	@Test(expected = InterruptedException.class)
+	public void interruptedReadFails() throws Exception {
+		Thread.currentThread().interrupt();
+		new PositionQueue<Integer>(10, 10, 5000).read(1);
+	}
+
+	@Test
+	public void nullElementIsRejected() throws Exception {
+		final PositionQueue<Integer> queue = new PositionQueue<>();
+		try {
+			queue.addToCache(null);
+			fail("Expected IllegalArgumentException");
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+		assertEquals(0, queue.size());
+		assertEquals(0, queue.getDropped());
+	}
+
+	@Test
+	public void readWaitsForElement() throws Exception {
+		final PositionQueue<Integer> queue = new PositionQueue<>(10, 10, 5000);
+		final ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			final Future<List<Integer>> read = executor.submit(() -> queue.read(1));
+			Thread.sleep(50);
+			queue.addToCache(7);
+			assertEquals(Arrays.asList(7), read.get());
+			assertEquals(1, queue.getLateReads());
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	public void fullQueueDropsAndCounts() throws Exception {
+		final PositionQueue<Integer> queue = new PositionQueue<>(2, 10, 10);
+		queue.addToCache(0);
+		queue.addToCache(1);
+		try {
+			queue.addToCache(2);
+			fail("Expected IllegalStateException");
+		} catch (IllegalStateException e) {
+			// expected
+		}
+		assertEquals(1, queue.getBlockedPuts());
+		assertEquals(1, queue.getDropped());
+		assertEquals(Arrays.asList(0, 1), queue.read(5));
+	}
+
+	@Test
+	public void concurrentProducerAndConsumer() throws Exception {
+		final int elements = 100_000;
+		final PositionQueue<Integer> queue = new PositionQueue<>(100, 5000, 5000);
+		final ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			final Future<?> producer = executor.submit(() -> {
+				for (int i = 0; i < elements; i++) {
+					queue.addToCache(i);
+				}
+			});
+			final List<Integer> read = new ArrayList<>(elements);
+			while (read.size() < elements) {
+				read.addAll(queue.read(17));
+			}
+			producer.get();
+			for (int i = 0; i < elements; i++) {
+				assertEquals(i, read.get(i).intValue());
+			}
+			assertEquals(0, queue.getDropped());
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+}
@@ -0,0 +1,169 @@
+/*-
+ * Copyright © 2019 Diamond Light Source Ltd.
+ *
+ * This file is part of GDA.
+ *
+ * GDA is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License version 3 as published by the Free
+ * Software Foundation.
+ *
+ * GDA is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with GDA. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package gda.device.detectorfilemonitor.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+import org.junit.After;
+import org.junit.Test;
+
+import gda.device.detectorfilemonitor.HighestExistingFileMonitorData;
+import gda.device.detectorfilemonitor.HighestExistingFileMonitorSettings;
+import gda.util.TestUtils;
+
+public class WatchingHighestExistingFileMonitorTest {
+
+	private static final String FILE_TEMPLATE = "/file_%04d.tif";
+
+	private WatchingHighestExistingFileMonitor monitor;
+	private volatile Integer foundIndex;
+
+	@After
+	public void tearDown() {
+		if (monitor != null) {
+			monitor.setRunning(false);
+		}
+	}
+
+	@Test
+	public void testNewFilesAreReportedWithoutPolling() throws Exception {
+		String scratchFolder = TestUtils.setUpTest(WatchingHighestExistingFileMonitorTest.class, "testNewFilesAreReportedWithoutPolling", true);
+		createMonitor(60000);
+		monitor.configureAndRun(scratchFolder, FILE_TEMPLATE, 5);
+		assertTrue(monitor.isRunning());
+		assertNull(monitor.getHighestExistingFileMonitorData().getFoundIndex());
+
+		for (int i = 5; i < 15; i++) {
+			createFile(scratchFolder + FILE_TEMPLATE, i);
+		}
+
+		waitForIndex(14);
+		assertEquals(Integer.valueOf(14), monitor.getHighestExistingFileMonitorData().getFoundIndex());
+		assertFalse(monitor.isPolling());
+	}
+
+	@Test
+	public void testNewFileIsReportedByFileEvent() throws Exception {
+		String scratchFolder = TestUtils.setUpTest(WatchingHighestExistingFileMonitorTest.class, "testNewFileIsReportedByFileEvent", true);
+		createMonitor(60000);
+		// not looking for files, so that only an event from the WatchService can report the file in time
+		monitor.setDelayInMS(60000);
+		CountDownLatch reported = new CountDownLatch(1);
+		monitor.addIObserver((source, arg) -> {
+			if (Integer.valueOf(0).equals(((HighestExistingFileMonitorData) arg).getFoundIndex())) {
+				reported.countDown();
+			}
+		});
+		monitor.configureAndRun(scratchFolder, FILE_TEMPLATE, 0);
+		assertFalse("Directory is not being watched", monitor.isPolling());
+
+		createFile(scratchFolder + FILE_TEMPLATE, 0);
+
+		assertTrue("New file was not reported", reported.await(10, TimeUnit.SECONDS));
+		assertEquals(Integer.valueOf(0), monitor.getHighestExistingFileMonitorData().getFoundIndex());
+		assertFalse(monitor.isPolling());
+	}
+
+	@Test
+	public void testExistingFilesAreFoundOnStart() throws Exception {
+		String scratchFolder = TestUtils.setUpTest(WatchingHighestExistingFileMonitorTest.class, "testExistingFilesAreFoundOnStart", true);
+		for (int i = 0; i < 3; i++) {
+			createFile(scratchFolder + FILE_TEMPLATE, i);
+		}
+		createMonitor(60000);
+		monitor.setHighestExistingFileMonitorSettings(new HighestExistingFileMonitorSettings(scratchFolder, FILE_TEMPLATE, 0));
+		monitor.setRunning(true);
+		waitForIndex(2);
+	}
+
+	@Test
+	public void testOnlyUnbrokenRunOfFilesIsReported() throws Exception {
+		String scratchFolder = TestUtils.setUpTest(WatchingHighestExistingFileMonitorTest.class, "testOnlyUnbrokenRunOfFilesIsReported", true);
+		createMonitor(60000);
+		monitor.configureAndRun(scratchFolder, FILE_TEMPLATE, 1);
+
+		createFile(scratchFolder + FILE_TEMPLATE, 1);
+		createFile(scratchFolder + FILE_TEMPLATE, 3);
+		createFile(scratchFolder + "/other_%04d.tif", 2);
+		waitForIndex(1);
+		Thread.sleep(200);
+		assertEquals(Integer.valueOf(1), foundIndex);
+
+		createFile(scratchFolder + FILE_TEMPLATE, 2);
+		waitForIndex(3);
+	}
+
+	@Test
+	public void testUnsupportedTemplateFallsBackToPolling() throws Exception {
+		String scratchFolder = TestUtils.setUpTest(WatchingHighestExistingFileMonitorTest.class, "testUnsupportedTemplateFallsBackToPolling", true);
+		createMonitor(60000);
+		monitor.configureAndRun(scratchFolder, "/file_%x.tif", 9);
+		assertTrue(monitor.isPolling());
+
+		for (int i = 9; i < 12; i++) {
+			createFile(scratchFolder + "/file_%x.tif", i);
+		}
+		waitForIndex(11);
+	}
+
+	@Test
+	public void testFileNamePattern() {
+		Pattern pattern = WatchingHighestExistingFileMonitor.createFileNamePattern("file_%04d.tif");
+		assertTrue(pattern.matcher("file_0012.tif").matches());
+		assertTrue(pattern.matcher("file_12345.tif").matches());
+		assertFalse(pattern.matcher("file_0012.tiff").matches());
+		assertFalse(pattern.matcher("filex0012.tif").matches());
+
+		assertTrue(WatchingHighestExistingFileMonitor.createFileNamePattern("100%%_%d.h5").matcher("100%_7.h5").matches());
+		assertNull(WatchingHighestExistingFileMonitor.createFileNamePattern("%s_%d.tif"));
+		assertNull(WatchingHighestExistingFileMonitor.createFileNamePattern("%d_%d.tif"));
+		assertNull(WatchingHighestExistingFileMonitor.createFileNamePattern("file.tif"));
+	}
+
+	private void createMonitor(long verificationPeriod) throws Exception {
+		monitor = new WatchingHighestExistingFileMonitor();
+		monitor.setName("monitor");
+		monitor.setDelayInMS(100);
+		monitor.setVerificationPeriodInMS(verificationPeriod);
+		monitor.afterPropertiesSet();
+		monitor.addIObserver((source, arg) -> foundIndex = ((HighestExistingFileMonitorData) arg).getFoundIndex());
+	}
+
+	private static void createFile(String template, int number) throws Exception {
+		File f = new File(String.format(template, number));
+		if (!f.exists()) {
+			f.createNewFile();
+		}
+	}
+
+	private void waitForIndex(int expected) throws InterruptedException {
+		for (int i = 0; i < 100 && !Integer.valueOf(expected).equals(foundIndex); i++) {
+			Thread.sleep(50);
+		}
+		assertEquals(Integer.valueOf(expected), foundIndex);
+	}
+}
@@ -0,0 +1,98 @@
+/*-
+ * Copyright © 2019 Diamond Light Source Ltd.
+ *
+ * This file is part of GDA.
+ *
+ * GDA is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License version 3 as published by the Free
+ * Software Foundation.
+ *
+ * GDA is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with GDA. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package gda.device.scannable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import gda.device.scannable.RingBufferPositionStreamIndexer.WaitStrategy;
+
+/**
+ * Compares the throughput of {@link PositionStreamIndexer} and {@link RingBufferPositionStreamIndexer} when their
+ * callables are called from thread pools the size of those created by
+ * {@link gda.scan.MultithreadedScanDataPointPipeline} (three points computed simultaneously for one to four
+ * streaming scannables). The stream returns points in chunks, as a hardware triggered scaler does.
+ * <p>
+ * This is not a unit test and is not part of any suite; run it as a Java application.
+ */
+public class PositionStreamIndexerBenchmark {
+
+	private static final int POINTS = 200_000;
+
+	private static final int CHUNK = 50;
+
+	private static final int[] THREAD_COUNTS = { 3, 6, 9, 12 };
+
+	private static class ChunkedStream implements PositionInputStream<double[]> {
+		private final double[] point = new double[4];
+
+		@Override
+		public List<double[]> read(int maxToRead) {
+			final List<double[]> values = new ArrayList<>(CHUNK);
+			for (int i = 0; i < Math.min(maxToRead, CHUNK); i++) {
+				values.add(point);
+			}
+			return values;
+		}
+	}
+
+	private interface IndexerFactory {
+		PositionStreamIndexerBase<double[]> create(PositionInputStream<double[]> stream);
+	}
+
+	public static void main(String[] args) throws Exception {
+		for (int threads : THREAD_COUNTS) {
+			run("map and lock", threads, PositionStreamIndexer::new);
+			run("ring, blocking", threads, stream -> new RingBufferPositionStreamIndexer<>(stream, Integer.MAX_VALUE,
+					RingBufferPositionStreamIndexer.DEFAULT_CAPACITY, WaitStrategy.BLOCKING));
+			run("ring, spinning", threads, stream -> new RingBufferPositionStreamIndexer<>(stream, Integer.MAX_VALUE,
+					RingBufferPositionStreamIndexer.DEFAULT_CAPACITY, WaitStrategy.SPINNING));
+		}
+	}
+
+	private static void run(String name, int threads, IndexerFactory factory) throws Exception {
+		final ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			measure(factory, executor); // warm up
+			final double seconds = measure(factory, executor);
+			System.out.println(String.format("%-16s %2d threads: %8.0f points/s", name, threads, POINTS / seconds));
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	private static double measure(IndexerFactory factory, ExecutorService executor) throws Exception {
+		final PositionStreamIndexerBase<double[]> indexer = factory.create(new ChunkedStream());
+		final List<Future<double[]>> futures = new ArrayList<>(POINTS);
+		final long start = System.nanoTime();
+		for (int i = 0; i < POINTS; i++) {
+			final Callable<double[]> callable = indexer.getPositionCallable();
+			futures.add(executor.submit(callable));
+		}
+		for (Future<double[]> future : futures) {
+			future.get();
+		}
+		return (System.nanoTime() - start) / 1e9;
+	}
+}
@@ -51,7 +51,7 @@ public class PositionStreamIndexerTest {
 	}
 
 	private PositionInputStream<Object> stream;
-	private PositionStreamIndexer<Object> indexer;
+	private PositionStreamIndexerBase<Object> indexer;
 	private List<Object> objects;
 
 	@Before
@@ -61,7 +61,11 @@ public class PositionStreamIndexerTest {
 		for (int i = 0; i < 10; i++) {
 			objects.add(new NamedObject("object_" + i));
 		}
-		indexer = new PositionStreamIndexer<Object>(stream);
+		indexer = createIndexer(stream);
+	}
+
+	protected PositionStreamIndexerBase<Object> createIndexer(PositionInputStream<Object> stream) {
+		return new PositionStreamIndexer<Object>(stream);
 	}
 
 	@Test(expected=IllegalStateException.class)
@@ -0,0 +1,138 @@
+/*-
+ * Copyright © 2019 Diamond Light Source Ltd.
+ *
+ * This file is part of GDA.
+ *
+ * GDA is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License version 3 as published by the Free
+ * Software Foundation.
+ *
+ * GDA is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with GDA. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package gda.device.scannable;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.After;
+import org.junit.Test;
+
+import gda.configuration.properties.LocalProperties;
+import gda.device.scannable.RingBufferPositionStreamIndexer.WaitStrategy;
+
+/**
+ * Runs the {@link PositionStreamIndexerTest}s against a {@link RingBufferPositionStreamIndexer} small enough to
+ * overflow, plus concurrent tests.
+ */
+public class RingBufferPositionStreamIndexerTest extends PositionStreamIndexerTest {
+
+	@After
+	public void clearIndexerProperties() {
+		LocalProperties.clearProperty(PositionStreamIndexerBase.GDA_POSITION_STREAM_INDEXER_CAPACITY);
+		LocalProperties.clearProperty(PositionStreamIndexerBase.GDA_POSITION_STREAM_INDEXER_WAIT_STRATEGY);
+	}
+
+	@Override
+	protected PositionStreamIndexerBase<Object> createIndexer(PositionInputStream<Object> stream) {
+		return new RingBufferPositionStreamIndexer<Object>(stream, Integer.MAX_VALUE, 4, WaitStrategy.BLOCKING);
+	}
+
+	/**
+	 * Stream of consecutive integers read in small chunks
+	 */
+	private static class CountingStream implements PositionInputStream<Integer> {
+		private int next = 0;
+
+		@Override
+		public synchronized List<Integer> read(int maxToRead) {
+			final List<Integer> values = new ArrayList<>();
+			for (int i = 0; i < Math.min(maxToRead, 7); i++) {
+				values.add(next++);
+			}
+			return values;
+		}
+	}
+
+	@Test
+	public void capacityIsRoundedUpToPowerOfTwo() {
+		assertEquals(8, new RingBufferPositionStreamIndexer<Integer>(new CountingStream(), 10, 5, WaitStrategy.BLOCKING).getCapacity());
+		assertEquals(1, new RingBufferPositionStreamIndexer<Integer>(new CountingStream(), 10, 1, WaitStrategy.BLOCKING).getCapacity());
+	}
+
+	@Test
+	public void nullElementsAreReturned() throws Exception {
+		final PositionInputStream<Object> nulls = maxToRead -> Arrays.asList(null, null);
+		final PositionStreamIndexerBase<Object> nullIndexer = createIndexer(nulls);
+		assertNull(nullIndexer.getPositionCallable().call());
+		assertNull(nullIndexer.getPositionCallable().call());
+		assertNull(nullIndexer.getPositionCallable().call());
+	}
+
+	@Test
+	public void concurrentGetsWithBlockingWait() throws Exception {
+		checkConcurrentGets(WaitStrategy.BLOCKING);
+	}
+
+	@Test
+	public void concurrentGetsWithSpinningWait() throws Exception {
+		checkConcurrentGets(WaitStrategy.SPINNING);
+	}
+
+	private void checkConcurrentGets(WaitStrategy waitStrategy) throws Exception {
+		final RingBufferPositionStreamIndexer<Integer> ringIndexer = new RingBufferPositionStreamIndexer<>(
+				new CountingStream(), 5, 16, waitStrategy);
+		final ExecutorService executor = Executors.newFixedThreadPool(6);
+		try {
+			final List<Future<Integer>> futures = new ArrayList<>();
+			for (int i = 0; i < 10_000; i++) {
+				final Callable<Integer> callable = ringIndexer.getPositionCallable();
+				futures.add(executor.submit(callable));
+			}
+			for (int i = 0; i < futures.size(); i++) {
+				assertEquals(i, futures.get(i).get().intValue());
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	public void forStreamWithoutCapacityCreatesMapIndexer() {
+		assertTrue(PositionStreamIndexerBase.forStream(new CountingStream()) instanceof PositionStreamIndexer);
+	}
+
+	@Test
+	public void forStreamWithCapacityCreatesRingIndexer() {
+		LocalProperties.set(PositionStreamIndexerBase.GDA_POSITION_STREAM_INDEXER_CAPACITY, "16");
+		LocalProperties.set(PositionStreamIndexerBase.GDA_POSITION_STREAM_INDEXER_WAIT_STRATEGY, "spinning");
+		final PositionStreamIndexerBase<Integer> created = PositionStreamIndexerBase.forStream(new CountingStream());
+		assertTrue(created instanceof RingBufferPositionStreamIndexer);
+		assertEquals(16, ((RingBufferPositionStreamIndexer<Integer>) created).getCapacity());
+		assertEquals(WaitStrategy.SPINNING, ((RingBufferPositionStreamIndexer<Integer>) created).getWaitStrategy());
+	}
+
+	@Test
+	public void forStreamFallsBackToBlockingForUnknownWaitStrategy() {
+		LocalProperties.set(PositionStreamIndexerBase.GDA_POSITION_STREAM_INDEXER_CAPACITY, "16");
+		LocalProperties.set(PositionStreamIndexerBase.GDA_POSITION_STREAM_INDEXER_WAIT_STRATEGY, "sleepy");
+		final PositionStreamIndexerBase<Integer> created = PositionStreamIndexerBase.forStream(new CountingStream());
+		assertEquals(WaitStrategy.BLOCKING, ((RingBufferPositionStreamIndexer<Integer>) created).getWaitStrategy());
+	}
+}
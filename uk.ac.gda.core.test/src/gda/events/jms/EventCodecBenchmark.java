@@ -0,0 +1,78 @@
+/*-
+ * Copyright © 2019 Diamond Light Source Ltd.
+ *
+ * This file is part of GDA.
+ *
+ * GDA is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License version 3 as published by the Free
+ * Software Foundation.
+ *
+ * GDA is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with GDA. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package gda.events.jms;
+
+import static java.util.Arrays.asList;
+
+import java.io.Serializable;
+
+import gda.device.scannable.ScannablePositionChangeEvent;
+import gda.device.scannable.ScannableStatus;
+import gda.scan.IScanDataPoint;
+import gda.scan.ScanDataPointProvider;
+import gda.util.Serializer;
+
+/**
+ * Compares the size and encode/decode time of events sent using Java serialization with the same events sent using
+ * the binary codecs of {@link EventCodecRegistry#createDefault()}.
+ * <p>
+ * This is not a unit test and is not part of any suite; run it as a Java application.
+ */
+public class EventCodecBenchmark {
+
+	private static final int WARMUP_ITERATIONS = 20_000;
+
+	private static final int ITERATIONS = 100_000;
+
+	public static void main(String[] args) throws Exception {
+		final IScanDataPoint point = ScanDataPointProvider.getPoint(1, 1000, asList(1.0, 2.0, 3.0),
+				asList(4.0, new double[] { 5, 6, 7, 8 }));
+		point.setUniqueName("benchmark");
+		run("ScanDataPoint", point);
+		run("ScannablePositionChangeEvent", new ScannablePositionChangeEvent(1.234));
+		run("ScannableStatus", ScannableStatus.BUSY);
+	}
+
+	private static void run(String name, Serializable event) throws Exception {
+		final EventCodecRegistry codecs = EventCodecRegistry.createDefault();
+		final int serializedSize = Serializer.toByte(event).length;
+		final int binarySize = codecs.encode("benchmark", event).length;
+
+		time(() -> Serializer.toObject(Serializer.toByte(event)), WARMUP_ITERATIONS);
+		final double serializedNanos = time(() -> Serializer.toObject(Serializer.toByte(event)), ITERATIONS);
+		time(() -> codecs.decode("benchmark", codecs.encode("benchmark", event)), WARMUP_ITERATIONS);
+		final double binaryNanos = time(() -> codecs.decode("benchmark", codecs.encode("benchmark", event)), ITERATIONS);
+
+		System.out.println(String.format("%-30s serialized: %5d bytes %8.0f ns/op    binary: %5d bytes %8.0f ns/op", name,
+				serializedSize, serializedNanos, binarySize, binaryNanos));
+	}
+
+	private static double time(RoundTrip roundTrip, int iterations) throws Exception {
+		final long start = System.nanoTime();
+		for (int i = 0; i < iterations; i++) {
+			roundTrip.run();
+		}
+		return (System.nanoTime() - start) / (double) iterations;
+	}
+
+	@FunctionalInterface
+	private interface RoundTrip {
+		Object run() throws Exception;
+	}
+}
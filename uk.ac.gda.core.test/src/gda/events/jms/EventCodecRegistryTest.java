@@ -0,0 +1,148 @@
+/*-
+ * Copyright © 2019 Diamond Light Source Ltd.
+ *
+ * This file is part of GDA.
+ *
+ * GDA is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License version 3 as published by the Free
+ * Software Foundation.
+ *
+ * GDA is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with GDA. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package gda.events.jms;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import gda.configuration.properties.LocalProperties;
+import gda.device.scannable.ScannablePositionChangeEvent;
+import gda.device.scannable.ScannablePositionChangeEventCodec;
+import gda.device.scannable.ScannableStatus;
+import gda.device.scannable.ScannableStatusCodec;
+import gda.util.Serializer;
+
+public class EventCodecRegistryTest {
+
+	private EventCodecRegistry registry;
+
+	@Before
+	public void setUp() {
+		registry = new EventCodecRegistry(asList(new ScannablePositionChangeEventCodec(), new ScannableStatusCodec()));
+	}
+
+	@After
+	public void tearDown() {
+		LocalProperties.clearProperty(EventCodecRegistry.GDA_EVENTS_JMS_BINARY_CODECS);
+	}
+
+	private Object roundTrip(Serializable event) throws Exception {
+		return registry.decode("topic", registry.encode("topic", event));
+	}
+
+	@Test
+	public void testScannableStatusIsTwoBytes() throws Exception {
+		assertEquals(2, registry.encode("topic", ScannableStatus.BUSY).length);
+		assertEquals(ScannableStatus.FAULT, roundTrip(ScannableStatus.FAULT));
+	}
+
+	@Test
+	public void testPositionChangeEventIsSmallerThanSerialized() throws Exception {
+		final ScannablePositionChangeEvent event = new ScannablePositionChangeEvent(1.5);
+		assertTrue(registry.encode("topic", event).length < Serializer.toByte(event).length);
+		assertEquals(1.5, ((ScannablePositionChangeEvent) roundTrip(event)).newPosition);
+	}
+
+	@Test
+	public void testUnknownEventsUseJavaSerialization() throws Exception {
+		assertNull(registry.findCodec("a string"));
+		assertEquals("a string", roundTrip("a string"));
+		assertNull(roundTrip(null));
+	}
+
+	@Test
+	public void testBatchKeepsOrder() throws Exception {
+		final List<Serializable> events = asList(ScannableStatus.BUSY, new ScannablePositionChangeEvent(2.0), "text",
+				ScannableStatus.IDLE);
+		final List<Object> decoded = registry.decodeBatch("topic", registry.encodeBatch("topic", events));
+		assertEquals(4, decoded.size());
+		assertEquals(ScannableStatus.BUSY, decoded.get(0));
+		assertEquals(2.0, ((ScannablePositionChangeEvent) decoded.get(1)).newPosition);
+		assertEquals("text", decoded.get(2));
+		assertEquals(ScannableStatus.IDLE, decoded.get(3));
+	}
+
+	@Test
+	public void testCodecsAreNotUsedForSendingUnlessEnabled() {
+		assertTrue(EventCodecRegistry.createForSending().getCodecs().isEmpty());
+		LocalProperties.set(EventCodecRegistry.GDA_EVENTS_JMS_BINARY_CODECS, "true");
+		assertEquals(3, EventCodecRegistry.createForSending().getCodecs().size());
+	}
+
+	@Test
+	public void testDefaultCodecsCanAlwaysDecode() throws Exception {
+		final EventCodecRegistry sender = new EventCodecRegistry(asList(new ScannableStatusCodec()));
+		final EventCodecRegistry receiver = EventCodecRegistry.createDefault();
+		assertEquals(ScannableStatus.BUSY, receiver.decode("topic", sender.encode("topic", ScannableStatus.BUSY)));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testDuplicateIdsRejected() {
+		new EventCodecRegistry(asList(new ScannableStatusCodec(), new ScannableStatusCodec()));
+	}
+
+	@Test(expected = java.io.IOException.class)
+	public void testUnknownCodecIdCannotBeDecoded() throws Exception {
+		final byte[] encoded = registry.encode("topic", ScannableStatus.IDLE);
+		new EventCodecRegistry(Collections.emptyList()).decode("topic", encoded);
+	}
+
+	@Test
+	public void testValueEncoding() throws Exception {
+		final Object[] values = { null, 1.0, 2.0f, 3, 4L, (short) 5, true, "text", new double[] { 1, 2 },
+				new int[] { 3, 4 }, new Double[] { 1.0, null, Double.NaN }, new Object[] { "a", 1 },
+				new StringBuilder("serialized") };
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (DataOutputStream out = new DataOutputStream(bytes)) {
+			for (Object value : values) {
+				BinaryValueEncoding.write(out, value);
+			}
+		}
+		try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+			assertNull(BinaryValueEncoding.read(in));
+			assertEquals(1.0, BinaryValueEncoding.read(in));
+			assertEquals(2.0f, BinaryValueEncoding.read(in));
+			assertEquals(3, BinaryValueEncoding.read(in));
+			assertEquals(4L, BinaryValueEncoding.read(in));
+			assertEquals((short) 5, BinaryValueEncoding.read(in));
+			assertEquals(true, BinaryValueEncoding.read(in));
+			assertEquals("text", BinaryValueEncoding.read(in));
+			assertArrayEquals(new double[] { 1, 2 }, (double[]) BinaryValueEncoding.read(in), 0);
+			assertArrayEquals(new int[] { 3, 4 }, (int[]) BinaryValueEncoding.read(in));
+			assertArrayEquals(new Double[] { 1.0, null, Double.NaN }, (Double[]) BinaryValueEncoding.read(in));
+			assertArrayEquals(new Object[] { "a", 1 }, (Object[]) BinaryValueEncoding.read(in));
+			assertEquals("serialized", BinaryValueEncoding.read(in).toString());
+		}
+	}
+}
@@ -0,0 +1,290 @@
+/*-
+ * Copyright © 2019 Diamond Light Source Ltd.
+ *
+ * This file is part of GDA.
+ *
+ * GDA is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License version 3 as published by the Free
+ * Software Foundation.
+ *
+ * GDA is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with GDA. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package gda.events.jms;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Serializable;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.jms.BytesMessage;
+import javax.jms.Message;
+import javax.jms.MessageProducer;
+import javax.jms.ObjectMessage;
+import javax.jms.Session;
+import javax.jms.Topic;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import gda.configuration.properties.LocalProperties;
+import gda.device.scannable.ScannablePositionChangeEvent;
+import gda.util.Serializer;
+
+public class JmsEventDispatcherTest {
+
+	/**
+	 * What was written to a message created by the session, and the topic it was sent to
+	 */
+	private static class SentMessage {
+		private String topic;
+		private Serializable object;
+		private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		private final Map<String, Object> properties = new HashMap<>();
+
+		/**
+		 * @return the events in the message, as strings
+		 */
+		List<String> getEvents() throws Exception {
+			final List<String> events = new ArrayList<>();
+			if (object != null) {
+				events.add(String.valueOf(Serializer.toObject((byte[]) object)));
+			} else if (properties.containsKey(JmsClient.BATCH_SIZE_PROPERTY)) {
+				for (Object event : EventCodecRegistry.createDefault().decodeBatch(topic, bytes.toByteArray())) {
+					events.add(String.valueOf(event));
+				}
+			} else {
+				events.add(String.valueOf(EventCodecRegistry.createDefault().decode(topic, bytes.toByteArray())));
+			}
+			return events;
+		}
+	}
+
+	private final Map<Message, SentMessage> created = new IdentityHashMap<>();
+
+	private final List<SentMessage> sent = new ArrayList<>();
+
+	private Session session;
+
+	private JmsEventDispatcher dispatcher;
+
+	@Before
+	public void setUp() throws Exception {
+		session = mock(Session.class);
+		final MessageProducer producer = mock(MessageProducer.class);
+		when(session.createTopic(anyString())).thenAnswer(invocation -> topicNamed((String) invocation.getArguments()[0]));
+		when(session.createProducer(any(Topic.class))).thenReturn(producer);
+		when(session.createObjectMessage(any(Serializable.class))).thenAnswer(invocation -> {
+			final SentMessage message = new SentMessage();
+			message.object = (Serializable) invocation.getArguments()[0];
+			return fakeMessage(ObjectMessage.class, message);
+		});
+		when(session.createBytesMessage()).thenAnswer(invocation -> fakeMessage(BytesMessage.class, new SentMessage()));
+		doAnswer(invocation -> {
+			final SentMessage message = created.get(invocation.getArguments()[1]);
+			message.topic = ((Topic) invocation.getArguments()[0]).getTopicName();
+			sent.add(message);
+			return null;
+		}).when(producer).send(any(Topic.class), any(Message.class));
+	}
+
+	@After
+	public void tearDown() {
+		LocalProperties.clearProperty(JmsEventDispatcher.GDA_EVENTS_JMS_CONFLATED_EVENT_TYPES);
+		LocalProperties.clearProperty(JmsEventDispatcher.GDA_EVENTS_JMS_MAX_BATCH_SIZE);
+	}
+
+	private static Topic topicNamed(String name) {
+		return (Topic) Proxy.newProxyInstance(Topic.class.getClassLoader(), new Class<?>[] { Topic.class },
+				(proxy, method, args) -> method.getName().equals("getTopicName") ? name : null);
+	}
+
+	/**
+	 * @return a message recording what is written to it in the given SentMessage
+	 */
+	private <T extends Message> T fakeMessage(Class<T> type, SentMessage message) {
+		final T fake = type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] { type }, (proxy, method, args) -> {
+			switch (method.getName()) {
+			case "writeBytes":
+				message.bytes.write((byte[]) args[0]);
+				return null;
+			case "setIntProperty":
+				message.properties.put((String) args[0], args[1]);
+				return null;
+			default:
+				return null;
+			}
+		}));
+		created.put(fake, message);
+		return fake;
+	}
+
+	private void createDispatcher() {
+		dispatcher = new JmsEventDispatcher(session);
+	}
+
+	private void enableConflation() {
+		LocalProperties.set(JmsEventDispatcher.GDA_EVENTS_JMS_CONFLATED_EVENT_TYPES, ScannablePositionChangeEvent.class.getName());
+	}
+
+	private static String position(int position) {
+		return new ScannablePositionChangeEvent(position).toString();
+	}
+
+	private void publishPosition(String sourceName, int position) {
+		dispatcher.publish(sourceName, new ScannablePositionChangeEvent(position));
+	}
+
+	private List<String> sentEvents() throws Exception {
+		final List<String> events = new ArrayList<>();
+		for (SentMessage message : sent) {
+			events.addAll(message.getEvents());
+		}
+		return events;
+	}
+
+	private void dispatch(int times) throws Exception {
+		for (int i = 0; i < times; i++) {
+			dispatcher.dispatchNext();
+		}
+	}
+
+	@Test
+	public void everyEventIsSentByDefault() throws Exception {
+		createDispatcher();
+		publishPosition("motor", 1);
+		publishPosition("motor", 2);
+		publishPosition("motor", 3);
+		assertEquals(3, dispatcher.getTopicMetrics().get("motor").getQueueDepth());
+
+		dispatch(3);
+
+		assertEquals(asList(position(1), position(2), position(3)), sentEvents());
+		final JmsTopicMetrics metrics = dispatcher.getTopicMetrics().get("motor");
+		assertEquals(3, metrics.getPublished());
+		assertEquals(0, metrics.getConflated());
+		assertEquals(3, metrics.getMessagesSent());
+		assertEquals(0, metrics.getQueueDepth());
+	}
+
+	@Test
+	public void conflatedEventsReplaceTheQueuedEvent() throws Exception {
+		enableConflation();
+		createDispatcher();
+		publishPosition("motor", 1);
+		publishPosition("motor", 2);
+		publishPosition("motor", 3);
+		assertEquals(1, dispatcher.getTopicMetrics().get("motor").getQueueDepth());
+
+		dispatch(1);
+
+		assertEquals(asList(position(3)), sentEvents());
+		final JmsTopicMetrics metrics = dispatcher.getTopicMetrics().get("motor");
+		assertEquals(3, metrics.getPublished());
+		assertEquals(2, metrics.getConflated());
+		assertEquals(1, metrics.getMessagesSent());
+		assertEquals(0, metrics.getQueueDepth());
+	}
+
+	@Test
+	public void otherEventFromTheSourceEndsConflation() throws Exception {
+		enableConflation();
+		createDispatcher();
+		publishPosition("motor", 1);
+		publishPosition("motor", 2);
+		dispatcher.publish("motor", "status");
+		publishPosition("motor", 3);
+		publishPosition("motor", 4);
+
+		dispatch(3);
+
+		assertEquals(asList(position(2), "status", position(4)), sentEvents());
+		assertEquals(2, dispatcher.getTopicMetrics().get("motor").getConflated());
+	}
+
+	@Test
+	public void eventsFromOtherSourcesDoNotEndConflation() throws Exception {
+		enableConflation();
+		createDispatcher();
+		publishPosition("motor", 1);
+		dispatcher.publish("other", "status");
+		publishPosition("motor", 2);
+
+		dispatch(2);
+
+		assertEquals(asList(position(2), "status"), sentEvents());
+		assertEquals("gda.event.motor", sent.get(0).topic);
+		assertEquals("gda.event.other", sent.get(1).topic);
+	}
+
+	@Test
+	public void eventPublishedAfterDispatchIsSentSeparately() throws Exception {
+		enableConflation();
+		createDispatcher();
+		publishPosition("motor", 1);
+		dispatch(1);
+		publishPosition("motor", 2);
+		dispatch(1);
+
+		assertEquals(asList(position(1), position(2)), sentEvents());
+		assertEquals(0, dispatcher.getTopicMetrics().get("motor").getConflated());
+	}
+
+	@Test
+	public void waitingEventsAreBatchedByTopic() throws Exception {
+		LocalProperties.set(JmsEventDispatcher.GDA_EVENTS_JMS_MAX_BATCH_SIZE, "10");
+		createDispatcher();
+		publishPosition("motor", 1);
+		dispatcher.publish("other", "status");
+		publishPosition("motor", 2);
+
+		dispatch(1);
+
+		assertEquals(2, sent.size());
+		assertEquals("gda.event.motor", sent.get(0).topic);
+		assertEquals(2, sent.get(0).properties.get(JmsClient.BATCH_SIZE_PROPERTY));
+		assertEquals(asList(position(1), position(2)), sent.get(0).getEvents());
+		assertEquals("gda.event.other", sent.get(1).topic);
+		assertFalse(sent.get(1).properties.containsKey(JmsClient.BATCH_SIZE_PROPERTY));
+		assertEquals(asList("status"), sent.get(1).getEvents());
+
+		assertEquals(1, dispatcher.getTopicMetrics().get("motor").getMessagesSent());
+		assertEquals(1, dispatcher.getTopicMetrics().get("other").getMessagesSent());
+		assertEquals(2, dispatcher.getTopicMetrics().get("motor").getSendLatency().getCount());
+	}
+
+	@Test
+	public void batchSizeLimitsEventsPerMessage() throws Exception {
+		LocalProperties.set(JmsEventDispatcher.GDA_EVENTS_JMS_MAX_BATCH_SIZE, "2");
+		createDispatcher();
+		for (int i = 0; i < 5; i++) {
+			publishPosition("motor", i);
+		}
+
+		dispatch(3);
+
+		assertEquals(3, sent.size());
+		assertEquals(asList(position(0), position(1), position(2), position(3), position(4)), sentEvents());
+	}
+}
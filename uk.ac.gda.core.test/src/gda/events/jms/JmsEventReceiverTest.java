@@ -0,0 +1,122 @@
+/*-
+ * Copyright © 2019 Diamond Light Source Ltd.
+ *
+ * This file is part of GDA.
+ *
+ * GDA is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License version 3 as published by the Free
+ * Software Foundation.
+ *
+ * GDA is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with GDA. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package gda.events.jms;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.jms.BytesMessage;
+import javax.jms.Connection;
+import javax.jms.MessageConsumer;
+import javax.jms.MessageListener;
+import javax.jms.Session;
+import javax.jms.Topic;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import gda.device.scannable.ScannableStatus;
+
+public class JmsEventReceiverTest {
+
+	private final List<Object> received = new ArrayList<>();
+
+	private MessageListener listener;
+
+	@Before
+	public void setUp() throws Exception {
+		final Session session = mock(Session.class);
+		final MessageConsumer consumer = mock(MessageConsumer.class);
+		when(session.createTopic(anyString())).thenReturn(mock(Topic.class));
+		when(session.createConsumer(any(Topic.class))).thenReturn(consumer);
+		doAnswer(invocation -> listener = (MessageListener) invocation.getArguments()[0]).when(consumer)
+				.setMessageListener(any(MessageListener.class));
+
+		new JmsEventReceiver(mock(Connection.class), session).subscribe(received::add, "motor");
+	}
+
+	/**
+	 * @return a message holding the bytes, marked as a batch if batchSize is not null
+	 */
+	private static BytesMessage bytesMessage(byte[] bytes, Integer batchSize) {
+		return (BytesMessage) Proxy.newProxyInstance(BytesMessage.class.getClassLoader(), new Class<?>[] { BytesMessage.class },
+				(proxy, method, args) -> {
+					switch (method.getName()) {
+					case "getBodyLength":
+						return (long) bytes.length;
+					case "readBytes":
+						System.arraycopy(bytes, 0, (byte[]) args[0], 0, bytes.length);
+						return bytes.length;
+					case "propertyExists":
+						return batchSize != null && JmsClient.BATCH_SIZE_PROPERTY.equals(args[0]);
+					case "getJMSTimestamp":
+						return System.currentTimeMillis();
+					default:
+						return null;
+					}
+				});
+	}
+
+	@Test
+	public void batchedEventsAreDeliveredInOrder() throws Exception {
+		final byte[] batch = EventCodecRegistry.createDefault().encodeBatch("gda.event.motor",
+				asList(ScannableStatus.BUSY, "moving", ScannableStatus.IDLE));
+
+		listener.onMessage(bytesMessage(batch, 3));
+
+		assertEquals(asList(ScannableStatus.BUSY, "moving", ScannableStatus.IDLE), received);
+	}
+
+	@Test
+	public void eventWhichCannotBeDecodedDoesNotLoseTheRestOfItsBatch() throws Exception {
+		final EventCodecRegistry codecs = EventCodecRegistry.createDefault();
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (DataOutputStream out = new DataOutputStream(bytes)) {
+			out.writeInt(3);
+			for (byte[] event : asList(codecs.encode("gda.event.motor", ScannableStatus.BUSY), new byte[] { 99 },
+					codecs.encode("gda.event.motor", ScannableStatus.IDLE))) {
+				out.writeInt(event.length);
+				out.write(event);
+			}
+		}
+
+		listener.onMessage(bytesMessage(bytes.toByteArray(), 3));
+
+		assertEquals(asList(ScannableStatus.BUSY, ScannableStatus.IDLE), received);
+	}
+
+	@Test
+	public void malformedBatchIsDropped() throws Exception {
+		listener.onMessage(bytesMessage(new byte[] { 0, 0 }, 1));
+
+		assertEquals(0, received.size());
+	}
+}
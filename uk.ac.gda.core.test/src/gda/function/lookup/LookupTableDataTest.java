@@ -0,0 +1,120 @@
+/*-
+ * Copyright © 2019 Diamond Light Source Ltd.
+ *
+ * This file is part of GDA.
+ *
+ * GDA is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License version 3 as published by the Free
+ * Software Foundation.
+ *
+ * GDA is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with GDA. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package gda.function.lookup;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import gda.device.DeviceException;
+import gda.function.lookup.LookupTable.Interpolation;
+
+public class LookupTableDataTest {
+
+	private LookupTableData data;
+
+	@Before
+	public void setUp() {
+		// rows deliberately out of order, with a duplicate key
+		List<double[]> rows = Arrays.asList(
+				new double[] { 3.0, 30.0, 9.0 },
+				new double[] { 1.0, 10.0, 1.0 },
+				new double[] { 2.0, 20.0, 4.0 },
+				new double[] { 2.0, 99.0, 99.0 },
+				new double[] { 4.0, 40.0, 16.0 });
+		data = new LookupTableData(Arrays.asList("energy", "gap", "square"), null, new int[] { 1, 1, 1 }, rows);
+	}
+
+	@Test
+	public void testValuesAtRows() throws DeviceException {
+		for (Interpolation interpolation : Interpolation.values()) {
+			assertEquals(20.0, data.lookup(2.0, data.getColumn("gap"), interpolation), 0);
+			assertEquals(40.0, data.lookup(4.0, data.getColumn("gap"), interpolation), 0);
+			assertEquals(1.0, data.lookup(1.0, data.getColumn("square"), interpolation), 0);
+			// keys used to be formatted to 3 decimal places so nearby keys must still match rows
+			assertEquals(30.0, data.lookup(3.0004, data.getColumn("gap"), interpolation), 0);
+		}
+	}
+
+	@Test
+	public void testLinearInterpolation() throws DeviceException {
+		assertEquals(25.0, data.lookup(2.5, data.getColumn("gap"), Interpolation.LINEAR), 1e-12);
+		assertEquals(12.5, data.lookup(3.5, data.getColumn("square"), Interpolation.LINEAR), 1e-12);
+	}
+
+	@Test
+	public void testCubicInterpolation() throws DeviceException {
+		// a straight line is reproduced exactly by a natural spline
+		assertEquals(25.0, data.lookup(2.5, data.getColumn("gap"), Interpolation.CUBIC), 1e-12);
+		final double square = data.lookup(2.5, data.getColumn("square"), Interpolation.CUBIC);
+		assertEquals(6.25, square, 0.1);
+	}
+
+	@Test(expected = DeviceException.class)
+	public void testNoInterpolationBetweenRows() throws DeviceException {
+		data.lookup(2.5, data.getColumn("gap"), Interpolation.NONE);
+	}
+
+	@Test(expected = DeviceException.class)
+	public void testOutsideTable() throws DeviceException {
+		data.lookup(4.1, data.getColumn("gap"), Interpolation.LINEAR);
+	}
+
+	@Test(expected = DeviceException.class)
+	public void testUnknownColumn() throws DeviceException {
+		data.getColumn("undulator");
+	}
+
+	@Test
+	public void testBulkLookupMatchesSingleLookups() throws DeviceException {
+		final double[] trajectory = new double[301];
+		for (int i = 0; i < trajectory.length; i++) {
+			// up and back down again
+			trajectory[i] = i <= 150 ? 1 + i / 50.0 : 4 - (i - 150) / 50.0;
+		}
+		for (Interpolation interpolation : Arrays.asList(Interpolation.LINEAR, Interpolation.CUBIC)) {
+			final int column = data.getColumn("square");
+			final double[] expected = new double[trajectory.length];
+			for (int i = 0; i < trajectory.length; i++) {
+				expected[i] = data.lookup(trajectory[i], column, interpolation);
+			}
+			assertArrayEquals(expected, data.lookup(trajectory, column, interpolation), 0);
+		}
+	}
+
+	@Test
+	public void testFileOrderIsKept() {
+		assertEquals(5, data.getNumberOfRows());
+		assertArrayEquals(new double[] { 3, 1, 2, 2, 4 }, data.getFileKeys(), 0);
+	}
+
+	@Test
+	public void testSingleRow() throws DeviceException {
+		List<double[]> rows = new ArrayList<>();
+		rows.add(new double[] { 5.0, 7.0 });
+		LookupTableData single = new LookupTableData(Arrays.asList("energy", "gap"), null, new int[] { 1, 1 }, rows);
+		assertEquals(7.0, single.lookup(5.0, 1, Interpolation.CUBIC), 0);
+	}
+}
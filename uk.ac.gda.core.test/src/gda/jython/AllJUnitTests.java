@@ -33,6 +33,7 @@ import org.junit.runners.Suite;
 	gda.jython.authoriser.FileAuthoriserTest.class,
 	gda.jython.batoncontrol.BatonManagerTest.class,
 	gda.jython.ScriptPathsTest.class,
+	gda.jython.JythonScriptCacheTest.class,
 	gda.jython.GDAJythonClassloaderTest.class,
 	gda.jython.logger.BatonChangedLoggerAdapterTest.class,
 	gda.jython.logger.ScanDataPointLoggerAdapterTest.class,
@@ -0,0 +1,255 @@
+/*-
+ * Copyright © 2019 Diamond Light Source Ltd.
+ *
+ * This file is part of GDA.
+ *
+ * GDA is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License version 3 as published by the Free
+ * Software Foundation.
+ *
+ * GDA is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with GDA. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package gda.jython;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import gda.jython.translator.Translator;
+
+public class JythonScriptCacheTest {
+
+	private static final String VERSION = "2.7.1";
+
+	private Path cacheDir;
+	private Path scripts;
+	private FakeTranslator translator;
+	private final AtomicInteger translations = new AtomicInteger();
+
+	@Before
+	public void setUp() throws IOException {
+		cacheDir = Files.createTempDirectory("jythonCache");
+		scripts = Files.createTempDirectory("scripts");
+		translator = new FakeTranslator();
+		translator.addAliasedCommand("ls");
+		translator.addAliasedCommand("pos");
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		for (Path dir : Arrays.asList(cacheDir, scripts)) {
+			try (Stream<Path> files = Files.walk(dir)) {
+				files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+			}
+		}
+	}
+
+	@Test
+	public void unknownCompiledClassesAreRemoved() throws IOException {
+		final Path classFile = compiled(source("module.py", "x = 1"));
+		final Path orphan = Files.write(scripts.resolve("removed$py.class"), new byte[] { 1 });
+
+		new JythonScriptCache(cacheDir, VERSION).validateCompiledModules(scripts);
+
+		assertFalse(Files.exists(classFile));
+		assertFalse(Files.exists(orphan));
+	}
+
+	@Test
+	public void recordedCompiledClassesAreKeptUntilTheSourceChanges() throws IOException {
+		final Path source = source("module.py", "x = 1");
+		JythonScriptCache cache = new JythonScriptCache(cacheDir, VERSION);
+		cache.validateCompiledModules(scripts);
+		final Path classFile = compiled(source);
+		cache.recordCompiledModules(Collections.singletonList(scripts));
+
+		cache = new JythonScriptCache(cacheDir, VERSION);
+		cache.validateCompiledModules(scripts);
+		assertTrue(Files.exists(classFile));
+		assertEquals(1, cache.getCompiledModulesKept());
+
+		// Same modification time as before, so Jython alone would not notice the change
+		final long modified = Files.getLastModifiedTime(source).toMillis();
+		source("module.py", "x = 2");
+		source.toFile().setLastModified(modified);
+		cache = new JythonScriptCache(cacheDir, VERSION);
+		cache.validateCompiledModules(scripts);
+		assertFalse(Files.exists(classFile));
+		assertEquals(1, cache.getCompiledModulesRemoved());
+	}
+
+	@Test
+	public void sourceEditedBetweenValidationsIsHashedAgain() throws IOException {
+		final Path source = source("module.py", "x = 1");
+		final JythonScriptCache cache = new JythonScriptCache(cacheDir, VERSION);
+		cache.validateCompiledModules(scripts);
+		final Path classFile = compiled(source);
+		cache.recordCompiledModules(Collections.singletonList(scripts));
+
+		// Edited and validated again by the same cache, as for reset_namespace
+		final long modified = Files.getLastModifiedTime(source).toMillis();
+		source("module.py", "x = 2");
+		source.toFile().setLastModified(modified);
+		cache.validateCompiledModules(scripts);
+		assertFalse(Files.exists(classFile));
+
+		Files.write(classFile, new byte[] { 4, 5, 6, 7 });
+		cache.recordCompiledModules(Collections.singletonList(scripts));
+
+		// The new class file must have been recorded with the hash of the edited source
+		final JythonScriptCache restarted = new JythonScriptCache(cacheDir, VERSION);
+		restarted.validateCompiledModules(scripts);
+		assertTrue(Files.exists(classFile));
+		assertEquals(1, restarted.getCompiledModulesKept());
+	}
+
+	@Test
+	public void compiledClassesAreRemovedWhenJythonVersionChanges() throws IOException {
+		final Path source = source("module.py", "x = 1");
+		JythonScriptCache cache = new JythonScriptCache(cacheDir, VERSION);
+		cache.validateCompiledModules(scripts);
+		final Path classFile = compiled(source);
+		cache.recordCompiledModules(Collections.singletonList(scripts));
+
+		new JythonScriptCache(cacheDir, "2.7.2").validateCompiledModules(scripts);
+		assertFalse(Files.exists(classFile));
+	}
+
+	@Test
+	public void longScriptsAreTranslatedOnce() {
+		final String script = longScript();
+		JythonScriptCache cache = new JythonScriptCache(cacheDir, VERSION);
+		final String first = cache.translate(script, translator, this::translate);
+		assertEquals(first, cache.translate(script, translator, this::translate));
+		assertEquals(1, translations.get());
+
+		// Translations on disk are reused after a restart
+		cache = new JythonScriptCache(cacheDir, VERSION);
+		assertEquals(first, cache.translate(script, translator, this::translate));
+		assertEquals(1, translations.get());
+		assertEquals(1, cache.getTranslationHits());
+	}
+
+	@Test
+	public void scriptsAreTranslatedAgainWhenAliasesChange() {
+		final String script = longScript();
+		final JythonScriptCache cache = new JythonScriptCache(cacheDir, VERSION);
+		cache.translate(script, translator, this::translate);
+		translator.addAliasedVarargCommand("scan");
+		cache.translate(script, translator, this::translate);
+		assertEquals(2, translations.get());
+	}
+
+	@Test
+	public void shortScriptsAreNotCached() {
+		final JythonScriptCache cache = new JythonScriptCache(cacheDir, VERSION);
+		cache.translate("pos x", translator, this::translate);
+		cache.translate("pos x", translator, this::translate);
+		assertEquals(2, translations.get());
+	}
+
+	/**
+	 * A real class rather than a mock so that it can be recognised after a restart
+	 */
+	private static class FakeTranslator implements Translator {
+
+		private final Collection<String> aliases = new ArrayList<>();
+		private final Collection<String> varargAliases = new ArrayList<>();
+
+		@Override
+		public Collection<String> getAliasedCommands() {
+			return aliases;
+		}
+
+		@Override
+		public Collection<String> getAliasedVarargCommands() {
+			return varargAliases;
+		}
+
+		@Override
+		public boolean hasAlias(String command) {
+			return aliases.contains(command) || varargAliases.contains(command);
+		}
+
+		@Override
+		public String translate(String original_command) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public String translateGroup(String original_command) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public String getHelpMessage() {
+			return "";
+		}
+
+		@Override
+		public void addAliasedCommand(String commandName) {
+			aliases.add(commandName);
+		}
+
+		@Override
+		public void addAliasedVarargCommand(String commandName) {
+			varargAliases.add(commandName);
+		}
+
+		@Override
+		public void removeAlias(String command) {
+			aliases.remove(command);
+			varargAliases.remove(command);
+		}
+
+		@Override
+		public boolean ignoreRestOfLine(String thisGroup) {
+			return false;
+		}
+	}
+
+	private String translate(String script) {
+		translations.incrementAndGet();
+		return script.toUpperCase();
+	}
+
+	private static String longScript() {
+		final StringBuilder script = new StringBuilder();
+		while (script.length() < JythonScriptCache.MIN_CACHED_LENGTH) {
+			script.append("pos x ").append(script.length()).append('\n');
+		}
+		return script.toString();
+	}
+
+	private Path source(String name, String content) throws IOException {
+		return Files.write(scripts.resolve(name), content.getBytes(StandardCharsets.UTF_8));
+	}
+
+	private static Path compiled(Path source) throws IOException {
+		final String name = source.getFileName().toString();
+		return Files.write(source.resolveSibling(name.substring(0, name.length() - 3) + "$py.class"), new byte[] { 1, 2, 3 });
+	}
+}
@@ -38,6 +38,9 @@ import org.junit.runners.Suite;
 	TrajectoryScanLineTest.class,
 	ConstantVelocityScanLineTest.class,
 	ScanDataPointCacheTest.class,
+	DoubleColumnTest.class,
+	DeviceSamplerTest.class,
+	ScanDataPointCodecTest.class,
 	SortedScanDataPointCacheTest.class,
 	DataPointCacheTest.class
 })
@@ -0,0 +1,123 @@
+/*-
+ * Copyright © 2019 Diamond Light Source Ltd.
+ *
+ * This file is part of GDA.
+ *
+ * GDA is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License version 3 as published by the Free
+ * Software Foundation.
+ *
+ * GDA is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with GDA. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package gda.scan;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import gda.device.DeviceException;
+import gda.device.Scannable;
+
+public class DeviceSamplerTest {
+
+	private static final long READ_TIME_MILLIS = 100;
+
+	private final AtomicInteger levelTwoReadsStarted = new AtomicInteger();
+
+	private Scannable a1;
+	private Scannable b1;
+	private Scannable c2;
+	private Scannable d2;
+
+	@Before
+	public void setUp() throws Exception {
+		a1 = createScannable("a", 1);
+		b1 = createScannable("b", 1);
+		c2 = createScannable("c", 2);
+		d2 = createScannable("d", 2);
+	}
+
+	private Scannable createScannable(String name, int level) throws DeviceException {
+		final Scannable scannable = mock(Scannable.class);
+		when(scannable.getName()).thenReturn(name);
+		when(scannable.getLevel()).thenReturn(level);
+		when(scannable.getPosition()).thenAnswer(invocation -> {
+			if (level == 2) {
+				levelTwoReadsStarted.incrementAndGet();
+			}
+			Thread.sleep(READ_TIME_MILLIS);
+			return name + "Position";
+		});
+		return scannable;
+	}
+
+	private Object[] sample(List<Scannable> scannables, DeviceReadTimings timings, boolean parallel) throws Exception {
+		return DeviceSampler.sample(scannables, Scannable::getPosition, timings, parallel);
+	}
+
+	@Test
+	public void testSerialReadKeepsOrder() throws Exception {
+		final DeviceReadTimings timings = new DeviceReadTimings();
+		assertArrayEquals(new Object[] { "cPosition", "aPosition", "dPosition", "bPosition" },
+				sample(asList(c2, a1, d2, b1), timings, false));
+		assertEquals(4, timings.getAll().size());
+		assertEquals(1, timings.get("a").getCount());
+	}
+
+	@Test
+	public void testParallelReadKeepsOrderAndReadsEachLevelConcurrently() throws Exception {
+		final DeviceReadTimings timings = new DeviceReadTimings();
+		final long start = System.nanoTime();
+		final Object[] positions = sample(asList(c2, a1, d2, b1), timings, true);
+		final long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+
+		assertArrayEquals(new Object[] { "cPosition", "aPosition", "dPosition", "bPosition" }, positions);
+		// Two levels read one after the other, four devices read in about twice the time of one
+		assertTrue("Took " + elapsedMillis + "ms", elapsedMillis >= 2 * READ_TIME_MILLIS);
+		assertTrue("Took " + elapsedMillis + "ms", elapsedMillis < 4 * READ_TIME_MILLIS);
+		for (String name : asList("a", "b", "c", "d")) {
+			assertTrue(timings.get(name).getMax(TimeUnit.MILLISECONDS) >= READ_TIME_MILLIS);
+		}
+	}
+
+	@Test
+	public void testParallelReadFailureStopsAtLevel() throws Exception {
+		when(b1.getPosition()).thenThrow(new DeviceException("b failed"));
+		try {
+			sample(asList(a1, b1, c2, d2), null, true);
+			fail("DeviceException expected");
+		} catch (DeviceException e) {
+			assertEquals("b failed", e.getMessage());
+		}
+		assertEquals(0, levelTwoReadsStarted.get());
+	}
+
+	@Test
+	public void testRuntimeExceptionWrappedWhenParallel() throws Exception {
+		when(b1.getPosition()).thenThrow(new IllegalStateException("b broken"));
+		try {
+			sample(asList(a1, b1), null, true);
+			fail("DeviceException expected");
+		} catch (DeviceException e) {
+			assertTrue(e.getCause() instanceof IllegalStateException);
+		}
+	}
+}
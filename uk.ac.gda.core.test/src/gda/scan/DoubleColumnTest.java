@@ -0,0 +1,81 @@
+/*-
+ * Copyright © 2019 Diamond Light Source Ltd.
+ *
+ * This file is part of GDA.
+ *
+ * GDA is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License version 3 as published by the Free
+ * Software Foundation.
+ *
+ * GDA is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with GDA. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package gda.scan;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.DoubleBuffer;
+
+import org.junit.Test;
+
+public class DoubleColumnTest {
+
+	@Test
+	public void testGrowsBeyondExpectedSize() {
+		final DoubleColumn column = new DoubleColumn(2);
+		for (int i = 0; i < 100; i++) {
+			column.add(i);
+		}
+		assertEquals(100, column.size());
+		assertEquals(99, column.getDouble(99), 0);
+	}
+
+	@Test
+	public void testNullsAreKeptInListViewAndNaNInPrimitiveViews() {
+		final DoubleColumn column = new DoubleColumn();
+		column.add(1.0);
+		column.add((Double) null);
+		column.add(3.0);
+		assertNull(column.get(1));
+		assertEquals(asList(1.0, null, 3.0), column.asList());
+		assertTrue(Double.isNaN(column.getDouble(1)));
+		assertTrue(Double.isNaN(column.toArray()[1]));
+	}
+
+	@Test
+	public void testBufferIsSnapshotOfAddedValues() {
+		final DoubleColumn column = new DoubleColumn(10);
+		column.add(1.0);
+		column.add(2.0);
+		final DoubleBuffer buffer = column.asDoubleBuffer();
+		column.add(3.0);
+		assertEquals(2, buffer.remaining());
+		assertArrayEquals(new double[] { 1.0, 2.0, 3.0 }, column.toArray(), 0);
+	}
+
+	@Test
+	public void testClear() {
+		final DoubleColumn column = new DoubleColumn();
+		column.add((Double) null);
+		column.clear();
+		column.add(5.0);
+		assertEquals(asList(5.0), column.asList());
+	}
+
+	@Test(expected = IndexOutOfBoundsException.class)
+	public void testGetBeyondSizeThrows() {
+		final DoubleColumn column = new DoubleColumn(10);
+		column.add(1.0);
+		column.get(1);
+	}
+}
@@ -21,13 +21,21 @@ package gda.scan;
 import static gda.jython.InterfaceProvider.setJythonServerNotiferForTesting;
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.inOrder;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -40,6 +48,7 @@ import gda.device.DeviceException;
 import gda.device.Scannable;
 import gda.device.scannable.PositionCallableProvider;
 import gda.jython.IJythonServerNotifer;
+import gda.scan.MultithreadedScanDataPointPipeline.BackPressurePolicy;
 
 public class MultithreadedScanDataPointPipelineTest {
 
@@ -353,6 +362,75 @@ public class MultithreadedScanDataPointPipelineTest {
 		}
 	}
 
+	@Test
+	public void testMetricsRecordedForEachPoint() throws Exception {
+		configureMockScannablesAndDetectors();
+		configureMockScannablesAndDetectorsWithCallableProviders();
+		pipeline.put(createScanDataPointWithCallableProviders("point1"));
+		pipeline.put(createScanDataPointWithCallableProviders("point2"));
+		pipeline.shutdown(true);
+
+		final ScanDataPointPipelineMetrics metrics = pipeline.getMetrics();
+		assertEquals(2, metrics.getQueueWait().getCount());
+		assertEquals(2, metrics.getPositionCallableResolution().getCount());
+		assertEquals(2, metrics.getPublish().getCount());
+	}
+
+	@Test
+	public void testFailFastPipelineRejectsPointWhenFull() throws Exception {
+		final CountDownLatch writerReleased = new CountDownLatch(1);
+		final CountDownLatch writerEntered = new CountDownLatch(1);
+		doAnswer(invocation -> {
+			writerEntered.countDown();
+			writerReleased.await();
+			return null;
+		}).when(mockDataWriter).addData(any(IScanDataPoint.class));
+		pipeline = new MultithreadedScanDataPointPipeline(new ScanDataPointPublisher(mockDataWriter, mockScan), 10, 2,
+				BackPressurePolicy.FAIL_FAST, "scan-name");
+		configureMockScannablesAndDetectors();
+
+		pipeline.put(createScanDataPoint()); // being published
+		assertTrue(writerEntered.await(5, TimeUnit.SECONDS));
+		pipeline.put(createScanDataPoint()); // queued
+		try {
+			pipeline.put(createScanDataPoint());
+			fail("DeviceException expected");
+		} catch (final DeviceException e) {
+			assertTrue(e.getMessage().contains("already holds 2 points"));
+		} finally {
+			writerReleased.countDown();
+		}
+		pipeline.shutdown(true);
+		verify(mockDataWriter, times(2)).addData(any(IScanDataPoint.class));
+	}
+
+	@Test
+	public void testBlockingPipelineWaitsForRoom() throws Exception {
+		final CountDownLatch writerReleased = new CountDownLatch(1);
+		final CountDownLatch writerEntered = new CountDownLatch(1);
+		doAnswer(invocation -> {
+			writerEntered.countDown();
+			writerReleased.await();
+			return null;
+		}).when(mockDataWriter).addData(any(IScanDataPoint.class));
+		pipeline = new MultithreadedScanDataPointPipeline(new ScanDataPointPublisher(mockDataWriter, mockScan), 10, 2,
+				BackPressurePolicy.BLOCK, "scan-name");
+		configureMockScannablesAndDetectors();
+
+		pipeline.put(createScanDataPoint());
+		assertTrue(writerEntered.await(5, TimeUnit.SECONDS));
+		pipeline.put(createScanDataPoint());
+		final Thread scanThread = new Thread(new ScanLikeRun(createScanDataPoint(), createScanDataPoint(), null));
+		scanThread.start();
+		Thread.sleep(200);
+		assertFalse("put should block while the pipeline is full", reached1);
+		writerReleased.countDown();
+		scanThread.join(5000);
+		assertTrue(reached2);
+		assertNull(caughtException);
+		verify(mockDataWriter, times(4)).addData(any(IScanDataPoint.class));
+	}
+
 	class ScanLikeRun implements Runnable {
 
 		private final ScanDataPoint _point1;
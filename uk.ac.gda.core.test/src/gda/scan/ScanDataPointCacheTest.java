@@ -20,7 +20,12 @@ package gda.scan;
 
 import static gda.scan.ScanDataPointProvider.getPoint;
 import static java.util.Arrays.asList;
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.DoubleBuffer;
+import java.util.List;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -43,6 +48,31 @@ public class ScanDataPointCacheTest {
 		assertEquals(asList(3.1, 3.2, 3.3), cache.getPositionsFor("det0"));
 	}
 
+	@Test
+	public void testBufferAndDatasetViews() throws Exception {
+		cache.update(null, getPoint(0, 3, asList(0.1), asList(3.1)));
+		cache.update(null, getPoint(1, 3, asList(0.2), asList(3.2)));
+		final DoubleBuffer buffer = cache.getBufferFor("scan0");
+		assertEquals(2, buffer.remaining());
+		assertEquals(0.2, buffer.get(1), 0);
+		assertTrue(buffer.isReadOnly());
+		assertArrayEquals(new double[] { 3.1, 3.2 }, cache.getDatasetFor("det0").getData(), 0);
+	}
+
+	@Test
+	public void testPositionsListIsLiveView() throws Exception {
+		cache.update(null, getPoint(0, 3, asList(0.1), asList(3.1)));
+		final List<Double> positions = cache.getPositionsFor("scan0");
+		cache.update(null, getPoint(1, 3, asList(0.2), asList(3.2)));
+		assertEquals(asList(0.1, 0.2), positions);
+	}
+
+	@Test(expected=IllegalArgumentException.class)
+	public void testMissingScannableNameThrowsForBuffer() throws Exception {
+		cache.update(null, getPoint(0, 3, asList(0.1), asList(3.1)));
+		cache.getBufferFor("missing scannable");
+	}
+
 	@Test(expected=IllegalArgumentException.class)
 	public void testChangingNumberOfScannablesThrows() throws Exception {
 		cache.update(null, getPoint(0, 3, asList(0.1), asList(3.1)));
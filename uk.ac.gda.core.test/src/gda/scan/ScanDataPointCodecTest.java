@@ -0,0 +1,111 @@
+/*-
+ * Copyright © 2019 Diamond Light Source Ltd.
+ *
+ * This file is part of GDA.
+ *
+ * GDA is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License version 3 as published by the Free
+ * Software Foundation.
+ *
+ * GDA is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with GDA. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package gda.scan;
+
+import static gda.scan.ScanDataPointProvider.getPoint;
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class ScanDataPointCodecTest {
+
+	private ScanDataPointCodec sender;
+	private ScanDataPointCodec receiver;
+
+	@Before
+	public void setUp() {
+		sender = new ScanDataPointCodec();
+		receiver = new ScanDataPointCodec();
+	}
+
+	private byte[] encode(IScanDataPoint point) throws IOException {
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (DataOutputStream out = new DataOutputStream(bytes)) {
+			sender.encode("topic", point, out);
+		}
+		return bytes.toByteArray();
+	}
+
+	private ScanDataPoint decode(byte[] encoded) throws Exception {
+		try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(encoded))) {
+			return (ScanDataPoint) receiver.decode("topic", in);
+		}
+	}
+
+	private IScanDataPoint createPoint(int number) {
+		final IScanDataPoint point = getPoint(number, 3, asList(0.1 * number, 7.0), asList(3.0 + number));
+		point.setUniqueName("scan1");
+		return point;
+	}
+
+	@Test
+	public void testRoundTrip() throws Exception {
+		final ScanDataPoint decoded = decode(encode(createPoint(0)));
+		assertEquals("scan1", decoded.getUniqueName());
+		assertEquals(0, decoded.getCurrentPointNumber());
+		assertArrayEquals(new String[] { "scan0", "scan1" }, decoded.getScannableHeader());
+		assertEquals(asList("det0"), decoded.getDetectorHeader());
+		assertArrayEquals(new Double[] { 0.0, 7.0, 3.0 }, decoded.getAllValuesAsDoubles());
+	}
+
+	@Test
+	public void testScanDataOnlySentWithFirstPoint() throws Exception {
+		final byte[] first = encode(createPoint(0));
+		final byte[] second = encode(createPoint(1));
+		assertTrue(second.length < first.length);
+
+		decode(first);
+		final ScanDataPoint decoded = decode(second);
+		assertEquals(1, decoded.getCurrentPointNumber());
+		assertArrayEquals(new String[] { "scan0", "scan1" }, decoded.getScannableHeader());
+		assertArrayEquals(new Double[] { 0.1, 7.0, 4.0 }, decoded.getAllValuesAsDoubles());
+	}
+
+	@Test
+	public void testPointWithoutScanDataCannotBeDecoded() throws Exception {
+		encode(createPoint(0));
+		try {
+			decode(encode(createPoint(1)));
+			fail("IOException expected");
+		} catch (IOException e) {
+			// expected
+		}
+	}
+
+	@Test
+	public void testScanDataResentWhenItChanges() throws Exception {
+		decode(encode(createPoint(0)));
+		final IScanDataPoint nextScan = createPoint(0);
+		nextScan.setUniqueName("scan2");
+		// Decoding with a fresh receiver only works if the ScanData is included
+		receiver = new ScanDataPointCodec();
+		assertEquals("scan2", decode(encode(nextScan)).getUniqueName());
+	}
+}
@@ -0,0 +1,251 @@
+/*-
+ * Copyright © 2019 Diamond Light Source Ltd.
+ *
+ * This file is part of GDA.
+ *
+ * GDA is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License version 3 as published by the Free
+ * Software Foundation.
+ *
+ * GDA is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with GDA. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package gda.server.collisionAvoidance;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.concurrent.BrokenBarrierException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import gda.device.DeviceException;
+import gda.device.scannable.CheckedScannableMotion;
+import gda.server.collisionAvoidance.CollisionAvoidanceController.CacScannable;
+
+public class CollisionAvoidanceControllerTest {
+
+	private CollisionAvoidanceController cac;
+
+	private ExecutorService executor;
+
+	@Before
+	public void setUp() throws Exception {
+		cac = new CollisionAvoidanceController();
+		executor = Executors.newFixedThreadPool(2);
+		cac.registerScannable(createScannable("s1"));
+		cac.registerScannable(createScannable("s2"));
+	}
+
+	@After
+	public void tearDown() {
+		executor.shutdownNow();
+	}
+
+	private static CheckedScannableMotion createScannable(String name) throws DeviceException {
+		CheckedScannableMotion scannable = mock(CheckedScannableMotion.class);
+		when(scannable.getName()).thenReturn(name);
+		when(scannable.getInputNames()).thenReturn(new String[] { name });
+		when(scannable.getPosition()).thenReturn(0.0);
+		return scannable;
+	}
+
+	private void register(TestChecker checker, String... scannableNames) throws CacException {
+		cac.registerChecker(checker, scannableNames, scannableNames);
+	}
+
+	private Future<String[]> checkInBackground(String scannableName) {
+		return executor.submit(() -> cac.isMoveAllowedNow(scannableName, new Double[] { 1.0 }));
+	}
+
+	@Test
+	public void movesSharingACheckerAreCheckedOneAtATime() throws Exception {
+		final AtomicInteger running = new AtomicInteger();
+		final AtomicInteger maxRunning = new AtomicInteger();
+		register(new TestChecker("shared", () -> {
+			maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+			TimeUnit.MILLISECONDS.sleep(100);
+			running.decrementAndGet();
+		}), "s1", "s2");
+
+		Future<String[]> first = checkInBackground("s1");
+		Future<String[]> second = checkInBackground("s2");
+		first.get(5, TimeUnit.SECONDS);
+		second.get(5, TimeUnit.SECONDS);
+
+		assertEquals(1, maxRunning.get());
+	}
+
+	@Test
+	public void movesWithDisjointCheckersAreCheckedConcurrently() throws Exception {
+		// Each checker waits for the other, so both checks only complete if they run at the same time
+		final CyclicBarrier barrier = new CyclicBarrier(2);
+		register(new TestChecker("c1", () -> barrier.await(5, TimeUnit.SECONDS)), "s1");
+		register(new TestChecker("c2", () -> barrier.await(5, TimeUnit.SECONDS)), "s2");
+
+		Future<String[]> first = checkInBackground("s1");
+		Future<String[]> second = checkInBackground("s2");
+
+		assertArrayEquals(new String[0], first.get(5, TimeUnit.SECONDS));
+		assertArrayEquals(new String[0], second.get(5, TimeUnit.SECONDS));
+	}
+
+	@Test
+	public void startTransitionRejectsSecondMove() throws Exception {
+		CacScannable cacScannable = cac.new CacScannable(createScannable("s3"));
+
+		assertTrue(cacScannable.startTransition(new Double[] { 0.0 }, new Double[] { 1.0 }));
+		assertFalse(cacScannable.startTransition(new Double[] { 0.0 }, new Double[] { 2.0 }));
+
+		cacScannable.endTransition();
+		assertTrue(cacScannable.startTransition(new Double[] { 0.0 }, new Double[] { 2.0 }));
+	}
+
+	@Test
+	public void scannableCannotBeMovedWhileInTransition() throws Exception {
+		final CountDownLatch moving = new CountDownLatch(1);
+		CheckedScannableMotion s3 = createScannable("s3");
+		when(s3.rawIsBusy()).thenAnswer(invocation -> moving.getCount() > 0);
+		cac.registerScannable(s3);
+
+		cac.requestMove("s3", new Double[] { 1.0 });
+		try {
+			cac.requestMove("s3", new Double[] { 2.0 });
+			fail("Second move of a scannable in transition should be rejected");
+		} catch (CacException e) {
+			assertTrue(e.getMessage(), e.getMessage().contains("already in transition"));
+		} finally {
+			moving.countDown();
+		}
+	}
+
+	@Test
+	public void parallelCheckerFailureIsReportedAfterOtherCheckersFinish() throws Exception {
+		cac.setParallelChecking(true);
+		final AtomicBoolean slowCheckerFinished = new AtomicBoolean();
+		// The first checker runs on the calling thread, the second on a pool thread
+		register(new TestChecker("failing", () -> {
+			throw new CacException("failing checker");
+		}), "s1");
+		register(new TestChecker("slow", () -> {
+			TimeUnit.MILLISECONDS.sleep(200);
+			slowCheckerFinished.set(true);
+		}), "s1");
+
+		try {
+			cac.isMoveAllowedNow("s1", new Double[] { 1.0 });
+			fail("Checker failure should be reported");
+		} catch (CacException e) {
+			assertEquals("failing checker", e.getMessage());
+			assertTrue(slowCheckerFinished.get());
+		}
+	}
+
+	@Test
+	public void unregisteredCheckerIsNoLongerAsked() throws Exception {
+		TestChecker checker = new TestChecker("denying", () -> {}, "not allowed");
+		register(checker, "s1");
+		assertArrayEquals(new String[] { "not allowed" }, cac.isMoveAllowedNow("s1", new Double[] { 1.0 }));
+
+		cac.unregisterChecker("denying");
+
+		assertArrayEquals(new String[0], cac.isMoveAllowedNow("s1", new Double[] { 1.0 }));
+		assertEquals(1, checker.calls.get());
+		assertFalse(cac.toString().contains("denying"));
+	}
+
+	@Test
+	public void resultsAreNotCachedByDefault() throws Exception {
+		TestChecker checker = new TestChecker("checker", () -> {});
+		register(checker, "s1");
+
+		cac.isMoveAllowedNow("s1", new Double[] { 1.0 });
+		cac.isMoveAllowedNow("s1", new Double[] { 1.0 });
+
+		assertEquals(2, checker.calls.get());
+	}
+
+	@Test
+	public void cachedResultIsReturnedForRepeatedMove() throws Exception {
+		cac.setCheckerResultCacheSize(4);
+		TestChecker checker = new TestChecker("checker", () -> {}, "not allowed");
+		register(checker, "s1");
+
+		assertArrayEquals(new String[] { "not allowed" }, cac.isMoveAllowedNow("s1", new Double[] { 1.0 }));
+		assertArrayEquals(new String[] { "not allowed" }, cac.isMoveAllowedNow("s1", new Double[] { 1.0 }));
+		assertEquals(1, checker.calls.get());
+		assertEquals(1, cac.getCheckerLatencies().get("checker").getCount());
+
+		cac.isMoveAllowedNow("s1", new Double[] { 2.0 });
+		assertEquals(2, checker.calls.get());
+	}
+
+	@FunctionalInterface
+	private interface CheckAction {
+		void run() throws InterruptedException, BrokenBarrierException, TimeoutException, CacException;
+	}
+
+	private static class TestChecker implements CollisionChecker {
+
+		private String name;
+		private final CheckAction action;
+		private final String[] report;
+		final AtomicInteger calls = new AtomicInteger();
+
+		TestChecker(String name, CheckAction action, String... report) {
+			this.name = name;
+			this.action = action;
+			this.report = report.length == 0 ? null : report;
+		}
+
+		@Override
+		public String[] checkMove(Double[] currentRangeStart, Double[] currentRangeEnd, Double[] requestedFinal)
+				throws CacException {
+			calls.incrementAndGet();
+			try {
+				action.run();
+			} catch (InterruptedException | BrokenBarrierException | TimeoutException e) {
+				throw new CacException(name + " interrupted: " + e);
+			}
+			return report;
+		}
+
+		@Override
+		public String getName() {
+			return name;
+		}
+
+		@Override
+		public void setName(String name) {
+			this.name = name;
+		}
+
+		@Override
+		public String toString() {
+			return name;
+		}
+	}
+}
@@ -28,6 +28,7 @@ import org.junit.runners.Suite;
 @RunWith(Suite.class)
 @Suite.SuiteClasses({
 	GaussianTest.class,
+	LatencyHistogramTest.class,
 /* 	ElogEntryTest.class, */
 	PyStringToJavaTest.class
 })
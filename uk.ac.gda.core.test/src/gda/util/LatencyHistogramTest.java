@@ -0,0 +1,85 @@
+/*-
+ * Copyright © 2019 Diamond Light Source Ltd.
+ *
+ * This file is part of GDA.
+ *
+ * GDA is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License version 3 as published by the Free
+ * Software Foundation.
+ *
+ * GDA is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with GDA. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package gda.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class LatencyHistogramTest {
+
+	private LatencyHistogram histogram;
+
+	@Before
+	public void setUp() {
+		histogram = new LatencyHistogram("test");
+	}
+
+	@Test
+	public void testEmptyHistogram() {
+		assertEquals(0, histogram.getCount());
+		assertEquals(0, histogram.getMeanMillis(), 0);
+		assertEquals(0, histogram.getPercentileMillis(99), 0);
+	}
+
+	@Test
+	public void testCountMeanAndMax() {
+		histogram.record(TimeUnit.MILLISECONDS.toNanos(1));
+		histogram.record(TimeUnit.MILLISECONDS.toNanos(3));
+		assertEquals(2, histogram.getCount());
+		assertEquals(2.0, histogram.getMeanMillis(), 1e-9);
+		assertEquals(3, histogram.getMax(TimeUnit.MILLISECONDS));
+		assertEquals(4, histogram.getTotal(TimeUnit.MILLISECONDS));
+	}
+
+	@Test
+	public void testPercentilesAreBucketUpperBoundsCappedAtMax() {
+		for (int i = 0; i < 99; i++) {
+			histogram.record(1000);
+		}
+		histogram.record(1_000_000);
+		assertEquals(LatencyHistogram.getBucketUpperBoundNanos(10) / 1e6, histogram.getPercentileMillis(50), 1e-12);
+		assertEquals(1.0, histogram.getPercentileMillis(100), 1e-12);
+		assertTrue(histogram.getPercentileMillis(99) < histogram.getPercentileMillis(100));
+	}
+
+	@Test
+	public void testNegativeDurationsRecordedAsZero() {
+		histogram.record(-5);
+		assertEquals(1, histogram.getBucketCounts()[0]);
+		assertEquals(0, histogram.getMax(TimeUnit.NANOSECONDS));
+	}
+
+	@Test
+	public void testReset() {
+		histogram.record(100);
+		histogram.reset();
+		assertEquals(0, histogram.getCount());
+		assertEquals(0, histogram.getBucketCounts()[7]);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidPercentile() {
+		histogram.getPercentileMillis(101);
+	}
+}
@@ -0,0 +1,80 @@
+/*-
+ * Copyright © 2019 Diamond Light Source Ltd.
+ *
+ * This file is part of GDA.
+ *
+ * GDA is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License version 3 as published by the Free
+ * Software Foundation.
+ *
+ * GDA is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with GDA. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package gda.util.converters;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.DoubleUnaryOperator;
+
+/**
+ * Compares the throughput of an energy to gap style expression evaluated by JEP, one conversion at a time as
+ * {@link JEPQuantityConverter} used to, with the same expression compiled into a {@link CompiledExpression}.
+ * <p>
+ * This is not a unit test and is not part of any suite; run it as a Java application.
+ */
+public class JEPQuantityConverterBenchmark {
+
+	private static final String EXPRESSION = "180.*acos(25./(2*(X+13.72)))/3.14";
+
+	private static final int CONVERSIONS = 1_000_000;
+
+	private static final int[] THREAD_COUNTS = { 1, 2, 4, 8 };
+
+	public static void main(String[] args) throws Exception {
+		final DoubleUnaryOperator interpreted = JEPQuantityConverter.createEvaluator(EXPRESSION, false);
+		final DoubleUnaryOperator compiled = JEPQuantityConverter.createEvaluator(EXPRESSION, true);
+		for (int threads : THREAD_COUNTS) {
+			run("JEP", threads, interpreted);
+			run("compiled", threads, compiled);
+		}
+	}
+
+	private static void run(String name, int threads, DoubleUnaryOperator evaluator) throws Exception {
+		final ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			measure(evaluator, threads, executor); // warm up
+			final double seconds = measure(evaluator, threads, executor);
+			System.out.println(String.format("%-8s %2d threads: %10.0f conversions/s", name, threads, CONVERSIONS / seconds));
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	private static double measure(DoubleUnaryOperator evaluator, int threads, ExecutorService executor) throws Exception {
+		final int perThread = CONVERSIONS / threads;
+		final List<Future<Double>> futures = new ArrayList<>(threads);
+		final long start = System.nanoTime();
+		for (int t = 0; t < threads; t++) {
+			futures.add(executor.submit(() -> {
+				double sum = 0;
+				for (int i = 0; i < perThread; i++) {
+					sum += evaluator.applyAsDouble(i * 1e-6);
+				}
+				return sum;
+			}));
+		}
+		for (Future<Double> future : futures) {
+			future.get();
+		}
+		return (System.nanoTime() - start) / 1e9;
+	}
+}
@@ -19,9 +19,18 @@
 
 package gda.util.converters;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.DoubleUnaryOperator;
+
 import org.jscience.physics.quantities.Quantity;
 import org.jscience.physics.units.Unit;
 import org.junit.Test;
@@ -120,4 +129,67 @@ public class JEPQuantityConverterTest {
 							+ converter.getExpressionFileName(), msg);
 		}
 	}
+
+	@Test
+	public final void testCompiledExpressionsMatchJEP() {
+		final String[] expressions = { "2X", "X/2", "-X^2 + 3*X - 1", "25./(2.*cos(X*3.14/180.)) - 13.72",
+				"180.*acos(25./(2*(X+13.72)))/3.14", "sqrt(abs(X)) + ln(X+5) - log(X+5)", "atan2(X, 2) + tan(X/7)",
+				"pi*X % 3", "e^(X/4)", "X > 0" };
+		for (String expression : expressions) {
+			final DoubleUnaryOperator compiled = JEPQuantityConverter.createEvaluator(expression, true);
+			final DoubleUnaryOperator interpreted = JEPQuantityConverter.createEvaluator(expression, false);
+			for (double x = -4; x <= 4; x += 0.25) {
+				assertEquals(expression + " at " + x, interpreted.applyAsDouble(x), compiled.applyAsDouble(x), 1e-12);
+			}
+		}
+	}
+
+	@Test
+	public final void testExpressionsAreCompiled() {
+		final JEPQuantityConverterParameters parameters = JEPQuantityConverterParameters
+				.GetJEPQuantityConverterParametersFromFile(TEST_FILE_FOLDER + "/Complex.xml");
+		assertTrue(JEPQuantityConverter.createEvaluator(parameters.getExpressionStoT(), true) instanceof CompiledExpression);
+		assertTrue(JEPQuantityConverter.createEvaluator(parameters.getExpressionTtoS(), true) instanceof CompiledExpression);
+	}
+
+	@Test
+	public final void testAmounts() {
+		final JEPQuantityConverter converter = new JEPQuantityConverter(TEST_FILE_FOLDER + "/Complex.xml");
+		final double[] sources = { 0, 10.5, 20, 30.25 };
+		final double[] targets = converter.toTargetAmounts(sources);
+		for (int i = 0; i < sources.length; i++) {
+			final Quantity source = Quantity.valueOf(sources[i], converter.getAcceptableSourceUnits().get(0));
+			assertEquals(converter.toTarget(source).getAmount(), targets[i], 0);
+		}
+		assertArrayEquals(sources, converter.toSourceAmounts(targets), 1e-9);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public final void testAmountsWithNoResult() {
+		final JEPQuantityConverter converter = new JEPQuantityConverter(TEST_FILE_FOLDER + "/Complex.xml");
+		// acos of a value greater than one
+		converter.toSourceAmounts(new double[] { 1.0, -13 });
+	}
+
+	@Test
+	public final void testConcurrentConversion() throws Exception {
+		final JEPQuantityConverter converter = new JEPQuantityConverter(TEST_FILE_FOLDER + "/Complex.xml");
+		final double[] sources = new double[10000];
+		for (int i = 0; i < sources.length; i++) {
+			sources[i] = i * 45.0 / sources.length;
+		}
+		final double[] expected = converter.toTargetAmounts(sources);
+		final ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			final List<Future<double[]>> results = new ArrayList<>();
+			for (int i = 0; i < 8; i++) {
+				results.add(executor.submit(() -> converter.toTargetAmounts(sources)));
+			}
+			for (Future<double[]> result : results) {
+				assertArrayEquals(expected, result.get(), 0);
+			}
+		} finally {
+			executor.shutdown();
+		}
+	}
 }
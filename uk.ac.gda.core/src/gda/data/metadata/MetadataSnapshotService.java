@@ -0,0 +1,362 @@
+/*-
+ * Copyright © 2019 Diamond Light Source Ltd.
+ *
+ * This file is part of GDA.
+ *
+ * GDA is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License version 3 as published by the Free
+ * Software Foundation.
+ *
+ * GDA is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with GDA. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package gda.data.metadata;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import gda.configuration.properties.LocalProperties;
+import gda.device.DeviceException;
+import gda.device.Scannable;
+import gda.factory.Finder;
+import gda.jython.InterfaceProvider;
+import uk.ac.diamond.daq.concurrent.Async;
+
+/**
+ * Reads the positions of metadata scannables directly, rather than through the Jython interpreter, and concurrently, so
+ * that the time taken to capture the metadata at the start of a scan is that of the slowest scannable rather than the
+ * sum of them all.
+ * <p>
+ * Each read is given a timeout; a scannable which does not respond in time is reported as failed and does not hold up
+ * the others. Positions of slow-changing scannables can be reused for a configurable staleness window, by default for
+ * all scannables or set for each scannable by name. Every {@link Snapshot} records when its position was read so that
+ * the capture time can be written to the file with it.
+ */
+public class MetadataSnapshotService {
+
+	private static final Logger logger = LoggerFactory.getLogger(MetadataSnapshotService.class);
+
+	/** Property setting the time in milliseconds allowed to read each scannable. Default is 5000. */
+	public static final String GDA_METADATA_SNAPSHOT_TIMEOUT = "gda.metadata.snapshot.timeoutMillis";
+
+	/**
+	 * Property setting the default time in milliseconds for which a position read may be reused. Default is 0, always
+	 * read the scannable.
+	 */
+	public static final String GDA_METADATA_SNAPSHOT_STALENESS = "gda.metadata.snapshot.stalenessMillis";
+
+	private static MetadataSnapshotService defaultService;
+
+	private volatile long timeoutMillis;
+
+	private volatile long defaultStalenessMillis;
+
+	private final Map<String, Long> stalenessMillis = new ConcurrentHashMap<>();
+
+	private final Map<String, Snapshot> cache = new ConcurrentHashMap<>();
+
+	/**
+	 * @return the service used by {@link NXMetaDataProvider}, {@link ScannableMetadataEntry} and the NeXus data writer
+	 */
+	public static synchronized MetadataSnapshotService getDefault() {
+		if (defaultService == null) {
+			defaultService = new MetadataSnapshotService(LocalProperties.getAsInt(GDA_METADATA_SNAPSHOT_TIMEOUT, 5000),
+					LocalProperties.getAsInt(GDA_METADATA_SNAPSHOT_STALENESS, 0));
+		}
+		return defaultService;
+	}
+
+	public MetadataSnapshotService(long timeoutMillis, long defaultStalenessMillis) {
+		this.timeoutMillis = timeoutMillis;
+		this.defaultStalenessMillis = defaultStalenessMillis;
+	}
+
+	/**
+	 * Read the positions of the scannables concurrently, reusing cached positions which are not yet stale
+	 *
+	 * @param scannables
+	 * @return a snapshot of each scannable keyed by its name, in the order given
+	 */
+	public Map<String, Snapshot> capture(Collection<? extends Scannable> scannables) {
+		final Map<String, Scannable> named = new LinkedHashMap<>();
+		for (Scannable scannable : scannables) {
+			named.put(scannable.getName(), scannable);
+		}
+		return capture(named);
+	}
+
+	/**
+	 * Read the positions of the scannables concurrently, reusing cached positions which are not yet stale. Each
+	 * scannable is known by the name it is given here rather than its own, so that a scannable found by an alias is
+	 * recorded under that alias.
+	 *
+	 * @param scannables
+	 *            the scannables keyed by the names to record them under
+	 * @return a snapshot of each scannable keyed by the name given, in the order given
+	 */
+	public Map<String, Snapshot> capture(Map<String, ? extends Scannable> scannables) {
+		final long start = System.nanoTime();
+		final Map<String, Snapshot> snapshots = new LinkedHashMap<>();
+		final Map<String, Future<Snapshot>> reads = new LinkedHashMap<>();
+		for (Map.Entry<String, ? extends Scannable> entry : scannables.entrySet()) {
+			final String name = entry.getKey();
+			final Scannable scannable = entry.getValue();
+			final Snapshot cached = getFresh(name);
+			if (cached != null) {
+				snapshots.put(name, cached);
+			} else {
+				snapshots.put(name, null); // keep the order
+				reads.put(name, Async.submit(() -> read(name, scannable), "Metadata snapshot of %s", name));
+			}
+		}
+
+		// All reads started together so each is allowed the timeout from now
+		final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+		for (Map.Entry<String, Future<Snapshot>> read : reads.entrySet()) {
+			final String name = read.getKey();
+			Snapshot snapshot;
+			try {
+				snapshot = read.getValue().get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+			} catch (TimeoutException e) {
+				read.getValue().cancel(true);
+				snapshot = new Snapshot(name, null, Instant.now(), timeoutMillis * 1_000_000,
+						new DeviceException("Timed out after " + timeoutMillis + "ms reading position of " + name));
+			} catch (ExecutionException e) {
+				snapshot = new Snapshot(name, null, Instant.now(), 0, e.getCause());
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				read.getValue().cancel(true);
+				snapshot = new Snapshot(name, null, Instant.now(), 0, e);
+			}
+			snapshots.put(name, snapshot);
+		}
+		logger.debug("Captured {} metadata scannables ({} read) in {}ms", snapshots.size(), reads.size(),
+				TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+		return snapshots;
+	}
+
+	/**
+	 * Read the position of a single scannable on the calling thread, reusing its cached position if not yet stale
+	 *
+	 * @param scannable
+	 * @return the snapshot, which may hold the exception thrown reading the scannable
+	 */
+	public Snapshot capture(Scannable scannable) {
+		final Snapshot cached = getFresh(scannable.getName());
+		return cached != null ? cached : read(scannable.getName(), scannable);
+	}
+
+	/**
+	 * Find a scannable in the finder or, failing that, in the Jython namespace. The namespace is looked up directly;
+	 * nothing is evaluated by the interpreter.
+	 *
+	 * @param scannableName
+	 * @return the scannable
+	 * @throws IllegalArgumentException
+	 *             if no scannable with the name can be found
+	 */
+	public static Scannable findScannable(String scannableName) {
+		Object found = Finder.getInstance().find(scannableName);
+		if (!(found instanceof Scannable)) {
+			found = InterfaceProvider.getJythonNamespace().getFromJythonNamespace(scannableName);
+		}
+		if (!(found instanceof Scannable)) {
+			throw new IllegalArgumentException("Could not find scannable '" + scannableName + "'");
+		}
+		return (Scannable) found;
+	}
+
+	/**
+	 * @param scannableNames
+	 * @return the scannables with the names given
+	 * @throws IllegalArgumentException
+	 *             if any cannot be found
+	 */
+	public static List<Scannable> findScannables(Collection<String> scannableNames) {
+		final List<Scannable> scannables = new ArrayList<>(scannableNames.size());
+		for (String scannableName : scannableNames) {
+			scannables.add(findScannable(scannableName));
+		}
+		return scannables;
+	}
+
+	private Snapshot read(String name, Scannable scannable) {
+		final Instant captureTime = Instant.now();
+		final long start = System.nanoTime();
+		Snapshot snapshot;
+		try {
+			snapshot = new Snapshot(name, scannable.getPosition(), captureTime, System.nanoTime() - start, null);
+			if (getStalenessMillis(name) > 0) {
+				cache.put(name, snapshot);
+			}
+		} catch (DeviceException | RuntimeException e) {
+			snapshot = new Snapshot(name, null, captureTime, System.nanoTime() - start, e);
+		}
+		return snapshot;
+	}
+
+	private Snapshot getFresh(String scannableName) {
+		final Snapshot cached = cache.get(scannableName);
+		if (cached == null) {
+			return null;
+		}
+		final long staleness = getStalenessMillis(scannableName);
+		if (cached.getCaptureTime().plusMillis(staleness).isAfter(Instant.now())) {
+			return cached.asCached();
+		}
+		cache.remove(scannableName, cached);
+		return null;
+	}
+
+	/**
+	 * @param timeoutMillis
+	 *            the time allowed to read each scannable
+	 */
+	public void setTimeoutMillis(long timeoutMillis) {
+		this.timeoutMillis = timeoutMillis;
+	}
+
+	public long getTimeoutMillis() {
+		return timeoutMillis;
+	}
+
+	/**
+	 * @param defaultStalenessMillis
+	 *            the time for which positions are reused for scannables without their own staleness window. 0 always
+	 *            reads them.
+	 */
+	public void setDefaultStalenessMillis(long defaultStalenessMillis) {
+		this.defaultStalenessMillis = defaultStalenessMillis;
+	}
+
+	public long getDefaultStalenessMillis() {
+		return defaultStalenessMillis;
+	}
+
+	/**
+	 * Set the time for which the position of a slow-changing scannable is reused
+	 *
+	 * @param scannableName
+	 * @param stalenessMillis
+	 *            0 always reads the scannable. Negative values restore the default.
+	 */
+	public void setStalenessMillis(String scannableName, long stalenessMillis) {
+		if (stalenessMillis < 0) {
+			this.stalenessMillis.remove(scannableName);
+		} else {
+			this.stalenessMillis.put(scannableName, stalenessMillis);
+		}
+		cache.remove(scannableName);
+	}
+
+	public long getStalenessMillis(String scannableName) {
+		return stalenessMillis.getOrDefault(scannableName, defaultStalenessMillis);
+	}
+
+	/**
+	 * Forget all cached positions so that every scannable is read by the next capture
+	 */
+	public void clearCache() {
+		cache.clear();
+	}
+
+	/**
+	 * The position of a scannable, or the exception thrown reading it, and when it was read
+	 */
+	public static final class Snapshot {
+
+		private final String scannableName;
+		private final Object position;
+		private final Instant captureTime;
+		private final long readNanos;
+		private final Throwable exception;
+		private final boolean cached;
+
+		Snapshot(String scannableName, Object position, Instant captureTime, long readNanos, Throwable exception) {
+			this(scannableName, position, captureTime, readNanos, exception, false);
+		}
+
+		private Snapshot(String scannableName, Object position, Instant captureTime, long readNanos, Throwable exception, boolean cached) {
+			this.scannableName = scannableName;
+			this.position = position;
+			this.captureTime = captureTime;
+			this.readNanos = readNanos;
+			this.exception = exception;
+			this.cached = cached;
+		}
+
+		private Snapshot asCached() {
+			return new Snapshot(scannableName, position, captureTime, readNanos, exception, true);
+		}
+
+		public String getScannableName() {
+			return scannableName;
+		}
+
+		/**
+		 * @return the position read
+		 * @throws DeviceException
+		 *             if the position could not be read
+		 */
+		public Object getPosition() throws DeviceException {
+			if (exception != null) {
+				throw new DeviceException("Error reading position of " + scannableName, exception);
+			}
+			return position;
+		}
+
+		public boolean isSuccessful() {
+			return exception == null;
+		}
+
+		public Throwable getException() {
+			return exception;
+		}
+
+		/**
+		 * @return when the read of the position started
+		 */
+		public Instant getCaptureTime() {
+			return captureTime;
+		}
+
+		/**
+		 * @return how long the read took, in nanoseconds
+		 */
+		public long getReadNanos() {
+			return readNanos;
+		}
+
+		/**
+		 * @return true if the position was read by an earlier capture
+		 */
+		public boolean isCached() {
+			return cached;
+		}
+
+		@Override
+		public String toString() {
+			return "Snapshot [scannableName=" + scannableName + ", position=" + position + ", captureTime=" + captureTime
+					+ ", readNanos=" + readNanos + ", exception=" + exception + ", cached=" + cached + "]";
+		}
+	}
+}
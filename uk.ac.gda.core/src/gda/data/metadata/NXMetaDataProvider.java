@@ -43,6 +43,7 @@ import org.slf4j.LoggerFactory;
 import org.springframework.util.StringUtils;
 
 import gda.data.PlottableDetectorData;
+import gda.data.metadata.MetadataSnapshotService.Snapshot;
 import gda.data.nexus.extractor.NexusExtractor;
 import gda.data.nexus.extractor.NexusGroupData;
 import gda.data.nexus.tree.INexusTree;
@@ -99,6 +100,8 @@ public class NXMetaDataProvider extends FindableBase implements NexusTreeAppende
 	private static final String ATTRIBUTE_VALUE_FOR_METADATA_TYPE_SCANNABLE = "scannable";
 	private static final String ATTRIBUTE_VALUE_FOR_METADATA_TYPE_SCANNABLE_GROUP = ATTRIBUTE_VALUE_FOR_METADATA_TYPE_SCANNABLE;
 
+	private static final String ATTRIBUTE_KEY_FOR_CAPTURE_TIME = "capture_time";
+
 	private static final String ATTRIBUTE_KEY_FOR_FIELD_TYPE = "field_type";
 	private static final String ATTRIBUTE_VALUE_FOR_FIELD_TYPE_INPUT = "input";
 	private static final String ATTRIBUTE_VALUE_FOR_FIELD_TYPE_EXTRA = "extra";
@@ -111,6 +114,8 @@ public class NXMetaDataProvider extends FindableBase implements NexusTreeAppende
 
 	private Collection<String> dynamicScannables = new Vector<String>();
 
+	private MetadataSnapshotService snapshotService;
+
 	private static final Logger logger = LoggerFactory.getLogger(NXMetaDataProvider.class);
 
 	public NXMetaDataProvider() {
@@ -151,13 +156,17 @@ public class NXMetaDataProvider extends FindableBase implements NexusTreeAppende
 				}
 				metaScannableList.add(scannable);
 			}
+			// read all the scannables at once rather than one after another
+			Map<String, Snapshot> snapshots = getSnapshotService().capture(metaScannableList);
 			for (Scannable scn : metaScannableList) {
-//				System.out.println("getNexusTree: scannable = " + scn.getName());
+				Snapshot snapshot = snapshots.get(scn.getName());
 				try {
-					Map<String, Object> scannableMap = createMetaScannableMap(scn);
+					Map<String, Object> scannableMap = createMetaScannableMap(scn, snapshot.getPosition());
 					//System.out.println("\t scannableMap = " + scannableMap.toString());
 					INexusTree childNode = createChildNodeForScannableMetaEntry(scn, topNode, scannableMap); //TODO Change name
 					if (childNode != null) {
+						childNode.addChildNode(new NexusTreeNode(ATTRIBUTE_KEY_FOR_CAPTURE_TIME, NexusExtractor.AttrClassName,
+								childNode, new NexusGroupData(snapshot.getCaptureTime().toString())));
 						topNode.addChildNode(childNode);
 					} else {
 						logger.debug("Nexus tree child node is null for " + scn.getName());
@@ -170,6 +179,21 @@ public class NXMetaDataProvider extends FindableBase implements NexusTreeAppende
 		}
 	}
 
+	/**
+	 * @param snapshotService
+	 *            reads the metadata scannables, instead of {@link MetadataSnapshotService#getDefault()}
+	 */
+	public void setSnapshotService(MetadataSnapshotService snapshotService) {
+		this.snapshotService = snapshotService;
+	}
+
+	private MetadataSnapshotService getSnapshotService() {
+		if (snapshotService == null) {
+			snapshotService = MetadataSnapshotService.getDefault();
+		}
+		return snapshotService;
+	}
+
 	public void reset() {
 		this.metaTextualMap = new HashMap<String, Object>();
 		this.formattingMap = new HashMap<String, String>();
@@ -557,16 +581,25 @@ public class NXMetaDataProvider extends FindableBase implements NexusTreeAppende
 
 
 	public Map<String, Object> createMetaScannableMap(Scannable scn) throws DeviceException {
-		Map<String, Object> metaScannableMapObj = new HashMap<String, Object>();
-
-		List<ScannableMetaEntryObj> metasObj = new Vector<ScannableMetaEntryObj>();
-
 		Object scnPos = null;
 		try {
 			scnPos = scn.getPosition();
 		} catch (Exception e) {
 			throw new DeviceException("Error calling getPosition on scannable " + scn.getName(), e);
 		}
+		return createMetaScannableMap(scn, scnPos);
+	}
+
+	/**
+	 * @param scn
+	 * @param scnPos
+	 *            the position of the scannable, already read
+	 * @return the position of each field of the scannable keyed by field name
+	 */
+	public Map<String, Object> createMetaScannableMap(Scannable scn, Object scnPos) {
+		Map<String, Object> metaScannableMapObj = new HashMap<String, Object>();
+
+		List<ScannableMetaEntryObj> metasObj = new Vector<ScannableMetaEntryObj>();
 
 		if (scnPos == null){
 			// something's wrong in the scannable! log this and call the metadata "null"
@@ -1124,6 +1157,7 @@ class NexusTreeStringDump {
 			Serializable format = attributes.get("format");
 			Serializable field_t = attributes.get("field_type");
 			Serializable metadata_t = attributes.get("metadata_type");
+			Serializable capture_t = attributes.get("capture_time");
 
 			int nodesToBeTraversed = nNodes;
 			if (units != null) {
@@ -1138,6 +1172,9 @@ class NexusTreeStringDump {
 			if (metadata_t != null) {
 				nodesToBeTraversed -= 1;
 			}
+			if (capture_t != null) {
+				nodesToBeTraversed -= 1;
+			}
 			out = (nodesToBeTraversed > 0);
 		}
 		return out;
@@ -1153,6 +1190,7 @@ class NexusTreeStringDump {
 			Serializable format = attributes.get("format");
 			Serializable field_t = attributes.get("field_type");
 			Serializable metadata_t = attributes.get("metadata_type");
+			Serializable capture_t = attributes.get("capture_time");
 
 			int nodesRemaining = nNodes;
 			if (units != null) {
@@ -1167,6 +1205,9 @@ class NexusTreeStringDump {
 			if (metadata_t != null) {
 				nodesRemaining -= 1;
 			}
+			if (capture_t != null) {
+				nodesRemaining -= 1;
+			}
 			out = (nodesRemaining == 0);
 		}
 		return out;
@@ -19,12 +19,18 @@
 
 package gda.data.metadata;
 
+import java.lang.reflect.Array;
+
+import gda.device.DeviceException;
 import gda.device.Scannable;
-import gda.jython.JythonServerFacade;
 
 /**
  * A {@link MetadataEntry} that returns the position of a {@link Scannable} as
  * its value.
+ * <p>
+ * The scannable is read directly through the {@link MetadataSnapshotService}
+ * rather than by evaluating a command in the Jython interpreter, so its
+ * position may be reused within the service's staleness window.
  */
 public class ScannableMetadataEntry extends MetadataEntry {
 
@@ -59,8 +65,22 @@ public class ScannableMetadataEntry extends MetadataEntry {
 	}
 
 	@Override
-	public String readActualValue() {
-		String command = scannableName + ".getPosition()";
-		return JythonServerFacade.getInstance().evaluateCommand(command).toString();
+	public String readActualValue() throws DeviceException {
+		Scannable scannable = MetadataSnapshotService.findScannable(scannableName);
+		return positionToString(MetadataSnapshotService.getDefault().capture(scannable).getPosition());
+	}
+
+	private static String positionToString(Object position) {
+		if (position == null || !position.getClass().isArray()) {
+			return String.valueOf(position);
+		}
+		StringBuilder sb = new StringBuilder("[");
+		for (int i = 0; i < Array.getLength(position); i++) {
+			if (i > 0) {
+				sb.append(", ");
+			}
+			sb.append(Array.get(position, i));
+		}
+		return sb.append("]").toString();
 	}
 }
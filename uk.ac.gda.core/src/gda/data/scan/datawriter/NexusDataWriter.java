@@ -35,6 +35,7 @@ import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
@@ -42,6 +43,7 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.Vector;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 import org.apache.commons.lang.ArrayUtils;
@@ -69,6 +71,8 @@ import gda.data.NumTracker;
 import gda.data.PathConstructor;
 import gda.data.metadata.GDAMetadataProvider;
 import gda.data.metadata.Metadata;
+import gda.data.metadata.MetadataSnapshotService;
+import gda.data.metadata.MetadataSnapshotService.Snapshot;
 import gda.data.nexus.INeXusInfoWriteable;
 import gda.data.nexus.NexusFileFactory;
 import gda.data.nexus.extractor.NexusExtractor;
@@ -87,6 +91,7 @@ import gda.factory.Finder;
 import gda.jython.InterfaceProvider;
 import gda.scan.IScanDataPoint;
 import gda.scan.Scan;
+import gda.util.LatencyHistogram;
 import gda.util.QuantityFactory;
 
 /**
@@ -122,6 +127,26 @@ public class NexusDataWriter extends DataWriterBase {
 	 */
 	public static final String GDA_NEXUS_SWMR = "gda.nexus.writeSwmr";
 
+	/**
+	 * Property setting the number of points buffered in memory for each scannable, counter timer and measurement group
+	 * dataset before they are written to the file as one hyperslab. Default is 1, i.e. every point is written as it
+	 * arrives.
+	 */
+	public static final String GDA_NEXUS_WRITE_BEHIND_POINTS = "gda.nexus.writeBehindPoints";
+
+	/**
+	 * Property setting the maximum time in milliseconds that buffered points are held before being written, regardless
+	 * of {@link #GDA_NEXUS_WRITE_BEHIND_POINTS}. The check is made as each point is added. Default is 0, no limit.
+	 */
+	public static final String GDA_NEXUS_WRITE_BEHIND_MILLIS = "gda.nexus.writeBehindMillis";
+
+	/**
+	 * Property setting the minimum time in milliseconds between flushes of the file. Default is 0, flush after every
+	 * point. With {@link #GDA_NEXUS_WRITE_BEHIND_MILLIS} this bounds how long SWMR readers wait to see a point, as long
+	 * as points keep arriving.
+	 */
+	public static final String GDA_NEXUS_FLUSH_INTERVAL_MILLIS = "gda.nexus.flushIntervalMillis";
+
 	/** Maximum length of filenames that can be linked from Nexus files */
 	private static final int MAX_DATAFILENAME = 255;
 
@@ -429,6 +454,17 @@ public class NexusDataWriter extends DataWriterBase {
 	/** Flag to indicate if SWMR is active */
 	private boolean swmrActive = false;
 
+	/** Holds per point slices until they can be written together */
+	private WriteBehindSliceBuffer sliceBuffer = new WriteBehindSliceBuffer(1, 0);
+
+	/** Minimum time between flushes of the file, 0 to flush after every point */
+	private long flushIntervalNanos;
+
+	private long lastFlushNanos;
+
+	/** Performance instrumentation of the time taken by each flush of the file */
+	private final LatencyHistogram flushTimes = new LatencyHistogram("NeXus flush");
+
 	@Override
 	public void addData(IScanDataPoint dataPoint) throws Exception {
 		// Some performance instrumentation
@@ -436,6 +472,11 @@ public class NexusDataWriter extends DataWriterBase {
 		// If this is the start of a new scan reset the performance instrumentation
 		if (scanPointNumber == -1) {
 			totalWritingTime = 0;
+			sliceBuffer = new WriteBehindSliceBuffer(LocalProperties.getInt(GDA_NEXUS_WRITE_BEHIND_POINTS, 1),
+					LocalProperties.getInt(GDA_NEXUS_WRITE_BEHIND_MILLIS, 0));
+			flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(LocalProperties.getInt(GDA_NEXUS_FLUSH_INTERVAL_MILLIS, 0));
+			lastFlushNanos = System.nanoTime();
+			flushTimes.reset();
 		}
 
 		thisPoint = dataPoint;
@@ -498,7 +539,8 @@ public class NexusDataWriter extends DataWriterBase {
 				writeMeasurementGroup();
 			}
 
-			file.flush();
+			sliceBuffer.writeDue();
+			flushIfDue();
 
 		} catch (Exception ex) {
 			String error = "Exception occurred writing the nexus file. The nexus file is not being written correctly or has not been written.";
@@ -516,6 +558,15 @@ public class NexusDataWriter extends DataWriterBase {
 		totalWritingTime += finishTime - startTime;
 	}
 
+	private void flushIfDue() throws NexusException {
+		final long now = System.nanoTime();
+		if (now - lastFlushNanos >= flushIntervalNanos) {
+			file.flush();
+			lastFlushNanos = System.nanoTime();
+			flushTimes.record(lastFlushNanos - now);
+		}
+	}
+
 	private void writeMeasurementGroup() {
 		try {
 			List<String> headers = getHeaders(); // May throw if the header contains duplicated names
@@ -532,7 +583,7 @@ public class NexusDataWriter extends DataWriterBase {
 				try {
 					DataNode dataNode = file.getData(measurementGroup, header);
 					ILazyWriteableDataset lazy = dataNode.getWriteableDataset();
-					lazy.setSlice(null, DatasetFactory.createFromObject(dataIterator.next()), SliceND.createSlice(lazy, startPos, stop));
+					sliceBuffer.write("measurement/" + header, lazy, DatasetFactory.createFromObject(dataIterator.next()), startPos, stop);
 				} catch (DatasetException | NexusException e) {
 					logger.error("Error writing measurement group entry: {}", header, e);
 				}
@@ -591,7 +642,7 @@ public class NexusDataWriter extends DataWriterBase {
 			}
 			Dataset ds = DatasetFactory.createFromObject(newData).reshape(dimArray);
 			try {
-				lazy.setSlice(null, ds, SliceND.createSlice(lazy, startPos, stop));
+				sliceBuffer.write(path + "/data", lazy, ds, startPos, stop);
 			} catch (DatasetException e) {
 				throw new NexusException("Error writing data from " + detectorName, e);
 			}
@@ -967,6 +1018,12 @@ public class NexusDataWriter extends DataWriterBase {
 		// Log the performance info. Convert ns into ms, and report per point to make comparable
 		logger.info("Writing {} points to NeXus took an average of {} ms per point", numberOfPoints,
 				(totalWritingTime / 1.0E6) / numberOfPoints);
+		logger.info("{}", flushTimes);
+		if (logger.isDebugEnabled()) {
+			for (Entry<String, Long> writingTime : sliceBuffer.getWritingTimes().entrySet()) {
+				logger.debug("Writing {} took {} ms in total", writingTime.getKey(), writingTime.getValue() / 1.0E6);
+			}
+		}
 	}
 
 	/**
@@ -975,6 +1032,7 @@ public class NexusDataWriter extends DataWriterBase {
 	public void releaseFile() {
 		try {
 			if (file != null) {
+				sliceBuffer.writeAll();
 				file.flush();
 				file.close();
 			}
@@ -1786,7 +1844,7 @@ public class NexusDataWriter extends DataWriterBase {
 			DataNode data = file.getData(group, inputNames[i]);
 			try {
 				ILazyWriteableDataset lazy = data.getWriteableDataset();
-				lazy.setSlice(null, DatasetFactory.createFromObject(positions[i]).reshape(dimArray), SliceND.createSlice(lazy, startPos, stop));
+				sliceBuffer.write(path + "/" + inputNames[i], lazy, DatasetFactory.createFromObject(positions[i]).reshape(dimArray), startPos, stop);
 			} catch (DatasetException e) {
 				throw new NexusException("Error writing " + inputNames[i], e);
 			}
@@ -1798,7 +1856,7 @@ public class NexusDataWriter extends DataWriterBase {
 			DataNode data = file.getData(group, extraNames[i]);
 			ILazyWriteableDataset lazy = data.getWriteableDataset();
 			try {
-				lazy.setSlice(null, DatasetFactory.createFromObject(positions[inputNames.length + i]), SliceND.createSlice(lazy, startPos, stop));
+				sliceBuffer.write(path + "/" + extraNames[i], lazy, DatasetFactory.createFromObject(positions[inputNames.length + i]), startPos, stop);
 			} catch (DatasetException e) {
 				throw new NexusException("Error writing " + extraNames[i], e);
 			}
@@ -1822,7 +1880,7 @@ public class NexusDataWriter extends DataWriterBase {
 			DataNode data = file.getData(group, detector.getExtraNames()[j]);
 			try {
 				ILazyWriteableDataset lazy = data.getWriteableDataset();
-				lazy.setSlice(null, DatasetFactory.createFromObject(newData[j]).reshape(dimArray), SliceND.createSlice(lazy, startPos, stop));
+				sliceBuffer.write(path + "/" + detector.getExtraNames()[j], lazy, DatasetFactory.createFromObject(newData[j]).reshape(dimArray), startPos, stop);
 			} catch (Exception e) {
 				throw new NexusException("Error writing data for " + detector.getName(), e);
 			}
@@ -1879,11 +1937,11 @@ public class NexusDataWriter extends DataWriterBase {
 		return thisPoint.getPositions().get(index);
 	}
 
-	private void makeMetadataScannableFallback(GroupNode group, Scannable scannable, Object position) throws NexusException {
+	private void makeMetadataScannableFallback(GroupNode group, String scannableName, Scannable scannable, Object position) throws NexusException {
 		String[] inputNames = scannable.getInputNames();
 		String[] extraNames = scannable.getExtraNames();
 
-		logger.debug("Writing data for scannable ({}) to NeXus file.", scannable.getName());
+		logger.debug("Writing data for scannable ({}) to NeXus file.", scannableName);
 
 		// Navigate to correct location in the file.
 		String nxDirName = "before_scan";
@@ -1891,8 +1949,8 @@ public class NexusDataWriter extends DataWriterBase {
 		// Navigate to correct location in the file.
 		String augmentedPath = NexusUtils.addToAugmentPath(
 				NexusUtils.addToAugmentPath(new StringBuilder(file.getPath(group)), nxDirName, nxClass),
-				scannable.getName(), nxClass).toString();
-		logger.debug("Writing data for scannable ({}) to NeXus file at {}.", scannable.getName(), augmentedPath);
+				scannableName, nxClass).toString();
+		logger.debug("Writing data for scannable ({}) to NeXus file at {}.", scannableName, augmentedPath);
 		GroupNode g = file.getGroup(augmentedPath, true);
 		// handle String value that cannot be converted to Quantity
 		if (position instanceof String && QuantityFactory.createFromString((String) position) == null) {
@@ -1958,26 +2016,57 @@ public class NexusDataWriter extends DataWriterBase {
 	}
 
 	private void makeMetadataScannables(GroupNode group, Set<String> metadatascannablestowrite) throws NexusException {
-		for(String scannableName: metadatascannablestowrite) {
+		// Read all the scannables at once rather than one after another, then write them in turn. They are kept by
+		// their namespace names, which may be aliases differing from the names of the scannables themselves.
+		Map<String, Scannable> scannables = new LinkedHashMap<>();
+		for (String scannableName : metadatascannablestowrite) {
 			try {
 				Scannable scannable = (Scannable) InterfaceProvider.getJythonNamespace().getFromJythonNamespace(scannableName);
-				logger.debug("Getting scannable ({}) data for writing to NeXus file.", scannable.getName());
-				Object position = scannable.getPosition();
+				if (scannable == null) {
+					logger.error("could not find {} in namespace.", scannableName);
+				} else {
+					scannables.put(scannableName, scannable);
+				}
+			} catch (Exception e) {
+				logger.error("error getting {} from namespace.", scannableName, e);
+			}
+		}
+		Map<String, Snapshot> snapshots = MetadataSnapshotService.getDefault().capture(scannables);
+
+		for (Entry<String, Scannable> entry : scannables.entrySet()) {
+			String scannableName = entry.getKey();
+			Scannable scannable = entry.getValue();
+			Snapshot snapshot = snapshots.get(scannableName);
+			try {
+				logger.debug("Getting scannable ({}) data for writing to NeXus file.", scannableName);
+				Object position = snapshot.getPosition();
 				if (weKnowTheLocationFor(scannableName)) {
 					locationmap.get(scannableName).makeScannable(file, group, scannable, position, new int[] {1}, false);
 				} else {
-					makeMetadataScannableFallback(group, scannable, position);
+					makeMetadataScannableFallback(group, scannableName, scannable, position);
 					// put in default location (NXcollection with name metadata)
 				}
+				writeCaptureTime(group, snapshot);
 			} catch (NexusException e) {
 				logger.error("Nexus error while adding {} metadata to NeXus file at {}.", scannableName, file.getPath(group), e);
 				throw e;
 			} catch (Exception e) {
-				logger.error("error getting {} from namespace or reading position from it.", scannableName, e);
+				logger.error("error reading position from {}.", scannableName, e);
 			}
 		}
 	}
 
+	/**
+	 * Record when the position of a metadata scannable was read, in before_scan/capture_times
+	 */
+	private void writeCaptureTime(GroupNode group, Snapshot snapshot) throws NexusException {
+		String augmentedPath = NexusUtils.addToAugmentPath(
+				NexusUtils.addToAugmentPath(new StringBuilder(file.getPath(group)), "before_scan", "NXcollection"),
+				"capture_times", "NXcollection").toString();
+		GroupNode g = file.getGroup(augmentedPath, true);
+		NexusUtils.writeString(file, g, snapshot.getScannableName(), snapshot.getCaptureTime().toString());
+	}
+
 	public static Set<String> getMetadatascannables() {
 		return metadatascannables;
 	}
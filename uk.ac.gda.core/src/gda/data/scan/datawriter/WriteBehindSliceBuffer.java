@@ -0,0 +1,232 @@
+/*-
+ * Copyright © 2019 Diamond Light Source Ltd.
+ *
+ * This file is part of GDA.
+ *
+ * GDA is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License version 3 as published by the Free
+ * Software Foundation.
+ *
+ * GDA is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with GDA. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package gda.data.scan.datawriter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import org.eclipse.january.DatasetException;
+import org.eclipse.january.dataset.Dataset;
+import org.eclipse.january.dataset.DatasetUtils;
+import org.eclipse.january.dataset.IDataset;
+import org.eclipse.january.dataset.ILazyWriteableDataset;
+import org.eclipse.january.dataset.SliceND;
+
+/**
+ * Buffers the per point slices written to {@link ILazyWriteableDataset}s so that consecutive points can be written to
+ * each dataset as a single hyperslab.
+ * <p>
+ * Slices written to the same dataset are merged while they are contiguous along one axis (normally the innermost scan
+ * dimension). A run is written when it reaches the configured number of points, when the oldest buffered slice is
+ * older than the configured delay, when a non-contiguous slice arrives or when {@link #writeAll()} is called. With a
+ * buffer of one point and no delay every slice is written straight away.
+ * <p>
+ * This class is not thread safe. It is intended to be used from the single thread that writes the file.
+ */
+public class WriteBehindSliceBuffer {
+
+	private final int maxPoints;
+
+	private final long maxDelayNanos;
+
+	private final Map<String, PendingRun> runs = new LinkedHashMap<>();
+
+	private final Map<String, Long> writingTimes = new LinkedHashMap<>();
+
+	private long oldestBufferedNanos = -1;
+
+	/**
+	 * @param maxPoints
+	 *            the maximum number of points buffered per dataset. Values less than 2 disable buffering.
+	 * @param maxDelayMillis
+	 *            the maximum time a slice should be held in memory before being written. 0 or less means no time limit.
+	 */
+	public WriteBehindSliceBuffer(int maxPoints, long maxDelayMillis) {
+		this.maxPoints = Math.max(1, maxPoints);
+		this.maxDelayNanos = maxDelayMillis > 0 ? maxDelayMillis * 1_000_000 : Long.MAX_VALUE;
+	}
+
+	public boolean isBuffering() {
+		return maxPoints > 1;
+	}
+
+	/**
+	 * Write, or buffer, a slice of a dataset
+	 *
+	 * @param key
+	 *            uniquely identifies the dataset within the file, e.g. its path
+	 * @param lazy
+	 *            the dataset to write to
+	 * @param data
+	 *            the data to write. Its size must match the slice given by start and stop.
+	 * @param start
+	 * @param stop
+	 * @throws DatasetException
+	 */
+	public void write(String key, ILazyWriteableDataset lazy, IDataset data, int[] start, int[] stop)
+			throws DatasetException {
+		if (!isBuffering()) {
+			final long startTime = System.nanoTime();
+			lazy.setSlice(null, data, SliceND.createSlice(lazy, start, stop));
+			addWritingTime(key, System.nanoTime() - startTime);
+			return;
+		}
+
+		final int[] shape = new int[start.length];
+		for (int i = 0; i < shape.length; i++) {
+			shape[i] = stop[i] - start[i];
+		}
+		Dataset dataset = DatasetUtils.convertToDataset(data);
+		if (!Arrays.equals(dataset.getShape(), shape)) {
+			dataset = dataset.reshape(shape);
+		}
+
+		PendingRun run = runs.get(key);
+		if (run != null && !run.append(dataset, start, stop)) {
+			writeRun(key, run);
+			run = null;
+		}
+		if (run == null) {
+			runs.put(key, new PendingRun(lazy, dataset, start, stop));
+			if (oldestBufferedNanos < 0) {
+				oldestBufferedNanos = System.nanoTime();
+			}
+		} else if (run.size() >= maxPoints) {
+			writeRun(key, run);
+		}
+	}
+
+	/**
+	 * Write all buffered slices if the oldest of them has been held for longer than the maximum delay.
+	 *
+	 * @throws DatasetException
+	 */
+	public void writeDue() throws DatasetException {
+		if (oldestBufferedNanos >= 0 && System.nanoTime() - oldestBufferedNanos >= maxDelayNanos) {
+			writeAll();
+		}
+	}
+
+	/**
+	 * Write all buffered slices
+	 *
+	 * @throws DatasetException
+	 */
+	public void writeAll() throws DatasetException {
+		for (Entry<String, PendingRun> entry : new ArrayList<>(runs.entrySet())) {
+			writeRun(entry.getKey(), entry.getValue());
+		}
+		oldestBufferedNanos = -1;
+	}
+
+	/**
+	 * Discard any buffered slices without writing them
+	 */
+	public void clear() {
+		runs.clear();
+		oldestBufferedNanos = -1;
+	}
+
+	/**
+	 * @return the total time in nanoseconds spent writing to each dataset since this buffer was created
+	 */
+	public Map<String, Long> getWritingTimes() {
+		return Collections.unmodifiableMap(writingTimes);
+	}
+
+	private void writeRun(String key, PendingRun run) throws DatasetException {
+		runs.remove(key);
+		if (runs.isEmpty()) {
+			oldestBufferedNanos = -1;
+		}
+		final long startTime = System.nanoTime();
+		run.lazy.setSlice(null, run.getData(), SliceND.createSlice(run.lazy, run.start, run.stop));
+		addWritingTime(key, System.nanoTime() - startTime);
+	}
+
+	private void addWritingTime(String key, long nanos) {
+		writingTimes.merge(key, nanos, Long::sum);
+	}
+
+	/**
+	 * Consecutive slices of one dataset which together form a single hyperslab.
+	 */
+	private static class PendingRun {
+
+		private final ILazyWriteableDataset lazy;
+
+		private final List<Dataset> slices = new ArrayList<>();
+
+		private final int[] start;
+
+		private final int[] stop;
+
+		/** The axis along which slices are joined, or -1 until the second slice is added */
+		private int axis = -1;
+
+		PendingRun(ILazyWriteableDataset lazy, Dataset data, int[] start, int[] stop) {
+			this.lazy = lazy;
+			this.start = start.clone();
+			this.stop = stop.clone();
+			slices.add(data);
+		}
+
+		int size() {
+			return slices.size();
+		}
+
+		/**
+		 * @return true if the slice directly follows this run and has been added to it
+		 */
+		boolean append(Dataset data, int[] newStart, int[] newStop) {
+			if (newStart.length != start.length) {
+				return false;
+			}
+			int joinAxis = -1;
+			for (int i = 0; i < start.length; i++) {
+				if (newStart[i] == start[i] && newStop[i] == stop[i]) {
+					continue;
+				}
+				if (joinAxis != -1 || newStart[i] != stop[i]) {
+					return false;
+				}
+				joinAxis = i;
+			}
+			if (joinAxis == -1 || (axis != -1 && axis != joinAxis)) {
+				return false;
+			}
+			axis = joinAxis;
+			stop[axis] = newStop[axis];
+			slices.add(data);
+			return true;
+		}
+
+		IDataset getData() {
+			if (slices.size() == 1) {
+				return slices.get(0);
+			}
+			return DatasetUtils.concatenate(slices.toArray(new IDataset[slices.size()]), axis);
+		}
+	}
+}
@@ -65,6 +65,15 @@ public class DAServer extends DeviceBase {
 	private Vector<String> data = new Vector<String>();
 	private ServerSocketChannel serverSocket = null;
 	private long replyTimeOut = 30000;
+	private boolean useSelectorTransport = false;
+	private DAServerChannel channel = null;
+	private final DirectBufferPool bufferPool = new DirectBufferPool(4);
+
+	/** The time to wait for a line of a reply; the same as the original polling limit of 80000 x 25ms */
+	private static final long READ_LINE_TIMEOUT_MILLIS = 2_000_000;
+
+	/** The time to wait for da.server to connect to the data port, or to send more data once it has */
+	private static final long DATA_TIMEOUT_MILLIS = 10_000;
 
 	/**
 	 * Set the host on which da.server is running
@@ -143,6 +152,23 @@ public class DAServer extends DeviceBase {
 		this.replyTimeOut = replyTimeOut;
 	}
 
+	/**
+	 * @return true if da.server is accessed using non-blocking sockets and a persistent data connection
+	 */
+	public boolean isUseSelectorTransport() {
+		return useSelectorTransport;
+	}
+
+	/**
+	 * @param useSelectorTransport
+	 *            true to access da.server using non-blocking sockets waited on with a selector rather than by polling,
+	 *            reusing the data connection and receiving binary data into pooled direct buffers. Takes effect on the
+	 *            next connection. Default is false.
+	 */
+	public void setUseSelectorTransport(boolean useSelectorTransport) {
+		this.useSelectorTransport = useSelectorTransport;
+	}
+
 	@Override
 	public void configure() throws FactoryException {
 		lock();
@@ -151,10 +177,9 @@ public class DAServer extends DeviceBase {
 			connect();
 			for (String command : getStartupCommands()) {
 				try {
-					if (null != out) {
+					if (null != out || null != channel) {
 						logger.debug("sending startup command: {}", command);
-						out.write(command + "\n");
-						out.flush();
+						writeCommand(command + "\n");
 						// another XH hack. If the initial reply is empty, because
 						// we have been sent a prompt '>' straight away before the startup command has fully run
 						Object reply = getReply(false);
@@ -185,6 +210,10 @@ public class DAServer extends DeviceBase {
 	public void connect() {
 		lock();
 		try {
+			if (useSelectorTransport) {
+				connectChannel();
+				return;
+			}
 			InetSocketAddress inetAddr = new InetSocketAddress(getHost(), getPort());
 			socket = new Socket();
 			socket.connect(inetAddr, connectTimeOut);
@@ -211,11 +240,38 @@ public class DAServer extends DeviceBase {
 		}
 	}
 
+	private void connectChannel() throws IOException {
+		channel = new DAServerChannel(getName(), bufferPool);
+		try {
+			channel.connect(getHost(), getPort(), connectTimeOut);
+		} catch (IOException e) {
+			channel.close();
+			channel = null;
+			throw e;
+		}
+		connected = true;
+		connectTimeOut = 2000;
+		cleanPipe();
+	}
+
+	private void writeCommand(String command) throws IOException, InterruptedException {
+		if (channel != null) {
+			channel.write(command);
+		} else {
+			out.write(command);
+			out.flush();
+		}
+	}
+
 	private void cleanPipe() {
 		lock();
 		try {
 			if (isConnected()) {
 				logger.trace("cleaning pipe");
+				if (channel != null) {
+					channel.discardInput();
+					return;
+				}
 				while (in.ready()) {
 					in.read();
 				}
@@ -281,6 +337,14 @@ public class DAServer extends DeviceBase {
 	public void close() throws DeviceException {
 		connected = false;
 		setConfigured(false);
+		if (channel != null) {
+			try {
+				channel.close();
+			} catch (IOException e) {
+				logger.warn("Error closing da.server connection", e);
+			}
+			channel = null;
+		}
 		if (serverSocket != null) {
 			try {
 				serverSocket.close();
@@ -315,6 +379,12 @@ public class DAServer extends DeviceBase {
 	 * @return true if connected
 	 */
 	public boolean isConnected() {
+		if (channel != null) {
+			if (!channel.isOpen()) {
+				connected = false;
+			}
+			return connected;
+		}
 		if (socket == null || !socket.isConnected()) {
 			connected = false;
 		}
@@ -327,6 +397,9 @@ public class DAServer extends DeviceBase {
 
 		lock();
 		try {
+			if (channel != null) {
+				return channel.readLine(READ_LINE_TIMEOUT_MILLIS);
+			}
 			int waitIterations = 0;
 
 			while (in != null) {
@@ -379,7 +452,9 @@ public class DAServer extends DeviceBase {
 	 */
 	public Object sendCommand(String msg, int timeout) throws DeviceException {
 		try {
-			socket.setSoTimeout(timeout);
+			if (socket != null) {
+				socket.setSoTimeout(timeout);
+			}
 		} catch (SocketException sx) {
 			logger.error("{}.sendCommand({}, {}) failed", getName(), msg, timeout, sx);
 		}
@@ -407,8 +482,7 @@ public class DAServer extends DeviceBase {
 			ensureConnected();
 			cleanPipe();
 			logger.trace("{}: sending command: {}", getName(), msg);
-			out.write(command);
-			out.flush();
+			writeCommand(command);
 			reply = getReply(multiline);
 		}  catch (InterruptedException e) {
 			Thread.currentThread().interrupt();
@@ -442,8 +516,7 @@ public class DAServer extends DeviceBase {
 
 			try {
 				logger.debug("{}: getData command: {}", getName(), msg);
-				out.write(command);
-				out.flush();
+				writeCommand(command);
 				// clearing any previous data
 				data.clear();
 				reply = getReply(false);
@@ -563,6 +636,9 @@ public class DAServer extends DeviceBase {
 
 	@SuppressWarnings("null")
 	protected ByteBuffer getBinaryDataBuffer(String command, int ndata) throws Exception {
+		if (useSelectorTransport) {
+			return getBinaryDataBufferFromChannel(command, ndata);
+		}
 
 		ByteBuffer bb = ByteBuffer.allocate(ndata * (Float.SIZE / Byte.SIZE));
 		lock();
@@ -635,7 +711,60 @@ public class DAServer extends DeviceBase {
 		return bb;
 	}
 
+	/**
+	 * Equivalent of {@link #getBinaryDataBuffer(String, int)} using the {@link DAServerChannel}. The data connection is
+	 * kept open for the next read, and the returned buffer is a pooled direct buffer which should be passed to
+	 * {@link #releaseDataBuffer(ByteBuffer)} once decoded.
+	 */
+	private ByteBuffer getBinaryDataBufferFromChannel(String command, int ndata) throws Exception {
+		lock();
+		try {
+			ensureConnected();
+			if (channel == null) {
+				throw new IOException("Not connected to da.server");
+			}
+			if (!channel.isDataPortBound()) {
+				createDataSocket();
+			}
+			logger.debug("{}: sent command: {}", getName(), command);
+			writeCommand(command + "\n");
+			final ByteBuffer bb = channel.readData(ndata * (Float.SIZE / Byte.SIZE), DATA_TIMEOUT_MILLIS);
+			try {
+				// get message from da.server over the comms socket about the outputted data.
+				getReply(false);
+			} catch (Exception e) {
+				releaseDataBuffer(bb);
+				throw e;
+			}
+			return bb;
+		} catch (IOException e) {
+			logger.error("{} getBinaryDataBuffer({}, {})", getName(), command, ndata, e);
+			if (channel != null) {
+				channel.closeDataPort();
+			}
+			return null;
+		} finally {
+			unlock();
+		}
+	}
+
+	/**
+	 * Return a buffer from {@link #getBinaryDataBuffer(String, int)} to the pool once its data has been decoded
+	 *
+	 * @param bb
+	 *            may be null
+	 */
+	protected void releaseDataBuffer(ByteBuffer bb) {
+		bufferPool.release(bb);
+	}
+
 	private void createDataSocket() throws IOException, DeviceException {
+		if (channel != null) {
+			dataPort = channel.bindDataPort(dataPort);
+			sendCommand("port " + dataPort);
+			logger.debug("{} getBinaryDataBuffer(): data port bound to {}", getName(), dataPort);
+			return;
+		}
 		boolean bound = false;
 		while (!bound) {
 			if (dataPort < 0) {
@@ -699,15 +828,16 @@ public class DAServer extends DeviceBase {
 		ByteBuffer bb = readDataBuffer(ndata, command);
 		if (bb == null)
 			return null;
-		int bufferSize = bb.array().length;
-		if (bufferSize != ndata * 4){
-			throw new Exception("Asked for " + ndata * 4 + "bytes but received " + bufferSize);
-		}
-		for (int i = 0; i < binaryData.length; i++) {
-			if (!bb.hasRemaining()) {
-				throw new Exception("Ran off end of buffer!");
+		try {
+			int bufferSize = bb.remaining();
+			if (bufferSize != ndata * 4){
+				throw new Exception("Asked for " + ndata * 4 + "bytes but received " + bufferSize);
 			}
-			binaryData[i] = bb.getFloat();
+			for (int i = 0; i < binaryData.length; i++) {
+				binaryData[i] = bb.getFloat();
+			}
+		} finally {
+			releaseDataBuffer(bb);
 		}
 		return binaryData;
 	}
@@ -732,7 +862,11 @@ public class DAServer extends DeviceBase {
 		ByteBuffer bb = readDataBuffer(ndata, command);
 		if (bb == null)
 			return null;
-		bb.asFloatBuffer().get(binaryData);
+		try {
+			bb.asFloatBuffer().get(binaryData);
+		} finally {
+			releaseDataBuffer(bb);
+		}
 		return binaryData;
 	}
 
@@ -756,7 +890,11 @@ public class DAServer extends DeviceBase {
 		ByteBuffer bb = readDataBuffer(ndata, command);
 		if (bb == null)
 			return null;
-		bb.asLongBuffer().get(binaryData);
+		try {
+			bb.asLongBuffer().get(binaryData);
+		} finally {
+			releaseDataBuffer(bb);
+		}
 		return binaryData;
 	}
 
@@ -780,7 +918,11 @@ public class DAServer extends DeviceBase {
 		ByteBuffer bb = readDataBuffer(ndata, command);
 		if (bb == null)
 			return null;
-		bb.asIntBuffer().get(binaryData);
+		try {
+			bb.asIntBuffer().get(binaryData);
+		} finally {
+			releaseDataBuffer(bb);
+		}
 		return binaryData;
 	}
 
@@ -791,7 +933,7 @@ public class DAServer extends DeviceBase {
 			// something's got messed up, probably an abort halfway through data readout, so rebuild the data buffer and
 			// try again
 			dataPort = -1;
-			if (serverSocket.isOpen()) {
+			if (serverSocket != null && serverSocket.isOpen()) {
 				serverSocket.close();
 			}
 			serverSocket = null;
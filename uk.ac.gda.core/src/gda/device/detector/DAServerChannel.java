@@ -0,0 +1,412 @@
+/*-
+ * Copyright © 2019 Diamond Light Source Ltd.
+ *
+ * This file is part of GDA.
+ *
+ * GDA is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License version 3 as published by the Free
+ * Software Foundation.
+ *
+ * GDA is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with GDA. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package gda.device.detector;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The connections to da.server used by {@link DAServer} when {@link DAServer#setUseSelectorTransport(boolean)} is set.
+ * <p>
+ * Commands and replies use one socket, and da.server connects back to a data port to send binary data. All sockets are
+ * non-blocking and are waited on with a single {@link Selector}, so a reply or data is processed as soon as it
+ * arrives rather than on the next poll. A data connection made by da.server is kept open and reused for later reads
+ * until da.server closes it or makes a new one. Binary data is received into direct buffers from a
+ * {@link DirectBufferPool}, which should be released once decoded.
+ * <p>
+ * This class is not thread safe. {@link DAServer} only uses it while holding its lock.
+ */
+class DAServerChannel implements Closeable {
+
+	private static final Logger logger = LoggerFactory.getLogger(DAServerChannel.class);
+
+	private final String name;
+
+	private final DirectBufferPool bufferPool;
+
+	private final Selector selector;
+
+	private final ByteBuffer commandInput = ByteBuffer.allocateDirect(8192);
+
+	private SocketChannel commandChannel;
+
+	private SelectionKey commandKey;
+
+	private ServerSocketChannel dataServer;
+
+	private SocketChannel dataChannel;
+
+	private SelectionKey dataKey;
+
+	/** The buffer currently being filled from the data connection, or null if no data is expected */
+	private ByteBuffer dataTarget;
+
+	DAServerChannel(String name, DirectBufferPool bufferPool) throws IOException {
+		this.name = name;
+		this.bufferPool = bufferPool;
+		this.selector = Selector.open();
+		commandInput.flip(); // Empty and ready to be read from
+	}
+
+	/**
+	 * Connect the command socket
+	 *
+	 * @param host
+	 * @param port
+	 * @param connectTimeoutMillis
+	 * @throws IOException
+	 */
+	void connect(String host, int port, int connectTimeoutMillis) throws IOException {
+		commandChannel = SocketChannel.open();
+		try {
+			commandChannel.socket().connect(new InetSocketAddress(host, port), connectTimeoutMillis);
+			commandChannel.socket().setTcpNoDelay(true);
+			commandChannel.configureBlocking(false);
+			commandKey = commandChannel.register(selector, 0);
+		} catch (IOException e) {
+			commandChannel.close();
+			commandChannel = null;
+			throw e;
+		}
+	}
+
+	boolean isOpen() {
+		return commandChannel != null && commandChannel.isConnected();
+	}
+
+	/**
+	 * @param command
+	 *            a command including its terminating newline
+	 * @throws IOException
+	 * @throws InterruptedException
+	 */
+	void write(String command) throws IOException, InterruptedException {
+		final ByteBuffer bytes = StandardCharsets.ISO_8859_1.encode(command);
+		final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+		try {
+			while (bytes.hasRemaining()) {
+				checkInterrupted();
+				if (commandChannel.write(bytes) == 0) {
+					// Socket send buffer is full - wait until it is not
+					commandKey.interestOps(SelectionKey.OP_WRITE);
+					select(deadline, "command to be sent");
+				}
+			}
+		} catch (ClosedByInterruptException e) {
+			throw interrupted();
+		} finally {
+			if (commandKey.isValid()) {
+				commandKey.interestOps(0);
+			}
+		}
+	}
+
+	/**
+	 * Read a line of a reply. A line ends with a carriage return, or with the prompt "&gt; ". Line feeds are ignored.
+	 *
+	 * @param timeoutMillis
+	 * @return the line, or null if it was empty
+	 * @throws IOException
+	 *             if the connection is closed or nothing is received within the timeout
+	 * @throws InterruptedException
+	 */
+	String readLine(long timeoutMillis) throws IOException, InterruptedException {
+		final StringBuilder reply = new StringBuilder();
+		final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+		try {
+			while (true) {
+				while (commandInput.hasRemaining()) {
+					final char ch = (char) (commandInput.get() & 0xff);
+					if (ch != '\n' && ch != '\r') {
+						reply.append(ch);
+					}
+					final int length = reply.length();
+					if (ch == '\r' || (ch == ' ' && length > 1 && reply.charAt(length - 2) == '>')) {
+						return length > 0 ? reply.toString() : null;
+					}
+				}
+				commandKey.interestOps(SelectionKey.OP_READ);
+				select(deadline, "reply");
+			}
+		} catch (ClosedByInterruptException e) {
+			throw interrupted();
+		} finally {
+			if (commandKey.isValid()) {
+				commandKey.interestOps(0);
+			}
+		}
+	}
+
+	/**
+	 * Discard anything already received on the command and data connections
+	 *
+	 * @throws IOException
+	 */
+	void discardInput() throws IOException {
+		commandInput.clear();
+		while (commandChannel.read(commandInput) > 0) {
+			commandInput.clear();
+		}
+		commandInput.clear().flip();
+		if (dataChannel != null) {
+			final ByteBuffer discard = bufferPool.acquire(8192);
+			try {
+				int discarded = 0;
+				int read;
+				while ((read = dataChannel.read(discard)) > 0) {
+					discarded += read;
+					discard.clear();
+				}
+				if (read < 0) {
+					closeDataConnection();
+				}
+				if (discarded > 0) {
+					logger.warn("{}: discarded {} unexpected bytes from data connection", name, discarded);
+				}
+			} finally {
+				bufferPool.release(discard);
+			}
+		}
+	}
+
+	/**
+	 * Listen for data connections on the first free port from the given port upwards
+	 *
+	 * @param firstPort
+	 * @return the port bound
+	 * @throws IOException
+	 *             if no port could be bound
+	 */
+	int bindDataPort(int firstPort) throws IOException {
+		closeDataPort();
+		for (int port = firstPort; port <= 0xffff; port++) {
+			final ServerSocketChannel server = ServerSocketChannel.open();
+			try {
+				server.socket().bind(new InetSocketAddress(port));
+				server.configureBlocking(false);
+				server.register(selector, SelectionKey.OP_ACCEPT);
+				dataServer = server;
+				return server.socket().getLocalPort();
+			} catch (IOException e) {
+				server.close();
+			}
+		}
+		throw new IOException("no bindable ports found");
+	}
+
+	boolean isDataPortBound() {
+		return dataServer != null && dataServer.isOpen();
+	}
+
+	/**
+	 * Receive binary data sent by da.server, on the current data connection or on a new one.
+	 *
+	 * @param size
+	 *            the number of bytes expected
+	 * @param timeoutMillis
+	 *            the time to wait for the connection, or for more data once some has been received
+	 * @return a pooled buffer ready to be read from containing the data. It should be passed to
+	 *         {@link DirectBufferPool#release(ByteBuffer)} when no longer needed.
+	 * @throws IOException
+	 *             if the data is not received
+	 * @throws InterruptedException
+	 */
+	ByteBuffer readData(int size, long timeoutMillis) throws IOException, InterruptedException {
+		final long timeoutNanos = TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+		final ByteBuffer buffer = bufferPool.acquire(size);
+		dataTarget = buffer;
+		try {
+			if (dataKey != null) {
+				dataKey.interestOps(SelectionKey.OP_READ);
+				readDataConnection();
+			}
+			long deadline = System.nanoTime() + timeoutNanos;
+			while (buffer.hasRemaining()) {
+				final int received = buffer.position();
+				select(deadline, "binary data (received " + received + " of " + size + " bytes)");
+				if (buffer.position() > received) {
+					deadline = System.nanoTime() + timeoutNanos;
+				}
+			}
+			buffer.flip();
+			return buffer;
+		} catch (IOException | InterruptedException | RuntimeException e) {
+			bufferPool.release(buffer);
+			if (e instanceof ClosedByInterruptException) {
+				throw interrupted();
+			}
+			throw e;
+		} finally {
+			dataTarget = null;
+			if (dataKey != null && dataKey.isValid()) {
+				dataKey.interestOps(0);
+			}
+		}
+	}
+
+	/**
+	 * Stop listening for data connections and close any open data connection
+	 */
+	void closeDataPort() {
+		closeDataConnection();
+		if (dataServer != null) {
+			try {
+				dataServer.close();
+			} catch (IOException e) {
+				logger.warn("{}: error closing data port", name, e);
+			}
+			dataServer = null;
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		closeDataPort();
+		try {
+			if (commandChannel != null) {
+				commandChannel.close();
+			}
+		} finally {
+			commandChannel = null;
+			selector.close();
+		}
+	}
+
+	private void select(long deadline, String waitingFor) throws IOException, InterruptedException {
+		checkInterrupted();
+		final long remainingMillis = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+		if (remainingMillis <= 0) {
+			throw new SocketTimeoutException(name + ": timed out waiting for " + waitingFor);
+		}
+		selector.select(remainingMillis);
+		// Selection is woken by interrupts - check before doing any I/O which would close the channels
+		checkInterrupted();
+		final Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+		while (keys.hasNext()) {
+			final SelectionKey key = keys.next();
+			keys.remove();
+			if (!key.isValid()) {
+				continue;
+			}
+			if (key.isAcceptable()) {
+				acceptDataConnection();
+			} else if (key == commandKey && key.isReadable()) {
+				readCommandConnection();
+			} else if (key == dataKey && key.isReadable()) {
+				readDataConnection();
+			}
+		}
+	}
+
+	private void readCommandConnection() throws IOException {
+		commandInput.compact();
+		final int read;
+		try {
+			read = commandChannel.read(commandInput);
+		} finally {
+			commandInput.flip();
+		}
+		if (read < 0) {
+			throw new EOFException(name + ": da.server closed the connection");
+		}
+	}
+
+	private void acceptDataConnection() throws IOException {
+		final SocketChannel channel = dataServer.accept();
+		if (channel == null) {
+			return;
+		}
+		if (dataChannel != null) {
+			// da.server only uses one data connection at a time, so the old one is finished with
+			logger.trace("{}: replacing data connection {} with {}", name, dataChannel, channel);
+			closeDataConnection();
+		}
+		channel.configureBlocking(false);
+		dataChannel = channel;
+		dataKey = channel.register(selector, dataTarget == null ? 0 : SelectionKey.OP_READ);
+		logger.debug("{}: data connection established from {}", name, channel.getRemoteAddress());
+		if (dataTarget != null) {
+			readDataConnection();
+		}
+	}
+
+	private void readDataConnection() throws IOException {
+		if (dataTarget == null || dataChannel == null) {
+			return;
+		}
+		int read;
+		while (dataTarget.hasRemaining() && (read = dataChannel.read(dataTarget)) != 0) {
+			if (read < 0) {
+				closeDataConnection();
+				if (dataTarget.position() > 0 && dataTarget.hasRemaining()) {
+					throw new EOFException(name + ": data connection closed after " + dataTarget.position() + " of "
+							+ dataTarget.limit() + " bytes");
+				}
+				// Data, if any, will come on a new connection
+				return;
+			}
+		}
+	}
+
+	private void closeDataConnection() {
+		if (dataKey != null) {
+			dataKey.cancel();
+			dataKey = null;
+		}
+		if (dataChannel != null) {
+			try {
+				dataChannel.close();
+			} catch (IOException e) {
+				logger.warn("{}: error closing data connection", name, e);
+			}
+			dataChannel = null;
+		}
+	}
+
+	private void checkInterrupted() throws InterruptedException {
+		if (Thread.interrupted()) {
+			throw new InterruptedException(name + ": interrupted waiting for da.server");
+		}
+	}
+
+	private InterruptedException interrupted() {
+		logger.warn("{}: connection closed by interrupt", name);
+		try {
+			close();
+		} catch (IOException e) {
+			logger.debug("{}: error closing after interrupt", name, e);
+		}
+		return new InterruptedException(name + ": interrupted communicating with da.server");
+	}
+}
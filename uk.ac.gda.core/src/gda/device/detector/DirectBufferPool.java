@@ -0,0 +1,108 @@
+/*-
+ * Copyright © 2019 Diamond Light Source Ltd.
+ *
+ * This file is part of GDA.
+ *
+ * GDA is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License version 3 as published by the Free
+ * Software Foundation.
+ *
+ * GDA is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with GDA. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package gda.device.detector;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Deque;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A pool of direct {@link ByteBuffer}s, so that the native memory used to receive data from hardware is allocated once
+ * rather than for every readout.
+ * <p>
+ * Buffers are pooled by capacity, rounded up to a power of two, and a limited number of buffers of each capacity are
+ * kept. Buffers are big endian when acquired.
+ */
+public class DirectBufferPool {
+
+	private static final int MINIMUM_CAPACITY = 64;
+
+	private final int maxBuffersPerCapacity;
+
+	private final ConcurrentMap<Integer, Deque<ByteBuffer>> buffers = new ConcurrentHashMap<>();
+
+	private final AtomicInteger allocations = new AtomicInteger();
+
+	/**
+	 * @param maxBuffersPerCapacity
+	 *            the maximum number of released buffers of each capacity to keep for reuse
+	 */
+	public DirectBufferPool(int maxBuffersPerCapacity) {
+		this.maxBuffersPerCapacity = maxBuffersPerCapacity;
+	}
+
+	/**
+	 * @param size
+	 *            the number of bytes required
+	 * @return a cleared, big endian, direct buffer with its limit set to the given size. Its capacity may be larger.
+	 */
+	public ByteBuffer acquire(int size) {
+		if (size < 0) {
+			throw new IllegalArgumentException("Buffer size must not be negative: " + size);
+		}
+		final int capacity = capacityFor(size);
+		final Deque<ByteBuffer> pooled = buffers.get(capacity);
+		ByteBuffer buffer = pooled == null ? null : pooled.poll();
+		if (buffer == null) {
+			buffer = ByteBuffer.allocateDirect(capacity);
+			allocations.incrementAndGet();
+		}
+		buffer.clear();
+		buffer.limit(size);
+		buffer.order(ByteOrder.BIG_ENDIAN);
+		return buffer;
+	}
+
+	/**
+	 * Return a buffer to the pool. The buffer must not be used after it has been released. Buffers which did not come
+	 * from a pool are ignored.
+	 *
+	 * @param buffer
+	 *            may be null
+	 */
+	public void release(ByteBuffer buffer) {
+		if (buffer == null || !buffer.isDirect() || buffer.capacity() != capacityFor(buffer.capacity())) {
+			return;
+		}
+		final Deque<ByteBuffer> pooled = buffers.computeIfAbsent(buffer.capacity(), key -> new ConcurrentLinkedDeque<>());
+		if (pooled.size() < maxBuffersPerCapacity) {
+			pooled.push(buffer);
+		}
+	}
+
+	/**
+	 * @return the number of buffers this pool has allocated
+	 */
+	public int getAllocations() {
+		return allocations.get();
+	}
+
+	private static int capacityFor(int size) {
+		if (size <= MINIMUM_CAPACITY) {
+			return MINIMUM_CAPACITY;
+		}
+		final int capacity = Integer.highestOneBit(size - 1) << 1;
+		// Sizes above 2^30 cannot be rounded up
+		return capacity > 0 ? capacity : size;
+	}
+}
@@ -53,7 +53,7 @@ import gda.device.detector.nxdetector.NonAsynchronousNXPlugin;
 import gda.device.detector.nxdetector.plugin.PositionQueue;
 import gda.device.scannable.PositionInputStream;
 import gda.device.scannable.PositionInputStreamCombiner;
-import gda.device.scannable.PositionStreamIndexer;
+import gda.device.scannable.PositionStreamIndexerBase;
 import gda.jython.InterfaceProvider;
 import gda.scan.ScanInformation;
 
@@ -71,7 +71,7 @@ public class NXDetector extends DetectorBase implements InitializingBean, NXPlug
 
 	private Map<String, NXPluginBase> additionalPluginMap = new HashMap<>();
 
-	private PositionStreamIndexer<List<NXDetectorDataAppender>> pluginStreamsIndexer;
+	private PositionStreamIndexerBase<List<NXDetectorDataAppender>> pluginStreamsIndexer;
 
 	//Containing of plugins and associated PositionQueue. Used for plugins whose supportsAsynchronousRead returns false
 	private Map<NonAsynchronousNXPlugin, PositionQueue<NXDetectorDataAppender>> pluginPositionQueueMap;
@@ -371,7 +371,7 @@ public class NXDetector extends DetectorBase implements InitializingBean, NXPlug
 		}
 
 		PositionInputStreamCombiner<NXDetectorDataAppender> combinedStream = new PositionInputStreamCombiner<NXDetectorDataAppender>(asynchronousPositionInputStreams);
-		pluginStreamsIndexer = new PositionStreamIndexer<List<NXDetectorDataAppender>>(combinedStream);
+		pluginStreamsIndexer = PositionStreamIndexerBase.forStream(combinedStream);
 	}
 
 
@@ -546,6 +546,16 @@ public class NXDetector extends DetectorBase implements InitializingBean, NXPlug
 	}
 
 	private void clearUpAfterScan() {
+		if (pluginPositionQueueMap != null) {
+			for (Entry<NonAsynchronousNXPlugin, PositionQueue<NXDetectorDataAppender>> entry : pluginPositionQueueMap.entrySet()) {
+				final PositionQueue<NXDetectorDataAppender> queue = entry.getValue();
+				if (queue.getBlockedPuts() > 0 || queue.getDropped() > 0) {
+					logger.warn("{}: readout of plugin {} fell behind during the scan: {}", getName(), entry.getKey().getName(), queue);
+				} else {
+					logger.debug("{}: plugin {} {}", getName(), entry.getKey().getName(), queue);
+				}
+			}
+		}
 		pluginStreamsIndexer = null; // to avoid later confusion
 		pluginPositionQueueMap = null;
 		lastCallable=null;
@@ -23,7 +23,7 @@ import gda.device.DeviceException;
 import gda.device.detector.DAServer;
 import gda.device.scannable.PositionCallableProvider;
 import gda.device.scannable.PositionInputStream;
-import gda.device.scannable.PositionStreamIndexer;
+import gda.device.scannable.PositionStreamIndexerBase;
 import gda.device.timer.Tfg;
 
 import java.util.ArrayList;
@@ -40,7 +40,7 @@ public class PositionStreamingTfgScaler extends TfgScalerWithLogValues implement
 	private static Logger logger = LoggerFactory.getLogger(PositionStreamingTfgScaler.class);
 
 	protected DAServer daServer = null;
-	private PositionStreamIndexer<double[]> indexer;
+	private PositionStreamIndexerBase<double[]> indexer;
 	private Double[] times;
 	private int nextFrameToRead = 0;
 
@@ -115,7 +115,7 @@ public class PositionStreamingTfgScaler extends TfgScalerWithLogValues implement
 //			daServer.sendCommand("tfg start");
 			nextFrameToRead = 0;
 		}
-		indexer = new PositionStreamIndexer<double[]>(this);
+		indexer = PositionStreamIndexerBase.forStream(this);
 		timer.setAttribute(Tfg.VME_START_ATTR_NAME,Boolean.FALSE);
 //		timer.setAttribute(Tfg.AUTO_REARM_ATTR_NAME,Boolean.TRUE);
 		super.atScanLineStart();
@@ -18,36 +18,154 @@
 
 package gda.device.detector.nxdetector.plugin;
 
-import gda.device.DeviceException;
-import gda.device.scannable.PositionInputStream;
-
 import java.util.ArrayList;
 import java.util.List;
 import java.util.NoSuchElementException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import gda.device.DeviceException;
+import gda.device.scannable.PositionInputStream;
 
 /**
- * Implementation of PositionInputStream that returns values from a queue. Values are put into the queue
- * using the put method
+ * Implementation of PositionInputStream that returns values from a queue. Values are put into the queue using the put
+ * method
+ * <p>
+ * The queue is bounded and may be filled and read from different threads. A read blocks for up to the read timeout for
+ * the first element if the queue is empty, failing with {@link NoSuchElementException} if none is added, and then takes
+ * as many more as are available up to the maximum requested, so it never returns an empty list. Elements may not be
+ * null. Adding to a full queue waits for space, as dropping an element would misalign every later element with its scan
+ * point, and fails if none becomes free. Adds which had to wait, elements dropped and reads which had to wait are
+ * counted, so that a consumer which cannot keep up, or a producer which falls behind, can be identified.
  */
 
 public class PositionQueue<T> implements PositionInputStream<T>{
 
+	private static final Logger logger = LoggerFactory.getLogger(PositionQueue.class);
+
+	public static final int DEFAULT_CAPACITY = 10_000;
+
+	public static final long DEFAULT_PUT_TIMEOUT_MILLIS = 10_000;
+
+	public static final long DEFAULT_READ_TIMEOUT_MILLIS = 30_000;
+
+	private final BlockingQueue<T> cache;
+
+	private final long putTimeoutMillis;
+
+	private final long readTimeoutMillis;
+
+	private final AtomicLong blockedPuts = new AtomicLong();
+
+	private final AtomicLong dropped = new AtomicLong();
+
+	private final AtomicLong lateReads = new AtomicLong();
+
 	public PositionQueue() {
-		super();
+		this(DEFAULT_CAPACITY, DEFAULT_PUT_TIMEOUT_MILLIS, DEFAULT_READ_TIMEOUT_MILLIS);
 	}
 
-	List<T> cache = new ArrayList<T> ();
+	/**
+	 * @param capacity
+	 *            the maximum number of elements held
+	 * @param putTimeoutMillis
+	 *            how long {@link #addToCache(Object)} waits for space in a full queue
+	 * @param readTimeoutMillis
+	 *            how long {@link #read(int)} waits for an element in an empty queue
+	 */
+	public PositionQueue(int capacity, long putTimeoutMillis, long readTimeoutMillis) {
+		cache = new LinkedBlockingQueue<>(capacity);
+		this.putTimeoutMillis = putTimeoutMillis;
+		this.readTimeoutMillis = readTimeoutMillis;
+	}
+
+	/**
+	 * Take up to maxToRead elements, blocking for up to the read timeout given to the constructor if the queue is empty.
+	 *
+	 * @return at least one and at most maxToRead elements, in the order they were added
+	 * @throws NoSuchElementException
+	 *             if no element is added within the read timeout
+	 * @throws InterruptedException
+	 *             if interrupted while waiting for an element
+	 */
 	@Override
 	public List<T> read(int maxToRead) throws NoSuchElementException, InterruptedException,
 			DeviceException {
-		List<T> items = new ArrayList<T>();
-		for( int i = 0; i< maxToRead && cache.size()>0; i++){
-			items.add( cache.remove(0));
+		T first = cache.poll();
+		if (first == null) {
+			lateReads.incrementAndGet();
+			first = cache.poll(readTimeoutMillis, TimeUnit.MILLISECONDS);
+			if (first == null) {
+				throw new NoSuchElementException("No element added to the queue within " + readTimeoutMillis + " ms");
+			}
+		}
+		final List<T> items = new ArrayList<T>(Math.min(maxToRead, cache.size() + 1));
+		items.add(first);
+		if (maxToRead > 1) {
+			cache.drainTo(items, maxToRead - 1);
 		}
 		return items;
 	}
 
+	/**
+	 * @throws IllegalArgumentException
+	 *             if appender is null, which the queue cannot hold
+	 * @throws IllegalStateException
+	 *             if the queue stays full for longer than the put timeout, in which case the element is dropped
+	 */
 	public void addToCache(T appender) throws NoSuchElementException{
-		cache.add(appender);
+		if (appender == null) {
+			throw new IllegalArgumentException("PositionQueue cannot hold null elements");
+		}
+		if (cache.offer(appender)) {
+			return;
+		}
+		blockedPuts.incrementAndGet();
+		try {
+			if (cache.offer(appender, putTimeoutMillis, TimeUnit.MILLISECONDS)) {
+				return;
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		dropped.incrementAndGet();
+		logger.error("Dropped element as the queue stayed full: {}", this);
+		throw new IllegalStateException("PositionQueue full: element not read within " + putTimeoutMillis + " ms");
+	}
+
+	public int size() {
+		return cache.size();
+	}
+
+	/**
+	 * @return the number of adds which had to wait for space in the queue, i.e. the consumer was behind
+	 */
+	public long getBlockedPuts() {
+		return blockedPuts.get();
+	}
+
+	/**
+	 * @return the number of elements which could not be added because the queue stayed full
+	 */
+	public long getDropped() {
+		return dropped.get();
+	}
+
+	/**
+	 * @return the number of reads which had to wait for an element, i.e. the producer was behind
+	 */
+	public long getLateReads() {
+		return lateReads.get();
+	}
+
+	@Override
+	public String toString() {
+		return "PositionQueue [size=" + cache.size() + ", blockedPuts=" + blockedPuts + ", dropped=" + dropped
+				+ ", lateReads=" + lateReads + "]";
 	}
 }
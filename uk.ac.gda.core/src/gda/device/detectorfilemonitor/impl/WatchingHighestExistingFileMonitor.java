@@ -0,0 +1,458 @@
+/*-
+ * Copyright © 2019 Diamond Light Source Ltd.
+ *
+ * This file is part of GDA.
+ *
+ * GDA is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License version 3 as published by the Free
+ * Software Foundation.
+ *
+ * GDA is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with GDA. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package gda.device.detectorfilemonitor.impl;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Objects;
+import java.util.TreeSet;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.InitializingBean;
+
+import gda.device.detectorfilemonitor.HighestExistingFileMonitor;
+import gda.device.detectorfilemonitor.HighestExistingFileMonitorData;
+import gda.device.detectorfilemonitor.HighestExistingFileMonitorSettings;
+import gda.observable.IObserver;
+import gda.observable.ObservableComponent;
+import gda.util.DirectoryWatcher;
+import uk.ac.diamond.daq.concurrent.Async;
+import uk.ac.gda.api.remoting.ServiceInterface;
+
+/**
+ * Implementation of HighestExistingFileMonitor that is told of new files by the filesystem rather than checking
+ * for them.
+ * <p>
+ * The directory of the file template is watched with a {@link DirectoryWatcher} and the number of each created file
+ * is parsed from its name, so observers are told of new files as soon as they are created without any filesystem
+ * calls in between. As with {@link SimpleHighestExistingFileMonitor} the index reported is the highest of an unbroken
+ * run of files starting at the start number.
+ * <p>
+ * Files written by other hosts to network filesystems are not always reported. To detect this the next expected file
+ * is looked for every {@link #getVerificationPeriodInMS()}; if it exists but no events have been received since the
+ * last check, or the directory cannot be watched at all, this monitor falls back to looking for files every
+ * {@link #getDelayInMS()}, checking at most {@link #getMaxFilesCheckedPerPoll()} files each time.
+ */
+@ServiceInterface(HighestExistingFileMonitor.class)
+public class WatchingHighestExistingFileMonitor implements HighestExistingFileMonitor, InitializingBean {
+
+	private static final Logger logger = LoggerFactory.getLogger(WatchingHighestExistingFileMonitor.class);
+
+	/** Matches the single integer conversion supported in the file name part of the template */
+	private static final Pattern INTEGER_CONVERSION = Pattern.compile("%( ?0?\\d*)d");
+
+	private final ObservableComponent obsComp = new ObservableComponent();
+
+	private String name;
+
+	private long delay = 1000; // in ms
+
+	private long verificationPeriod = 10000; // in ms
+
+	private int maxFilesCheckedPerPoll = 1000;
+
+	private HighestExistingFileMonitorSettings highestExistingFileMonitorSettings;
+
+	private volatile Integer latestNumberFound;
+
+	private boolean configured;
+
+	private volatile boolean running;
+
+	// State of the current monitoring, guarded by this
+	private HighestExistingFileMonitorSettings settingsInUse;
+	private String templateInUse;
+	private Path directory;
+	private String fileNameTemplate;
+	private Pattern fileNamePattern;
+	private int numberToLookFor;
+	private Integer numberFound;
+	private final TreeSet<Integer> laterNumbersFound = new TreeSet<>();
+	private DirectoryWatcher watcher;
+	private long eventCountAtLastCheck;
+	private Integer unreportedNumber;
+	private boolean polling;
+	private boolean catchingUp;
+	private ScheduledFuture<?> task;
+
+	@Override
+	public HighestExistingFileMonitorSettings getHighestExistingFileMonitorSettings() {
+		return highestExistingFileMonitorSettings;
+	}
+
+	@Override
+	public void setHighestExistingFileMonitorSettings(HighestExistingFileMonitorSettings highestExistingFileMonitorSettings) {
+		synchronized (this) {
+			this.highestExistingFileMonitorSettings = highestExistingFileMonitorSettings;
+			if (!running || !configured || highestExistingFileMonitorSettings == settingsInUse) {
+				return;
+			}
+			start();
+		}
+		notifyLatestNumberFound();
+	}
+
+	/**
+	 * @return the interval in ms between checks for new files when events are not being delivered
+	 */
+	@Override
+	public long getDelayInMS() {
+		return delay;
+	}
+
+	@Override
+	public void setDelayInMS(long delay) {
+		if (delay > 0) {
+			this.delay = delay;
+		}
+	}
+
+	/**
+	 * @return the interval in ms between checks that events are being delivered
+	 */
+	public long getVerificationPeriodInMS() {
+		return verificationPeriod;
+	}
+
+	public void setVerificationPeriodInMS(long verificationPeriod) {
+		if (verificationPeriod > 0) {
+			this.verificationPeriod = verificationPeriod;
+		}
+	}
+
+	public int getMaxFilesCheckedPerPoll() {
+		return maxFilesCheckedPerPoll;
+	}
+
+	public void setMaxFilesCheckedPerPoll(int maxFilesCheckedPerPoll) {
+		if (maxFilesCheckedPerPoll > 0) {
+			this.maxFilesCheckedPerPoll = maxFilesCheckedPerPoll;
+		}
+	}
+
+	/**
+	 * @return true if this monitor is looking for files itself because the filesystem is not delivering events
+	 */
+	public synchronized boolean isPolling() {
+		return running && polling;
+	}
+
+	@Override
+	public boolean isRunning() {
+		return running;
+	}
+
+	@Override
+	public void setRunning(boolean running) {
+		synchronized (this) {
+			if (!configured) {
+				this.running = running;
+				return;
+			}
+			if (this.running == running)
+				return; // do nothing
+
+			if (running) {
+				start();
+			} else {
+				stop();
+			}
+		}
+		notifyLatestNumberFound();
+	}
+
+	private synchronized void stop() {
+		running = false;
+		if (task != null) {
+			task.cancel(false);
+			task = null;
+		}
+		if (watcher != null) {
+			watcher.close();
+			watcher = null;
+		}
+	}
+
+	private synchronized void start() {
+		stop();
+		settingsInUse = highestExistingFileMonitorSettings;
+		latestNumberFound = null;
+		numberFound = null;
+		laterNumbersFound.clear();
+		if (settingsInUse == null) {
+			return;
+		}
+		running = true;
+		numberToLookFor = settingsInUse.startNumber;
+		templateInUse = settingsInUse.getFullTemplate();
+		polling = !watchDirectory();
+		// look for files created before the directory was watched
+		final boolean more = checkFiles();
+		catchingUp = more;
+		final long period = polling ? delay : verificationPeriod;
+		task = Async.scheduleWithFixedDelay(this::check, more ? 0 : period, period, TimeUnit.MILLISECONDS,
+				"%s(%s)", getClass().getSimpleName(), name);
+	}
+
+	/**
+	 * @return true if the directory is being watched
+	 */
+	private boolean watchDirectory() {
+		final Path template = Paths.get(templateInUse);
+		fileNameTemplate = template.getFileName() == null ? "" : template.getFileName().toString();
+		fileNamePattern = createFileNamePattern(fileNameTemplate);
+		directory = template.getParent();
+		if (fileNamePattern == null || directory == null || directory.toString().contains("%")) {
+			logger.info("{} - cannot parse file numbers from template '{}', checking for files every {} ms", name, templateInUse, delay);
+			return false;
+		}
+		try {
+			watcher = new DirectoryWatcher(directory, false, this::fileCreated, this::catchUp);
+		} catch (IOException | RuntimeException e) {
+			logger.info("{} - cannot watch {}, checking for files every {} ms", name, directory, delay, e);
+			return false;
+		}
+		if (!watcher.isNative()) {
+			logger.info("{} - no native file events for {}, checking for files every {} ms", name, directory, delay);
+			watcher.close();
+			watcher = null;
+			return false;
+		}
+		eventCountAtLastCheck = 0;
+		unreportedNumber = null;
+		return true;
+	}
+
+	/**
+	 * @return a pattern matching the names of files created from the template, or null if the template is not
+	 *         supported
+	 */
+	static Pattern createFileNamePattern(String fileNameTemplate) {
+		final String withoutPercent = fileNameTemplate.replace("%%", "");
+		final Matcher matcher = INTEGER_CONVERSION.matcher(withoutPercent);
+		if (!matcher.find() || matcher.find() || withoutPercent.replaceFirst(INTEGER_CONVERSION.pattern(), "").contains("%")) {
+			return null;
+		}
+		final StringBuilder regex = new StringBuilder();
+		final Matcher conversion = INTEGER_CONVERSION.matcher(fileNameTemplate);
+		int literalStart = 0;
+		while (conversion.find()) {
+			if (isEscaped(fileNameTemplate, conversion.start())) {
+				continue;
+			}
+			regex.append(Pattern.quote(fileNameTemplate.substring(literalStart, conversion.start()).replace("%%", "%")));
+			regex.append(" *(-?\\d+)");
+			literalStart = conversion.end();
+		}
+		regex.append(Pattern.quote(fileNameTemplate.substring(literalStart).replace("%%", "%")));
+		return Pattern.compile(regex.toString());
+	}
+
+	private static boolean isEscaped(String template, int index) {
+		int percents = 0;
+		for (int i = index - 1; i >= 0 && template.charAt(i) == '%'; i--) {
+			percents++;
+		}
+		return percents % 2 == 1;
+	}
+
+	private void fileCreated(Path file) {
+		synchronized (this) {
+			if (watcher == null || !file.getParent().equals(watcher.getDirectory())) {
+				return;
+			}
+			final String fileName = file.getFileName().toString();
+			final Matcher matcher = fileNamePattern.matcher(fileName);
+			if (!matcher.matches()) {
+				return;
+			}
+			final int number;
+			try {
+				number = Integer.parseInt(matcher.group(1));
+			} catch (NumberFormatException e) {
+				return;
+			}
+			if (number < numberToLookFor || !String.format(fileNameTemplate, number).equals(fileName)) {
+				return;
+			}
+			laterNumbersFound.add(number);
+			advance();
+		}
+		notifyLatestNumberFound();
+	}
+
+	/** Called when events may have been lost */
+	private synchronized void catchUp() {
+		catchingUp = true;
+		if (task != null) {
+			task.cancel(false);
+			task = Async.scheduleWithFixedDelay(this::check, 0, verificationPeriod, TimeUnit.MILLISECONDS,
+					"%s(%s)", getClass().getSimpleName(), name);
+		}
+	}
+
+	private void check() {
+		try {
+			synchronized (this) {
+				if (!running) {
+					return;
+				}
+				if (polling || catchingUp) {
+					catchingUp = checkFiles();
+				} else {
+					verifyEvents();
+				}
+			}
+			notifyLatestNumberFound();
+		} catch (RuntimeException e) {
+			logger.error("Error looking for file using template `{}` number={}", templateInUse, numberToLookFor, e);
+		}
+	}
+
+	/**
+	 * Check the next expected file has not been created without an event. Events are assumed not to be delivered if
+	 * the file is found by two consecutive checks with no events received in between.
+	 */
+	private void verifyEvents() {
+		final long eventCount = watcher.getEventCount();
+		final boolean noEvents = eventCount == eventCountAtLastCheck;
+		eventCountAtLastCheck = eventCount;
+		if (!new File(String.format(templateInUse, numberToLookFor)).exists()) {
+			unreportedNumber = null;
+			return;
+		}
+		if (noEvents && unreportedNumber == null) {
+			// the event may still be on its way
+			unreportedNumber = numberToLookFor;
+		} else if (noEvents && unreportedNumber == numberToLookFor) {
+			logger.warn("{} - file events are not being delivered for {}, checking for files every {} ms instead", name, directory, delay);
+			watcher.close();
+			watcher = null;
+			polling = true;
+			task.cancel(false);
+			task = Async.scheduleWithFixedDelay(this::check, 0, delay, TimeUnit.MILLISECONDS,
+					"%s(%s)", getClass().getSimpleName(), name);
+		} else {
+			// events are arriving but this one has been missed, e.g. after an overflow
+			unreportedNumber = null;
+			checkFiles();
+		}
+	}
+
+	/**
+	 * Look for the next expected files
+	 *
+	 * @return true if the maximum number of files were checked and there may be more
+	 */
+	private boolean checkFiles() {
+		for (int i = 0; i < maxFilesCheckedPerPoll; i++) {
+			if (!laterNumbersFound.isEmpty() && laterNumbersFound.first() == numberToLookFor) {
+				advance();
+				continue;
+			}
+			if (!new File(String.format(templateInUse, numberToLookFor)).exists()) {
+				return false;
+			}
+			laterNumbersFound.add(numberToLookFor);
+			advance();
+		}
+		return true;
+	}
+
+	/**
+	 * Move past the unbroken run of known files starting at the number being looked for
+	 */
+	private void advance() {
+		while (!laterNumbersFound.isEmpty() && laterNumbersFound.first() <= numberToLookFor) {
+			if (laterNumbersFound.pollFirst() == numberToLookFor) {
+				numberFound = numberToLookFor;
+				numberToLookFor++;
+			}
+		}
+	}
+
+	private void notifyLatestNumberFound() {
+		final Integer found;
+		final HighestExistingFileMonitorSettings settings;
+		synchronized (this) {
+			found = numberFound;
+			settings = settingsInUse;
+			if (Objects.equals(found, latestNumberFound)) {
+				return;
+			}
+			latestNumberFound = found;
+		}
+		obsComp.notifyIObservers(this, new HighestExistingFileMonitorData(settings, found));
+	}
+
+	@Override
+	public void afterPropertiesSet() throws Exception {
+		configured = true;
+		boolean start = isRunning();
+		if (start) {
+			running = false;
+			setRunning(true);
+		}
+	}
+
+	@Override
+	public void addIObserver(IObserver anIObserver) {
+		obsComp.addIObserver(anIObserver);
+	}
+
+	@Override
+	public void deleteIObserver(IObserver anIObserver) {
+		obsComp.deleteIObserver(anIObserver);
+	}
+
+	@Override
+	public void deleteIObservers() {
+		obsComp.deleteIObservers();
+	}
+
+	@Override
+	public String getName() {
+		return name;
+	}
+
+	@Override
+	public void setName(String name) {
+		this.name = name;
+	}
+
+	@Override
+	public HighestExistingFileMonitorData getHighestExistingFileMonitorData() {
+		return new HighestExistingFileMonitorData(highestExistingFileMonitorSettings, latestNumberFound);
+	}
+
+	@Override
+	public void configureAndRun(String fileTemplatePrefix, String fileTemplate, int startNumber) {
+		final HighestExistingFileMonitorSettings settings = new HighestExistingFileMonitorSettings(fileTemplatePrefix, fileTemplate, startNumber);
+		setHighestExistingFileMonitorSettings(settings);
+		setRunning(true);
+	}
+
+}
@@ -18,12 +18,10 @@
 
 package gda.device.scannable;
 
-import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
-import java.util.concurrent.Callable;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 
@@ -31,22 +29,21 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import gda.device.DeviceException;
-import gda.scan.NamedQueueTask;
 
 /**
  * Used as a component in {@link PositionCallableProvider}s that implement {@link PositionInputStream}s an indexer can
  * be deferred to to very easily implement {@link PositionCallableProvider#getPositionCallable()}.
+ * <p>
+ * Values read but not yet got are held in a map, and gets take turns on a fair lock. See
+ * {@link RingBufferPositionStreamIndexer} for streams producing many thousands of points per second.
  *
  * @param <T>
  */
-public class PositionStreamIndexer<T> implements PositionCallableProvider<T> {
+public class PositionStreamIndexer<T> extends PositionStreamIndexerBase<T> {
 
 	private static final Logger logger = LoggerFactory.getLogger(PositionStreamIndexer.class);
 
-	private final PositionInputStream<T> stream;
-	private final int maxElementsToReadInOneGo;
 	Map<Integer, T> readValuesNotGot = new HashMap<Integer, T>();
-	private int lastIndexGivenOut = -1;
 	private int lastIndexRead = -1;
 	private Lock fairGetLock = new ReentrantLock(true);
 
@@ -55,14 +52,14 @@ public class PositionStreamIndexer<T> implements PositionCallableProvider<T> {
 	}
 
 	public PositionStreamIndexer(PositionInputStream<T> stream, int maxElementsToReadInOneGo) {
+		super(stream, maxElementsToReadInOneGo);
 		logger.trace("@{}.PositionStreamIndexer({}, {})", Integer.toHexString(hashCode()), stream, maxElementsToReadInOneGo);
-		this.stream = stream;
-		this.maxElementsToReadInOneGo = maxElementsToReadInOneGo;
 	}
 
 	/**
 	 * Can only be called once for each index
 	 */
+	@Override
 	public T get(int index) throws NoSuchElementException, InterruptedException, DeviceException {
 		try {
 			fairGetLock.lockInterruptibly();
@@ -99,73 +96,4 @@ public class PositionStreamIndexer<T> implements PositionCallableProvider<T> {
 			fairGetLock.unlock();
 		}
 	}
-
-	@Override
-	public Callable<T> getPositionCallable() throws DeviceException {
-		return getNamedPositionCallable(null, 0);
-	}
-
-	public Callable<T> getNamedPositionCallable(String name, int threadPoolSize) {
-		lastIndexGivenOut += 1;
-		return  name != null ? new NamedPositionStreamIndexPuller<T>(lastIndexGivenOut, this,
-				name, threadPoolSize) : new PositionStreamIndexPuller<T>(lastIndexGivenOut, this);
-	}
-}
-
-class PositionStreamIndexPuller<T> implements Callable<T> {
-
-	private static final Logger logger = LoggerFactory.getLogger(PositionStreamIndexPuller.class);
-
-	private final int index;
-	private final PositionStreamIndexer<T> indexer;
-	private T value;
-
-	private volatile boolean called = false;
-
-	public PositionStreamIndexPuller(int index, PositionStreamIndexer<T> indexer) {
-		this.index = index;
-		this.indexer = indexer;
-		logger.trace("@{}.PositionStreamIndexPuller({}, {})", Integer.toHexString(hashCode()), index, indexer);
-	}
-
-	@Override
-	public T call() throws Exception {
-		if (!called) {
-			try {
-				value = indexer.get(index);
-			} finally {
-				called = true;
-			}
-		} else {
-			logger.warn("@{}.call method called twice for index: {}, stack trace {}", Integer.toHexString(hashCode()), index, Arrays.toString(Thread.currentThread().getStackTrace()));
-
-		}
-		return value;
-	}
-}
-
-class NamedPositionStreamIndexPuller<T> extends PositionStreamIndexPuller<T> implements NamedQueueTask {
-
-	private static final Logger logger = LoggerFactory.getLogger(NamedPositionStreamIndexPuller.class);
-
-	private String name;
-	private final int threadPoolSize;
-
-	public NamedPositionStreamIndexPuller(int index, PositionStreamIndexer<T> indexer, String name, int threadPoolSize) {
-		super(index, indexer);
-		this.name = name;
-		this.threadPoolSize = threadPoolSize;
-		logger.trace("@{}.NamedPositionStreamIndexPuller({}, {}, {}, {})", Integer.toHexString(hashCode()),
-				index, indexer, name, threadPoolSize);
-	}
-
-	@Override
-	public String getExecutorServiceName() {
-		return name;
-	}
-
-	@Override
-	public int getThreadPoolSize() {
-		return threadPoolSize;
-	}
 }
@@ -0,0 +1,160 @@
+/*-
+ * Copyright © 2019 Diamond Light Source Ltd.
+ *
+ * This file is part of GDA.
+ *
+ * GDA is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License version 3 as published by the Free
+ * Software Foundation.
+ *
+ * GDA is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with GDA. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package gda.device.scannable;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Callable;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import gda.configuration.properties.LocalProperties;
+import gda.device.DeviceException;
+import gda.device.scannable.RingBufferPositionStreamIndexer.WaitStrategy;
+import gda.scan.NamedQueueTask;
+
+/**
+ * Base of the indexers which {@link PositionCallableProvider}s that implement {@link PositionInputStream}s can defer to
+ * to implement {@link PositionCallableProvider#getPositionCallable()}. Each callable given out gets the next element
+ * of the stream; subclasses decide how elements read from the stream are held until they are got.
+ *
+ * @param <T>
+ */
+public abstract class PositionStreamIndexerBase<T> implements PositionCallableProvider<T> {
+
+	private static final Logger logger = LoggerFactory.getLogger(PositionStreamIndexerBase.class);
+
+	/**
+	 * Property setting the ring buffer capacity of indexers created by {@link #forStream(PositionInputStream)}. If 0 or
+	 * unset, a PositionStreamIndexer is created.
+	 */
+	public static final String GDA_POSITION_STREAM_INDEXER_CAPACITY = "gda.device.scannable.positionStreamIndexer.capacity";
+
+	/**
+	 * Property setting the {@link WaitStrategy} of ring buffer indexers created by
+	 * {@link #forStream(PositionInputStream)}. Default is BLOCKING.
+	 */
+	public static final String GDA_POSITION_STREAM_INDEXER_WAIT_STRATEGY = "gda.device.scannable.positionStreamIndexer.waitStrategy";
+
+	protected final PositionInputStream<T> stream;
+	protected final int maxElementsToReadInOneGo;
+	private int lastIndexGivenOut = -1;
+
+	protected PositionStreamIndexerBase(PositionInputStream<T> stream, int maxElementsToReadInOneGo) {
+		this.stream = stream;
+		this.maxElementsToReadInOneGo = maxElementsToReadInOneGo;
+	}
+
+	/**
+	 * Create the indexer configured by {@value #GDA_POSITION_STREAM_INDEXER_CAPACITY} and
+	 * {@value #GDA_POSITION_STREAM_INDEXER_WAIT_STRATEGY} for a stream
+	 */
+	public static <T> PositionStreamIndexerBase<T> forStream(PositionInputStream<T> stream) {
+		final int capacity = LocalProperties.getAsInt(GDA_POSITION_STREAM_INDEXER_CAPACITY, 0);
+		if (capacity <= 0) {
+			return new PositionStreamIndexer<T>(stream);
+		}
+		final String strategy = LocalProperties.get(GDA_POSITION_STREAM_INDEXER_WAIT_STRATEGY, WaitStrategy.BLOCKING.name());
+		WaitStrategy waitStrategy;
+		try {
+			waitStrategy = WaitStrategy.valueOf(strategy.trim().toUpperCase());
+		} catch (IllegalArgumentException e) {
+			logger.error("Unknown wait strategy '{}' set by {}, using {}. Valid values are {}", strategy,
+					GDA_POSITION_STREAM_INDEXER_WAIT_STRATEGY, WaitStrategy.BLOCKING, Arrays.toString(WaitStrategy.values()));
+			waitStrategy = WaitStrategy.BLOCKING;
+		}
+		return new RingBufferPositionStreamIndexer<T>(stream, Integer.MAX_VALUE, capacity, waitStrategy);
+	}
+
+	/**
+	 * Can only be called once for each index
+	 */
+	public abstract T get(int index) throws NoSuchElementException, InterruptedException, DeviceException;
+
+	@Override
+	public Callable<T> getPositionCallable() throws DeviceException {
+		return getNamedPositionCallable(null, 0);
+	}
+
+	public Callable<T> getNamedPositionCallable(String name, int threadPoolSize) {
+		lastIndexGivenOut += 1;
+		return  name != null ? new NamedPositionStreamIndexPuller<T>(lastIndexGivenOut, this,
+				name, threadPoolSize) : new PositionStreamIndexPuller<T>(lastIndexGivenOut, this);
+	}
+}
+
+class PositionStreamIndexPuller<T> implements Callable<T> {
+
+	private static final Logger logger = LoggerFactory.getLogger(PositionStreamIndexPuller.class);
+
+	private final int index;
+	private final PositionStreamIndexerBase<T> indexer;
+	private T value;
+
+	private volatile boolean called = false;
+
+	public PositionStreamIndexPuller(int index, PositionStreamIndexerBase<T> indexer) {
+		this.index = index;
+		this.indexer = indexer;
+		logger.trace("@{}.PositionStreamIndexPuller({}, {})", Integer.toHexString(hashCode()), index, indexer);
+	}
+
+	@Override
+	public T call() throws Exception {
+		if (!called) {
+			try {
+				value = indexer.get(index);
+			} finally {
+				called = true;
+			}
+		} else {
+			logger.warn("@{}.call method called twice for index: {}, stack trace {}", Integer.toHexString(hashCode()), index, Arrays.toString(Thread.currentThread().getStackTrace()));
+
+		}
+		return value;
+	}
+}
+
+class NamedPositionStreamIndexPuller<T> extends PositionStreamIndexPuller<T> implements NamedQueueTask {
+
+	private static final Logger logger = LoggerFactory.getLogger(NamedPositionStreamIndexPuller.class);
+
+	private String name;
+	private final int threadPoolSize;
+
+	public NamedPositionStreamIndexPuller(int index, PositionStreamIndexerBase<T> indexer, String name, int threadPoolSize) {
+		super(index, indexer);
+		this.name = name;
+		this.threadPoolSize = threadPoolSize;
+		logger.trace("@{}.NamedPositionStreamIndexPuller({}, {}, {}, {})", Integer.toHexString(hashCode()),
+				index, indexer, name, threadPoolSize);
+	}
+
+	@Override
+	public String getExecutorServiceName() {
+		return name;
+	}
+
+	@Override
+	public int getThreadPoolSize() {
+		return threadPoolSize;
+	}
+}
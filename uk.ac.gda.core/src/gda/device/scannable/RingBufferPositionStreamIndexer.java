@@ -0,0 +1,228 @@
+/*-
+ * Copyright © 2019 Diamond Light Source Ltd.
+ *
+ * This file is part of GDA.
+ *
+ * GDA is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License version 3 as published by the Free
+ * Software Foundation.
+ *
+ * GDA is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with GDA. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package gda.device.scannable;
+
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import gda.device.DeviceException;
+
+/**
+ * An indexer which, unlike {@link PositionStreamIndexer}, holds read values in a ring buffer addressed by index rather
+ * than a map guarded by a lock, for streams producing many thousands of points per second.
+ * <p>
+ * Callers whose element has already been read take it from its slot without locking. When an element has not been
+ * read yet, one caller reads from the stream on behalf of all of them while the others wait, either by spinning (lowest
+ * latency, but occupies a core per waiting thread) or by blocking. If the callables fall so far behind the stream that
+ * the slot for a new element still holds an element which has not been got, the new element is held in a map instead,
+ * so elements may still be got in any order.
+ *
+ * @param <T>
+ */
+public class RingBufferPositionStreamIndexer<T> extends PositionStreamIndexerBase<T> {
+
+	private static final Logger logger = LoggerFactory.getLogger(RingBufferPositionStreamIndexer.class);
+
+	public static final int DEFAULT_CAPACITY = 1024;
+
+	/**
+	 * How a thread waits for an element being read from the stream by another thread
+	 */
+	public enum WaitStrategy {
+		/** Wait on a monitor, woken when elements are read */
+		BLOCKING,
+		/** Spin, yielding the processor between checks */
+		SPINNING
+	}
+
+	/** Stored for null elements, as an empty slot is null */
+	private static final Object NULL_ELEMENT = new Object();
+
+	private static final int SPINS_BEFORE_YIELD = 100;
+
+	private final WaitStrategy waitStrategy;
+
+	private final int mask;
+	private final AtomicReferenceArray<Object> slots;
+	/** The index of the element in each slot, written before the element */
+	private final AtomicIntegerArray slotIndices;
+	private final ConcurrentMap<Integer, Object> overflow = new ConcurrentHashMap<>();
+
+	private final AtomicBoolean reading = new AtomicBoolean();
+	private volatile int lastIndexRead = -1;
+
+	private final Object readMonitor = new Object();
+	private final AtomicInteger blockedWaiters = new AtomicInteger();
+	private boolean overflowWarned;
+
+	public RingBufferPositionStreamIndexer(PositionInputStream<T> stream) {
+		this(stream, Integer.MAX_VALUE, DEFAULT_CAPACITY, WaitStrategy.BLOCKING);
+	}
+
+	/**
+	 * @param stream
+	 * @param maxElementsToReadInOneGo
+	 * @param capacity
+	 *            the number of elements held in the ring buffer, rounded up to a power of two
+	 * @param waitStrategy
+	 */
+	public RingBufferPositionStreamIndexer(PositionInputStream<T> stream, int maxElementsToReadInOneGo, int capacity,
+			WaitStrategy waitStrategy) {
+		super(stream, maxElementsToReadInOneGo);
+		if (capacity < 1) {
+			throw new IllegalArgumentException("Capacity must be positive, not " + capacity);
+		}
+		this.waitStrategy = waitStrategy;
+		final int size = capacity == 1 ? 1 : Integer.highestOneBit(capacity - 1) << 1;
+		mask = size - 1;
+		slots = new AtomicReferenceArray<>(size);
+		slotIndices = new AtomicIntegerArray(size);
+	}
+
+	public int getCapacity() {
+		return mask + 1;
+	}
+
+	public WaitStrategy getWaitStrategy() {
+		return waitStrategy;
+	}
+
+	/**
+	 * Can only be called once for each index
+	 */
+	@Override
+	public T get(int index) throws NoSuchElementException, InterruptedException, DeviceException {
+		while (index > lastIndexRead) {
+			if (reading.compareAndSet(false, true)) {
+				try {
+					readUntil(index);
+				} finally {
+					reading.set(false);
+					wakeWaiters();
+				}
+			} else {
+				awaitRead(index);
+			}
+		}
+		return take(index);
+	}
+
+	/**
+	 * Read from the stream until the indexed element has been read. Only called by the thread holding the reading flag.
+	 */
+	private void readUntil(int index) throws InterruptedException, DeviceException {
+		int next = lastIndexRead;
+		while (index > next) {
+			final List<T> values = stream.read(maxElementsToReadInOneGo);
+			if (values.isEmpty()) {
+				throw new IllegalStateException("stream returned an empty list (lastIndexRead=" + next + ")");
+			}
+			for (T value : values) {
+				publish(++next, value);
+			}
+			lastIndexRead = next;
+			wakeWaiters();
+		}
+	}
+
+	private void publish(int index, T value) {
+		final Object element = value == null ? NULL_ELEMENT : value;
+		final int slot = index & mask;
+		if (slots.get(slot) == null) {
+			slotIndices.set(slot, index);
+			slots.set(slot, element);
+		} else {
+			if (!overflowWarned) {
+				logger.warn("@{} elements are being read more than {} ahead of being got. Consider a larger capacity",
+						Integer.toHexString(hashCode()), getCapacity());
+				overflowWarned = true;
+			}
+			overflow.put(index, element);
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private T take(int index) {
+		final int slot = index & mask;
+		Object element = slots.get(slot);
+		if (element == null || slotIndices.get(slot) != index || !slots.compareAndSet(slot, element, null)) {
+			element = overflow.remove(index);
+		}
+		if (element == null) {
+			logger.error("@{}.get({}) is not available. lastIndexRead={}", Integer.toHexString(hashCode()), index, lastIndexRead);
+			throw new IllegalStateException("Element " + index
+					+ " is not available. Values can only be got once (to avoid excessive memory use).");
+		}
+		return element == NULL_ELEMENT ? null : (T) element;
+	}
+
+	/**
+	 * Wait until the indexed element has been read, or the thread reading gives up so that this one can try.
+	 */
+	private void awaitRead(int index) throws InterruptedException {
+		if (waitStrategy == WaitStrategy.SPINNING) {
+			int spins = 0;
+			while (index > lastIndexRead && reading.get()) {
+				if (++spins > SPINS_BEFORE_YIELD) {
+					if (Thread.interrupted()) {
+						throw interrupted(index);
+					}
+					Thread.yield();
+				}
+			}
+			return;
+		}
+		blockedWaiters.incrementAndGet();
+		try {
+			synchronized (readMonitor) {
+				while (index > lastIndexRead && reading.get()) {
+					readMonitor.wait();
+				}
+			}
+		} catch (InterruptedException e) {
+			throw interrupted(index);
+		} finally {
+			blockedWaiters.decrementAndGet();
+		}
+	}
+
+	private InterruptedException interrupted(int index) {
+		logger.error("@{}.get({}) interrupted while waiting for element, lastIndexRead={}",
+				Integer.toHexString(hashCode()), index, lastIndexRead);
+		return new InterruptedException("PositionStreamIndexer interrupted while waiting for element " + index);
+	}
+
+	private void wakeWaiters() {
+		if (blockedWaiters.get() > 0) {
+			synchronized (readMonitor) {
+				readMonitor.notifyAll();
+			}
+		}
+	}
+}
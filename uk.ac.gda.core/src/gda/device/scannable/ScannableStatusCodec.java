@@ -0,0 +1,57 @@
+/*-
+ * Copyright © 2019 Diamond Light Source Ltd.
+ *
+ * This file is part of GDA.
+ *
+ * GDA is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License version 3 as published by the Free
+ * Software Foundation.
+ *
+ * GDA is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with GDA. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package gda.device.scannable;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import gda.events.jms.EventCodec;
+
+/**
+ * Sends a {@link ScannableStatus} as a single byte.
+ */
+public class ScannableStatusCodec implements EventCodec {
+
+	private static final ScannableStatus[] VALUES = ScannableStatus.values();
+
+	@Override
+	public byte getId() {
+		return 3;
+	}
+
+	@Override
+	public boolean canEncode(Object event) {
+		return event instanceof ScannableStatus;
+	}
+
+	@Override
+	public void encode(String topic, Object event, DataOutputStream out) throws IOException {
+		out.writeByte(((ScannableStatus) event).ordinal());
+	}
+
+	@Override
+	public Object decode(String topic, DataInputStream in) throws IOException {
+		final int ordinal = in.readByte();
+		if (ordinal < 0 || ordinal >= VALUES.length) {
+			throw new IOException("Invalid ScannableStatus " + ordinal + " received on topic " + topic);
+		}
+		return VALUES[ordinal];
+	}
+}
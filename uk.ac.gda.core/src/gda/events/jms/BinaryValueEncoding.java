@@ -0,0 +1,205 @@
+/*-
+ * Copyright © 2019 Diamond Light Source Ltd.
+ *
+ * This file is part of GDA.
+ *
+ * GDA is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License version 3 as published by the Free
+ * Software Foundation.
+ *
+ * GDA is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with GDA. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package gda.events.jms;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.NotSerializableException;
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+
+import gda.util.Serializer;
+
+/**
+ * Writes and reads the values carried by events (scannable positions, detector data) as a one byte type tag followed
+ * by the value. Numbers, strings and arrays of them, the common case, are written in their primitive binary form.
+ * Anything else is written using Java serialization.
+ */
+public final class BinaryValueEncoding {
+
+	private static final byte NULL = 0;
+	private static final byte DOUBLE = 1;
+	private static final byte FLOAT = 2;
+	private static final byte INTEGER = 3;
+	private static final byte LONG = 4;
+	private static final byte SHORT = 5;
+	private static final byte BOOLEAN = 6;
+	private static final byte STRING = 7;
+	private static final byte DOUBLE_ARRAY = 8;
+	private static final byte INT_ARRAY = 9;
+	private static final byte BOXED_DOUBLE_ARRAY = 10;
+	private static final byte OBJECT_ARRAY = 11;
+	private static final byte SERIALIZED = 12;
+
+	private BinaryValueEncoding() {
+		// Prevent instances being created
+	}
+
+	/**
+	 * @param out
+	 * @param value
+	 *            the value to write. Must be null, a primitive wrapper, String, an array of these or
+	 *            {@link Serializable}.
+	 * @throws IOException
+	 */
+	public static void write(DataOutputStream out, Object value) throws IOException {
+		if (value == null) {
+			out.writeByte(NULL);
+		} else if (value instanceof Double) {
+			out.writeByte(DOUBLE);
+			out.writeDouble((Double) value);
+		} else if (value instanceof Float) {
+			out.writeByte(FLOAT);
+			out.writeFloat((Float) value);
+		} else if (value instanceof Integer) {
+			out.writeByte(INTEGER);
+			out.writeInt((Integer) value);
+		} else if (value instanceof Long) {
+			out.writeByte(LONG);
+			out.writeLong((Long) value);
+		} else if (value instanceof Short) {
+			out.writeByte(SHORT);
+			out.writeShort((Short) value);
+		} else if (value instanceof Boolean) {
+			out.writeByte(BOOLEAN);
+			out.writeBoolean((Boolean) value);
+		} else if (value instanceof String) {
+			out.writeByte(STRING);
+			writeString(out, (String) value);
+		} else if (value instanceof double[]) {
+			final double[] array = (double[]) value;
+			out.writeByte(DOUBLE_ARRAY);
+			out.writeInt(array.length);
+			for (double d : array) {
+				out.writeDouble(d);
+			}
+		} else if (value instanceof int[]) {
+			final int[] array = (int[]) value;
+			out.writeByte(INT_ARRAY);
+			out.writeInt(array.length);
+			for (int i : array) {
+				out.writeInt(i);
+			}
+		} else if (value.getClass() == Double[].class) {
+			final Double[] array = (Double[]) value;
+			out.writeByte(BOXED_DOUBLE_ARRAY);
+			out.writeInt(array.length);
+			for (Double d : array) {
+				// NaN would be ambiguous with null so nulls are written using a flag
+				out.writeBoolean(d != null);
+				out.writeDouble(d == null ? 0 : d);
+			}
+		} else if (value.getClass() == Object[].class) {
+			final Object[] array = (Object[]) value;
+			out.writeByte(OBJECT_ARRAY);
+			out.writeInt(array.length);
+			for (Object element : array) {
+				write(out, element);
+			}
+		} else if (value instanceof Serializable) {
+			final byte[] serialized = Serializer.toByte((Serializable) value);
+			out.writeByte(SERIALIZED);
+			out.writeInt(serialized.length);
+			out.write(serialized);
+		} else {
+			throw new NotSerializableException(value.getClass().getName());
+		}
+	}
+
+	/**
+	 * @param in
+	 * @return a value written by {@link #write(DataOutputStream, Object)}
+	 * @throws IOException
+	 * @throws ClassNotFoundException
+	 */
+	public static Object read(DataInputStream in) throws IOException, ClassNotFoundException {
+		final byte tag = in.readByte();
+		switch (tag) {
+		case NULL:
+			return null;
+		case DOUBLE:
+			return in.readDouble();
+		case FLOAT:
+			return in.readFloat();
+		case INTEGER:
+			return in.readInt();
+		case LONG:
+			return in.readLong();
+		case SHORT:
+			return in.readShort();
+		case BOOLEAN:
+			return in.readBoolean();
+		case STRING:
+			return readString(in);
+		case DOUBLE_ARRAY: {
+			final double[] array = new double[in.readInt()];
+			for (int i = 0; i < array.length; i++) {
+				array[i] = in.readDouble();
+			}
+			return array;
+		}
+		case INT_ARRAY: {
+			final int[] array = new int[in.readInt()];
+			for (int i = 0; i < array.length; i++) {
+				array[i] = in.readInt();
+			}
+			return array;
+		}
+		case BOXED_DOUBLE_ARRAY: {
+			final Double[] array = new Double[in.readInt()];
+			for (int i = 0; i < array.length; i++) {
+				final boolean notNull = in.readBoolean();
+				final double d = in.readDouble();
+				array[i] = notNull ? d : null;
+			}
+			return array;
+		}
+		case OBJECT_ARRAY: {
+			final Object[] array = new Object[in.readInt()];
+			for (int i = 0; i < array.length; i++) {
+				array[i] = read(in);
+			}
+			return array;
+		}
+		case SERIALIZED: {
+			final byte[] serialized = new byte[in.readInt()];
+			in.readFully(serialized);
+			return Serializer.toObject(serialized);
+		}
+		default:
+			throw new IOException("Unknown value type " + tag);
+		}
+	}
+
+	/**
+	 * Write a string of any length. {@link DataOutputStream#writeUTF(String)} is limited to 64 kB.
+	 */
+	public static void writeString(DataOutputStream out, String value) throws IOException {
+		final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	public static String readString(DataInputStream in) throws IOException {
+		final byte[] bytes = new byte[in.readInt()];
+		in.readFully(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+}
@@ -0,0 +1,70 @@
+/*-
+ * Copyright © 2019 Diamond Light Source Ltd.
+ *
+ * This file is part of GDA.
+ *
+ * GDA is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License version 3 as published by the Free
+ * Software Foundation.
+ *
+ * GDA is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with GDA. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package gda.events.jms;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * Encodes one type of event into a compact binary form for sending through JMS, and decodes it on receipt. Events
+ * which no codec can encode are sent using Java serialization.
+ * <p>
+ * Codecs may keep state between messages, e.g. to send information which does not change during a scan only once.
+ * Each {@link JmsEventDispatcher} and {@link JmsEventReceiver} therefore has its own codec instances, and state must
+ * be kept per topic.
+ */
+public interface EventCodec {
+
+	/**
+	 * @return the identifier written at the start of each encoded message. Must be unique among the codecs registered
+	 *         with an {@link EventCodecRegistry} and greater than zero; zero is reserved for Java serialization.
+	 */
+	byte getId();
+
+	/**
+	 * @return true if this codec can encode the given event
+	 */
+	boolean canEncode(Object event);
+
+	/**
+	 * @param topic
+	 *            the topic the event is being sent to
+	 * @param event
+	 *            an event for which {@link #canEncode(Object)} returned true
+	 * @param out
+	 *            the stream to write to
+	 * @throws IOException
+	 */
+	void encode(String topic, Object event, DataOutputStream out) throws IOException;
+
+	/**
+	 * @param topic
+	 *            the topic the event was received on
+	 * @param in
+	 *            the stream positioned after the codec identifier
+	 * @return the decoded event
+	 * @throws IOException
+	 *             if the message is invalid or cannot be decoded, e.g. because state sent in an earlier message was
+	 *             not received
+	 * @throws ClassNotFoundException
+	 *             if a value sent using Java serialization cannot be deserialized
+	 */
+	Object decode(String topic, DataInputStream in) throws IOException, ClassNotFoundException;
+}
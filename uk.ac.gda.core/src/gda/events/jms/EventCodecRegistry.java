@@ -0,0 +1,233 @@
+/*-
+ * Copyright © 2019 Diamond Light Source Ltd.
+ *
+ * This file is part of GDA.
+ *
+ * GDA is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License version 3 as published by the Free
+ * Software Foundation.
+ *
+ * GDA is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with GDA. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package gda.events.jms;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import gda.configuration.properties.LocalProperties;
+import gda.device.scannable.ScannablePositionChangeEventCodec;
+import gda.device.scannable.ScannableStatusCodec;
+import gda.scan.ScanDataPointCodec;
+import gda.util.Serializer;
+
+/**
+ * The set of {@link EventCodec}s used by a {@link JmsEventDispatcher} or {@link JmsEventReceiver}.
+ * <p>
+ * Encoded messages start with the identifier of the codec used. Identifier zero means the remainder is Java
+ * serialization, which is used for any event no codec can encode.
+ */
+public class EventCodecRegistry {
+
+	/**
+	 * Property to enable the binary codecs when sending events. Default is {@code false}, all events are sent using
+	 * Java serialization. Receivers can always decode events sent using the codecs.
+	 */
+	public static final String GDA_EVENTS_JMS_BINARY_CODECS = "gda.events.jms.binaryCodecs";
+
+	static final byte JAVA_SERIALIZATION_ID = 0;
+
+	private final EventCodec[] codecsById = new EventCodec[Byte.MAX_VALUE + 1];
+
+	private final List<EventCodec> codecs;
+
+	public EventCodecRegistry(List<EventCodec> codecs) {
+		this.codecs = Collections.unmodifiableList(new ArrayList<>(codecs));
+		for (EventCodec codec : codecs) {
+			final byte id = codec.getId();
+			if (id <= JAVA_SERIALIZATION_ID) {
+				throw new IllegalArgumentException("Codec " + codec + " has invalid id " + id);
+			}
+			if (codecsById[id] != null) {
+				throw new IllegalArgumentException("Codecs " + codecsById[id] + " and " + codec + " have the same id " + id);
+			}
+			codecsById[id] = codec;
+		}
+	}
+
+	/**
+	 * @return a registry with new instances of the standard codecs
+	 */
+	public static EventCodecRegistry createDefault() {
+		return new EventCodecRegistry(Arrays.asList(
+				new ScanDataPointCodec(),
+				new ScannablePositionChangeEventCodec(),
+				new ScannableStatusCodec()));
+	}
+
+	/**
+	 * @return a registry with new instances of the standard codecs if they are enabled by
+	 *         {@value #GDA_EVENTS_JMS_BINARY_CODECS}, otherwise with none
+	 */
+	public static EventCodecRegistry createForSending() {
+		if (!LocalProperties.check(GDA_EVENTS_JMS_BINARY_CODECS, false)) {
+			return new EventCodecRegistry(Collections.emptyList());
+		}
+		return createDefault();
+	}
+
+	public List<EventCodec> getCodecs() {
+		return codecs;
+	}
+
+	/**
+	 * @return the codec to use for the event, or null if it should be sent using Java serialization
+	 */
+	public EventCodec findCodec(Object event) {
+		for (EventCodec codec : codecs) {
+			if (codec.canEncode(event)) {
+				return codec;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Encode an event using the first codec which can encode it, falling back to Java serialization
+	 *
+	 * @param topic
+	 * @param event
+	 * @return the encoded event, starting with the identifier of the codec used
+	 * @throws IOException
+	 */
+	public byte[] encode(String topic, Serializable event) throws IOException {
+		return encode(topic, event, findCodec(event));
+	}
+
+	/**
+	 * Encode an event using a codec already found by {@link #findCodec(Object)}
+	 *
+	 * @param topic
+	 * @param event
+	 * @param codec
+	 *            the codec to use, or null to use Java serialization
+	 * @return the encoded event, starting with the identifier of the codec used
+	 * @throws IOException
+	 */
+	public byte[] encode(String topic, Serializable event, EventCodec codec) throws IOException {
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+		try (DataOutputStream out = new DataOutputStream(bytes)) {
+			if (codec == null) {
+				out.writeByte(JAVA_SERIALIZATION_ID);
+				out.write(Serializer.toByte(event));
+			} else {
+				out.writeByte(codec.getId());
+				codec.encode(topic, event, out);
+			}
+		}
+		return bytes.toByteArray();
+	}
+
+	/**
+	 * @param topic
+	 * @param encoded
+	 *            an event encoded by {@link #encode(String, Serializable)}
+	 * @return the decoded event
+	 * @throws IOException
+	 * @throws ClassNotFoundException
+	 */
+	public Object decode(String topic, byte[] encoded) throws IOException, ClassNotFoundException {
+		if (encoded.length == 0) {
+			throw new IOException("Empty message received on topic " + topic);
+		}
+		final byte id = encoded[0];
+		if (id == JAVA_SERIALIZATION_ID) {
+			return Serializer.toObject(Arrays.copyOfRange(encoded, 1, encoded.length));
+		}
+		final EventCodec codec = id > 0 ? codecsById[id] : null;
+		if (codec == null) {
+			throw new IOException("No codec with id " + id + " to decode message received on topic " + topic);
+		}
+		try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(encoded, 1, encoded.length - 1))) {
+			return codec.decode(topic, in);
+		}
+	}
+
+	/**
+	 * Encode several events into one message. Each event is encoded as by {@link #encode(String, Serializable)}.
+	 *
+	 * @param topic
+	 * @param events
+	 * @return the encoded events, preceded by their number and each preceded by its length
+	 * @throws IOException
+	 */
+	public byte[] encodeBatch(String topic, List<? extends Serializable> events) throws IOException {
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream(256 * events.size());
+		try (DataOutputStream out = new DataOutputStream(bytes)) {
+			out.writeInt(events.size());
+			for (Serializable event : events) {
+				final byte[] encoded = encode(topic, event);
+				out.writeInt(encoded.length);
+				out.write(encoded);
+			}
+		}
+		return bytes.toByteArray();
+	}
+
+	/**
+	 * @param topic
+	 * @param encoded
+	 *            events encoded by {@link #encodeBatch(String, List)}
+	 * @return the decoded events in the order they were encoded
+	 * @throws IOException
+	 * @throws ClassNotFoundException
+	 */
+	public List<Object> decodeBatch(String topic, byte[] encoded) throws IOException, ClassNotFoundException {
+		final List<byte[]> encodedEvents = splitBatch(topic, encoded);
+		final List<Object> events = new ArrayList<>(encodedEvents.size());
+		for (byte[] event : encodedEvents) {
+			events.add(decode(topic, event));
+		}
+		return events;
+	}
+
+	/**
+	 * Split events encoded together so that each can be decoded with {@link #decode(String, byte[])} on its own
+	 *
+	 * @param topic
+	 * @param encoded
+	 *            events encoded by {@link #encodeBatch(String, List)}
+	 * @return the encoded events in the order they were encoded
+	 * @throws IOException
+	 *             if the batch is malformed
+	 */
+	public List<byte[]> splitBatch(String topic, byte[] encoded) throws IOException {
+		try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(encoded))) {
+			final int size = in.readInt();
+			if (size < 0) {
+				throw new IOException("Invalid batch size " + size + " received on topic " + topic);
+			}
+			final List<byte[]> events = new ArrayList<>(size);
+			for (int i = 0; i < size; i++) {
+				final byte[] event = new byte[in.readInt()];
+				in.readFully(event);
+				events.add(event);
+			}
+			return events;
+		}
+	}
+}
@@ -34,6 +34,12 @@ public abstract class JmsClient {
 
 	protected static final String TOPIC_PREFIX = "gda.event.";
 
+	/**
+	 * Name of the int property set on messages containing several events encoded with
+	 * {@link EventCodecRegistry#encodeBatch(String, java.util.List)}. Its value is the number of events.
+	 */
+	protected static final String BATCH_SIZE_PROPERTY = "GDA_EVENT_BATCH_SIZE";
+
 	protected final Connection connection;
 
 	protected final Session session;
@@ -49,4 +55,12 @@ public abstract class JmsClient {
 		}
 	}
 
+	/**
+	 * Use an existing connection and session, e.g. in tests
+	 */
+	protected JmsClient(Connection connection, Session session) {
+		this.connection = connection;
+		this.session = session;
+	}
+
 }
@@ -24,6 +24,13 @@ import static javax.jms.DeliveryMode.NON_PERSISTENT;
 import java.io.IOException;
 import java.io.NotSerializableException;
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
@@ -31,10 +38,15 @@ import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 
+import javax.jms.BytesMessage;
 import javax.jms.JMSException;
+import javax.jms.Message;
 import javax.jms.MessageProducer;
 import javax.jms.ObjectMessage;
+import javax.jms.Session;
 import javax.jms.Topic;
 
 import org.slf4j.Logger;
@@ -46,6 +58,14 @@ import gda.util.Serializer;
 
 /**
  * An {@link EventDispatcher} that uses JMS to dispatch events. This class was significantly rewritten as part of DAQ-515
+ * <p>
+ * Events of the types listed in {@value #GDA_EVENTS_JMS_CONFLATED_EVENT_TYPES} are conflated: if an event of one of
+ * these types is published while an earlier event of the same type from the same source is still waiting to be sent,
+ * and no other event from that source has been published since, the earlier event is replaced and only the newest is
+ * sent. Events from one source are therefore always sent in the order they were published.
+ * <p>
+ * If {@value #GDA_EVENTS_JMS_MAX_BATCH_SIZE} is greater than one, events which are already waiting to be sent to the
+ * same topic are sent together in a single message. Batching never delays an event to wait for others.
  */
 public class JmsEventDispatcher extends JmsClient implements EventDispatcher {
 
@@ -57,6 +77,18 @@ public class JmsEventDispatcher extends JmsClient implements EventDispatcher {
 	/** If an event being dispatched is older than this value a warning will be logged */
 	private static final long QUEUE_TIME_WARNING_MS = 1000L; // 1 sec
 
+	/**
+	 * Property listing the fully qualified class names of events which should be conflated, separated by commas, e.g.
+	 * gda.device.scannable.ScannablePositionChangeEvent. The default is empty, every event is sent.
+	 */
+	public static final String GDA_EVENTS_JMS_CONFLATED_EVENT_TYPES = "gda.events.jms.conflatedEventTypes";
+
+	/**
+	 * Property setting the maximum number of queued events sent to a topic in one message. The default of 1 sends each
+	 * event in its own message.
+	 */
+	public static final String GDA_EVENTS_JMS_MAX_BATCH_SIZE = "gda.events.jms.maxBatchSize";
+
 	/** The time after which undelivered events will be discarded */
 	private static final long MESSAGE_EXPIRATION_TIME_MS = 15 * 60 * 1000L; // 15 mins
 
@@ -64,11 +96,34 @@ public class JmsEventDispatcher extends JmsClient implements EventDispatcher {
 	private final ConcurrentMap<String, Topic> topicMap = new ConcurrentHashMap<>();
 	private final ConcurrentMap<String, MessageProducer> publisherMap = new ConcurrentHashMap<>();
 
+	/**
+	 * Codecs used to send common events more compactly than Java serialization, if enabled by
+	 * {@value EventCodecRegistry#GDA_EVENTS_JMS_BINARY_CODECS}
+	 */
+	private final EventCodecRegistry codecs = EventCodecRegistry.createForSending();
+
 	/**
 	 * Queue to hold messages waiting for dispatch - prevents publish blocking
 	 */
 	private final BlockingQueue<OutgoingEvent> outgoingMessageQueue = new LinkedBlockingQueue<>();
 
+	/**
+	 * For each source whose last queued event is of a conflated type and still waiting to be sent, the window in which
+	 * newer events of that type replace it. A window is closed when its event is taken from the queue or when any
+	 * other event from the source is published.
+	 */
+	private final ConcurrentMap<String, ConflationWindow> openConflationWindows = new ConcurrentHashMap<>();
+
+	private final Set<String> conflatedEventTypes = Collections.unmodifiableSet(Arrays
+			.stream(LocalProperties.get(GDA_EVENTS_JMS_CONFLATED_EVENT_TYPES, "").split(","))
+			.map(String::trim)
+			.filter(name -> !name.isEmpty())
+			.collect(Collectors.toSet()));
+
+	private final int maxBatchSize = Math.max(1, LocalProperties.getAsInt(GDA_EVENTS_JMS_MAX_BATCH_SIZE, 1));
+
+	private final ConcurrentMap<String, JmsTopicMetrics> topicMetrics = new ConcurrentHashMap<>();
+
 	/**
 	 * The ThreadFactory used to create threads to handle the event dispatching task
 	 */
@@ -98,9 +153,7 @@ public class JmsEventDispatcher extends JmsClient implements EventDispatcher {
 		// While not interrupted i.e. run forever
 		while(!Thread.currentThread().isInterrupted()) {
 			try {
-				// This blocks here waiting for stuff on the queue
-				final OutgoingEvent event = outgoingMessageQueue.take();
-				sendEvent(event);
+				dispatchNext();
 			} catch (InterruptedException e) {
 				// Re-interrupt to allow thread to end.
 				Thread.currentThread().interrupt();
@@ -114,11 +167,20 @@ public class JmsEventDispatcher extends JmsClient implements EventDispatcher {
 	public JmsEventDispatcher() {
 		// If the super constructor succeeds then we know the session was created
 		logger.info("Created new session: {}", session);
+		logger.info("Conflating events of types {}, sending up to {} events per message", conflatedEventTypes, maxBatchSize);
 
 		// Start the tread doing the dispatching.
 		startDispatcherThread();
 	}
 
+	/**
+	 * Creates a JMS event dispatcher using an existing session without starting the dispatch thread, so that events
+	 * are only sent by calls to {@link #dispatchNext()}. For tests.
+	 */
+	JmsEventDispatcher(Session session) {
+		super(null, session);
+	}
+
 	private void startDispatcherThread() {
 		executorService.execute(dispatcher);
 		logger.debug("Started event dispatch thread");
@@ -143,26 +205,118 @@ public class JmsEventDispatcher extends JmsClient implements EventDispatcher {
 		if (message != null && !(message instanceof Serializable)) {
 			throw new IllegalArgumentException(new NotSerializableException(message.getClass().getName()));
 		}
-		// Queue the message for dispatch
-		outgoingMessageQueue.add(new OutgoingEvent(sourceName, (Serializable) message));
+		final JmsTopicMetrics metrics = getTopicMetrics(sourceName);
+		metrics.eventPublished();
+		if (conflatedEventTypes.isEmpty()) {
+			// Queue the message for dispatch
+			metrics.eventQueued();
+			outgoingMessageQueue.add(new OutgoingEvent(sourceName, (Serializable) message, null));
+			return;
+		}
+		final boolean conflated = message != null && conflatedEventTypes.contains(message.getClass().getName());
+		// Queue while holding the source's entry so that events from the source are queued in the order their windows
+		// are opened and closed
+		openConflationWindows.compute(sourceName, (key, window) -> {
+			if (conflated && window != null && window.getEventType() == message.getClass()) {
+				// The source's last queued event is still waiting and will now send this one instead
+				window.setLatest(new OutgoingEvent(sourceName, (Serializable) message, null));
+				metrics.eventConflated();
+				return window;
+			}
+			final ConflationWindow newWindow = conflated ? new ConflationWindow(message.getClass()) : null;
+			final OutgoingEvent event = new OutgoingEvent(sourceName, (Serializable) message, newWindow);
+			if (newWindow != null) {
+				newWindow.setLatest(event);
+			}
+			metrics.eventQueued();
+			outgoingMessageQueue.add(event);
+			return newWindow;
+		});
+	}
+
+	/**
+	 * @return the metrics of every topic to which events have been published, keyed by sourceName
+	 */
+	public Map<String, JmsTopicMetrics> getTopicMetrics() {
+		return Collections.unmodifiableMap(topicMetrics);
+	}
+
+	private JmsTopicMetrics getTopicMetrics(String sourceName) {
+		return topicMetrics.computeIfAbsent(sourceName, JmsTopicMetrics::new);
+	}
+
+	/**
+	 * Wait for an event to be queued, then send it together with any others already waiting which can be batched with
+	 * it
+	 *
+	 * @throws InterruptedException
+	 *             if interrupted while waiting
+	 */
+	void dispatchNext() throws InterruptedException {
+		final List<OutgoingEvent> events = new ArrayList<>(maxBatchSize);
+		// This blocks here waiting for stuff on the queue
+		events.add(outgoingMessageQueue.take());
+		// Take anything else already waiting which could be batched with it
+		if (maxBatchSize > 1) {
+			outgoingMessageQueue.drainTo(events, maxBatchSize - 1);
+		}
+		dispatchEvents(events);
 	}
 
 	/**
-	 * This actually sends the event. It serializes the event message object using the {@link Serializer}. This is then
-	 * placed into a JMS {@link ObjectMessage} and sent. The topic used is determined from the sourceName in the event.
+	 * Send events taken from the queue, batching those for the same topic if there is more than one
 	 *
-	 * @param event
-	 *            The event to send
+	 * @param queuedEvents
+	 *            events in the order they were taken from the queue
 	 */
-	private void sendEvent(final OutgoingEvent event) {
-		// Unwrap the OutgoingEvent
+	private void dispatchEvents(final List<OutgoingEvent> queuedEvents) {
+		if (queuedEvents.size() == 1) {
+			sendEvents(Collections.singletonList(resolve(queuedEvents.get(0))));
+			return;
+		}
+		// Group by topic keeping the order of events within each topic
+		final Map<String, List<OutgoingEvent>> eventsBySource = new LinkedHashMap<>();
+		for (OutgoingEvent queuedEvent : queuedEvents) {
+			eventsBySource.computeIfAbsent(queuedEvent.getSourceName(), key -> new ArrayList<>()).add(resolve(queuedEvent));
+		}
+		eventsBySource.values().forEach(this::sendEvents);
+	}
+
+	/**
+	 * @return the event to send in place of the one taken from the queue. This is the newest event published in its
+	 *         {@link ConflationWindow}, if it has one.
+	 */
+	private OutgoingEvent resolve(final OutgoingEvent queuedEvent) {
+		getTopicMetrics(queuedEvent.getSourceName()).eventDequeued();
+		final ConflationWindow window = queuedEvent.getConflationWindow();
+		if (window == null) {
+			return queuedEvent;
+		}
+		// Close the window, if a later event has not already done so, so that nothing more can replace the event
+		openConflationWindows.remove(queuedEvent.getSourceName(), window);
+		final OutgoingEvent latest = window.getLatest();
+		return latest == queuedEvent ? queuedEvent : queuedEvent.replacedBy(latest);
+	}
+
+	/**
+	 * This actually sends the events, all of which must be for the same topic. A single event which one of the
+	 * {@link EventCodec}s can encode is sent in a JMS {@link BytesMessage}. Otherwise it is serialized using the
+	 * {@link Serializer} and placed into a JMS {@link ObjectMessage}. Several events are encoded together with
+	 * {@link EventCodecRegistry#encodeBatch(String, List)} and sent in a {@link BytesMessage}. The topic used is
+	 * determined from the sourceName in the events.
+	 *
+	 * @param events
+	 *            The events to send
+	 */
+	private void sendEvents(final List<OutgoingEvent> events) {
+		final OutgoingEvent event = events.get(0);
 		final String sourceName = event.getSourceName();
 		final Serializable message = event.getMessage();
 		final long timestamp = event.getTimestamp();
 		long delay;
 
 		// Check how long the event was in the queue and warn if longer than QUEUE_TIME_WARNING
-		if ((delay = System.currentTimeMillis() - timestamp) > QUEUE_TIME_WARNING_MS) {
+		if ((delay = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - event.getQueuedNanos())) > QUEUE_TIME_WARNING_MS) {
 			logger.warn("Event '{}' has waited {}ms in the dispatch queue (above {}ms warning threadshold)",
 					event,
 					delay,
@@ -174,21 +328,47 @@ public class JmsEventDispatcher extends JmsClient implements EventDispatcher {
 			final Topic topic = getTopic(sourceName);
 			final MessageProducer publisher = getPublisher(sourceName);
 
-			// Serialize the message - here we used the GDA Serializer as it can see the required classes
-			// ActiveMQ could serialize for us but then ActiveMQ needs to be able to see all the classes
-			// we might want to deserialize into.
-			final byte[] serializedObject = Serializer.toByte(message);
+			final Message jmsMessage;
+			final int size;
+			final EventCodec codec = events.size() == 1 ? codecs.findCodec(message) : null;
+			if (events.size() > 1) {
+				final List<Serializable> messages = events.stream().map(OutgoingEvent::getMessage).collect(Collectors.toList());
+				final byte[] encodedObjects = codecs.encodeBatch(sourceName, messages);
+				size = encodedObjects.length;
+				final BytesMessage bytesMessage = session.createBytesMessage();
+				bytesMessage.writeBytes(encodedObjects);
+				bytesMessage.setIntProperty(BATCH_SIZE_PROPERTY, events.size());
+				jmsMessage = bytesMessage;
+			} else if (codec != null) {
+				final byte[] encodedObject = codecs.encode(sourceName, message, codec);
+				size = encodedObject.length;
+				final BytesMessage bytesMessage = session.createBytesMessage();
+				bytesMessage.writeBytes(encodedObject);
+				jmsMessage = bytesMessage;
+			} else {
+				// Serialize the message - here we used the GDA Serializer as it can see the required classes
+				// ActiveMQ could serialize for us but then ActiveMQ needs to be able to see all the classes
+				// we might want to deserialize into.
+				final byte[] serializedObject = Serializer.toByte(message);
+				size = serializedObject.length;
+				// Make a object message containing the serialized message object
+				jmsMessage = session.createObjectMessage(serializedObject);
+			}
 			// Check the size of the object to be sent is reasonable
-			if (serializedObject.length > SERIALIZED_OBJECT_SIZE_WARNING_BYTES) {
-				logger.warn("Sending large object. '{}' is {} bytes.", message, serializedObject.length);
+			if (size > SERIALIZED_OBJECT_SIZE_WARNING_BYTES) {
+				logger.warn("Sending large object. '{}' is {} bytes.", events.size() > 1 ? events : message, size);
 			}
-			// Make a object message containing the serialized message object
-			final ObjectMessage objectMessage = session.createObjectMessage(serializedObject);
-			// Add a sending timestamp to message - approximately when the event happened
-			objectMessage.setJMSTimestamp(timestamp);
+			// Add a sending timestamp to message - approximately when the (oldest) event happened
+			jmsMessage.setJMSTimestamp(timestamp);
 
 			// Send the message
-			publisher.send(topic, objectMessage);
+			publisher.send(topic, jmsMessage);
+
+			final JmsTopicMetrics metrics = getTopicMetrics(sourceName);
+			metrics.messageSent();
+			for (OutgoingEvent sentEvent : events) {
+				metrics.getSendLatency().recordSince(sentEvent.getQueuedNanos());
+			}
 
 		// Catch RuntimeException here as it used to wrap JMSException
 		} catch (RuntimeException e) {
@@ -245,15 +425,35 @@ public class JmsEventDispatcher extends JmsClient implements EventDispatcher {
 	 * <p>
 	 * It adds a timestamp in the constructor intended to be the time the event happened.
 	 */
-	private final class OutgoingEvent {
+	private static final class OutgoingEvent {
 		private final String sourceName;
 		private final Serializable message;
 		private final long timestamp;
+		/** {@link System#nanoTime()} when the event which holds this event's place in the queue was published */
+		private final long queuedNanos;
+		private final ConflationWindow conflationWindow;
 
-		public OutgoingEvent(String sourceName, Serializable message) {
+		public OutgoingEvent(String sourceName, Serializable message, ConflationWindow conflationWindow) {
 			this.sourceName = sourceName;
 			this.message = message;
 			this.timestamp = System.currentTimeMillis();
+			this.queuedNanos = System.nanoTime();
+			this.conflationWindow = conflationWindow;
+		}
+
+		private OutgoingEvent(OutgoingEvent queued, OutgoingEvent latest) {
+			this.sourceName = latest.sourceName;
+			this.message = latest.message;
+			this.timestamp = latest.timestamp;
+			this.queuedNanos = queued.queuedNanos;
+			this.conflationWindow = null;
+		}
+
+		/**
+		 * @return an event with the message of the given newer event which has been queued as long as this one
+		 */
+		public OutgoingEvent replacedBy(OutgoingEvent latest) {
+			return new OutgoingEvent(this, latest);
 		}
 
 		public String getSourceName() {
@@ -267,6 +467,14 @@ public class JmsEventDispatcher extends JmsClient implements EventDispatcher {
 			return timestamp;
 		}
 
+		public long getQueuedNanos() {
+			return queuedNanos;
+		}
+
+		public ConflationWindow getConflationWindow() {
+			return conflationWindow;
+		}
+
 		@Override
 		public String toString() {
 			return "OutgoingEvent [sourceName=" + sourceName + ", message=" + message + ", timestamp=" + timestamp
@@ -274,4 +482,29 @@ public class JmsEventDispatcher extends JmsClient implements EventDispatcher {
 		}
 	}
 
+	/**
+	 * Holds the newest event of a conflated type published by a source since its queued event, while no other event
+	 * from the source has been published
+	 */
+	private static final class ConflationWindow {
+		private final Class<?> eventType;
+		private volatile OutgoingEvent latest;
+
+		public ConflationWindow(Class<?> eventType) {
+			this.eventType = eventType;
+		}
+
+		public Class<?> getEventType() {
+			return eventType;
+		}
+
+		public OutgoingEvent getLatest() {
+			return latest;
+		}
+
+		public void setLatest(OutgoingEvent latest) {
+			this.latest = latest;
+		}
+	}
+
 }
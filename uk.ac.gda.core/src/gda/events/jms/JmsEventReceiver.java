@@ -23,11 +23,14 @@ import java.io.IOException;
 import java.util.List;
 import java.util.concurrent.CopyOnWriteArrayList;
 
+import javax.jms.BytesMessage;
+import javax.jms.Connection;
 import javax.jms.JMSException;
 import javax.jms.Message;
 import javax.jms.MessageConsumer;
 import javax.jms.MessageListener;
 import javax.jms.ObjectMessage;
+import javax.jms.Session;
 import javax.jms.Topic;
 
 import org.slf4j.Logger;
@@ -64,6 +67,9 @@ public class JmsEventReceiver extends JmsClient implements EventReceiver {
 	 */
 	private final List<MessageConsumer> consumers = new CopyOnWriteArrayList<>();
 
+	/** Codecs used to decode events not sent using Java serialization */
+	private final EventCodecRegistry codecs = EventCodecRegistry.createDefault();
+
 	/**
 	 * Creates a JMS event receiver.
 	 */
@@ -76,6 +82,13 @@ public class JmsEventReceiver extends JmsClient implements EventReceiver {
 		}
 	}
 
+	/**
+	 * Creates a JMS event receiver using an existing connection and session, e.g. in tests
+	 */
+	JmsEventReceiver(Connection connection, Session session) {
+		super(connection, session);
+	}
+
 	@Override
 	public void subscribe(final EventSubscriber eventSubscriber, final String name) {
 		try {
@@ -97,8 +110,8 @@ public class JmsEventReceiver extends JmsClient implements EventReceiver {
 	}
 
 	/**
-	 * This handles messages received from JMS. It checks the message is valid, deserializes it and pushes it out to
-	 * subscribers.
+	 * This handles messages received from JMS. It checks the message is valid, deserializes or decodes it and pushes it
+	 * out to subscribers.
 	 */
 	private class MessageDispatcher implements MessageListener {
 
@@ -112,6 +125,11 @@ public class JmsEventReceiver extends JmsClient implements EventReceiver {
 
 		@Override
 		public void onMessage(final Message message) {
+			// Messages encoded by an EventCodec are sent as BytesMessages
+			if (message instanceof BytesMessage) {
+				onBytesMessage((BytesMessage) message);
+				return;
+			}
 			// If its not a ObjectMessage fail
 			if (!(message instanceof ObjectMessage)) {
 				logger.error("Received unexpected message: '{}' on topic '{}'", message, topic);
@@ -147,6 +165,52 @@ public class JmsEventReceiver extends JmsClient implements EventReceiver {
 				return; // We can't handle this case
 			}
 
+			informSubscriber(messageObject, sendingTimestamp);
+		}
+
+		private void onBytesMessage(final BytesMessage message) {
+			final byte[] encodedObject;
+			final long sendingTimestamp;
+			final boolean batch;
+			try {
+				encodedObject = new byte[(int) message.getBodyLength()];
+				message.readBytes(encodedObject);
+				sendingTimestamp = message.getJMSTimestamp();
+				batch = message.propertyExists(BATCH_SIZE_PROPERTY);
+			} catch (JMSException e) {
+				logger.error("Error handling received message: '{}' on topic '{}'", message, topic, e);
+				return; // We can't continue
+			}
+			if (!batch) {
+				decodeAndInform(encodedObject, sendingTimestamp);
+				return;
+			}
+			// Several events sent together, inform in the order they were published
+			final List<byte[]> encodedObjects;
+			try {
+				encodedObjects = codecs.splitBatch(topic, encodedObject);
+			} catch (IOException e) {
+				logger.error("Error splitting received message: '{}' on topic '{}'", message, topic, e);
+				return; // We can't find the events in it
+			}
+			// Each event is decoded on its own so that one which cannot be decoded does not lose the others
+			for (byte[] batchedObject : encodedObjects) {
+				decodeAndInform(batchedObject, sendingTimestamp);
+			}
+		}
+
+		private void decodeAndInform(final byte[] encodedObject, final long sendingTimestamp) {
+			final Object messageObject;
+			try {
+				messageObject = codecs.decode(topic, encodedObject);
+			} catch (ClassNotFoundException | IOException e) {
+				logger.error("Error decoding event received on topic '{}'", topic, e);
+				return; // Skip this event
+			}
+			informSubscriber(messageObject, sendingTimestamp);
+		}
+
+		private void informSubscriber(final Object messageObject, final long sendingTimestamp) {
 			// Warn about receiving old messages. This suggests a communication issue or very high message rate.
 			final long messageAgeMillis = System.currentTimeMillis() - sendingTimestamp;
 			if (messageAgeMillis > MESSAGE_AGE_WARNING_MILLS) {
@@ -0,0 +1,122 @@
+/*-
+ * Copyright © 2019 Diamond Light Source Ltd.
+ *
+ * This file is part of GDA.
+ *
+ * GDA is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License version 3 as published by the Free
+ * Software Foundation.
+ *
+ * GDA is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with GDA. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package gda.events.jms;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import gda.util.LatencyHistogram;
+
+/**
+ * Counts of the events published to one topic by a {@link JmsEventDispatcher}
+ */
+public class JmsTopicMetrics {
+
+	private final String sourceName;
+
+	private final AtomicInteger queueDepth = new AtomicInteger();
+
+	private final AtomicLong published = new AtomicLong();
+
+	private final AtomicLong conflated = new AtomicLong();
+
+	private final AtomicLong messagesSent = new AtomicLong();
+
+	private final LatencyHistogram sendLatency;
+
+	JmsTopicMetrics(String sourceName) {
+		this.sourceName = sourceName;
+		sendLatency = new LatencyHistogram(sourceName + " send latency");
+	}
+
+	void eventQueued() {
+		queueDepth.incrementAndGet();
+	}
+
+	void eventDequeued() {
+		queueDepth.decrementAndGet();
+	}
+
+	void eventPublished() {
+		published.incrementAndGet();
+	}
+
+	void eventConflated() {
+		conflated.incrementAndGet();
+	}
+
+	void messageSent() {
+		messagesSent.incrementAndGet();
+	}
+
+	public String getSourceName() {
+		return sourceName;
+	}
+
+	/**
+	 * @return the number of events for this topic currently waiting to be sent
+	 */
+	public int getQueueDepth() {
+		return queueDepth.get();
+	}
+
+	/**
+	 * @return the number of events published to this topic
+	 */
+	public long getPublished() {
+		return published.get();
+	}
+
+	/**
+	 * @return the number of published events replaced by a newer event before they were sent
+	 */
+	public long getConflated() {
+		return conflated.get();
+	}
+
+	/**
+	 * @return the fraction of published events which were replaced by a newer event before being sent
+	 */
+	public double getConflationRate() {
+		final long total = published.get();
+		return total == 0 ? 0 : conflated.get() / (double) total;
+	}
+
+	/**
+	 * @return the number of JMS messages sent to this topic. This is less than the number of events sent when events
+	 *         are batched.
+	 */
+	public long getMessagesSent() {
+		return messagesSent.get();
+	}
+
+	/**
+	 * @return the time from an event being queued until the message containing it had been sent
+	 */
+	public LatencyHistogram getSendLatency() {
+		return sendLatency;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%s: queueDepth=%d, published=%d, conflated=%d (%.1f%%), messagesSent=%d, %s", sourceName,
+				getQueueDepth(), getPublished(), getConflated(), 100 * getConflationRate(), getMessagesSent(),
+				sendLatency);
+	}
+}
@@ -51,6 +51,22 @@ public interface Lookup extends Findable, IObservable {
 	 */
 	public abstract double lookupValue(Object energy, String scannableName) throws DeviceException;
 
+	/**
+	 * lookup and returns the values corresponding to many keys, such as the energies of all the points of a
+	 * trajectory, for one column
+	 *
+	 * @param energies
+	 * @param scannableName
+	 * @return value for the named scannable at each key
+	 */
+	default double[] lookupValues(double[] energies, String scannableName) throws DeviceException {
+		final double[] values = new double[energies.length];
+		for (int i = 0; i < energies.length; i++) {
+			values[i] = lookupValue(energies[i], scannableName);
+		}
+		return values;
+	}
+
 	/**
 	 * Returns the physical unit for a particular scannable name which its value is in
 	 *
@@ -25,11 +25,10 @@ import java.io.FileNotFoundException;
 import java.io.FileReader;
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Collection;
+import java.util.Arrays;
 import java.util.List;
 import java.util.StringTokenizer;
 
-import org.apache.commons.collections.map.MultiValueMap;
 import org.jscience.physics.quantities.Quantity;
 import org.jscience.physics.units.Unit;
 import org.slf4j.Logger;
@@ -59,7 +58,9 @@ import uk.ac.gda.api.remoting.ServiceInterface;
  * <li>Lookup Values: Multiple rows and columns of data with NO Marker, instead, the first column of data (i.e. the
  * left-most scannable's values) are used as key by default for the lookup on specific row.</li>
  * </ul>
- * it uses a MultiValuedMap object to store the lookup table.
+ * Each column is held as a sorted array of doubles. Values between rows are interpolated as set by
+ * {@link #setInterpolation(Interpolation)}, linearly by default, and lookups outside the table fail. Lookups do not
+ * lock: the table is replaced as a whole when it is reloaded so readers see either the old or the new table.
  */
 @ServiceInterface(Lookup.class)
 public class LookupTable extends ConfigurableBase implements Lookup, Localizable {
@@ -72,13 +73,22 @@ public class LookupTable extends ConfigurableBase implements Lookup, Localizable
 	 */
 	private String name;
 	/**
-	 * total number of rows in the lookup table
+	 * How values between the rows of the table are found
 	 */
-	private int numberOfRows;
+	public enum Interpolation {
+		/** Only values at rows of the table can be looked up, as in earlier versions */
+		NONE,
+		/** Straight line between neighbouring rows */
+		LINEAR,
+		/** Natural cubic spline through all rows */
+		CUBIC
+	}
+
 	/**
-	 * the number of decimal places used for the scannable objects
+	 * the contents of the file, replaced as a whole on reload
 	 */
-	private ArrayList<Object> keys;
+	private volatile LookupTableData data;
+	private Interpolation interpolation = Interpolation.LINEAR;
 	/**
 	 * the filename of the lookup table - ASCII file
 	 */
@@ -133,7 +143,18 @@ public class LookupTable extends ConfigurableBase implements Lookup, Localizable
 		this.dirLUT = dirLUT;
 	}
 
-	private MultiValueMap lookupMap = new MultiValueMap();
+	public Interpolation getInterpolation() {
+		return interpolation;
+	}
+
+	/**
+	 * @param interpolation
+	 *            how to find values between the rows of the table. Default is {@link Interpolation#LINEAR}.
+	 */
+	public void setInterpolation(Interpolation interpolation) {
+		this.interpolation = interpolation;
+	}
+
 	private ObservableComponent observableComponent = new ObservableComponent();
 	private boolean local = false;
 
@@ -148,45 +169,54 @@ public class LookupTable extends ConfigurableBase implements Lookup, Localizable
 		logger.info("{} configuring lookup table. This will take a while, please wait ......", getName());
 //		logger.debug("LookupTable configure called");
 		if (!isConfigured()) {
-			String filePath;
-			if (dirLUT == null) {
-				String gda_config = LocalProperties.get(LocalProperties.GDA_CONFIG);
-				String lookupTableFolder = LocalProperties.get("gda.function.lookupTable.dir", gda_config
-						+ File.separator + "lookupTables");
-				filePath = lookupTableFolder + File.separator + filename;
-			} else {
-				filePath = dirLUT + File.separator + filename;
-			}
-			readTheFile(filePath);
+			data = readTheFile(getFilePath());
 			setConfigured(true);
 		}
 	}
 
-	private void checkConfigured() throws DeviceException{
-		if (!isConfigured()) {
+	private String getFilePath() {
+		if (dirLUT == null) {
+			String gda_config = LocalProperties.get(LocalProperties.GDA_CONFIG);
+			String lookupTableFolder = LocalProperties.get("gda.function.lookupTable.dir", gda_config
+					+ File.separator + "lookupTables");
+			return lookupTableFolder + File.separator + filename;
+		}
+		return dirLUT + File.separator + filename;
+	}
+
+	private LookupTableData checkConfigured() throws DeviceException{
+		final LookupTableData current = data;
+		if (current == null) {
 			throw new DeviceException("LookupTable '" + getName() +"' is not configured");
 		}
+		return current;
 	}
+
+	/**
+	 * Reads the file again and replaces the table. Lookups made while the file is read use the old table, and if the
+	 * file cannot be read the old table is kept.
+	 */
 	@Override
 	public void reload() {
-		setConfigured(false);
-		configure();
+		if (!isConfigured()) {
+			configure();
+			return;
+		}
+		data = readTheFile(getFilePath());
+		logger.info("{} reloaded lookup table", getName());
 	}
 
 	/**
-	 * Reads the lookup table file and put them into a multi-Valued Map for looking up value for the specified energy
-	 * and scannable name.
+	 * Reads the lookup table file
 	 *
 	 * @param filePath
+	 * @return the contents of the file
 	 */
-	private void readTheFile(String filePath) {
-		lookupMap.clear();
-
+	private LookupTableData readTheFile(String filePath) {
 		BufferedReader br = null;
 		String nextLine;
 		String[] names = null;
 		String[] unitStrings = null;
-		int[] decimalPlaces = null;
 		ArrayList<String> lines = new ArrayList<String>();
 		try {
 			// Find out lookup table folder
@@ -223,52 +253,37 @@ public class LookupTable extends ConfigurableBase implements Lookup, Localizable
 			}
 		}
 
-		numberOfRows = lines.size();
-		logger.debug("the file containes " + numberOfRows + " lines");
+		if (lines.isEmpty()) {
+			throw new IllegalArgumentException("LookupTable file " + filePath + " contains no values");
+		}
+		logger.debug("the file containes " + lines.size() + " lines");
 		int nColumns = new StringTokenizer(lines.get(0), ", \t").countTokens();
 		logger.debug("each line contains " + nColumns + " numbers");
-		keys = new ArrayList<Object>();
+
+		// The marker words "ScannableNames" and "ScannableUnits" are the first items of their lines
+		List<String> columnNames = new ArrayList<>();
 		if (names != null) {
-			for (int i = 0; i < nColumns; i++) {
-				lookupMap.put(names[0], names[i + 1]);
-			}
-			keys.add(names[0]);
+			columnNames.addAll(Arrays.asList(names).subList(1, Math.min(names.length, nColumns + 1)));
 		}
 
+		List<Unit<? extends Quantity>> units = null;
 		if (unitStrings != null) {
+			units = new ArrayList<>();
 			for (int i = 0; i < nColumns; i++) {
-				lookupMap.put(unitStrings[0], QuantityFactory.createUnitFromString(unitStrings[i + 1]));
+				units.add(QuantityFactory.createUnitFromString(unitStrings[i + 1]));
 			}
-			keys.add(unitStrings[0]);
 		}
 
-		decimalPlaces = calculateDecimalPlaces(lines.get(0));
-		if (decimalPlaces != null) {
-			for (int i = 0; i < nColumns; i++) {
-				lookupMap.put("DecimalPlaces", decimalPlaces[i]);
-			}
-			keys.add("DecimalPlaces");
-		}
-
-		double[] thisLine;
-		int i;
-		int j;
-		for (i = 0; i < numberOfRows; i++) {
-			nextLine = lines.get(i);
-			thisLine = stringToDoubleArray(nextLine);
-			for (j = 0; j < thisLine.length; j++)
-				lookupMap.put(String.format("%.3f", thisLine[0]), thisLine[j]);
-			keys.add(String.format("%.3f", thisLine[0]));
+		List<double[]> rows = new ArrayList<>(lines.size());
+		for (String line : lines) {
+			rows.add(stringToDoubleArray(line));
 		}
+		return new LookupTableData(columnNames, units, calculateDecimalPlaces(lines.get(0)), rows);
 	}
 
 	@Override
-	@SuppressWarnings("unchecked")
 	public ArrayList<String> getScannableNames() throws DeviceException {
-		checkConfigured();
-		synchronized (lookupMap) {
-			return (ArrayList<String>) lookupMap.getCollection(getColumnHead());
-		}
+		return new ArrayList<>(checkConfigured().getNames());
 	}
 
 	/**
@@ -276,25 +291,25 @@ public class LookupTable extends ConfigurableBase implements Lookup, Localizable
 	 * @throws DeviceException
 	 */
 	@Override
-	@SuppressWarnings("unchecked")
 	public double lookupValue(Object energy, String scannableName) throws DeviceException {
-		checkConfigured();
-		double result;
-		synchronized (lookupMap) {
-			int index = indexOfScannable(getScannableNames(), scannableName);
-			double energyDouble = Double.parseDouble(energy.toString());
-			String value = String.format("%.3f", energyDouble);
-			logger.debug("energy is : {}", value);
-
-			ArrayList<Double> list = (ArrayList<Double>) lookupMap.getCollection(value);
-			if (list == null) {
-				logger.error("{}: list is null", getName());
-				throw new IllegalStateException("Cannot find value for " + scannableName + " at energy " + energy);
-			}
-			result = list.get(index);
-			return result;
-		}
+		final LookupTableData table = checkConfigured();
+		final double energyDouble = energy instanceof Number ? ((Number) energy).doubleValue() : Double.parseDouble(energy.toString());
+		return table.lookup(energyDouble, table.getColumn(scannableName), interpolation);
+	}
 
+	/**
+	 * Look up the values of a scannable for many keys, e.g. all the points of a trajectory, in one call
+	 *
+	 * @param energies
+	 * @param scannableName
+	 * @return the value for the named scannable at each key
+	 * @throws DeviceException
+	 *             if any key is outside the table
+	 */
+	@Override
+	public double[] lookupValues(double[] energies, String scannableName) throws DeviceException {
+		final LookupTableData table = checkConfigured();
+		return table.lookup(energies, table.getColumn(scannableName), interpolation);
 	}
 
 	/**
@@ -302,45 +317,24 @@ public class LookupTable extends ConfigurableBase implements Lookup, Localizable
 	 * @return Unit
 	 * @throws DeviceException
 	 */
-	@SuppressWarnings("unchecked")
 	public Unit<? extends Quantity> lookupUnit(String scannableName) throws DeviceException {
-		checkConfigured();
-		synchronized (lookupMap) {
-			return ((List<Unit<? extends Quantity>>) lookupMap.getCollection(getColumnUnit()))
-					.get(indexOfScannable(getScannableNames(), scannableName));
-		}
+		final LookupTableData table = checkConfigured();
+		return table.getUnit(table.getColumn(scannableName));
 	}
 
 	@Override
-	@SuppressWarnings("unchecked")
-	public synchronized String lookupUnitString(String scannableName) throws DeviceException {
-		checkConfigured();
-		synchronized (lookupMap) {
-			Unit<? extends Quantity> unit = ((List<Unit<? extends Quantity>>) lookupMap
-					.getCollection(getColumnUnit())).get(indexOfScannable(getScannableNames(), scannableName));
-			return unit.toString();
+	public String lookupUnitString(String scannableName) throws DeviceException {
+		Unit<? extends Quantity> unit = lookupUnit(scannableName);
+		if (unit == null) {
+			throw new DeviceException("LookupTable '" + getName() + "' has no units");
 		}
+		return unit.toString();
 	}
 
 	@Override
-	@SuppressWarnings("unchecked")
-	public synchronized int lookupDecimalPlaces(String scannableName) throws DeviceException {
-		checkConfigured();
-		synchronized (lookupMap) {
-			return ((List<Integer>) lookupMap.getCollection("DecimalPlaces")).get(indexOfScannable(
-					getScannableNames(), scannableName));
-		}
-	}
-
-	/**
-	 * returns or find the index of a scannable name in an Arraylist of Scannable names
-	 *
-	 * @param scannableNames
-	 * @param scannableName
-	 * @return index
-	 */
-	private int indexOfScannable(ArrayList<String> scannableNames, String scannableName) {
-		return scannableNames.indexOf(scannableName);
+	public int lookupDecimalPlaces(String scannableName) throws DeviceException {
+		final LookupTableData table = checkConfigured();
+		return table.getDecimalPlaces(table.getColumn(scannableName));
 	}
 
 	/**
@@ -392,7 +386,8 @@ public class LookupTable extends ConfigurableBase implements Lookup, Localizable
 
 	@Override
 	public int getNumberOfRows() {
-		return numberOfRows;
+		final LookupTableData table = data;
+		return table == null ? 0 : table.getNumberOfRows();
 	}
 
 	@Override
@@ -415,10 +410,6 @@ public class LookupTable extends ConfigurableBase implements Lookup, Localizable
 		return filename;
 	}
 
-	private MultiValueMap getLookupMap() {
-		return this.lookupMap;
-	}
-
 	/**
 	 * @return array of the values in the first column, considering that the first three rows are ScannableNames,
 	 *         ScannableUnits, and DecimalPlaces
@@ -426,21 +417,7 @@ public class LookupTable extends ConfigurableBase implements Lookup, Localizable
 	 */
 	@Override
 	public double[] getLookupKeys() throws DeviceException {
-		checkConfigured();
-		ArrayList<Object> actualKeys = getKeys();
-		final int firstRows = 3;// ScannableNames, ScannableUnits, DecimalPlaces
-		int totalKeys = actualKeys.size();
-		if (totalKeys > firstRows) {
-			double[] keys = new double[totalKeys - firstRows];
-			for (int count = firstRows; count < actualKeys.size(); count++) {
-				// While reading the file there is a mandate that the first column must be a double value - so
-				// additional checks aren't required here
-				keys[count - firstRows] = Double.parseDouble((String) actualKeys.get(count));
-			}
-			return keys;
-		}
-
-		return null;
+		return checkConfigured().getFileKeys();
 	}
 
 	// below is testing code used in this class internally only
@@ -452,21 +429,11 @@ public class LookupTable extends ConfigurableBase implements Lookup, Localizable
 	private void configure(String filename) {
 		logger.debug("LookupTable configure called");
 		if (!isConfigured()) {
-
-			readTheFile(filename);
+			data = readTheFile(filename);
 			setConfigured(true);
 		}
 	}
 
-	/**
-	 * returns the keys of map in its original order in the map
-	 *
-	 * @return array list of keys
-	 */
-	private ArrayList<Object> getKeys() {
-		return keys;
-	}
-
 	/**
 	 * Tests this class
 	 *
@@ -478,17 +445,14 @@ public class LookupTable extends ConfigurableBase implements Lookup, Localizable
 		LookupTable lut = new LookupTable();
 		// lut.configure("C:\\workspace\\config\\i11-EpicsSimulation\\lookupTables\\Automated_energy_setup.txt");
 		lut.configure("/scratch/i12workspace/i12-config/lookupTables/tomo/module_lookup_table.txt");
-		MultiValueMap lum = lut.getLookupMap();
-		for (Object key : lut.getKeys()) {
-			Collection<?> list = lum.getCollection(key);
-			for (Object o : list) {
-				System.out.print(o + "\t");
+		List<String> names = lut.getScannableNames();
+		System.out.println(String.join("\t", names));
+		for (double key : lut.getLookupKeys()) {
+			for (String name : names) {
+				System.out.print(lut.lookupValue(key, name) + "\t");
 			}
 			System.out.println();
 		}
-
-		lut.getLookupKeys();
-
 	}
 
 	@Override
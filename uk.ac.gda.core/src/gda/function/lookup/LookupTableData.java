@@ -0,0 +1,260 @@
+/*-
+ * Copyright © 2019 Diamond Light Source Ltd.
+ *
+ * This file is part of GDA.
+ *
+ * GDA is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License version 3 as published by the Free
+ * Software Foundation.
+ *
+ * GDA is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with GDA. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package gda.function.lookup;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.jscience.physics.quantities.Quantity;
+import org.jscience.physics.units.Unit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import gda.device.DeviceException;
+import gda.function.lookup.LookupTable.Interpolation;
+
+/**
+ * The contents of a {@link LookupTable} file.
+ * <p>
+ * Each column is held as a {@code double[]} sorted by the key (first) column so values are found by binary search
+ * and, between rows, interpolated. Instances are immutable so can be read from any number of threads without locking
+ * and replaced as a whole when the file is reloaded.
+ */
+final class LookupTableData {
+
+	private static final Logger logger = LoggerFactory.getLogger(LookupTableData.class);
+
+	/** Keys closer than this are taken as equal, as they were when keys were formatted to 3 decimal places */
+	static final double KEY_TOLERANCE = 0.0005;
+
+	private final List<String> names;
+
+	private final Map<String, Integer> columnIndices = new HashMap<>();
+
+	private final List<Unit<? extends Quantity>> units;
+
+	private final int[] decimalPlaces;
+
+	/** Keys in the order they appear in the file */
+	private final double[] fileKeys;
+
+	/** Keys in ascending order */
+	private final double[] keys;
+
+	/** Values of each column, in the order of {@link #keys} */
+	private final double[][] columns;
+
+	/** Second derivatives of the natural cubic spline through each column */
+	private final double[][] splines;
+
+	/**
+	 * @param names
+	 *            the column names, including that of the key column
+	 * @param units
+	 *            the units of each column, or null if the file gives none
+	 * @param decimalPlaces
+	 *            the decimal places of each column
+	 * @param rows
+	 *            the rows of the table in file order. The first value of each row is the key.
+	 */
+	LookupTableData(List<String> names, List<Unit<? extends Quantity>> units, int[] decimalPlaces, List<double[]> rows) {
+		if (rows.isEmpty()) {
+			throw new IllegalArgumentException("Lookup table has no rows");
+		}
+		final int numberOfColumns = rows.get(0).length;
+		this.names = Collections.unmodifiableList(new ArrayList<>(names));
+		this.units = units == null ? null : Collections.unmodifiableList(new ArrayList<>(units));
+		this.decimalPlaces = decimalPlaces.clone();
+		for (int i = 0; i < names.size(); i++) {
+			columnIndices.putIfAbsent(names.get(i), i);
+		}
+
+		fileKeys = new double[rows.size()];
+		for (int i = 0; i < fileKeys.length; i++) {
+			if (rows.get(i).length != numberOfColumns) {
+				throw new IllegalArgumentException(String.format("Row %d of lookup table has %d values, expected %d", i + 1,
+						rows.get(i).length, numberOfColumns));
+			}
+			fileKeys[i] = rows.get(i)[0];
+		}
+
+		// Sort the rows by key, keeping the first of any duplicates as the lookup of formatted keys did
+		final Integer[] order = new Integer[rows.size()];
+		for (int i = 0; i < order.length; i++) {
+			order[i] = i;
+		}
+		Arrays.sort(order, (a, b) -> Double.compare(fileKeys[a], fileKeys[b]));
+		final List<Integer> unique = new ArrayList<>(order.length);
+		for (Integer row : order) {
+			if (!unique.isEmpty() && fileKeys[row] - fileKeys[unique.get(unique.size() - 1)] < KEY_TOLERANCE) {
+				logger.warn("Ignoring row {} of lookup table as it has the same key ({}) as an earlier row", row + 1, fileKeys[row]);
+				continue;
+			}
+			unique.add(row);
+		}
+
+		keys = new double[unique.size()];
+		columns = new double[numberOfColumns][unique.size()];
+		for (int i = 0; i < keys.length; i++) {
+			final double[] row = rows.get(unique.get(i));
+			keys[i] = row[0];
+			for (int column = 0; column < numberOfColumns; column++) {
+				columns[column][i] = row[column];
+			}
+		}
+		splines = new double[numberOfColumns][];
+		for (int column = 0; column < numberOfColumns; column++) {
+			splines[column] = naturalSpline(keys, columns[column]);
+		}
+	}
+
+	List<String> getNames() {
+		return names;
+	}
+
+	Unit<? extends Quantity> getUnit(int column) {
+		return units == null ? null : units.get(column);
+	}
+
+	int getDecimalPlaces(int column) {
+		return decimalPlaces[column];
+	}
+
+	int getNumberOfRows() {
+		return fileKeys.length;
+	}
+
+	double[] getFileKeys() {
+		return fileKeys.clone();
+	}
+
+	/**
+	 * @return the index of the named column
+	 * @throws DeviceException
+	 *             if there is no such column
+	 */
+	int getColumn(String name) throws DeviceException {
+		final Integer column = columnIndices.get(name);
+		if (column == null || column >= columns.length) {
+			throw new DeviceException("Lookup table has no column named '" + name + "'");
+		}
+		return column;
+	}
+
+	/**
+	 * @return the value of the column at the key
+	 * @throws DeviceException
+	 *             if the key is outside the table, or between rows without interpolation
+	 */
+	double lookup(double key, int column, Interpolation interpolation) throws DeviceException {
+		return value(key, segment(key, 0), column, interpolation);
+	}
+
+	/**
+	 * Look up many keys at once. Consecutive keys are expected to be close together, as along a trajectory, so the
+	 * search starts from the row found for the previous key.
+	 *
+	 * @return the values of the column at each key
+	 * @throws DeviceException
+	 *             if any key is outside the table, or between rows without interpolation
+	 */
+	double[] lookup(double[] keysToFind, int column, Interpolation interpolation) throws DeviceException {
+		final double[] values = new double[keysToFind.length];
+		int hint = 0;
+		for (int i = 0; i < keysToFind.length; i++) {
+			hint = segment(keysToFind[i], hint);
+			values[i] = value(keysToFind[i], hint, column, interpolation);
+		}
+		return values;
+	}
+
+	/**
+	 * @return the index i of the row such that keys[i] <= key <= keys[i + 1], allowing for tolerance at the ends
+	 */
+	private int segment(double key, int hint) throws DeviceException {
+		final int last = keys.length - 1;
+		if (Double.isNaN(key) || key < keys[0] - KEY_TOLERANCE || key > keys[last] + KEY_TOLERANCE) {
+			throw new DeviceException(String.format("%s is outside the lookup table (%s to %s)", key, keys[0], keys[last]));
+		}
+		if (last == 0) {
+			return 0;
+		}
+		if (hint < last && keys[hint] <= key && key <= keys[hint + 1]) {
+			return hint;
+		}
+		if (hint + 1 < last && keys[hint + 1] <= key && key <= keys[hint + 2]) {
+			return hint + 1;
+		}
+		int index = Arrays.binarySearch(keys, key);
+		if (index < 0) {
+			index = -index - 2; // the row before the insertion point
+		}
+		return Math.max(0, Math.min(index, last - 1));
+	}
+
+	private double value(double key, int row, int column, Interpolation interpolation) throws DeviceException {
+		final double[] values = columns[column];
+		if (keys.length == 1 || Math.abs(key - keys[row]) < KEY_TOLERANCE) {
+			return values[row];
+		}
+		if (Math.abs(key - keys[row + 1]) < KEY_TOLERANCE) {
+			return values[row + 1];
+		}
+		final double x0 = keys[row];
+		final double x1 = keys[row + 1];
+		final double t = (key - x0) / (x1 - x0);
+		switch (interpolation) {
+		case LINEAR:
+			return values[row] + t * (values[row + 1] - values[row]);
+		case CUBIC:
+			final double[] y2 = splines[column];
+			final double h = x1 - x0;
+			final double a = 1 - t;
+			return a * values[row] + t * values[row + 1]
+					+ ((a * a * a - a) * y2[row] + (t * t * t - t) * y2[row + 1]) * h * h / 6;
+		default:
+			throw new DeviceException(String.format("No value for '%s' at %s in lookup table", names.get(column), key));
+		}
+	}
+
+	/**
+	 * @return the second derivatives of the natural cubic spline through the points
+	 */
+	private static double[] naturalSpline(double[] x, double[] y) {
+		final int n = x.length;
+		final double[] y2 = new double[n];
+		final double[] u = new double[n];
+		for (int i = 1; i < n - 1; i++) {
+			final double sig = (x[i] - x[i - 1]) / (x[i + 1] - x[i - 1]);
+			final double p = sig * y2[i - 1] + 2;
+			y2[i] = (sig - 1) / p;
+			u[i] = (y[i + 1] - y[i]) / (x[i + 1] - x[i]) - (y[i] - y[i - 1]) / (x[i] - x[i - 1]);
+			u[i] = (6 * u[i] / (x[i + 1] - x[i - 1]) - sig * u[i - 1]) / p;
+		}
+		y2[n - 1] = 0;
+		for (int k = n - 2; k >= 0; k--) {
+			y2[k] = y2[k] * y2[k + 1] + u[k];
+		}
+		return y2;
+	}
+}
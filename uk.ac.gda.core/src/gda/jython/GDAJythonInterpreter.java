@@ -36,12 +36,17 @@ import java.net.URL;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Stream;
 
 import org.eclipse.core.runtime.FileLocator;
@@ -91,6 +96,17 @@ public class GDAJythonInterpreter {
 
 	private static File cacheDir;
 
+	/** Property to disable {@link JythonScriptCache}, restoring the removal of all compiled classes at startup */
+	public static final String GDA_JYTHON_SCRIPT_CACHE_ENABLED = "gda.jython.scriptCache.enabled";
+
+	// persists through reset_namespace so translations made before the reset can be reused
+	private static final JythonScriptCache scriptCache;
+
+	// time taken by each phase of the last initialisation, in milliseconds
+	private final Map<String, Long> startupPhaseTimes = Collections.synchronizedMap(new LinkedHashMap<>());
+
+	private Stopwatch phaseStopwatch;
+
 	// the Jython Interactive Console
 	private InteractiveConsole interactiveConsole;
 
@@ -152,6 +168,12 @@ public class GDAJythonInterpreter {
 
 		// Initialise the Jython 'sys' class statics for use when constructing instances of it
 		PySystemState.initialize(sysProps, gdaCustomProperties);
+
+		if (LocalProperties.check(GDA_JYTHON_SCRIPT_CACHE_ENABLED, true)) {
+			scriptCache = new JythonScriptCache(cacheDir.toPath(), PySystemState.version.toString());
+		} else {
+			scriptCache = null;
+		}
 	}
 
 	public GDAJythonInterpreter(final ScriptPaths scriptPaths) {
@@ -175,6 +197,8 @@ public class GDAJythonInterpreter {
 			throw new UnsupportedOperationException();
 		}
 
+		phaseStopwatch = Stopwatch.createStarted();
+		startupPhaseTimes.clear();
 		logger.info("adding GDA package locations to Jython path...");
 
 		// Create a new Jython 'sys' instance to be used by the Py infrastructure based on the settings
@@ -250,8 +274,10 @@ public class GDAJythonInterpreter {
 			// append the folders where standard scripts will be located to jython path
 			// by this point _jythonScriptPaths should contain a List of these folder paths
 
-			logger.info("clearing old Jython class files...");
-			// Remove any previously compiled Jython class files from the script folders
+			endPhase("package paths");
+			logger.info(scriptCache == null ? "clearing old Jython class files..." : "validating compiled Jython class files...");
+			// Remove any previously compiled Jython class files from the script folders, or those which cannot be
+			// shown to match their source if the script cache is enabled
 			for (ScriptProject scriptProject : jythonScriptPaths.getProjects()) {
 				try {
 					final PyString scriptFolderName = new PyString(scriptProject.getPath());
@@ -265,13 +291,18 @@ public class GDAJythonInterpreter {
 							scriptProject.getName());
 
 					if (!pss.path.contains(scriptFolderName)) {
-						removeAllJythonClassFiles(new File(scriptFolderName.getString()));
+						if (scriptCache == null) {
+							removeAllJythonClassFiles(new File(scriptFolderName.getString()));
+						} else {
+							scriptCache.validateCompiledModules(Paths.get(scriptFolderName.getString()));
+						}
 						pss.path.append(scriptFolderName);
 					}
 				} catch (Exception e) {
 					logger.error("Error while setting up script paths, {} scripts will not be accessible", scriptProject.getPath(), e);
 				}
 			}
+			endPhase("script paths");
 		}
 		classLoader.setSysPath(pss.path); // Inform the ClassLoader of the sys.path contents
 
@@ -291,6 +322,7 @@ public class GDAJythonInterpreter {
 		// Get instance of interactive console
 		interactiveConsole = new GDAInteractiveConsole(mod.__dict__, pss);
 
+		endPhase("console");
 		logger.info("Jython configured");
 	}
 
@@ -399,6 +431,10 @@ public class GDAJythonInterpreter {
 	protected void initialise(JythonServer jythonServer) throws Exception {
 		if (!initialized) {
 
+			if (phaseStopwatch == null) {
+				phaseStopwatch = Stopwatch.createStarted();
+			}
+			phaseStopwatch.reset().start();
 			try {
 				// TODO Maybe the translator should be configured via Spring not property? This would remove this code.
 				final String translatorClassName = LocalProperties.get("gda.jython.translator.class", "GeneralTranslator");
@@ -457,6 +493,7 @@ public class GDAJythonInterpreter {
 
 				// scisoftpy
 				interactiveConsole.runsource("import scisoftpy as dnp");
+				endPhase("standard imports");
 				// inform translator what the built-in commands are by
 				// aliasing them -- i.e. reserved words
 				exec("alias ls");
@@ -509,10 +546,22 @@ public class GDAJythonInterpreter {
 						+ "    import pydoc\n"
 						+ "    pydoc.help(obj)\n"
 						+ "    print\n");
+				endPhase("aliases");
 
 				initialiseLoggingRedirection();
+				endPhase("logging");
 				populateNamespace();
+				endPhase("namespace");
 				runStationStartupScript();
+				endPhase("startup script");
+				if (scriptCache != null) {
+					scriptCache.recordCompiledModules(getScriptFolders());
+					endPhase("record compiled classes");
+				}
+				logger.info("Jython startup phases (ms): {}", startupPhaseTimes);
+				if (scriptCache != null) {
+					logger.info("Jython script cache: {}", scriptCache);
+				}
 
 			} catch (Exception ex) {
 				logger.error("GDAJythonInterpreter: error while initialising", ex);
@@ -711,11 +760,46 @@ public class GDAJythonInterpreter {
 	 *         thread
 	 */
 	public static String translateScriptToGDA(String input) {
+		if (scriptCache == null) {
+			return translateLines(input);
+		}
+		return scriptCache.translate(input, translator, GDAJythonInterpreter::translateLines);
+	}
+
+	private static String translateLines(String input) {
 		return stream(input.split("\n", -1))
 				.map(translator::translate)
 				.collect(joining("\n"));
 	}
 
+	/**
+	 * @return the time in milliseconds taken by each phase of the last configuration and initialisation of this
+	 *         interpreter, in the order they ran
+	 */
+	public Map<String, Long> getStartupPhaseTimes() {
+		synchronized (startupPhaseTimes) {
+			return new LinkedHashMap<>(startupPhaseTimes);
+		}
+	}
+
+	private void endPhase(String phase) {
+		startupPhaseTimes.put(phase, phaseStopwatch.elapsed(TimeUnit.MILLISECONDS));
+		phaseStopwatch.reset().start();
+	}
+
+	private List<Path> getScriptFolders() {
+		final List<Path> folders = new ArrayList<>();
+		if (jythonScriptPaths != null) {
+			for (ScriptProject scriptProject : jythonScriptPaths.getProjects()) {
+				final Path folder = Paths.get(scriptProject.getPath());
+				if (Files.isDirectory(folder)) {
+					folders.add(folder);
+				}
+			}
+		}
+		return folders;
+	}
+
 	/**
 	 * Recursively moves through a directory and removes all Jython class files. This should be done during the
 	 * initialise stage to ensure that a restart forces all Jython bytecode to be refreshed.
@@ -0,0 +1,414 @@
+/*-
+ * Copyright © 2019 Diamond Light Source Ltd.
+ *
+ * This file is part of GDA.
+ *
+ * GDA is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License version 3 as published by the Free
+ * Software Foundation.
+ *
+ * GDA is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with GDA. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package gda.jython;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.UnaryOperator;
+import java.util.stream.Stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+
+import gda.jython.translator.Translator;
+
+/**
+ * Caches compiled Jython modules and translated scripts between Command Server restarts.
+ * <p>
+ * Jython decides whether a {@code $py.class} file is up to date from the modification time of its source, which has
+ * proved unreliable on beamlines, so the script folders used to be cleared of compiled classes on every start. Instead
+ * a manifest records the SHA-256 of each source alongside the size and modification time of its class file. On the
+ * next start a class file is kept only if its source has the same content and the class file is the one that was
+ * recorded; anything else, including class files without a source and classes compiled from an unrecorded version of
+ * a source, is deleted so that Jython recompiles it. The manifest also records the Jython version.
+ * <p>
+ * Scripts run through the GDA translator are cached by the hash of their content, the translator classes and the
+ * aliases known to the translator, in memory and on disk, so that long scripts such as {@code localStation.py} are
+ * not translated again on every start.
+ */
+public class JythonScriptCache {
+
+	private static final Logger logger = LoggerFactory.getLogger(JythonScriptCache.class);
+
+	private static final String MANIFEST_FILE = "compiledScripts.properties";
+
+	private static final String TRANSLATED_DIRECTORY = "translated";
+
+	private static final String VERSION_KEY = "__jython_version__";
+
+	private static final String SOURCE_SUFFIX = ".py";
+
+	private static final String CLASS_SUFFIX = "$py.class";
+
+	/** Scripts shorter than this are cheap to translate and are not cached */
+	static final int MIN_CACHED_LENGTH = 1024;
+
+	private static final int MAX_IN_MEMORY = 64;
+
+	private static final int MAX_ON_DISK = 500;
+
+	private final Path cacheDir;
+
+	private final Path translatedDir;
+
+	private final String jythonVersion;
+
+	/** Recorded state of each source, keyed by absolute path. Guarded by this */
+	private final Map<String, String> manifest = new HashMap<>();
+
+	/** Hashes of the sources when they were validated, until the compiled classes are recorded. Guarded by this */
+	private final Map<Path, String> validatedHashes = new HashMap<>();
+
+	/** Guarded by itself */
+	private final Map<String, String> translations = new LinkedHashMap<String, String>(16, 0.75f, true) {
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+			return size() > MAX_IN_MEMORY;
+		}
+	};
+
+	private final Map<Class<?>, String> translatorHashes = new ConcurrentHashMap<>();
+
+	private final AtomicLong compiledKept = new AtomicLong();
+	private final AtomicLong compiledRemoved = new AtomicLong();
+	private final AtomicLong translationMemoryHits = new AtomicLong();
+	private final AtomicLong translationDiskHits = new AtomicLong();
+	private final AtomicLong translationMisses = new AtomicLong();
+
+	/**
+	 * @param cacheDir
+	 *            directory to keep the manifest and translated scripts in
+	 * @param jythonVersion
+	 *            compiled classes recorded for any other version are discarded
+	 */
+	public JythonScriptCache(Path cacheDir, String jythonVersion) {
+		this.cacheDir = cacheDir;
+		this.translatedDir = cacheDir.resolve(TRANSLATED_DIRECTORY);
+		this.jythonVersion = jythonVersion;
+		loadManifest();
+		pruneTranslations();
+	}
+
+	/**
+	 * Delete every compiled class under the folder that cannot be shown to have been compiled from the current content
+	 * of its source.
+	 *
+	 * @param scriptFolder
+	 */
+	public synchronized void validateCompiledModules(Path scriptFolder) {
+		final long kept = compiledKept.get();
+		final long removed = compiledRemoved.get();
+		try (Stream<Path> files = Files.walk(scriptFolder)) {
+			files.forEach(path -> {
+				final String name = path.getFileName().toString();
+				if (name.endsWith(CLASS_SUFFIX)) {
+					validateClass(path);
+				} else if (name.endsWith(SOURCE_SUFFIX)) {
+					hashSource(path);
+				}
+			});
+		} catch (IOException | RuntimeException e) {
+			logger.warn("Could not validate compiled classes in {}", scriptFolder, e);
+		}
+		logger.debug("Kept {} and removed {} compiled classes in {}", compiledKept.get() - kept,
+				compiledRemoved.get() - removed, scriptFolder);
+	}
+
+	private void validateClass(Path classFile) {
+		final String className = classFile.getFileName().toString();
+		final Path source = classFile.resolveSibling(className.substring(0, className.length() - CLASS_SUFFIX.length()) + SOURCE_SUFFIX);
+		try {
+			if (Files.isRegularFile(source)) {
+				final String hash = hashSource(source);
+				final String recorded = manifest.get(source.toAbsolutePath().toString());
+				if (hash != null && recorded != null && recorded.equals(entry(hash, classFile))) {
+					compiledKept.incrementAndGet();
+					return;
+				}
+			}
+			Files.deleteIfExists(classFile);
+			compiledRemoved.incrementAndGet();
+		} catch (IOException e) {
+			logger.warn("Could not validate {}", classFile, e);
+		}
+	}
+
+	/**
+	 * @return the hash of the source as it is now, remembered until the compiled classes are recorded, or null if it
+	 *         cannot be read
+	 */
+	private String hashSource(Path source) {
+		return validatedHashes.computeIfAbsent(source, path -> {
+			try {
+				return hash(Files.readAllBytes(path));
+			} catch (IOException e) {
+				logger.warn("Could not read {}", path, e);
+				return null;
+			}
+		});
+	}
+
+	/**
+	 * Record the compiled classes now present for the sources in the folders, so that they can be kept next time.
+	 * Sources are recorded with the hash they had when validated, so a class compiled after a source changed is not
+	 * mistaken for an up to date one. The hashes are then forgotten, so the next validation reads the sources again.
+	 *
+	 * @param scriptFolders
+	 */
+	public synchronized void recordCompiledModules(Collection<Path> scriptFolders) {
+		for (Path folder : scriptFolders) {
+			try {
+				Files.walkFileTree(folder, new SimpleFileVisitor<Path>() {
+					@Override
+					public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+						final String name = file.getFileName().toString();
+						if (name.endsWith(SOURCE_SUFFIX)) {
+							final Path classFile = file.resolveSibling(name.substring(0, name.length() - SOURCE_SUFFIX.length()) + CLASS_SUFFIX);
+							final String hash = validatedHashes.get(file);
+							if (hash != null && Files.isRegularFile(classFile)) {
+								manifest.put(file.toAbsolutePath().toString(), entry(hash, classFile));
+							} else {
+								manifest.remove(file.toAbsolutePath().toString());
+							}
+						}
+						return FileVisitResult.CONTINUE;
+					}
+				});
+			} catch (IOException e) {
+				logger.warn("Could not record compiled classes in {}", folder, e);
+			}
+		}
+		// Sources may be edited before the next validation, e.g. for reset_namespace, so they must be hashed again
+		validatedHashes.clear();
+		saveManifest();
+	}
+
+	/**
+	 * Translate a script, using a cached translation if there is one for the same script, translator and aliases.
+	 *
+	 * @param script
+	 * @param translator
+	 *            the translator which will be used
+	 * @param translation
+	 *            translates the script if it is not cached
+	 * @return the translated script
+	 */
+	public String translate(String script, Translator translator, UnaryOperator<String> translation) {
+		if (script.length() < MIN_CACHED_LENGTH || translator == null) {
+			return translation.apply(script);
+		}
+		final String key = translationKey(script, translator);
+		synchronized (translations) {
+			final String cached = translations.get(key);
+			if (cached != null) {
+				translationMemoryHits.incrementAndGet();
+				return cached;
+			}
+		}
+		final Path file = translatedDir.resolve(key + SOURCE_SUFFIX);
+		String translated = null;
+		try {
+			if (Files.isRegularFile(file)) {
+				translated = new String(Files.readAllBytes(file), UTF_8);
+				Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+				translationDiskHits.incrementAndGet();
+			}
+		} catch (IOException e) {
+			logger.debug("Could not read cached translation {}", file, e);
+			translated = null;
+		}
+		if (translated == null) {
+			translated = translation.apply(script);
+			translationMisses.incrementAndGet();
+			writeAtomically(file, translated);
+		}
+		synchronized (translations) {
+			translations.put(key, translated);
+		}
+		return translated;
+	}
+
+	private String translationKey(String script, Translator translator) {
+		final Hasher hasher = Hashing.sha256().newHasher();
+		hasher.putString(translatorHashes.computeIfAbsent(translator.getClass(), JythonScriptCache::hashClasses), UTF_8);
+		for (String alias : new TreeSet<>(translator.getAliasedCommands())) {
+			hasher.putString("a:", UTF_8).putString(alias, UTF_8).putByte((byte) 0);
+		}
+		for (String alias : new TreeSet<>(translator.getAliasedVarargCommands())) {
+			hasher.putString("v:", UTF_8).putString(alias, UTF_8).putByte((byte) 0);
+		}
+		return hasher.putString(script, UTF_8).hash().toString();
+	}
+
+	/**
+	 * @return a hash of the byte code of the class and its superclasses, so that translations are not reused after
+	 *         the translator is changed
+	 */
+	private static String hashClasses(Class<?> clazz) {
+		final Hasher hasher = Hashing.sha256().newHasher();
+		for (Class<?> c = clazz; c != null && c != Object.class; c = c.getSuperclass()) {
+			hasher.putString(c.getName(), UTF_8);
+			final String resource = c.getName().substring(c.getName().lastIndexOf('.') + 1) + ".class";
+			try (InputStream in = c.getResourceAsStream(resource)) {
+				if (in == null) {
+					// Cannot tell if the class has changed so never reuse translations made with it
+					return "unknown-" + System.nanoTime();
+				}
+				final byte[] buffer = new byte[8192];
+				int read;
+				while ((read = in.read(buffer)) > 0) {
+					hasher.putBytes(buffer, 0, read);
+				}
+			} catch (IOException e) {
+				return "unknown-" + System.nanoTime();
+			}
+		}
+		return hasher.hash().toString();
+	}
+
+	public long getCompiledModulesKept() {
+		return compiledKept.get();
+	}
+
+	public long getCompiledModulesRemoved() {
+		return compiledRemoved.get();
+	}
+
+	public long getTranslationHits() {
+		return translationMemoryHits.get() + translationDiskHits.get();
+	}
+
+	public long getTranslationMisses() {
+		return translationMisses.get();
+	}
+
+	@Override
+	public String toString() {
+		return String.format("compiled classes kept=%d removed=%d, translations memory hits=%d disk hits=%d misses=%d",
+				compiledKept.get(), compiledRemoved.get(), translationMemoryHits.get(), translationDiskHits.get(),
+				translationMisses.get());
+	}
+
+	private static String entry(String hash, Path classFile) throws IOException {
+		return hash + "," + Files.size(classFile) + "," + Files.getLastModifiedTime(classFile).toMillis();
+	}
+
+	private static String hash(byte[] content) {
+		return Hashing.sha256().hashBytes(content).toString();
+	}
+
+	private void loadManifest() {
+		final Path file = cacheDir.resolve(MANIFEST_FILE);
+		if (!Files.isRegularFile(file)) {
+			return;
+		}
+		final Properties properties = new Properties();
+		try (Reader reader = Files.newBufferedReader(file, UTF_8)) {
+			properties.load(reader);
+		} catch (IOException | IllegalArgumentException e) {
+			logger.warn("Could not read {}, all compiled Jython classes will be refreshed", file, e);
+			return;
+		}
+		if (!jythonVersion.equals(properties.getProperty(VERSION_KEY))) {
+			logger.info("Jython version has changed, all compiled Jython classes will be refreshed");
+			return;
+		}
+		properties.remove(VERSION_KEY);
+		properties.stringPropertyNames().forEach(key -> manifest.put(key, properties.getProperty(key)));
+	}
+
+	private void saveManifest() {
+		final Properties properties = new Properties();
+		properties.putAll(manifest);
+		properties.setProperty(VERSION_KEY, jythonVersion);
+		final Path file = cacheDir.resolve(MANIFEST_FILE);
+		final Path temp = cacheDir.resolve(MANIFEST_FILE + ".tmp");
+		try {
+			Files.createDirectories(cacheDir);
+			try (Writer writer = Files.newBufferedWriter(temp, UTF_8)) {
+				properties.store(writer, "Compiled Jython classes known to be up to date");
+			}
+			Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException e) {
+			logger.warn("Could not save {}", file, e);
+		}
+	}
+
+	private void writeAtomically(Path file, String content) {
+		try {
+			Files.createDirectories(file.getParent());
+			final Path temp = Files.createTempFile(file.getParent(), "translation", ".tmp");
+			Files.write(temp, content.getBytes(UTF_8));
+			Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException e) {
+			logger.debug("Could not cache translation in {}", file, e);
+		}
+	}
+
+	/**
+	 * Keep only the most recently used translations on disk
+	 */
+	private void pruneTranslations() {
+		if (!Files.isDirectory(translatedDir)) {
+			return;
+		}
+		try (Stream<Path> files = Files.list(translatedDir)) {
+			final List<Path> all = new ArrayList<>();
+			files.forEach(all::add);
+			if (all.size() <= MAX_ON_DISK) {
+				return;
+			}
+			final Map<Path, Long> modified = new HashMap<>();
+			for (Path path : all) {
+				modified.put(path, path.toFile().lastModified());
+			}
+			all.sort(Comparator.comparing(modified::get));
+			for (Path path : all.subList(0, all.size() - MAX_ON_DISK)) {
+				Files.deleteIfExists(path);
+			}
+		} catch (IOException e) {
+			logger.debug("Could not prune cached translations", e);
+		}
+	}
+}
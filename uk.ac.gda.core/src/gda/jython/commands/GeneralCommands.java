@@ -270,6 +270,7 @@ public final class GeneralCommands {
 	 */
 	public static void reset_namespace() {
 		logger.info("Resetting Jython namespace");
+		Finder.getInstance().invalidateIndex();
 		Finder.getInstance().findSingleton(JythonServer.class).restart();
 		reconfigureScriptControllers();
 	}
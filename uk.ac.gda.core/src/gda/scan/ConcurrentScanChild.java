@@ -346,15 +346,21 @@ public abstract class ConcurrentScanChild extends ScanBase implements IConcurren
 
 		private final Detector detector;
 
-		public ReadoutDetector(Detector detector) {
+		private final DeviceReadTimings timings;
+
+		public ReadoutDetector(Detector detector, DeviceReadTimings timings) {
 			this.detector = detector;
+			this.timings = timings;
 		}
 
 		@Override
 		public Object call() throws Exception {
 
 			try {
-				return detector.readout();
+				final long start = System.nanoTime();
+				final Object data = detector.readout();
+				timings.record(detector.getName(), System.nanoTime() - start);
+				return data;
 			} catch (Exception e) {
 				logger.info("Exeption reading out detector '" + detector.getName() + "': " + representThrowable(e)
 						+ "(first readout exception will be thrown soon from scan thread)");
@@ -408,11 +414,12 @@ public abstract class ConcurrentScanChild extends ScanBase implements IConcurren
 					if (detectors.size() != 0) {
 
 						readoutTasks = new ArrayList<>(detectors.size());
+						final DeviceReadTimings timings = getDeviceReadTimingsForPoint();
 
 						// Start readout tasks
 						for (Detector detector : point.getDetectors()) {
 							Future<Object> readoutTask = Async.submit(
-									new ReadoutDetector(detector),
+									new ReadoutDetector(detector, timings),
 									"%s: readout '%s'", threadName, detector.getName() //thread name
 									);
 							readoutTasks.add(readoutTask);
@@ -0,0 +1,71 @@
+/*-
+ * Copyright © 2019 Diamond Light Source Ltd.
+ *
+ * This file is part of GDA.
+ *
+ * GDA is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License version 3 as published by the Free
+ * Software Foundation.
+ *
+ * GDA is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with GDA. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package gda.scan;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.stream.Collectors;
+
+import gda.util.LatencyHistogram;
+
+/**
+ * The time taken to read each device, e.g. to call getPosition on a Scannable or readout on a Detector, during a scan.
+ * Devices are identified by name.
+ */
+public class DeviceReadTimings {
+
+	private final Map<String, LatencyHistogram> timings = new ConcurrentSkipListMap<>();
+
+	/**
+	 * @param deviceName
+	 * @param nanos
+	 *            the time taken to read the device
+	 */
+	public void record(String deviceName, long nanos) {
+		timings.computeIfAbsent(deviceName, LatencyHistogram::new).record(nanos);
+	}
+
+	/**
+	 * @return the timings of the named device, or null if it has not been read
+	 */
+	public LatencyHistogram get(String deviceName) {
+		return timings.get(deviceName);
+	}
+
+	/**
+	 * @return the timings of every device read, ordered by name
+	 */
+	public Map<String, LatencyHistogram> getAll() {
+		return Collections.unmodifiableMap(timings);
+	}
+
+	public boolean isEmpty() {
+		return timings.isEmpty();
+	}
+
+	public void clear() {
+		timings.clear();
+	}
+
+	@Override
+	public String toString() {
+		return timings.values().stream().map(LatencyHistogram::toString).collect(Collectors.joining("\n"));
+	}
+}
@@ -0,0 +1,124 @@
+/*-
+ * Copyright © 2019 Diamond Light Source Ltd.
+ *
+ * This file is part of GDA.
+ *
+ * GDA is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License version 3 as published by the Free
+ * Software Foundation.
+ *
+ * GDA is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with GDA. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package gda.scan;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import gda.device.DeviceException;
+import gda.device.Scannable;
+import uk.ac.diamond.daq.concurrent.Async;
+
+/**
+ * Performs an operation, such as reading the position, on each of a list of devices and records how long it took for
+ * each device.
+ * <p>
+ * In parallel mode devices with the same level are read concurrently, and levels are read in ascending order so that a
+ * device is never read before one at a lower level has finished. Results are always returned in the order of the
+ * devices given, so the order of columns in a ScanDataPoint does not depend on the mode.
+ */
+final class DeviceSampler {
+
+	/**
+	 * An operation on a device returning a value, e.g. its position
+	 */
+	@FunctionalInterface
+	interface DeviceOperation<T extends Scannable> {
+		Object apply(T device) throws Exception;
+	}
+
+	private DeviceSampler() {
+		// static methods only
+	}
+
+	/**
+	 * @param devices
+	 *            the devices to operate on
+	 * @param operation
+	 * @param timings
+	 *            where the time taken for each device is recorded. May be null.
+	 * @param parallel
+	 *            true to operate on devices at the same level concurrently
+	 * @return the result for each device in the order of the devices given
+	 * @throws DeviceException
+	 *             the first exception thrown by the operation, wrapped if it is not a DeviceException
+	 * @throws InterruptedException
+	 */
+	static <T extends Scannable> Object[] sample(List<T> devices, DeviceOperation<T> operation,
+			DeviceReadTimings timings, boolean parallel) throws DeviceException, InterruptedException {
+		final Object[] results = new Object[devices.size()];
+		if (!parallel || devices.size() < 2) {
+			for (int i = 0; i < results.length; i++) {
+				if (Thread.interrupted()) {
+					throw new InterruptedException(); // in case a device will ignore or has ignored an interrupt request
+				}
+				try {
+					results[i] = timedApply(devices.get(i), operation, timings);
+				} catch (DeviceException | InterruptedException | RuntimeException e) {
+					throw e;
+				} catch (Exception e) {
+					throw ScanBase.wrappedException(e);
+				}
+			}
+			return results;
+		}
+
+		final Map<Integer, List<Integer>> indicesByLevel = new TreeMap<>();
+		for (int i = 0; i < results.length; i++) {
+			indicesByLevel.computeIfAbsent(devices.get(i).getLevel(), level -> new ArrayList<>()).add(i);
+		}
+		for (List<Integer> indices : indicesByLevel.values()) {
+			final List<Future<Object>> futures = new ArrayList<>(indices.size());
+			try {
+				for (int index : indices) {
+					final T device = devices.get(index);
+					futures.add(Async.submit(() -> timedApply(device, operation, timings), "DeviceSampler: %s",
+							device.getName()));
+				}
+				for (int i = 0; i < indices.size(); i++) {
+					results[indices.get(i)] = futures.get(i).get();
+				}
+			} catch (ExecutionException e) {
+				final Throwable cause = e.getCause();
+				if (cause instanceof InterruptedException) {
+					throw (InterruptedException) cause;
+				}
+				throw cause instanceof DeviceException ? (DeviceException) cause : ScanBase.wrappedException(cause);
+			} finally {
+				// Only has an effect if a read failed or this thread was interrupted
+				futures.forEach(future -> future.cancel(true));
+			}
+		}
+		return results;
+	}
+
+	private static <T extends Scannable> Object timedApply(T device, DeviceOperation<T> operation,
+			DeviceReadTimings timings) throws Exception {
+		final long start = System.nanoTime();
+		final Object result = operation.apply(device);
+		if (timings != null) {
+			timings.record(device.getName(), System.nanoTime() - start);
+		}
+		return result;
+	}
+}
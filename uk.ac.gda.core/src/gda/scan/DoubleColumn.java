@@ -0,0 +1,153 @@
+/*-
+ * Copyright © 2019 Diamond Light Source Ltd.
+ *
+ * This file is part of GDA.
+ *
+ * GDA is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License version 3 as published by the Free
+ * Software Foundation.
+ *
+ * GDA is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with GDA. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package gda.scan;
+
+import java.nio.DoubleBuffer;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * A growable column of doubles stored in a primitive array, so that caching a long scan does not create an object per
+ * value.
+ * <p>
+ * Missing (null) values are stored as NaN and remembered in a {@link BitSet} which is only created if a null is added,
+ * so the boxed {@link #asList()} view returns exactly what was added.
+ * <p>
+ * Values are appended by a single writer. Readers see the values that had been added when they called
+ * {@link #asDoubleBuffer()} or {@link #toArray()}.
+ */
+public class DoubleColumn {
+
+	private static final int DEFAULT_CAPACITY = 16;
+
+	private double[] values;
+
+	private volatile int size;
+
+	private BitSet nulls;
+
+	public DoubleColumn() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * @param expectedSize
+	 *            the number of values expected, e.g. the number of points in the scan. The column grows beyond this if
+	 *            needed.
+	 */
+	public DoubleColumn(int expectedSize) {
+		values = new double[Math.max(1, expectedSize)];
+	}
+
+	public void add(double value) {
+		ensureCapacity(size + 1);
+		values[size] = value;
+		size++;
+	}
+
+	public void add(Double value) {
+		if (value == null) {
+			if (nulls == null) {
+				nulls = new BitSet();
+			}
+			nulls.set(size);
+			add(Double.NaN);
+		} else {
+			add(value.doubleValue());
+		}
+	}
+
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @return the value at the given index, NaN if a null was added there
+	 */
+	public double getDouble(int index) {
+		checkIndex(index);
+		return values[index];
+	}
+
+	/**
+	 * @return the value at the given index, or null if a null was added there
+	 */
+	public Double get(int index) {
+		checkIndex(index);
+		if (nulls != null && nulls.get(index)) {
+			return null;
+		}
+		return values[index];
+	}
+
+	/**
+	 * @return a read only view of the values added so far. No data is copied.
+	 */
+	public DoubleBuffer asDoubleBuffer() {
+		final int currentSize = size;
+		return DoubleBuffer.wrap(values, 0, currentSize).slice().asReadOnlyBuffer();
+	}
+
+	/**
+	 * @return a copy of the values added so far
+	 */
+	public double[] toArray() {
+		return Arrays.copyOf(values, size);
+	}
+
+	/**
+	 * @return a live, unmodifiable list view of this column. Values are boxed as they are read.
+	 */
+	public List<Double> asList() {
+		return new ListView();
+	}
+
+	public void clear() {
+		size = 0;
+		nulls = null;
+	}
+
+	private void ensureCapacity(int capacity) {
+		if (capacity > values.length) {
+			values = Arrays.copyOf(values, Math.max(capacity, values.length * 2));
+		}
+	}
+
+	private void checkIndex(int index) {
+		if (index < 0 || index >= size) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+		}
+	}
+
+	private class ListView extends AbstractList<Double> implements RandomAccess {
+
+		@Override
+		public Double get(int index) {
+			return DoubleColumn.this.get(index);
+		}
+
+		@Override
+		public int size() {
+			return size;
+		}
+	}
+}
@@ -25,6 +25,7 @@ import java.util.HashMap;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Vector;
+import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutorService;
@@ -45,6 +46,27 @@ import org.slf4j.LoggerFactory;
  */
 public class MultithreadedScanDataPointPipeline implements ScanDataPointPipeline {
 
+	/**
+	 * What to do when a point is put into a pipeline that already holds scanDataPointPipelineLength points.
+	 */
+	public enum BackPressurePolicy {
+		/**
+		 * The pipeline length is ignored and points are queued indefinitely. This was the only behaviour available
+		 * historically and can exhaust the heap if the DataWriter cannot keep up with the scan.
+		 */
+		UNBOUNDED,
+		/**
+		 * The scan thread blocks in {@link ScanDataPointPipeline#put(IScanDataPoint)} until the broadcaster has made
+		 * room for the point.
+		 */
+		BLOCK,
+		/**
+		 * {@link ScanDataPointPipeline#put(IScanDataPoint)} throws a DeviceException, aborting the scan, rather than
+		 * letting the pipeline grow.
+		 */
+		FAIL_FAST
+	}
+
 	public class ScannableSpecificExecutorService{
 
 		private ExecutorService service;
@@ -124,43 +146,86 @@ public class MultithreadedScanDataPointPipeline implements ScanDataPointPipeline
 
 	private ScanDataPointPublisher broadcaster;
 
+	private final BackPressurePolicy backPressurePolicy;
+
+	private final int scanDataPointPipelineLength;
+
+	private final ScanDataPointPipelineMetrics metrics;
+
 	/**
-	 * Creates a new MultithreadedScanDataPointPipeline and starts it up to accept points.
+	 * Creates a new MultithreadedScanDataPointPipeline with an {@link BackPressurePolicy#UNBOUNDED} queue and starts it
+	 * up to accept points.
 	 *
 	 * @param broadcaster
 	 * @param positionCallableThreadPoolSize
 	 *            the number of threads used to process Callables
 	 * @param scanDataPointPipelineLength
-	 *            the number of points allowed in the Pipeline concurrently.
+	 *            the number of points allowed in the Pipeline concurrently. Ignored by this constructor.
 	 */
 	public MultithreadedScanDataPointPipeline(ScanDataPointPublisher broadcaster, int positionCallableThreadPoolSize,
 			int scanDataPointPipelineLength, String scanName) {
+		this(broadcaster, positionCallableThreadPoolSize, scanDataPointPipelineLength, BackPressurePolicy.UNBOUNDED,
+				scanName);
+	}
+
+	/**
+	 * Creates a new MultithreadedScanDataPointPipeline and starts it up to accept points.
+	 *
+	 * @param broadcaster
+	 * @param positionCallableThreadPoolSize
+	 *            the number of threads used to process Callables
+	 * @param scanDataPointPipelineLength
+	 *            the number of points allowed in the Pipeline concurrently: the points waiting in the queue plus the
+	 *            one being published. Ignored if the policy is {@link BackPressurePolicy#UNBOUNDED}.
+	 * @param backPressurePolicy
+	 *            what to do when the pipeline is full
+	 */
+	public MultithreadedScanDataPointPipeline(ScanDataPointPublisher broadcaster, int positionCallableThreadPoolSize,
+			int scanDataPointPipelineLength, BackPressurePolicy backPressurePolicy, String scanName) {
 
 		this.broadcaster = broadcaster;
+		this.backPressurePolicy = backPressurePolicy;
+		this.metrics = new ScanDataPointPipelineMetrics(scanName);
 
-		if (scanDataPointPipelineLength == 0) {
+		if (scanDataPointPipelineLength <= 0) {
 			logger.warn("A zero length pipeline was requested but this would be unable to accept ScanDataPoints. A pipeline of length one has been created instead");
 			scanDataPointPipelineLength = 1;
 		}
-		// TODO: Remove this configuration as it now unused
-		logger.info("MultithreadedScanDataPointPipeline is ignoring the request to create a fixed length queue and is creating one with indefinite length");
+		this.scanDataPointPipelineLength = scanDataPointPipelineLength;
 		NamedThreadFactory threadFactory = new NamedThreadFactory(
 				" scan-" + scanName + "-MSDPP.positionCallableService-%d of " + positionCallableThreadPoolSize);
 		if (positionCallableThreadPoolSize > 0) {
 			positionCallableService = new ScannableSpecificExecutorService(positionCallableThreadPoolSize, threadFactory);
 		} // else leave it null.
 
-		/**
-		 * Uses a ThreadPoolExecutor with a custom queue designed to block rather than throw a RejectedExecutionException if
-		 * the thread is busy and queue is full. The total number of points in the Pipeline is the number of points in the
-		 * workQueue plus the one being worked on in the single thread.
-		 * @param positionCallableService
-		 */
-		BlockingQueue<Runnable> workQueue = new LinkedBlockingQueue<Runnable>();
-		broadcasterQueue = new NoExceptionThreadPoolExecutor(workQueue,
+		broadcasterQueue = new NoExceptionThreadPoolExecutor(createWorkQueue(),
 				new NamedThreadFactory(" scan-" + scanName + "-MSDPP.broadcaster"), positionCallableService )  ;
 	}
 
+	/**
+	 * The total number of points in the Pipeline is the number of points in the workQueue plus the one being worked on
+	 * in the single broadcaster thread. A bounded queue therefore holds one point fewer than the pipeline length, but
+	 * never fewer than one.
+	 * <p>
+	 * For {@link BackPressurePolicy#BLOCK} the queue blocks rather than causing a RejectedExecutionException if the
+	 * thread is busy and queue is full.
+	 */
+	private BlockingQueue<Runnable> createWorkQueue() {
+		final int queueCapacity = Math.max(1, scanDataPointPipelineLength - 1);
+		switch (backPressurePolicy) {
+		case BLOCK:
+			logger.info("MultithreadedScanDataPointPipeline will block the scan when it holds {} points", scanDataPointPipelineLength);
+			return new ArrayBlockingQueueWithBlockingOffer<>(queueCapacity);
+		case FAIL_FAST:
+			logger.info("MultithreadedScanDataPointPipeline will fail the scan if it has to hold more than {} points", scanDataPointPipelineLength);
+			return new ArrayBlockingQueue<>(queueCapacity);
+		case UNBOUNDED:
+		default:
+			logger.info("MultithreadedScanDataPointPipeline is ignoring the request to create a fixed length queue and is creating one with indefinite length");
+			return new LinkedBlockingQueue<>();
+		}
+	}
+
 	/**
 	 * Computes ScanDataPoints and broadcasts them using internally managed threads.
 	 * @throws DeviceException
@@ -185,12 +250,17 @@ public class MultithreadedScanDataPointPipeline implements ScanDataPointPipeline
 		}
 
 		try {
-			broadcasterQueue.submit(new ScanDataPointPopulatorAndPublisher(getBroadcaster(),point));
+			broadcasterQueue.submit(new ScanDataPointPopulatorAndPublisher(getBroadcaster(), point, metrics));
 		} catch (RejectedExecutionException e) {
 			if (broadcasterQueue.isShutdown()) {
 				throw new DeviceException(
 						"Could not add new point to MultithreadedScanDataPointPipeline as it is shutdown.", e);
 			}
+			if (backPressurePolicy == BackPressurePolicy.FAIL_FAST) {
+				throw new DeviceException(String.format(
+						"Could not add point %d to MultithreadedScanDataPointPipeline as it already holds %d points. The data writer is not keeping up with the scan.",
+						point.getCurrentPointNumber(), scanDataPointPipelineLength), e);
+			}
 			throw e;
 		}
 		logger.debug("'{}' added to executor", point.toString());
@@ -250,6 +320,8 @@ public class MultithreadedScanDataPointPipeline implements ScanDataPointPipeline
 				// 3. Shutdown the Broadcaster (DataWriter)
 				getBroadcaster().shutdown();
 
+				logger.info("MultithreadedScanDataPointPipeline timings: {}", metrics);
+
 				checkForException();
 
 			} catch (InterruptedException e){
@@ -267,6 +339,17 @@ public class MultithreadedScanDataPointPipeline implements ScanDataPointPipeline
 		return broadcaster;
 	}
 
+	public BackPressurePolicy getBackPressurePolicy() {
+		return backPressurePolicy;
+	}
+
+	/**
+	 * @return the per point timings of the pipeline stages, updated as points are published
+	 */
+	public ScanDataPointPipelineMetrics getMetrics() {
+		return metrics;
+	}
+
 	private class NamedThreadFactory implements ThreadFactory {
 
 		private final ThreadFactory defaultThreadFactory;
@@ -78,6 +78,18 @@ public abstract class ScanBase implements NestableScan {
 
 	public static final String GDA_SCANBASE_PRINT_TIMESTAMP_TO_TERMINAL= "gda.scanbase.printTimestamp";
 
+	/**
+	 * Name of the {@link MultithreadedScanDataPointPipeline.BackPressurePolicy} used when the ScanDataPoint pipeline
+	 * is full. Defaults to UNBOUNDED.
+	 */
+	public static final String GDA_SCANBASE_PIPELINE_BACK_PRESSURE_POLICY = "gda.scanbase.pipelineBackPressurePolicy";
+
+	/**
+	 * If true, scannable positions and detector readouts at the same level are read concurrently at each point, and
+	 * detectors are waited on concurrently in {@link #collectData()}. Defaults to false.
+	 */
+	public static final String GDA_SCANBASE_PARALLEL_DEVICE_READ = "gda.scanbase.parallelDeviceRead";
+
 	private static final Logger logger = LoggerFactory.getLogger(ScanBase.class);
 
 	/**
@@ -128,6 +140,10 @@ public abstract class ScanBase implements NestableScan {
 
 	private DataWriter manuallySetDataWriter = null;
 
+	private Boolean parallelDeviceRead; // read devices at the same level concurrently
+
+	private final DeviceReadTimings deviceReadTimings = new DeviceReadTimings();
+
 	/**
 	 * unique identifier for this scan
 	 */
@@ -392,8 +408,15 @@ public abstract class ScanBase implements NestableScan {
 		checkThreadInterrupted();
 
 		// check that all detectors have completed data collection
-		for (Detector detector : allDetectors) {
-			detector.waitWhileBusy();
+		if (isParallelDeviceRead()) {
+			DeviceSampler.sample(allDetectors, detector -> {
+				detector.waitWhileBusy();
+				return null;
+			}, null, true);
+		} else {
+			for (Detector detector : allDetectors) {
+				detector.waitWhileBusy();
+			}
 		}
 
 		readDevicesAndPublishScanDataPoint();
@@ -447,7 +470,7 @@ public abstract class ScanBase implements NestableScan {
 		}
 
 		try {
-			populateScannablePositions(point);
+			populateScannablePositions(point, getDeviceReadTimingsForPoint(), isParallelDeviceRead());
 		} catch (Exception e) {
 			throw wrappedException(e);
 		}
@@ -455,6 +478,30 @@ public abstract class ScanBase implements NestableScan {
 		readoutDetectorsAndPublish(point);
 	}
 
+	/**
+	 * @return true if devices at the same level should be read concurrently. The value of
+	 *         {@value #GDA_SCANBASE_PARALLEL_DEVICE_READ} is read once per scan.
+	 */
+	protected boolean isParallelDeviceRead() {
+		if (parallelDeviceRead == null) {
+			parallelDeviceRead = LocalProperties.check(GDA_SCANBASE_PARALLEL_DEVICE_READ, false);
+		}
+		return parallelDeviceRead;
+	}
+
+	/**
+	 * @return the time taken to read each device during this scan. Devices read by nested scans are recorded in the
+	 *         timings of the outermost scan.
+	 */
+	public DeviceReadTimings getDeviceReadTimings() {
+		return deviceReadTimings;
+	}
+
+	protected DeviceReadTimings getDeviceReadTimingsForPoint() {
+		final Scan outerMostScan = getOuterMostScan();
+		return outerMostScan instanceof ScanBase ? ((ScanBase) outerMostScan).getDeviceReadTimings() : deviceReadTimings;
+	}
+
 	/**
 	 * Readout detectors into ScanDataPoint and add to pipeline for possible completion and publishing.
 	 * @param point
@@ -462,7 +509,7 @@ public abstract class ScanBase implements NestableScan {
 	 */
 	protected void readoutDetectorsAndPublish(final ScanDataPoint point) throws Exception {
 		try {
-			populateDetectorData(point);
+			populateDetectorData(point, getDeviceReadTimingsForPoint(), isParallelDeviceRead());
 		} catch (Exception e) {
 			throw wrappedException(e);
 		}
@@ -492,32 +539,55 @@ public abstract class ScanBase implements NestableScan {
 		return new DeviceException(message , e);
 	}
 
-	static void populateScannablePositions(IScanDataPoint point) throws DeviceException {
-		for (Scannable scannable : point.getScannables()) {
-			Object position;
+	static void populateScannablePositions(IScanDataPoint point) throws DeviceException, InterruptedException {
+		populateScannablePositions(point, null, false);
+	}
+
+	/**
+	 * @param point
+	 * @param timings
+	 *            where the time taken to read each scannable is recorded. May be null.
+	 * @param parallel
+	 *            true to read scannables at the same level concurrently
+	 */
+	static void populateScannablePositions(IScanDataPoint point, DeviceReadTimings timings, boolean parallel)
+			throws DeviceException, InterruptedException {
+		final Vector<Scannable> scannables = point.getScannables();
+		final Object[] positions = DeviceSampler.sample(scannables, scannable -> {
 			if (scannable instanceof PositionCallableProvider) {
 				Callable<?> positionCallable = ((PositionCallableProvider<?>) scannable).getPositionCallable();
-				position = positionCallable;
-			} else {
-				position = scannable.getPosition();
+				return positionCallable;
 			}
-			point.addScannablePosition(position, scannable.getOutputFormat());
+			return scannable.getPosition();
+		}, timings, parallel);
+		for (int i = 0; i < positions.length; i++) {
+			point.addScannablePosition(positions[i], scannables.get(i).getOutputFormat());
 		}
 	}
 
 	static void populateDetectorData(IScanDataPoint point) throws DeviceException, InterruptedException {
-		for (Detector detector : point.getDetectors()) {
-			if (Thread.interrupted()) {
-				throw new InterruptedException(); // in case a device will ignore or has ignored an interrupt request
-			}
-			Object data;
+		populateDetectorData(point, null, false);
+	}
+
+	/**
+	 * @param point
+	 * @param timings
+	 *            where the time taken to read out each detector is recorded. May be null.
+	 * @param parallel
+	 *            true to read out detectors at the same level concurrently
+	 */
+	static void populateDetectorData(IScanDataPoint point, DeviceReadTimings timings, boolean parallel)
+			throws DeviceException, InterruptedException {
+		final Vector<Detector> detectors = point.getDetectors();
+		final Object[] data = DeviceSampler.sample(detectors, detector -> {
 			if (detector instanceof PositionCallableProvider) {
 				Callable<?> positionCallable = ((PositionCallableProvider<?>) detector).getPositionCallable();
-				data = positionCallable;
-			} else {
-				data = detector.readout();
+				return positionCallable;
 			}
-			point.addDetectorData(data, ScannableUtils.getExtraNamesFormats(detector));
+			return detector.readout();
+		}, timings, parallel);
+		for (int i = 0; i < data.length; i++) {
+			point.addDetectorData(data[i], ScannableUtils.getExtraNamesFormats(detectors.get(i)));
 		}
 	}
 
@@ -543,7 +613,19 @@ public abstract class ScanBase implements NestableScan {
 
 		scanDataPointPipeline = new MultithreadedScanDataPointPipeline(
 				new ScanDataPointPublisher(dataWriter, this), getPositionCallableThreadPoolSize(),
-				getScanDataPointQueueLength(), getName());
+				getScanDataPointQueueLength(), getPipelineBackPressurePolicy(), getName());
+	}
+
+	private static MultithreadedScanDataPointPipeline.BackPressurePolicy getPipelineBackPressurePolicy() {
+		final String policy = LocalProperties.get(GDA_SCANBASE_PIPELINE_BACK_PRESSURE_POLICY,
+				MultithreadedScanDataPointPipeline.BackPressurePolicy.UNBOUNDED.name());
+		try {
+			return MultithreadedScanDataPointPipeline.BackPressurePolicy.valueOf(policy.trim().toUpperCase());
+		} catch (IllegalArgumentException e) {
+			logger.warn("Unknown value '{}' for {}, using an unbounded pipeline", policy,
+					GDA_SCANBASE_PIPELINE_BACK_PRESSURE_POLICY);
+			return MultithreadedScanDataPointPipeline.BackPressurePolicy.UNBOUNDED;
+		}
 	}
 
 	@Override
@@ -600,6 +682,9 @@ public abstract class ScanBase implements NestableScan {
 						shutdownScandataPipeline(true);
 					}
 					signalScanComplete();
+					if (!deviceReadTimings.isEmpty()) {
+						logger.info("Device read timings for scan '{}':\n{}", getName(), deviceReadTimings);
+					}
 
 				}
 			}
@@ -18,20 +18,24 @@
 
 package gda.scan;
 
-import java.util.ArrayList;
+import java.nio.DoubleBuffer;
 import java.util.Arrays;
-import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
 import org.apache.commons.lang.ArrayUtils;
+import org.eclipse.january.dataset.DatasetFactory;
+import org.eclipse.january.dataset.DoubleDataset;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
  * This is a class designed to cache all the data from scan data points. It allows very quick retrieval of basic scan
  * data for use in Jython or by scan processing.
+ * <p>
+ * Each column is held in a primitive {@link DoubleColumn} so long scans do not fill the heap with {@link Double}s.
+ * {@link #getBufferFor(String)} gives allocation free access to a column.
  *
  * @author James Mudd
  */
@@ -40,25 +44,24 @@ public class ScanDataPointCache extends DataPointCache {
 	private static final Logger logger = LoggerFactory.getLogger(ScanDataPointCache.class);
 
 	/** Cache holding the same data that would be printed to the terminal. Linked to ensure order as the map is iterated over*/
-	private final Map<String, List<Double>> cache = new LinkedHashMap<>();
+	private final Map<String, DoubleColumn> cache = new LinkedHashMap<>();
 
 	@Override
 	protected void addDataPoint(IScanDataPoint sdp) {
 		// Get all the scannable and detector positions
-		final List<Double> positions = Arrays.asList(sdp.getAllValuesAsDoubles());
-		if (positions.size() != cache.size()) {
+		final Double[] positions = sdp.getAllValuesAsDoubles();
+		if (positions.length != cache.size()) {
 			throw new IllegalArgumentException("Cache won't work SDP contains different number of positions than expected."
 					+ " cacheSize=" + cache.size()
-					+ " pointSize=" + positions.size()
+					+ " pointSize=" + positions.length
 					+ " cacheNames=" + cache.keySet()
 					+ " pointNames" + Arrays.toString(ArrayUtils.addAll(sdp.getScannableHeader(), sdp.getDetectorHeader().toArray())));
 		}
 
-		final Iterator<Double> positionIterator = positions.iterator();
-
 		// Loop over the scannables adding their positions from this point
-		for (List<Double> scannablePositions : cache.values()) {
-			scannablePositions.add(positionIterator.next());
+		int i = 0;
+		for (DoubleColumn scannablePositions : cache.values()) {
+			scannablePositions.add(positions[i++]);
 		}
 		logger.trace("Added point {} of {} to cache", sdp.getCurrentPointNumber(), sdp.getNumberOfPoints());
 	}
@@ -73,22 +76,60 @@ public class ScanDataPointCache extends DataPointCache {
 
 		// getNames returns the scannable and detector names in order
 		for (String scannableName : sdp.getScannableHeader()) {
-			cache.putIfAbsent(scannableName, new ArrayList<>(scanPoints));
+			cache.putIfAbsent(scannableName, new DoubleColumn(scanPoints));
 		}
 
 		for (String scannableName : sdp.getDetectorHeader()){
-			cache.putIfAbsent(scannableName, new ArrayList<>(scanPoints));
+			cache.putIfAbsent(scannableName, new DoubleColumn(scanPoints));
 		}
 
 		logger.debug("Cache initalised. Size is {} scannables x {} points", cache.size(), scanPoints);
 	}
 
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * The list is a live, read only view of the cached column which boxes values as they are read. Use
+	 * {@link #getBufferFor(String)} to avoid this.
+	 */
 	@Override
 	public List<Double> getPositionsFor(String scannableName) {
 		logger.trace("Getting positions for: {}", scannableName);
-		if (!cache.containsKey(scannableName)) {
+		return getColumn(scannableName).asList();
+	}
+
+	/**
+	 * Get a read only view of the cached positions of a field without copying or boxing them. Missing values are NaN.
+	 *
+	 * @param scannableName
+	 *            The field name for which to extract data
+	 * @return A buffer holding the positions cached when this was called
+	 */
+	public DoubleBuffer getBufferFor(String scannableName) {
+		return getColumn(scannableName).asDoubleBuffer();
+	}
+
+	/**
+	 * Get the cached positions of a field as a one dimensional dataset. The column is copied once, straight into the
+	 * dataset's primitive storage. Missing values are NaN.
+	 *
+	 * @param scannableName
+	 *            The field name for which to extract data
+	 * @return A dataset named after the field holding the positions cached when this was called
+	 */
+	public DoubleDataset getDatasetFor(String scannableName) {
+		final DoubleBuffer positions = getColumn(scannableName).asDoubleBuffer();
+		final DoubleDataset dataset = DatasetFactory.zeros(DoubleDataset.class, positions.remaining());
+		positions.get(dataset.getData());
+		dataset.setName(scannableName);
+		return dataset;
+	}
+
+	private DoubleColumn getColumn(String scannableName) {
+		final DoubleColumn column = cache.get(scannableName);
+		if (column == null) {
 			throw new IllegalArgumentException(scannableName + " not found in data point cache");
 		}
-		return cache.get(scannableName);
+		return column;
 	}
 }
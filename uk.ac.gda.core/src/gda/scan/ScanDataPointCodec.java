@@ -0,0 +1,200 @@
+/*-
+ * Copyright © 2019 Diamond Light Source Ltd.
+ *
+ * This file is part of GDA.
+ *
+ * GDA is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License version 3 as published by the Free
+ * Software Foundation.
+ *
+ * GDA is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with GDA. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package gda.scan;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Vector;
+
+import gda.configuration.properties.LocalProperties;
+import gda.events.jms.BinaryValueEncoding;
+import gda.events.jms.EventCodec;
+import gda.util.Serializer;
+
+/**
+ * Sends {@link ScanDataPoint}s as the per point values only, in the same way {@link ScanDataPointServer} does.
+ * <p>
+ * The {@link ScanData} (headers, formats, command, plot settings etc.) is Java serialized and sent with the first point
+ * sent to each topic, then only when it changes or every {@value #GDA_EVENTS_JMS_SCAN_DATA_POINT_SCHEMA_INTERVAL}
+ * points so that receivers subscribing part way through a scan can start decoding points. Points received before the
+ * ScanData cannot be decoded.
+ * <p>
+ * Positions and detector data are written with {@link BinaryValueEncoding}.
+ */
+public class ScanDataPointCodec implements EventCodec {
+
+	/**
+	 * Property setting the maximum number of points sent to a topic between repeats of the ScanData. Default is 100.
+	 */
+	public static final String GDA_EVENTS_JMS_SCAN_DATA_POINT_SCHEMA_INTERVAL = "gda.events.jms.scanDataPointSchemaInterval";
+
+	private static final byte HAS_SCAN_DATA = 1;
+
+	private final int schemaInterval = Math.max(1, LocalProperties.getAsInt(GDA_EVENTS_JMS_SCAN_DATA_POINT_SCHEMA_INTERVAL, 100));
+
+	/** ScanData last sent to each topic, only used when encoding */
+	private final Map<String, Schema> sentSchemas = new HashMap<>();
+
+	/** ScanData last received on each topic, only used when decoding */
+	private final Map<String, Schema> receivedSchemas = new HashMap<>();
+
+	@Override
+	public byte getId() {
+		return 1;
+	}
+
+	@Override
+	public boolean canEncode(Object event) {
+		return event != null && event.getClass() == ScanDataPoint.class;
+	}
+
+	@Override
+	public synchronized void encode(String topic, Object event, DataOutputStream out) throws IOException {
+		final ScanDataPoint point = (ScanDataPoint) event;
+		final ScanData scanData = new ScanData(point);
+
+		Schema schema = sentSchemas.get(topic);
+		final boolean sendScanData = schema == null || schema.pointsSinceSent >= schemaInterval
+				|| !isSameScanData(schema.scanData, scanData);
+		if (sendScanData) {
+			schema = new Schema(schema == null ? 0 : schema.id + 1, scanData);
+			sentSchemas.put(topic, schema);
+		}
+		schema.pointsSinceSent++;
+
+		out.writeByte(sendScanData ? HAS_SCAN_DATA : 0);
+		out.writeInt(schema.id);
+		if (sendScanData) {
+			final byte[] serializedScanData = Serializer.toByte(scanData);
+			out.writeInt(serializedScanData.length);
+			out.write(serializedScanData);
+		}
+
+		// ScanDataPointVar converts detector data to the form sent to clients
+		final ScanDataPointVar values = new ScanDataPointVar(point);
+		out.writeInt(values.getCurrentPointNumber());
+		writeValues(out, values.getPositions());
+		writeValues(out, values.getDetectorData());
+		final byte[] stepIds = values.getStepIds();
+		out.writeInt(stepIds == null ? -1 : stepIds.length);
+		if (stepIds != null) {
+			out.write(stepIds);
+		}
+	}
+
+	@Override
+	public synchronized Object decode(String topic, DataInputStream in) throws IOException, ClassNotFoundException {
+		final boolean hasScanData = in.readByte() == HAS_SCAN_DATA;
+		final int schemaId = in.readInt();
+		Schema schema;
+		if (hasScanData) {
+			final byte[] serializedScanData = new byte[in.readInt()];
+			in.readFully(serializedScanData);
+			schema = new Schema(schemaId, (ScanData) Serializer.toObject(serializedScanData));
+			receivedSchemas.put(topic, schema);
+		} else {
+			schema = receivedSchemas.get(topic);
+			if (schema == null || schema.id != schemaId) {
+				throw new IOException("ScanDataPoint received on topic " + topic
+						+ " before its ScanData. It will be decoded once the ScanData is repeated.");
+			}
+		}
+
+		final int currentPointNumber = in.readInt();
+		final Vector<Object> positions = readValues(in);
+		final Vector<Object> detectorData = readValues(in);
+		final int stepIdsLength = in.readInt();
+		byte[] stepIds = null;
+		if (stepIdsLength >= 0) {
+			stepIds = new byte[stepIdsLength];
+			in.readFully(stepIds);
+		}
+		final ScanDataPointVar values = new ScanDataPointVar(schema.scanData.getUniqueName(), currentPointNumber,
+				positions, detectorData, stepIds);
+		return new ScanDataPoint(schema.scanData, values);
+	}
+
+	private static void writeValues(DataOutputStream out, Vector<Object> values) throws IOException {
+		if (values == null) {
+			out.writeInt(-1);
+			return;
+		}
+		out.writeInt(values.size());
+		for (Object value : values) {
+			BinaryValueEncoding.write(out, value);
+		}
+	}
+
+	private static Vector<Object> readValues(DataInputStream in) throws IOException, ClassNotFoundException {
+		final int size = in.readInt();
+		if (size < 0) {
+			return null;
+		}
+		final Vector<Object> values = new Vector<>(size);
+		for (int i = 0; i < size; i++) {
+			values.add(BinaryValueEncoding.read(in));
+		}
+		return values;
+	}
+
+	private static boolean isSameScanData(ScanData a, ScanData b) {
+		return Objects.equals(a.uniqueName, b.uniqueName)
+				&& Objects.equals(a.command, b.command)
+				&& Objects.equals(a.hasChild, b.hasChild)
+				&& Objects.equals(a.numberOfChildScans, b.numberOfChildScans)
+				&& Arrays.equals(a.scannableHeader, b.scannableHeader)
+				&& Arrays.equals(a.detectorHeader, b.detectorHeader)
+				&& Arrays.deepEquals(a.scannableFormats, b.scannableFormats)
+				&& Arrays.deepEquals(a.detectorFormats, b.detectorFormats)
+				&& Objects.equals(a.scanPlotSettings, b.scanPlotSettings)
+				&& isSameScanInformation(a.scanInfo, b.scanInfo);
+	}
+
+	private static boolean isSameScanInformation(ScanInformation a, ScanInformation b) {
+		if (a == b) {
+			return true;
+		}
+		if (a == null || b == null) {
+			return false;
+		}
+		return a.getScanNumber() == b.getScanNumber()
+				&& a.getNumberOfPoints() == b.getNumberOfPoints()
+				&& Arrays.equals(a.getDimensions(), b.getDimensions())
+				&& Arrays.equals(a.getScannableNames(), b.getScannableNames())
+				&& Arrays.equals(a.getDetectorNames(), b.getDetectorNames())
+				&& Objects.equals(a.getFilename(), b.getFilename())
+				&& Objects.equals(a.getInstrument(), b.getInstrument());
+	}
+
+	private static final class Schema {
+		private final int id;
+		private final ScanData scanData;
+		private int pointsSinceSent;
+
+		private Schema(int id, ScanData scanData) {
+			this.id = id;
+			this.scanData = scanData;
+		}
+	}
+}
@@ -0,0 +1,66 @@
+/*-
+ * Copyright © 2019 Diamond Light Source Ltd.
+ *
+ * This file is part of GDA.
+ *
+ * GDA is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License version 3 as published by the Free
+ * Software Foundation.
+ *
+ * GDA is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with GDA. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package gda.scan;
+
+import gda.util.LatencyHistogram;
+
+/**
+ * Per stage timings of the points passing through a {@link MultithreadedScanDataPointPipeline}. Used to size the
+ * pipeline (thread pool size and queue length) from measurements.
+ */
+public class ScanDataPointPipelineMetrics {
+
+	private final LatencyHistogram queueWait;
+
+	private final LatencyHistogram positionCallableResolution;
+
+	private final LatencyHistogram publish;
+
+	public ScanDataPointPipelineMetrics(String scanName) {
+		queueWait = new LatencyHistogram(scanName + " queue wait");
+		positionCallableResolution = new LatencyHistogram(scanName + " position callable resolution");
+		publish = new LatencyHistogram(scanName + " publish");
+	}
+
+	/**
+	 * @return the time between a point being added to the pipeline and the broadcaster starting to process it
+	 */
+	public LatencyHistogram getQueueWait() {
+		return queueWait;
+	}
+
+	/**
+	 * @return the time spent by the broadcaster waiting for a point's position callables to be resolved
+	 */
+	public LatencyHistogram getPositionCallableResolution() {
+		return positionCallableResolution;
+	}
+
+	/**
+	 * @return the time taken to publish a point (to the DataWriter and observers) once it is fully resolved
+	 */
+	public LatencyHistogram getPublish() {
+		return publish;
+	}
+
+	@Override
+	public String toString() {
+		return queueWait + "; " + positionCallableResolution + "; " + publish;
+	}
+}
@@ -36,9 +36,26 @@ public class ScanDataPointPopulatorAndPublisher implements Callable<Void> {
 
 	private ScanDataPointPublisher broadcaster;
 
+	private final ScanDataPointPipelineMetrics metrics;
+
+	private final long createdNanos = System.nanoTime();
+
 	public ScanDataPointPopulatorAndPublisher(ScanDataPointPublisher broadcaster, IScanDataPoint point) {
+		this(broadcaster, point, null);
+	}
+
+	/**
+	 * @param broadcaster
+	 * @param point
+	 * @param metrics
+	 *            if not null, the time this point spends queued, resolving its position callables and being published
+	 *            is recorded here
+	 */
+	public ScanDataPointPopulatorAndPublisher(ScanDataPointPublisher broadcaster, IScanDataPoint point,
+			ScanDataPointPipelineMetrics metrics) {
 		this.broadcaster = broadcaster;
 		this.point = point;
+		this.metrics = metrics;
 		if( logger.isDebugEnabled())
 			logger.debug("'{}': created", point.toString());
 	}
@@ -48,14 +65,27 @@ public class ScanDataPointPopulatorAndPublisher implements Callable<Void> {
 		if( logger.isDebugEnabled())
 			logger.debug("'{}': running", point.toString());
 
+		long stageStart = System.nanoTime();
+		if (metrics != null) {
+			metrics.getQueueWait().record(stageStart - createdNanos);
+		}
+
 		convertPositionFuturesToPositions(point);
 
+		if (metrics != null) {
+			metrics.getPositionCallableResolution().recordSince(stageStart);
+			stageStart = System.nanoTime();
+		}
+
 		if( logger.isDebugEnabled()){
 			logger.debug("'{}': futures converted", point.toString());
 			logger.debug("'{}' publishing", point.getUniqueName());
 		}
 
 		broadcaster.publish(point);
+		if (metrics != null) {
+			metrics.getPublish().recordSince(stageStart);
+		}
 		if( logger.isDebugEnabled()){
 			logger.debug("'{}' published", point.toString());
 		}
@@ -74,6 +74,18 @@ public class ScanDataPointVar implements Serializable {
 
 	}
 
+	/**
+	 * Recreate a token from its contents, e.g. after they have been sent by {@link ScanDataPointCodec}
+	 */
+	ScanDataPointVar(String uniqueName, int currentPointNumber, Vector<Object> positions, Vector<Object> detectorData,
+			byte[] stepIds) {
+		this.token = new ScanDataPointToken(uniqueName);
+		this.currentPointNumber = currentPointNumber;
+		this.positions = positions;
+		this.detectorData = detectorData;
+		this.stepIds = stepIds;
+	}
+
 	public ScanDataPointToken getToken() {
 		return token;
 	}
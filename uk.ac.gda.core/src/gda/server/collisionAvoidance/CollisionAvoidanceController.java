@@ -20,12 +20,19 @@
 package gda.server.collisionAvoidance;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
-import java.util.HashSet;
-import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.locks.ReentrantLock;
 
 import org.python.core.PyString;
 import org.slf4j.Logger;
@@ -36,21 +43,39 @@ import gda.device.scannable.CheckedScannableMotion;
 import gda.factory.FindableBase;
 import gda.factory.Localizable;
 import gda.jython.JythonServerFacade;
+import gda.util.LatencyHistogram;
+import uk.ac.diamond.daq.concurrent.Async;
 
 /**
- *
+ * Checks requested moves of registered {@link CheckedScannableMotion}s with the {@link CollisionChecker}s tied to the
+ * parameters being moved, and performs those which are allowed.
+ * <p>
+ * There is no lock on the whole controller. Registered scannables and checkers are held in maps which are replaced,
+ * never changed, when they are registered. Each checker has a lock; a move is checked and started while holding the
+ * locks of all the checkers tied to the moving parameters, so moves which could collide are still checked one at a
+ * time but moves which share no checkers are checked concurrently.
+ * <p>
+ * Optionally, when more than one checker is asked about a move they can be called in parallel on pool threads (see
+ * {@link #setParallelChecking(boolean)}), and each checker can remember its results for the last few combinations of
+ * current and requested positions it was asked about (see {@link #setCheckerResultCacheSize(int)}). Both are off by
+ * default: checkers are often written in Jython and may read state other than their arguments. The time taken by each
+ * checker is recorded in a {@link LatencyHistogram}.
  */
 public class CollisionAvoidanceController extends FindableBase implements Localizable {
 	private static final Logger logger = LoggerFactory.getLogger(CollisionAvoidanceController.class);
 
-	// Map of scannables (keyed to their internal name field)
-	private Map<String, CacScannable> cacScannablesMap = new HashMap<String, CacScannable>();
+	// Map of scannables (keyed to their internal name field). Replaced rather than modified.
+	private volatile Map<String, CacScannable> cacScannablesMap = Collections.emptyMap();
 
-	// Map of checkers (keyed to their internal name field)
-	private Map<String, CacChecker> cacCheckersMap = new HashMap<String, CacChecker>();
+	// Map of checkers (keyed to their internal name field). Replaced rather than modified.
+	private volatile Map<String, CacChecker> cacCheckersMap = Collections.emptyMap();
 
 	private boolean local = true;
 
+	private volatile boolean parallelChecking = false;
+
+	private volatile int checkerResultCacheSize = 0;
+
 	/**
 	 * Shortcut method to get a link the collision avoidance controller from the finder.
 	 *
@@ -71,17 +96,17 @@ public class CollisionAvoidanceController extends FindableBase implements Locali
 	/*
 	 *
 	 */
-	private CollisionAvoidanceController() {
-		// Singleton
+	CollisionAvoidanceController() {
+		// Singleton, visible for testing
 	}
 
 	/**
 	 * Totally deletes everything in the controller, (useful if you want to build it up again from a script)
 	 */
-	public void clearController() {
-		cacScannablesMap = new HashMap<String, CacScannable>();
+	public synchronized void clearController() {
+		cacScannablesMap = Collections.emptyMap();
 
-		cacCheckersMap = new HashMap<String, CacChecker>();
+		cacCheckersMap = Collections.emptyMap();
 	}
 
 	/**
@@ -90,10 +115,10 @@ public class CollisionAvoidanceController extends FindableBase implements Locali
 	 * @param scannableObject
 	 * @throws CacException
 	 */
-	public void registerScannable(CheckedScannableMotion scannableObject) throws CacException {
+	public synchronized void registerScannable(CheckedScannableMotion scannableObject) throws CacException {
 		// Register if scannable has not been registered already.
 		if (cacScannablesMap.containsKey(scannableObject.getName()) == false)
-			cacScannablesMap.put(scannableObject.getName(), new CacScannable(scannableObject));
+			cacScannablesMap = with(cacScannablesMap, scannableObject.getName(), new CacScannable(scannableObject));
 		else
 			throw new CacException("CAC could not register scannable. A scannable with name "
 					+ scannableObject.getName() + " is allready registered");
@@ -107,10 +132,10 @@ public class CollisionAvoidanceController extends FindableBase implements Locali
 	 * @param scannableName
 	 * @throws CacException
 	 */
-	public void unregisterScannable(String scannableName) throws CacException {
+	public synchronized void unregisterScannable(String scannableName) throws CacException {
 		// Check that scannable with name scannableName exists, and delete if so.
 		if (cacScannablesMap.containsKey(scannableName) == true)
-			cacScannablesMap.remove(scannableName);
+			cacScannablesMap = without(cacScannablesMap, scannableName);
 		else
 			throw new CacException("CAC could not unregister scannable. A scannable with name " + scannableName
 					+ " is not registered");
@@ -126,14 +151,14 @@ public class CollisionAvoidanceController extends FindableBase implements Locali
 	 * @param paramNames
 	 * @throws CacException
 	 */
-	public void registerChecker(CollisionChecker checkerObject, String[] scannableNames, String[] paramNames)
+	public synchronized void registerChecker(CollisionChecker checkerObject, String[] scannableNames, String[] paramNames)
 			throws CacException {
-		// TODO write register checker
-
 		// Add the checker
-		if (cacCheckersMap.containsKey(checkerObject.getName()) == false)
-			cacCheckersMap.put(checkerObject.getName(), new CacChecker(checkerObject, scannableNames, paramNames));
-		else
+		if (cacCheckersMap.containsKey(checkerObject.getName()) == false) {
+			CacChecker cacChecker = new CacChecker(checkerObject, scannableNames, paramNames);
+			cacChecker.tie();
+			cacCheckersMap = with(cacCheckersMap, checkerObject.getName(), cacChecker);
+		} else
 			throw new CacException("CAC could not register checker. A checker with name " + checkerObject.getName()
 					+ " is allready registered");
 
@@ -145,16 +170,29 @@ public class CollisionAvoidanceController extends FindableBase implements Locali
 	 * @param checkerName
 	 * @throws CacException
 	 */
-	public void unregisterChecker(String checkerName) throws CacException {
+	public synchronized void unregisterChecker(String checkerName) throws CacException {
 		// Check that a checker with name checkerName exists, and delete if so.
-		if (cacCheckersMap.containsKey(checkerName) == true)
-			cacCheckersMap.remove(checkerName);
-		else
+		if (cacCheckersMap.containsKey(checkerName) == true) {
+			cacCheckersMap.get(checkerName).untie();
+			cacCheckersMap = without(cacCheckersMap, checkerName);
+		} else
 			throw new CacException("CAC could not unregister checkers. A checkers with name " + checkerName
 					+ " is not registered");
 
 	}
 
+	private static <T> Map<String, T> with(Map<String, T> map, String key, T value) {
+		Map<String, T> newMap = new HashMap<>(map);
+		newMap.put(key, value);
+		return Collections.unmodifiableMap(newMap);
+	}
+
+	private static <T> Map<String, T> without(Map<String, T> map, String key) {
+		Map<String, T> newMap = new HashMap<>(map);
+		newMap.remove(key);
+		return Collections.unmodifiableMap(newMap);
+	}
+
 	/**
 	 * Checks to see if a move is allowed.
 	 *
@@ -164,80 +202,129 @@ public class CollisionAvoidanceController extends FindableBase implements Locali
 	 * @throws CacException
 	 *             exception if unable to answer request due to bad request.
 	 */
-	@SuppressWarnings("rawtypes")
-	synchronized public String[] isMoveAllowedNow(String scannableName, Double[] pos) throws CacException {
-		CacScannable CacScannableToMove;
-		int nParameters;
-		String[] paramNames;
-		List<String> paramsRequestedToMove = new ArrayList<String>();
-		Set<String> checkersToAsk = new HashSet<String>();
-		List<String> problemsWithMove = new ArrayList<String>();
+	public String[] isMoveAllowedNow(String scannableName, Double[] pos) throws CacException {
+		CacScannable cacScannableToMove = getCacScannable(scannableName, pos);
+		List<CacChecker> checkersToAsk = cacScannableToMove.getTiedCheckers(pos);
+		lock(checkersToAsk);
+		try {
+			return checkMove(cacScannableToMove, checkersToAsk, pos);
+		} finally {
+			unlock(checkersToAsk);
+		}
+	}
 
+	private CacScannable getCacScannable(String scannableName, Double[] pos) throws CacException {
 		// *************** Check that request is properly formed ****************
 
 		// Check scannable is registered
-		if (cacScannablesMap.containsKey(scannableName) == false) {
+		CacScannable cacScannableToMove = cacScannablesMap.get(scannableName);
+		if (cacScannableToMove == null) {
 			throw new CacException("Move invalid. No scannable with name " + scannableName + " is registered");
 		}
 
-		// Make a shortcut to the CacScannable
-		CacScannableToMove = cacScannablesMap.get(scannableName);
-		paramNames = CacScannableToMove.getParameterNames();
-		nParameters = CacScannableToMove.getNumberParameters();
-
 		// Check input pos is the right length (same as number of parameters)
+		int nParameters = cacScannableToMove.getNumberParameters();
 		if (nParameters != pos.length) {
 			throw new CacException("Move request invalid. The scannable with name " + scannableName + " requires "
 					+ nParameters + " but was sent only " + pos.length);
 		}
+		return cacScannableToMove;
+	}
+
+	/**
+	 * Must be called holding the locks of the checkers to ask
+	 */
+	private String[] checkMove(CacScannable cacScannableToMove, List<CacChecker> checkersToAsk, Double[] pos)
+			throws CacException {
+		List<String> problemsWithMove = new ArrayList<String>();
 
 		// *************** Check that requested move is safe ****************
 
 		// Check scannable is not being moved
-		if (CacScannableToMove.isScannableInTransition()) {
-			problemsWithMove.add("Move not allowed: The scannable with name " + scannableName
+		if (cacScannableToMove.isScannableInTransition()) {
+			problemsWithMove.add("Move not allowed: The scannable with name " + cacScannableToMove.scannableName
 					+ " is already in transition");
 			return problemsWithMove.toArray(new String[0]);
 		}
 
 		// ********* Check move is allowed by all checkers *********
 
-		// Make a list of parameters to be moved
-		for (int i = 0; i < nParameters; i++) {
-			if (pos[i] != null)
-				paramsRequestedToMove.add(paramNames[i]);
-		}
-
-		// Make a Set (rather than list, as this inherantly removes duplicates)
-		// of checkers tied to all parameters to be moved
-		for (Iterator iter = paramsRequestedToMove.iterator(); iter.hasNext();) {
-			String tmpParamName = (String) iter.next();
-			String[] tmpcheckersArray = CacScannableToMove.getTiedCheckers(tmpParamName);
-			// add each one to checkersToask list
-			for (int i = 0; i < tmpcheckersArray.length; i++) {
-				checkersToAsk.add(tmpcheckersArray[i]);
+		// Call all checkers. They return null if move is okay, or an array of
+		// Strings otherwise
+		List<Future<String[]>> reports = new ArrayList<>();
+		if (parallelChecking) {
+			for (CacChecker checker : checkersToAsk.subList(Math.min(1, checkersToAsk.size()), checkersToAsk.size())) {
+				reports.add(Async.submit(() -> checker.checkMove(cacScannableToMove, pos), "CAC checker %s",
+						checker.checkerName));
 			}
-
 		}
 
-		// Call all checkers. They return null if move is okay, or an array of
-		// Strings otherwise
-		for (Iterator<String> iter = checkersToAsk.iterator(); iter.hasNext();) {
-			String checkerName = iter.next();
+		CacException failure = null;
+		for (int c = 0; c < checkersToAsk.size(); c++) {
 			String[] checkerReport;
-
-			checkerReport = cacCheckersMap.get(checkerName).checkMove(scannableName, pos);
+			try {
+				if (!parallelChecking || c == 0) {
+					// first checker runs on this thread while the others run in parallel
+					checkerReport = checkersToAsk.get(c).checkMove(cacScannableToMove, pos);
+				} else {
+					checkerReport = waitForReport(reports.get(c - 1));
+				}
+			} catch (CacException e) {
+				// keep waiting for the other checkers so none is still running once the locks are released
+				if (failure == null) {
+					failure = e;
+				}
+				continue;
+			}
 
 			if (checkerReport != null) {
-				for (int i = 0; i < checkerReport.length; i++) {
-					problemsWithMove.add(checkerReport[i]);
-				}
+				problemsWithMove.addAll(Arrays.asList(checkerReport));
 			}
 		}
+		if (failure != null) {
+			throw failure;
+		}
 
 		return problemsWithMove.toArray(new String[0]);
 	}
 
+	private static String[] waitForReport(Future<String[]> report) throws CacException {
+		try {
+			return report.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new CacException("Interrupted waiting for collision checker: " + e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof CacException) {
+				throw (CacException) e.getCause();
+			}
+			throw new CacException("Exception from collision checker: " + e.getCause());
+		}
+	}
+
+	/**
+	 * Locks checkers in order of name so that threads locking overlapping sets cannot deadlock
+	 */
+	private static void lock(List<CacChecker> checkers) {
+		for (CacChecker checker : sortedByName(checkers)) {
+			checker.lock.lock();
+		}
+	}
+
+	private static void unlock(List<CacChecker> checkers) {
+		for (CacChecker checker : checkers) {
+			checker.lock.unlock();
+		}
+	}
+
+	private static Iterable<CacChecker> sortedByName(List<CacChecker> checkers) {
+		Map<String, CacChecker> sorted = new TreeMap<>();
+		for (CacChecker checker : checkers) {
+			sorted.put(checker.checkerName, checker);
+		}
+		return sorted.values();
+	}
+
 	/**
 	 * Asks the CAC to move a scannable.
 	 * <p>
@@ -250,91 +337,72 @@ public class CollisionAvoidanceController extends FindableBase implements Locali
 	 * @throws CacException
 	 *             If the move cannot be performed
 	 */
-	synchronized public void requestMove(String scannableName, Double[] pos) throws CacException {
-		CacScannable CacScannableToMove;
-		int nParameters;
-		String[] isMoveAllowedReport;
-
-		// Check scannable is registered
-		if (cacScannablesMap.containsKey(scannableName) == false) {
-			throw new CacException("Move invalid. No scannable with name " + scannableName + " is registered");
-		}
-
-		// Make a shortcut to the CacScannable
-		CacScannableToMove = cacScannablesMap.get(scannableName);
-		nParameters = CacScannableToMove.getNumberParameters();
+	public void requestMove(String scannableName, Double[] pos) throws CacException {
+		CacScannable cacScannableToMove = getCacScannable(scannableName, pos);
+		int nParameters = cacScannableToMove.getNumberParameters();
 
 		// Show input request
-		logger.debug("CAC received request from " + scannableName + " to move to (or by) " + ArrayToString.get(pos));
+		logger.debug("CAC received request from {} to move to (or by) {}", scannableName, ArrayToString.get(pos));
 
 		// Assume the CheckedScannable has already checked its own limits
 		// report=cacScannablesMap.get(scannableName).getScannableObject().isPositionWithinLimits(pos);
 
-		// **Check move is safe**
-		isMoveAllowedReport = isMoveAllowedNow(scannableName, pos);
+		// Hold the locks of the checkers concerned from the check until the move has started, so no other move
+		// they need to know about can be checked in between
+		List<CacChecker> checkersToAsk = cacScannableToMove.getTiedCheckers(pos);
+		lock(checkersToAsk);
+		try {
+			// **Check move is safe**
+			String[] isMoveAllowedReport = checkMove(cacScannableToMove, checkersToAsk, pos);
 
-		// return the messages sent back by the checkers if a move failed.
-		if (isMoveAllowedReport.length != 0) {
-			String errorString = "Moving " + scannableName + " to " + ArrayToString.get(pos)
-					+ " breaks the folowing rule(s):\n ";
+			// return the messages sent back by the checkers if a move failed.
+			if (isMoveAllowedReport.length != 0) {
+				String errorString = "Moving " + scannableName + " to " + ArrayToString.get(pos)
+						+ " breaks the folowing rule(s):\n ";
 
-			for (int i = 0; i < isMoveAllowedReport.length; i++) {
-				errorString = errorString + isMoveAllowedReport[i] + "\n";
+				for (int i = 0; i < isMoveAllowedReport.length; i++) {
+					errorString = errorString + isMoveAllowedReport[i] + "\n";
+				}
+				throw new CacException(errorString);
 			}
-			throw new CacException(errorString);
-		}
-
-		// *************** Perform move ****************
-
-		// Make shortcut to actual external Scannable object
-		CheckedScannableMotion scannableObject = CacScannableToMove.getScannableObject();
-
-		// Set flag in scannable saying it is being moved by the CAC. This will
-		// cause
-		// the actual scannable's isBusy() method to return true.
-		scannableObject.setCacIsMovingThis();
 
-		// set location Start to current position
-		Object posObject;
-		try {
-			posObject = scannableObject.getPosition();
-		} catch (DeviceException e) {
-			throw new CacException("Exception wile checking device position: " + e);
-		}
-
-		CacScannableToMove.locationStart = HelperFunctions.positionToArray(posObject, nParameters);
+			// *************** Perform move ****************
 
-		// Set location end position to desired location
-		CacScannableToMove.locationEnd = pos;
+			// Make shortcut to actual external Scannable object
+			CheckedScannableMotion scannableObject = cacScannableToMove.getScannableObject();
 
-		// Set is moving flags for those parameters that are being moved
-		// i.e. those whose final position is not null
-		for (int i = 0; i < nParameters; i++) // Set Location Start and
-		// inTransition
-		{
-			if (pos[i] != null) {
-				CacScannableToMove.inTransition[i] = true;
+			// set location Start to current position
+			Object posObject;
+			try {
+				posObject = scannableObject.getPosition();
+			} catch (DeviceException e) {
+				throw new CacException("Exception wile checking device position: " + e);
 			}
-		}
 
-		// Start the move in a new thread. This thread will monitor the scannables
-		// uncheckedIsBusy() method and then set the CacSCannable's inTransition
-		// bits
-		// to false, and then tell the outside world the move is complete by
-		// calling
-		// unsetCacIsMovingThis(), so that the scannables isBusy() method will
-		// return false.
+			// Set is moving flags for those parameters that are being moved
+			// i.e. those whose final position is not null. This fails if another thread has started moving the
+			// scannable since it was checked.
+			if (!cacScannableToMove.startTransition(HelperFunctions.positionToArray(posObject, nParameters), pos)) {
+				throw new CacException("Move not allowed: The scannable with name " + scannableName
+						+ " is already in transition");
+			}
 
-		CheckedScannableMover mover = new CheckedScannableMover(CacScannableToMove, pos);
-		mover.start();
+			// Set flag in scannable saying it is being moved by the CAC. This will
+			// cause the actual scannable's isBusy() method to return true.
+			scannableObject.setCacIsMovingThis();
 
-		// The thread that entered this method (which came from outside this
-		// object via
-		// one of the move() methods on a scannable) will now leave this method,
-		// releasing
-		// the lock on this method and allowing another thread through to request
-		// and initiate a move.
+			// Start the move in a new thread. This thread will monitor the scannables
+			// uncheckedIsBusy() method and then set the CacSCannable's inTransition
+			// bits to false, and then tell the outside world the move is complete by
+			// calling unsetCacIsMovingThis(), so that the scannables isBusy() method will
+			// return false.
 
+			CheckedScannableMover mover = new CheckedScannableMover(cacScannableToMove, pos);
+			mover.start();
+		} finally {
+			// Another thread can now check moves involving these checkers; it will see this scannable in transition.
+			unlock(checkersToAsk);
+		}
 	}
 
 	/**
@@ -343,17 +411,52 @@ public class CollisionAvoidanceController extends FindableBase implements Locali
 	 */
 	public void refresh() {
 		// loop over all registered scannables
-		cacScannablesMap.values().iterator();
-		for (Iterator<CacScannable> iter = cacScannablesMap.values().iterator(); iter.hasNext();) {
-			CacScannable cacScannable = iter.next();
-
-			for (int i = 0; i < cacScannable.getNumberParameters(); i++) {
-				cacScannable.inTransition[i] = false;
-			}
+		for (CacScannable cacScannable : cacScannablesMap.values()) {
+			cacScannable.endTransition();
 			cacScannable.getScannableObject().unsetCacIsMovingThis();
 		}
 	}
 
+	/**
+	 * @param parallelChecking
+	 *            true to call the checkers of a move in parallel on pool threads, false (the default) to call them one
+	 *            after the other on the thread requesting the move. Only enable this if all checkers can be called
+	 *            from any thread.
+	 */
+	public void setParallelChecking(boolean parallelChecking) {
+		this.parallelChecking = parallelChecking;
+	}
+
+	public boolean isParallelChecking() {
+		return parallelChecking;
+	}
+
+	/**
+	 * @param checkerResultCacheSize
+	 *            the number of results each checker remembers. 0 (the default) calls the checkers for every move. Only
+	 *            enable this if all checkers are pure functions of their arguments, as a cached result is returned
+	 *            without calling the checker. Takes effect for checkers registered afterwards.
+	 */
+	public void setCheckerResultCacheSize(int checkerResultCacheSize) {
+		this.checkerResultCacheSize = checkerResultCacheSize;
+	}
+
+	public int getCheckerResultCacheSize() {
+		return checkerResultCacheSize;
+	}
+
+	/**
+	 * @return the time taken by each registered checker to check moves, keyed by checker name. Results found in the
+	 *         cache are not included.
+	 */
+	public Map<String, LatencyHistogram> getCheckerLatencies() {
+		Map<String, LatencyHistogram> latencies = new TreeMap<>();
+		for (CacChecker checker : cacCheckersMap.values()) {
+			latencies.put(checker.checkerName, checker.latency);
+		}
+		return latencies;
+	}
+
 	/**
 	 * {@inheritDoc} Shows the state of the contoller, including that of its registered scannables and checkers.
 	 *
@@ -361,24 +464,26 @@ public class CollisionAvoidanceController extends FindableBase implements Locali
 	 */
 	@Override
 	public String toString() {
+		Map<String, CacScannable> scannables = cacScannablesMap;
+		Map<String, CacChecker> checkers = cacCheckersMap;
 		String toReturn;
 
 		toReturn = "<< Collision avoidance controller >>\n";
 
 		// include scannables
 		toReturn = toReturn + "<scannables>\n";
-		for (String key : cacScannablesMap.keySet())
-			toReturn = toReturn + cacScannablesMap.get(key).toString() + "\n";
+		for (CacScannable scannable : scannables.values())
+			toReturn = toReturn + scannable.toString() + "\n";
 
 		// include checkers
 		toReturn = toReturn + "<checkers>\n";
-		for (String key : cacCheckersMap.keySet())
-			toReturn = toReturn + cacCheckersMap.get(key).toString() + "\n";
+		for (CacChecker checker : checkers.values())
+			toReturn = toReturn + checker.toString() + "\n";
 
 		// include the details of any checkers
 		toReturn = toReturn + "\n<<Checker insides>>\n";
-		for (String key : cacCheckersMap.keySet())
-			toReturn = toReturn + cacCheckersMap.get(key).getCheckerObject().toString() + "\n";
+		for (CacChecker checker : checkers.values())
+			toReturn = toReturn + checker.getCheckerObject().toString() + "\n";
 
 		return toReturn;
 	}
@@ -431,20 +536,39 @@ public class CollisionAvoidanceController extends FindableBase implements Locali
 	 *
 	 ********************************************************************************/
 	class CacChecker {
-		CollisionChecker checkerObject = null; // The external checker object
-		String checkerName;
+		final CollisionChecker checkerObject; // The external checker object
+		final String checkerName;
 
 		// The parameters this checker ties to.
 		// [n][0]->scannable name, [n][1]->parameter name
-		String[][] tiedParameters;
+		final String[][] tiedParameters;
+
+		final int nTiedParameters;
+
+		// For each tied scannable, the index in the configuration of each of its parameters, or -1 if the parameter
+		// is not tied to this checker
+		private final Map<String, int[]> configurationIndices = new HashMap<>();
+
+		// Held while checking and starting a move this checker is asked about
+		final ReentrantLock lock = new ReentrantLock();
 
-		int nTiedParameters;
-		Double[] currentPosStartRange;
-		Double[] currentPosEndRange;
+		final LatencyHistogram latency;
+
+		// Recent results keyed by the current start and end ranges and requested configuration, or null if results
+		// are not cached. Guarded by itself.
+		private final Map<List<Double>, String[]> results;
 
 		CacChecker(CollisionChecker _checkerObject, String[] scannableNames, String[] paramNames) throws CacException {
 			checkerObject = _checkerObject;
 			checkerName = checkerObject.getName();
+			latency = new LatencyHistogram(checkerName);
+			final int cacheSize = checkerResultCacheSize;
+			results = cacheSize <= 0 ? null : new LinkedHashMap<List<Double>, String[]>(16, 0.75f, true) {
+				@Override
+				protected boolean removeEldestEntry(Map.Entry<List<Double>, String[]> eldest) {
+					return size() > cacheSize;
+				}
+			};
 
 			// Store in order the list of parameters passed in. The order is
 			// important
@@ -457,84 +581,71 @@ public class CollisionAvoidanceController extends FindableBase implements Locali
 				tiedParameters[i][1] = paramNames[i];
 			}
 
-			// Inform the cacScannables this checker ties to.
 			for (int i = 0; i < nTiedParameters; i++) {
 				// Check scannable is registered
-				if (cacScannablesMap.containsKey(scannableNames[i]) == false) {
+				CacScannable cacScannable = cacScannablesMap.get(scannableNames[i]);
+				if (cacScannable == null) {
 					throw new CacException("Could not register checker: No scannable named " + scannableNames[i]
 							+ " is registered with CAC");
 				}
-
-				// Tie the checker to the scannable
+				int[] indices = configurationIndices.computeIfAbsent(scannableNames[i], name -> {
+					int[] newIndices = new int[cacScannable.getNumberParameters()];
+					Arrays.fill(newIndices, -1);
+					return newIndices;
+				});
 				try {
-					cacScannablesMap.get(scannableNames[i]).tieToChecker(paramNames[i], checkerName);
+					indices[cacScannable.paramIndex(paramNames[i])] = i;
 				} catch (CacException e) {
 					throw new CacException("Could not tie checker to scannable parameter. " + e.getMessage());
 				}
 			}
 		}
 
-		/*
-		 * Returns a two by N array describing the. The first row of N values
+		/**
+		 * Inform the cacScannables this checker ties to.
 		 */
-		void updateRegisteredParameterValues() throws CacException {
-			currentPosStartRange = new Double[nTiedParameters];
-			currentPosEndRange = new Double[nTiedParameters];
-			Double[] tmpPos;
-			String tmpName;
-			String tmpParam;
+		void tie() throws CacException {
 			for (int i = 0; i < nTiedParameters; i++) {
-				tmpName = tiedParameters[i][0];
-				tmpParam = tiedParameters[i][1];
-				tmpPos = cacScannablesMap.get(tmpName).getPosition(tmpParam);
-				currentPosStartRange[i] = tmpPos[0];
-				currentPosEndRange[i] = tmpPos[1];
+				// Tie the checker to the scannable
+				try {
+					cacScannablesMap.get(tiedParameters[i][0]).tieToChecker(tiedParameters[i][1], this);
+				} catch (CacException e) {
+					throw new CacException("Could not tie checker to scannable parameter. " + e.getMessage());
+				}
 			}
+		}
 
+		void untie() throws CacException {
+			for (int i = 0; i < nTiedParameters; i++) {
+				CacScannable cacScannable = cacScannablesMap.get(tiedParameters[i][0]);
+				if (cacScannable != null) {
+					cacScannable.untieToChecker(tiedParameters[i][1], this);
+				}
+			}
 		}
 
 		/**
 		 * Ask a checker if its safe to move a scannable it is tied to.
 		 *
-		 * @param scannableName
+		 * @param cacScannable
 		 *            The scannable to be moved
 		 * @param position
 		 *            The position to move it to
 		 * @return null if move okay, or an array of problems described in strings
 		 * @throws CacException
 		 */
-		public String[] checkMove(String scannableName, Double[] position) throws CacException {
+		String[] checkMove(CacScannable cacScannable, Double[] position) throws CacException {
 			// If this checker is tied to more than one scannable, then the
 			// position passed in
 			// will have less parameters than the configuration space the checker
 			// checker.
 			// So build up a a configuration and call checkConfiguration
 			Double[] configuration = new Double[nTiedParameters];
-			// get parameter names for this scannable
-			String[] paramNames = cacScannablesMap.get(scannableName).getParameterNames();
-
-			// Initialise configuration to be all nulls
-			for (int i = 0; i < configuration.length; i++) {
-				configuration[i] = null;
-			}
-
-			// Loop through the configuration array to fill
-			posloop: for (int p = 0; p < paramNames.length; p++) {
-				// If this value corresponds to a parameter associated with a the
-				// scannable
-				// to be moved, then set it to the desired position value. Do this
-				// by comparing
-				// its assoiciated scannable and parameter names to those of the
-				// scannabel being moved.
-				for (int i = 0; i < nTiedParameters; i++) {
-					if ((tiedParameters[i][0] == scannableName) && // The right
-							// scannable
-							// and...
-							(tiedParameters[i][1] == paramNames[p]))// ... the right
-					// parameter
-					{
-						configuration[i] = position[p];
-						continue posloop;
+			int[] indices = configurationIndices.get(cacScannable.scannableName);
+			if (indices != null) {
+				for (int p = 0; p < indices.length; p++) {
+					if (indices[p] >= 0) {
+						configuration[indices[p]] = position[p];
 					}
 				}
 			}
@@ -543,19 +654,54 @@ public class CollisionAvoidanceController extends FindableBase implements Locali
 		}
 
 		String[] checkMoveWithChecker(Double[] configuration) throws CacException {
-			// Get the current position and store it in this checker object
-			updateRegisteredParameterValues();
-			logger.debug("CacChecker.checkConfiguration(" + ArrayToString.get(configuration)
-					+ ") called. current position:");
-
+			// Get the current position
+			Double[] currentPosStartRange = new Double[nTiedParameters];
+			Double[] currentPosEndRange = new Double[nTiedParameters];
 			for (int i = 0; i < nTiedParameters; i++) {
-				logger.debug(tiedParameters[i][0] + "." + tiedParameters[i][1] + ": " + currentPosStartRange[i]
-						+ " <-> " + currentPosEndRange[i]);
+				CacScannable cacScannable = cacScannablesMap.get(tiedParameters[i][0]);
+				if (cacScannable == null) {
+					throw new CacException("Checker " + checkerName + " is tied to " + tiedParameters[i][0]
+							+ " which is no longer registered");
+				}
+				Double[] tmpPos = cacScannable.getPosition(tiedParameters[i][1]);
+				currentPosStartRange[i] = tmpPos[0];
+				currentPosEndRange[i] = tmpPos[1];
+			}
+			if (logger.isDebugEnabled()) {
+				logger.debug("CacChecker.checkConfiguration({}) called. current position:", ArrayToString.get(configuration));
+				for (int i = 0; i < nTiedParameters; i++) {
+					logger.debug("{}.{}: {} <-> {}", tiedParameters[i][0], tiedParameters[i][1], currentPosStartRange[i],
+							currentPosEndRange[i]);
+				}
+			}
+
+			if (results == null) {
+				return timedCheckMove(currentPosStartRange, currentPosEndRange, configuration);
 			}
 
-			// Perform the check
+			// Perform the check, unless it has been done recently
+			List<Double> key = new ArrayList<>(3 * nTiedParameters);
+			key.addAll(Arrays.asList(currentPosStartRange));
+			key.addAll(Arrays.asList(currentPosEndRange));
+			key.addAll(Arrays.asList(configuration));
+			synchronized (results) {
+				if (results.containsKey(key)) {
+					return results.get(key);
+				}
+			}
+			String[] report = timedCheckMove(currentPosStartRange, currentPosEndRange, configuration);
+			synchronized (results) {
+				results.put(key, report);
+			}
+			return report;
+		}
 
-			return checkerObject.checkMove(currentPosStartRange, currentPosEndRange, configuration);
+		private String[] timedCheckMove(Double[] currentPosStartRange, Double[] currentPosEndRange,
+				Double[] configuration) throws CacException {
+			long start = System.nanoTime();
+			String[] report = checkerObject.checkMove(currentPosStartRange, currentPosEndRange, configuration);
+			latency.recordSince(start);
+			return report;
 		}
 
 		CollisionChecker getCheckerObject() {
@@ -582,43 +728,36 @@ public class CollisionAvoidanceController extends FindableBase implements Locali
 	 *
 	 **********************************************************************************/
 	class CacScannable {
-		CheckedScannableMotion scannableObject = null; // The external scannable
+		final CheckedScannableMotion scannableObject; // The external scannable
 		// object
-		String scannableName;
-		String[] parameterNames;
-		int nParameters;
+		final String scannableName;
+		final String[] parameterNames;
+		final int nParameters;
 
-		Boolean[] inTransition; // Set if CAC is moveing a parameter
-		Double[] locationStart; // one bound if Cac is moving parameter
-		Double[] locationEnd; // other bound if Cac is moving parameter
+		// Guarded by this
+		final boolean[] inTransition; // Set if CAC is moveing a parameter
+		final Double[] locationStart; // one bound if Cac is moving parameter
+		final Double[] locationEnd; // other bound if Cac is moving parameter
 
 		// Each parameter can be tied to multiple checkers.
 		// Make an array (that will be nParametrs long), each elemnt of which
-		// is a List of strings of checker names (in the order they were added)
-		List<String>[] registeredCheckers;
+		// is a List of checkers (in the order they were added)
+		final List<List<CacChecker>> registeredCheckers = new ArrayList<>();
 
 		/*
 		 *
 		 */
-		@SuppressWarnings("unchecked")
 		CacScannable(CheckedScannableMotion _scannableObject) {
 			scannableObject = _scannableObject;
 			scannableName = _scannableObject.getName();
 			parameterNames = _scannableObject.getInputNames();
 			nParameters = parameterNames.length;
 
-			inTransition = new Boolean[nParameters];
+			inTransition = new boolean[nParameters];
 			locationStart = new Double[nParameters];
 			locationEnd = new Double[nParameters];
-			registeredCheckers = new List[nParameters];
 			for (int i = 0; i < parameterNames.length; i++) {
-
-				inTransition[i] = false;
-				locationStart[i] = null;
-				locationEnd[i] = null;
-				registeredCheckers[i] = new ArrayList<String>(); // Fill array
-				// with
-				// lists
+				registeredCheckers.add(new CopyOnWriteArrayList<>());
 			}
 		}
 
@@ -647,64 +786,63 @@ public class CollisionAvoidanceController extends FindableBase implements Locali
 		 */
 		Double[] getPosition(String parameterName) throws CacException {
 			Double[] toReturn = new Double[2];
-			if (isParameterInTransition(parameterName)) {
-				toReturn[0] = locationStart[paramIndex(parameterName)];
-				toReturn[1] = locationEnd[paramIndex(parameterName)];
-			} else
-			// parameter is not in transition so read the actual position
-			{
-				Object posObject;
-				try {
-					posObject = scannableObject.getPosition();
-				} catch (DeviceException e) {
-					throw new CacException("Exception wile checking device position: " + e);
+			int index = paramIndex(parameterName);
+			synchronized (this) {
+				if (inTransition[index]) {
+					toReturn[0] = locationStart[index];
+					toReturn[1] = locationEnd[index];
+					return toReturn;
 				}
-
-				Double[] posArray = HelperFunctions.positionToArray(posObject, nParameters);
-				toReturn[0] = posArray[paramIndex(parameterName)];
-				toReturn[1] = null;
+			}
+			// parameter is not in transition so read the actual position
+			Object posObject;
+			try {
+				posObject = scannableObject.getPosition();
+			} catch (DeviceException e) {
+				throw new CacException("Exception wile checking device position: " + e);
 			}
 
+			Double[] posArray = HelperFunctions.positionToArray(posObject, nParameters);
+			toReturn[0] = posArray[index];
+			toReturn[1] = null;
+
 			return toReturn;
 		}
 
 		/*
-		 * Returns the checkers a parameter is tied to
+		 * Returns the checkers tied to the parameters to be moved, i.e. those whose position is not null
 		 */
-		String[] getTiedCheckers(String param) throws CacException {
-			List<String> aList = registeredCheckers[paramIndex(param)];
-			return aList.toArray(new String[0]);
+		List<CacChecker> getTiedCheckers(Double[] pos) {
+			Set<CacChecker> checkers = new LinkedHashSet<>();
+			for (int i = 0; i < nParameters; i++) {
+				if (pos[i] != null) {
+					checkers.addAll(registeredCheckers.get(i));
+				}
+			}
+			return new ArrayList<>(checkers);
 		}
 
-		void tieToChecker(String paramName, String CacCheckerName) throws CacException {
-			logger.debug("tieToChecker(" + paramName + "," + CacCheckerName + ")");
+		void tieToChecker(String paramName, CacChecker cacChecker) throws CacException {
+			logger.debug("tieToChecker({},{})", paramName, cacChecker.checkerName);
 			try {
-				registeredCheckers[paramIndex(paramName)].add(CacCheckerName);
+				registeredCheckers.get(paramIndex(paramName)).add(cacChecker);
 			} catch (CacException e) {
 				throw new CacException("CAC could not register checker with parameter. " + e.getMessage());
 			}
 		}
 
-		void untieToChecker(String paramName, String CacCheckerName) throws CacException {
+		void untieToChecker(String paramName, CacChecker cacChecker) throws CacException {
 			try {
-				registeredCheckers[paramIndex(paramName)].remove(CacCheckerName);
+				registeredCheckers.get(paramIndex(paramName)).remove(cacChecker);
 			} catch (CacException e) {
 				throw new CacException("CAC could not unregister checker with parameter. " + e.getMessage());
 			}
 
 		}
 
-		Boolean isParameterInTransition(String parameterName) throws CacException {
-			try {
-				return inTransition[paramIndex(parameterName)];
-			} catch (CacException e) {
-				throw new CacException("Could not check if parameter is in transition: " + e.getMessage());
-			}
-		}
-
-		Boolean isScannableInTransition() {
+		synchronized boolean isScannableInTransition() {
 			// checks to see if any parameter is in transition
-			for (int i = 0; i < parameterNames.length; i++) {
+			for (int i = 0; i < nParameters; i++) {
 				if (inTransition[i])
 					return true;
 			}
@@ -712,6 +850,29 @@ public class CollisionAvoidanceController extends FindableBase implements Locali
 
 		}
 
+		/**
+		 * Marks the parameters to be moved as in transition between their current and final positions
+		 *
+		 * @return false if the scannable is already in transition
+		 */
+		synchronized boolean startTransition(Double[] start, Double[] end) {
+			if (isScannableInTransition()) {
+				return false;
+			}
+			for (int i = 0; i < nParameters; i++) {
+				locationStart[i] = start[i];
+				locationEnd[i] = end[i];
+				if (end[i] != null) {
+					inTransition[i] = true;
+				}
+			}
+			return true;
+		}
+
+		synchronized void endTransition() {
+			Arrays.fill(inTransition, false);
+		}
+
 		@Override
 		public String toString() {
 			String toReturn = "";
@@ -739,13 +900,13 @@ public class CollisionAvoidanceController extends FindableBase implements Locali
 				else
 					toReturn = toReturn + "<->" + posRange[1] + "\t";
 
-				int nCheckers = registeredCheckers[i].size();
+				List<CacChecker> checkers = registeredCheckers.get(i);
 
 				// display the checkers
-				if (nCheckers > 0) {
+				if (!checkers.isEmpty()) {
 					toReturn = toReturn + "(";
-					for (Iterator<String> it = registeredCheckers[i].iterator(); it.hasNext();) {
-						toReturn = toReturn + "'" + it.next() + "', ";
+					for (CacChecker checker : checkers) {
+						toReturn = toReturn + "'" + checker.checkerName + "', ";
 					}
 					toReturn = toReturn.substring(0, toReturn.length() - 2); // looses
 					// extra
@@ -763,17 +924,13 @@ public class CollisionAvoidanceController extends FindableBase implements Locali
 		/*
 		 *
 		 */
-		private int paramIndex(String paramName) throws CacException {
-			int index = -1;
+		int paramIndex(String paramName) throws CacException {
 			for (int i = 0; i < parameterNames.length; i++) {
-				if (parameterNames[i] == paramName) {
-					index = i;
+				if (parameterNames[i].equals(paramName)) {
+					return i;
 				}
 			}
-			if (index == -1) {
-				throw new CacException("parameter '" + paramName + "' not found in '" + scannableName + "'");
-			}
-			return index;
+			throw new CacException("parameter '" + paramName + "' not found in '" + scannableName + "'");
 		}
 	} // end class cacScannable
 
@@ -810,13 +967,7 @@ public class CollisionAvoidanceController extends FindableBase implements Locali
 				// (no need to set locationEnd and Start, as these will be set if
 				// ever
 				// they are to be read.)
-				// TODO is this thread safe?
-				// This may change the cacScannable while another thread is on
-				// requestMove()
-				// but this should not be unsafe.
-				for (int i = 0; i < cacScannable.getNumberParameters(); i++) {
-					cacScannable.inTransition[i] = false;
-				}
+				cacScannable.endTransition();
 
 				// Unset flag in scannable saying it is being moved by the CAC
 				scannableObject.unsetCacIsMovingThis();
@@ -28,6 +28,12 @@ public interface CollisionChecker extends Findable {
 
 	/**
 	 * Checks to see if a move is safe. This will be called by the CAC with which the checker will have been registered.
+	 * <p>
+	 * The CAC calls each checker from one thread at a time. If the CAC has parallel checking enabled this may be a
+	 * pool thread rather than the thread requesting the move. If the CAC has a checker result cache, a checker may not
+	 * be called at all when the arguments repeat those of a recent call, so the cache must only be enabled when all
+	 * its checkers are pure functions of their arguments, i.e. they read no other state such as untied scannables or
+	 * interlocks.
 	 *
 	 * @param currentRangeStart
 	 *            Each value will be either the corresponding field's current position or, if the field is moving, the
@@ -35,12 +35,14 @@ import gda.factory.Factory;
 import gda.factory.FactoryBase;
 import gda.factory.FactoryException;
 import gda.factory.Findable;
+import gda.factory.IndexableFactory;
 
 /**
  * A GDA {@link Factory} that wraps a Spring {@link ApplicationContext},
  * providing access to all the {@link Findable}s within the Spring context.
+ * Its findables are fixed when it is created, so the {@link gda.factory.Finder} indexes them.
  */
-public class SpringApplicationContextBasedObjectFactory extends FactoryBase {
+public class SpringApplicationContextBasedObjectFactory extends FactoryBase implements IndexableFactory {
 
 	/** Cache of findables known about by Spring including aliases */
 	private final Map<String, Findable> nameToFindable;
@@ -0,0 +1,210 @@
+/*-
+ * Copyright © 2019 Diamond Light Source Ltd.
+ *
+ * This file is part of GDA.
+ *
+ * GDA is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License version 3 as published by the Free
+ * Software Foundation.
+ *
+ * GDA is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with GDA. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package gda.util;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import uk.ac.diamond.daq.concurrent.Async;
+
+/**
+ * Reports files created in a directory, and optionally its subdirectories, using a {@link WatchService}.
+ * <p>
+ * Events are passed to the listener from a single thread in the order they are received. If the watch service
+ * overflows and events are lost the overflow handler is called so that the listener can look for the files itself.
+ * <p>
+ * A {@link WatchService} only reports changes made through the local kernel, so files written by other hosts to a
+ * network filesystem are not necessarily reported. Users should check that events are being delivered, see
+ * {@link #isNative()}, and fall back to polling if they are not.
+ */
+public class DirectoryWatcher implements AutoCloseable {
+
+	private static final Logger logger = LoggerFactory.getLogger(DirectoryWatcher.class);
+
+	private final Path directory;
+
+	private final boolean recursive;
+
+	private final Consumer<Path> listener;
+
+	private final Runnable overflowHandler;
+
+	private final WatchService watchService;
+
+	private final Map<WatchKey, Path> watchedDirectories = new ConcurrentHashMap<>();
+
+	private final Future<?> eventLoop;
+
+	private volatile long eventCount;
+
+	/**
+	 * Start watching a directory
+	 *
+	 * @param directory
+	 *            the directory to watch, which must exist
+	 * @param recursive
+	 *            true to watch all subdirectories, including those created later
+	 * @param listener
+	 *            called with the absolute path of each file or directory created. A path may be reported more than
+	 *            once.
+	 * @param overflowHandler
+	 *            called if events may have been lost
+	 * @throws IOException
+	 *             if the directory cannot be watched
+	 */
+	public DirectoryWatcher(Path directory, boolean recursive, Consumer<Path> listener, Runnable overflowHandler) throws IOException {
+		this.directory = directory.toAbsolutePath();
+		this.recursive = recursive;
+		this.listener = listener;
+		this.overflowHandler = overflowHandler;
+		watchService = this.directory.getFileSystem().newWatchService();
+		try {
+			register(this.directory);
+		} catch (IOException | RuntimeException e) {
+			watchService.close();
+			throw e;
+		}
+		eventLoop = Async.submit(this::processEvents, "DirectoryWatcher(%s)", this.directory);
+	}
+
+	/**
+	 * @return false if the platform has no native support for file events and the JDK is polling the directory
+	 *         itself, typically every ten seconds
+	 */
+	public boolean isNative() {
+		return !watchService.getClass().getName().endsWith("PollingWatchService");
+	}
+
+	/**
+	 * @return the number of events received since this watcher was started
+	 */
+	public long getEventCount() {
+		return eventCount;
+	}
+
+	public Path getDirectory() {
+		return directory;
+	}
+
+	private void register(Path dir) throws IOException {
+		if (recursive) {
+			Files.walkFileTree(dir, new SimpleFileVisitor<Path>() {
+				@Override
+				public FileVisitResult preVisitDirectory(Path subdirectory, BasicFileAttributes attrs) throws IOException {
+					watchedDirectories.put(subdirectory.register(watchService, ENTRY_CREATE, ENTRY_MODIFY), subdirectory);
+					return FileVisitResult.CONTINUE;
+				}
+			});
+		} else {
+			watchedDirectories.put(dir.register(watchService, ENTRY_CREATE, ENTRY_MODIFY), dir);
+		}
+	}
+
+	private void processEvents() {
+		try {
+			while (!Thread.currentThread().isInterrupted()) {
+				final WatchKey key = watchService.take();
+				final Path dir = watchedDirectories.get(key);
+				for (WatchEvent<?> event : key.pollEvents()) {
+					eventCount++;
+					if (event.kind() == OVERFLOW) {
+						logger.debug("Events lost watching {}", directory);
+						notify(overflowHandler);
+					} else if (event.kind() == ENTRY_CREATE && dir != null) {
+						created(dir.resolve((Path) event.context()));
+					}
+				}
+				if (!key.reset()) {
+					watchedDirectories.remove(key);
+					if (watchedDirectories.isEmpty()) {
+						logger.info("{} is no longer accessible, stopped watching it", directory);
+						return;
+					}
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (ClosedWatchServiceException e) {
+			// closed - stop watching
+		}
+	}
+
+	private void created(Path path) {
+		notify(() -> listener.accept(path));
+		if (recursive && Files.isDirectory(path)) {
+			try {
+				register(path);
+				// Report anything created before the directory was registered
+				try (Stream<Path> contents = Files.walk(path)) {
+					contents.filter(content -> !content.equals(path)).forEach(content -> notify(() -> listener.accept(content)));
+				}
+			} catch (IOException | UncheckedIOException e) {
+				logger.warn("Could not watch new directory {}", path, e);
+				notify(overflowHandler);
+			}
+		}
+	}
+
+	private void notify(Runnable runnable) {
+		try {
+			runnable.run();
+		} catch (RuntimeException e) {
+			logger.error("Error handling file event in {}", directory, e);
+		}
+	}
+
+	/**
+	 * Stop watching the directory
+	 */
+	@Override
+	public void close() {
+		eventLoop.cancel(true);
+		try {
+			watchService.close();
+		} catch (IOException e) {
+			logger.debug("Error closing watch service for {}", directory, e);
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "DirectoryWatcher [directory=" + directory + ", recursive=" + recursive + "]";
+	}
+}
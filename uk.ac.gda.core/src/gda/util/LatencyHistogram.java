@@ -0,0 +1,164 @@
+/*-
+ * Copyright © 2019 Diamond Light Source Ltd.
+ *
+ * This file is part of GDA.
+ *
+ * GDA is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License version 3 as published by the Free
+ * Software Foundation.
+ *
+ * GDA is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with GDA. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package gda.util;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A lock free histogram of durations recorded in nanoseconds.
+ * <p>
+ * Durations are counted in power of two buckets so recording is cheap enough to be done for every point of a scan
+ * from any number of threads. Percentiles are therefore approximate and are reported as the upper bound of the
+ * bucket in which they fall.
+ */
+public class LatencyHistogram {
+
+	private static final int NUMBER_OF_BUCKETS = 64;
+
+	private final String name;
+
+	private final AtomicLongArray buckets = new AtomicLongArray(NUMBER_OF_BUCKETS);
+
+	private final AtomicLong count = new AtomicLong();
+
+	private final AtomicLong totalNanos = new AtomicLong();
+
+	private final AtomicLong maxNanos = new AtomicLong();
+
+	public LatencyHistogram(String name) {
+		this.name = name;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * Record a single duration
+	 *
+	 * @param nanos
+	 *            the duration in nanoseconds. Negative values are recorded as zero.
+	 */
+	public void record(long nanos) {
+		final long value = Math.max(0, nanos);
+		buckets.incrementAndGet(bucketFor(value));
+		count.incrementAndGet();
+		totalNanos.addAndGet(value);
+		long currentMax;
+		do {
+			currentMax = maxNanos.get();
+		} while (value > currentMax && !maxNanos.compareAndSet(currentMax, value));
+	}
+
+	/**
+	 * Record the time elapsed since the given {@link System#nanoTime()} value
+	 *
+	 * @param startNanos
+	 *            the value of {@link System#nanoTime()} at the start of the measured interval
+	 */
+	public void recordSince(long startNanos) {
+		record(System.nanoTime() - startNanos);
+	}
+
+	public long getCount() {
+		return count.get();
+	}
+
+	public long getTotal(TimeUnit unit) {
+		return unit.convert(totalNanos.get(), TimeUnit.NANOSECONDS);
+	}
+
+	public long getMax(TimeUnit unit) {
+		return unit.convert(maxNanos.get(), TimeUnit.NANOSECONDS);
+	}
+
+	/**
+	 * @return the mean duration in milliseconds, or 0 if nothing has been recorded
+	 */
+	public double getMeanMillis() {
+		final long n = count.get();
+		return n == 0 ? 0 : totalNanos.get() / (n * 1e6);
+	}
+
+	/**
+	 * @param percentile
+	 *            between 0 and 100
+	 * @return the upper bound of the bucket containing the given percentile in milliseconds, or 0 if nothing has been
+	 *         recorded
+	 */
+	public double getPercentileMillis(double percentile) {
+		if (percentile < 0 || percentile > 100) {
+			throw new IllegalArgumentException("Percentile must be between 0 and 100, not " + percentile);
+		}
+		final long[] snapshot = getBucketCounts();
+		long total = 0;
+		for (long bucketCount : snapshot) {
+			total += bucketCount;
+		}
+		if (total == 0) {
+			return 0;
+		}
+		final long rank = Math.max(1, (long) Math.ceil(total * percentile / 100.0));
+		long seen = 0;
+		for (int i = 0; i < snapshot.length; i++) {
+			seen += snapshot[i];
+			if (seen >= rank) {
+				return Math.min(getBucketUpperBoundNanos(i), maxNanos.get()) / 1e6;
+			}
+		}
+		return maxNanos.get() / 1e6;
+	}
+
+	/**
+	 * @return a copy of the number of durations counted in each bucket. Bucket {@code i} holds durations up to
+	 *         {@link #getBucketUpperBoundNanos(int)} nanoseconds.
+	 */
+	public long[] getBucketCounts() {
+		final long[] snapshot = new long[NUMBER_OF_BUCKETS];
+		for (int i = 0; i < NUMBER_OF_BUCKETS; i++) {
+			snapshot[i] = buckets.get(i);
+		}
+		return snapshot;
+	}
+
+	public static long getBucketUpperBoundNanos(int bucket) {
+		return bucket >= NUMBER_OF_BUCKETS - 1 ? Long.MAX_VALUE : (1L << bucket) - 1;
+	}
+
+	public void reset() {
+		for (int i = 0; i < NUMBER_OF_BUCKETS; i++) {
+			buckets.set(i, 0);
+		}
+		count.set(0);
+		totalNanos.set(0);
+		maxNanos.set(0);
+	}
+
+	private static int bucketFor(long nanos) {
+		return Math.min(NUMBER_OF_BUCKETS - 1, 64 - Long.numberOfLeadingZeros(nanos));
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%s: count=%d, mean=%.3fms, 50%%<=%.3fms, 99%%<=%.3fms, max=%.3fms", name, getCount(),
+				getMeanMillis(), getPercentileMillis(50), getPercentileMillis(99), maxNanos.get() / 1e6);
+	}
+}
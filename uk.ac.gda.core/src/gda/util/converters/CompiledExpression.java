@@ -0,0 +1,231 @@
+/*-
+ * Copyright © 2019 Diamond Light Source Ltd.
+ *
+ * This file is part of GDA.
+ *
+ * GDA is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License version 3 as published by the Free
+ * Software Foundation.
+ *
+ * GDA is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with GDA. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package gda.util.converters;
+
+import java.util.function.DoubleBinaryOperator;
+import java.util.function.DoubleUnaryOperator;
+
+import org.nfunk.jep.ASTConstant;
+import org.nfunk.jep.ASTFunNode;
+import org.nfunk.jep.ASTVarNode;
+import org.nfunk.jep.Node;
+import org.nfunk.jep.function.Abs;
+import org.nfunk.jep.function.Add;
+import org.nfunk.jep.function.ArcCosine;
+import org.nfunk.jep.function.ArcSine;
+import org.nfunk.jep.function.ArcTangent;
+import org.nfunk.jep.function.ArcTangent2;
+import org.nfunk.jep.function.Cosine;
+import org.nfunk.jep.function.Divide;
+import org.nfunk.jep.function.Logarithm;
+import org.nfunk.jep.function.Modulus;
+import org.nfunk.jep.function.Multiply;
+import org.nfunk.jep.function.NaturalLogarithm;
+import org.nfunk.jep.function.PostfixMathCommandI;
+import org.nfunk.jep.function.Power;
+import org.nfunk.jep.function.Sine;
+import org.nfunk.jep.function.SquareRoot;
+import org.nfunk.jep.function.Subtract;
+import org.nfunk.jep.function.Tangent;
+import org.nfunk.jep.function.UMinus;
+
+/**
+ * An expression of one variable parsed by JEP and compiled into a tree of primitive double operations.
+ * <p>
+ * Instances are immutable so, unlike a {@link org.nfunk.jep.JEP}, can be evaluated from any number of threads at once.
+ * Only real arithmetic, the trigonometric functions, logarithms, square roots, abs and constants are supported;
+ * {@link #compile(String, Node, String)} returns null for any other expression, which must then be evaluated by JEP. Where
+ * JEP would produce a complex intermediate value (e.g. the square root of a negative number) the compiled expression
+ * gives NaN.
+ */
+final class CompiledExpression implements DoubleUnaryOperator {
+
+	private final String expression;
+
+	private final DoubleUnaryOperator function;
+
+	private CompiledExpression(String expression, DoubleUnaryOperator function) {
+		this.expression = expression;
+		this.function = function;
+	}
+
+	/**
+	 * @param expression
+	 *            the text of the expression, for information only
+	 * @param topNode
+	 *            the root of the expression tree parsed by JEP
+	 * @param variableName
+	 *            the name of the variable of the expression. All other variables must have constant numeric values.
+	 * @return the compiled expression, or null if it contains anything which is not supported
+	 */
+	static CompiledExpression compile(String expression, Node topNode, String variableName) {
+		if (topNode == null) {
+			return null;
+		}
+		final Compiled compiled = compileNode(topNode, variableName);
+		return compiled == null ? null : new CompiledExpression(expression, compiled.function);
+	}
+
+	@Override
+	public double applyAsDouble(double x) {
+		return function.applyAsDouble(x);
+	}
+
+	/**
+	 * Evaluate the expression for each of the given values
+	 *
+	 * @param values
+	 * @return a new array of results
+	 */
+	double[] apply(double[] values) {
+		final double[] results = new double[values.length];
+		for (int i = 0; i < values.length; i++) {
+			results[i] = function.applyAsDouble(values[i]);
+		}
+		return results;
+	}
+
+	@Override
+	public String toString() {
+		return "CompiledExpression [" + expression + "]";
+	}
+
+	/**
+	 * A compiled sub-expression. Sub-expressions which do not depend on the variable are evaluated once, when compiled.
+	 */
+	private static final class Compiled {
+		private final DoubleUnaryOperator function;
+		private final boolean constant;
+		private final double value;
+
+		private Compiled(DoubleUnaryOperator function) {
+			this.function = function;
+			this.constant = false;
+			this.value = Double.NaN;
+		}
+
+		private Compiled(double value) {
+			this.function = x -> value;
+			this.constant = true;
+			this.value = value;
+		}
+	}
+
+	private static Compiled compileNode(Node node, String variableName) {
+		if (node instanceof ASTConstant) {
+			final Object value = ((ASTConstant) node).getValue();
+			return value instanceof Number ? new Compiled(((Number) value).doubleValue()) : null;
+		}
+		if (node instanceof ASTVarNode) {
+			final ASTVarNode varNode = (ASTVarNode) node;
+			if (variableName.equals(varNode.getName())) {
+				return new Compiled(DoubleUnaryOperator.identity());
+			}
+			// e.g. pi and e added by JEP.addStandardConstants
+			final Object value = varNode.getVar() == null ? null : varNode.getVar().getValue();
+			return value instanceof Number ? new Compiled(((Number) value).doubleValue()) : null;
+		}
+		if (node instanceof ASTFunNode) {
+			return compileFunction((ASTFunNode) node, variableName);
+		}
+		if (node != null && node.jjtGetNumChildren() == 1) {
+			return compileNode(node.jjtGetChild(0), variableName);
+		}
+		return null;
+	}
+
+	private static Compiled compileFunction(ASTFunNode node, String variableName) {
+		final int n = node.jjtGetNumChildren();
+		final Compiled[] args = new Compiled[n];
+		for (int i = 0; i < n; i++) {
+			args[i] = compileNode(node.jjtGetChild(i), variableName);
+			if (args[i] == null) {
+				return null;
+			}
+		}
+		final PostfixMathCommandI pfmc = node.getPFMC();
+		if (n == 1) {
+			final DoubleUnaryOperator op = unaryOperator(pfmc);
+			return op == null ? null : combine(op, args[0]);
+		}
+		if (n == 2 || (n > 2 && (pfmc instanceof Add || pfmc instanceof Multiply))) {
+			final DoubleBinaryOperator op = binaryOperator(pfmc);
+			if (op == null) {
+				return null;
+			}
+			Compiled result = args[0];
+			for (int i = 1; i < n; i++) {
+				result = combine(op, result, args[i]);
+			}
+			return result;
+		}
+		return null;
+	}
+
+	private static DoubleUnaryOperator unaryOperator(PostfixMathCommandI pfmc) {
+		if (pfmc instanceof UMinus) return x -> -x;
+		if (pfmc instanceof Sine) return Math::sin;
+		if (pfmc instanceof Cosine) return Math::cos;
+		if (pfmc instanceof Tangent) return Math::tan;
+		if (pfmc instanceof ArcSine) return Math::asin;
+		if (pfmc instanceof ArcCosine) return Math::acos;
+		if (pfmc instanceof ArcTangent) return Math::atan;
+		if (pfmc instanceof SquareRoot) return Math::sqrt;
+		if (pfmc instanceof NaturalLogarithm) return Math::log;
+		if (pfmc instanceof Logarithm) return Math::log10;
+		if (pfmc instanceof Abs) return Math::abs;
+		return null;
+	}
+
+	private static DoubleBinaryOperator binaryOperator(PostfixMathCommandI pfmc) {
+		if (pfmc instanceof Add) return (a, b) -> a + b;
+		if (pfmc instanceof Subtract) return (a, b) -> a - b;
+		if (pfmc instanceof Multiply) return (a, b) -> a * b;
+		if (pfmc instanceof Divide) return (a, b) -> a / b;
+		if (pfmc instanceof Modulus) return (a, b) -> a % b;
+		if (pfmc instanceof Power) return Math::pow;
+		if (pfmc instanceof ArcTangent2) return Math::atan2;
+		return null;
+	}
+
+	private static Compiled combine(DoubleUnaryOperator op, Compiled arg) {
+		if (arg.constant) {
+			return new Compiled(op.applyAsDouble(arg.value));
+		}
+		final DoubleUnaryOperator f = arg.function;
+		return new Compiled(x -> op.applyAsDouble(f.applyAsDouble(x)));
+	}
+
+	private static Compiled combine(DoubleBinaryOperator op, Compiled left, Compiled right) {
+		if (left.constant && right.constant) {
+			return new Compiled(op.applyAsDouble(left.value, right.value));
+		}
+		final DoubleUnaryOperator f = left.function;
+		final DoubleUnaryOperator g = right.function;
+		if (left.constant) {
+			final double a = left.value;
+			return new Compiled(x -> op.applyAsDouble(a, g.applyAsDouble(x)));
+		}
+		if (right.constant) {
+			final double b = right.value;
+			return new Compiled(x -> op.applyAsDouble(f.applyAsDouble(x), b));
+		}
+		return new Compiled(x -> op.applyAsDouble(f.applyAsDouble(x), g.applyAsDouble(x)));
+	}
+}
@@ -75,6 +75,8 @@ public final class JEPConverterHolder implements IReloadableQuantitiesConverter,
 {
 	private GenQuantitiesConverter converter = null;
 
+	private JEPQuantityConverter jepConverter = null;
+
 	private final String expressionFileName, name;
 
 	/**
@@ -130,11 +132,13 @@ public final class JEPConverterHolder implements IReloadableQuantitiesConverter,
 		// To reduce race conditions create a brand new converter rather than
 		// change existing which may be already being accessed on other threads
 		try {
-			GenQuantitiesConverter newJEPConverter = new GenQuantitiesConverter(new JEPQuantityConverter(expressionFileName));
+			JEPQuantityConverter newConverter = new JEPQuantityConverter(expressionFileName);
+			GenQuantitiesConverter newJEPConverter = new GenQuantitiesConverter(newConverter);
 			if (converter != null) {
 				LookupTableConverterHolder.CheckUnitsAreEqual(converter, newJEPConverter);
 			}
 
+			jepConverter = newConverter;
 			converter = newJEPConverter;
 		} catch (Exception e) {
 			String msg = "JEPConverterHolder.ReloadConverter: Exception seen in " + toString(false) + ". "
@@ -150,6 +154,35 @@ public final class JEPConverterHolder implements IReloadableQuantitiesConverter,
 		return converter;
 	}
 
+	private synchronized JEPQuantityConverter getJEPConverter() {
+		if (jepConverter == null) {
+			reloadConverter();
+		}
+		return jepConverter;
+	}
+
+	/**
+	 * Converts many targets at once without creating a Quantity for each, e.g. for the points of a trajectory.
+	 *
+	 * @param targets
+	 *            amounts in the first of {@link #getAcceptableTargetUnits()}
+	 * @return the sources as amounts in the first of {@link #getAcceptableSourceUnits()}
+	 */
+	public double[] toSourceAmounts(double[] targets) {
+		return getJEPConverter().toSourceAmounts(targets);
+	}
+
+	/**
+	 * Converts many sources at once without creating a Quantity for each, e.g. for the points of a trajectory.
+	 *
+	 * @param sources
+	 *            amounts in the first of {@link #getAcceptableSourceUnits()}
+	 * @return the targets as amounts in the first of {@link #getAcceptableTargetUnits()}
+	 */
+	public double[] toTargetAmounts(double[] sources) {
+		return getJEPConverter().toTargetAmounts(sources);
+	}
+
 	@Override
 	public List<List<Unit<? extends Quantity>>> getAcceptableMoveableUnits() {
 		return getConverter().getAcceptableMoveableUnits();
@@ -20,20 +20,28 @@
 package gda.util.converters;
 
 import java.util.List;
+import java.util.function.DoubleUnaryOperator;
 
 import org.jscience.physics.quantities.Quantity;
 import org.jscience.physics.units.Unit;
 import org.nfunk.jep.JEP;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
  * Class to perform conversion between a Source and Target quantity using a Java Expression Parser expression The
  * conversion is defined in an expression file.
+ * <p>
+ * Where possible the expressions are compiled into a {@link CompiledExpression} so conversions can run concurrently.
+ * Expressions using functions it does not support are evaluated by JEP, one conversion at a time.
  *
  * @see gda.util.converters.JEPConverterHolder
  * @see org.nfunk.jep.JEP
  */
 final class JEPQuantityConverter implements IQuantityConverter {
-	private final JEP jepStoT, jepTtoS;
+	private static final Logger logger = LoggerFactory.getLogger(JEPQuantityConverter.class);
+
+	private final DoubleUnaryOperator evaluatorStoT, evaluatorTtoS;
 
 	private final JEPQuantityConverterParameters expressionParameters;
 
@@ -41,7 +49,7 @@ final class JEPQuantityConverter implements IQuantityConverter {
 
 	private final String expressionFileName;
 
-	private JEP CreateJEP(String expression) {
+	private static JEP CreateJEP(String expression) {
 		JEP jep = new JEP();
 		jep.addStandardConstants();
 		jep.addStandardFunctions();
@@ -57,12 +65,37 @@ final class JEPQuantityConverter implements IQuantityConverter {
 		return jep;
 	}
 
+	/**
+	 * @param expression
+	 *            of the variable X
+	 * @param compile
+	 *            false to always evaluate the expression with JEP
+	 * @return a function evaluating the expression, compiled if possible
+	 */
+	static DoubleUnaryOperator createEvaluator(String expression, boolean compile) {
+		final JEP jep = CreateJEP(expression);
+		if (compile) {
+			final CompiledExpression compiled = CompiledExpression.compile(expression, jep.getTopNode(), VariableName);
+			if (compiled != null) {
+				return compiled;
+			}
+			logger.debug("Expression '{}' cannot be compiled and will be evaluated by JEP", expression);
+		}
+		// Need to be synchronized as we change the JEP during the call
+		return x -> {
+			synchronized (jep) {
+				jep.addVariable(VariableName, x);
+				return jep.getValue();
+			}
+		};
+	}
+
 	JEPQuantityConverter(String expressionFileName) {
 		this.expressionFileName = expressionFileName;
 		expressionParameters = JEPQuantityConverterParameters
 				.GetJEPQuantityConverterParametersFromFile(expressionFileName);
-		jepStoT = CreateJEP(expressionParameters.getExpressionStoT());
-		jepTtoS = CreateJEP(expressionParameters.getExpressionTtoS());
+		evaluatorStoT = createEvaluator(expressionParameters.getExpressionStoT(), true);
+		evaluatorTtoS = createEvaluator(expressionParameters.getExpressionTtoS(), true);
 	}
 
 	@Override
@@ -75,52 +108,81 @@ final class JEPQuantityConverter implements IQuantityConverter {
 		return expressionParameters.getAcceptableTargetUnits();
 	}
 
-	/*
-	 * Need to be synchronized as we change the JEP during the call
-	 */
 	@Override
-	public synchronized Quantity toSource(Quantity target) {
+	public Quantity toSource(Quantity target) {
 		if (!target.getUnit().equals(getAcceptableTargetUnits().get(0))) {
 			throw new IllegalArgumentException("JEPQuantityConverter.ToSource: target units (" + target.getUnit()
 					+ ") do not match acceptableUnits (" + getAcceptableTargetUnits().get(0) + ")" + this.toString());
 		}
 
-		jepTtoS.addVariable(VariableName, target.getAmount()); // getAmount
-		// returns in
-		// current units
-		// doubleValue
-		// converts it
-		double val = jepTtoS.getValue();
-		// Infinite is a valid value for 1/X when X is 0. so only protect
-		// against Nan.
-		if (Double.isNaN(val) /* || Double.isInfinite(val) */) {
-			throw new IllegalArgumentException("JEPQuantityConverter.ToSource: Error. Result = " + val + " target = "
-					+ target.getAmount() + " expression = " + expressionParameters.getExpressionTtoS() + " "
-					+ this.toString());
-		}
+		// getAmount returns in current units
+		final double val = toSource(target.getAmount());
 		return Quantity.valueOf(val, getAcceptableSourceUnits().get(0));
 	}
 
-	/*
-	 * Need to be synchronized as we change the JEP during the call
-	 */
 	@Override
-	public synchronized Quantity toTarget(Quantity source) {
+	public Quantity toTarget(Quantity source) {
 		if (!source.getUnit().equals(getAcceptableSourceUnits().get(0))) {
 			throw new IllegalArgumentException("JEPQuantityConverter.ToTarget: source units (" + source.getUnit()
 					+ ") do not match acceptableUnits (" + getAcceptableSourceUnits().get(0) + ") " + this.toString());
 		}
 
-		jepStoT.addVariable(VariableName, source.getAmount());
-		double val = jepStoT.getValue();
+		final double val = toTarget(source.getAmount());
+		return Quantity.valueOf(val, getAcceptableTargetUnits().get(0));
+	}
+
+	/**
+	 * Convert many targets at once, e.g. the points of a trajectory
+	 *
+	 * @param targets
+	 *            amounts in the first acceptable target unit
+	 * @return the sources in the first acceptable source unit
+	 */
+	double[] toSourceAmounts(double[] targets) {
+		final double[] sources = new double[targets.length];
+		for (int i = 0; i < targets.length; i++) {
+			sources[i] = toSource(targets[i]);
+		}
+		return sources;
+	}
+
+	/**
+	 * Convert many sources at once, e.g. the points of a trajectory
+	 *
+	 * @param sources
+	 *            amounts in the first acceptable source unit
+	 * @return the targets in the first acceptable target unit
+	 */
+	double[] toTargetAmounts(double[] sources) {
+		final double[] targets = new double[sources.length];
+		for (int i = 0; i < sources.length; i++) {
+			targets[i] = toTarget(sources[i]);
+		}
+		return targets;
+	}
+
+	private double toSource(double target) {
+		final double val = evaluatorTtoS.applyAsDouble(target);
+		// Infinite is a valid value for 1/X when X is 0. so only protect
+		// against Nan.
+		if (Double.isNaN(val) /* || Double.isInfinite(val) */) {
+			throw new IllegalArgumentException("JEPQuantityConverter.ToSource: Error. Result = " + val + " target = "
+					+ target + " expression = " + expressionParameters.getExpressionTtoS() + " "
+					+ this.toString());
+		}
+		return val;
+	}
+
+	private double toTarget(double source) {
+		final double val = evaluatorStoT.applyAsDouble(source);
 		// Infinite is a valid value for 1/X when X is 0. so only protect
 		// against Nan.
 		if (Double.isNaN(val) /* || Double.isInfinite(val) */) {
 			throw new IllegalArgumentException("JEPQuantityConverter.ToTarget: Error. Result = " + val + " source = "
-					+ source.getAmount() + " expression = " + expressionParameters.getExpressionStoT() + " "
+					+ source + " expression = " + expressionParameters.getExpressionStoT() + " "
 					+ this.toString());
 		}
-		return Quantity.valueOf(val, getAcceptableTargetUnits().get(0));
+		return val;
 	}
 
 	@Override
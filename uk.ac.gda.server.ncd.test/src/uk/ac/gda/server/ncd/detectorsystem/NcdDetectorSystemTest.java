@@ -0,0 +1,258 @@
+/*-
+ * Copyright © 2019 Diamond Light Source Ltd.
+ *
+ * This file is part of GDA.
+ *
+ * GDA is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License version 3 as published by the Free
+ * Software Foundation.
+ *
+ * GDA is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with GDA. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package uk.ac.gda.server.ncd.detectorsystem;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import gda.data.nexus.extractor.NexusExtractor;
+import gda.data.nexus.tree.INexusTree;
+import gda.data.nexus.tree.NexusTreeProvider;
+import gda.device.DeviceException;
+import gda.device.Timer;
+import gda.device.detector.NXDetectorData;
+import uk.ac.gda.server.ncd.subdetector.INcdSubDetector;
+
+public class NcdDetectorSystemTest {
+	private static final int FRAMES = 5;
+
+	private NcdDetectorSystem system;
+
+	private ExecutorService executor;
+
+	@Before
+	public void setUp() throws Exception {
+		Timer timer = mock(Timer.class);
+		when(timer.getAttribute("TotalFrames")).thenReturn(FRAMES);
+		system = new NcdDetectorSystem();
+		system.setName("ncd");
+		system.setTimer(timer);
+		executor = Executors.newSingleThreadExecutor();
+	}
+
+	@After
+	public void tearDown() {
+		executor.shutdownNow();
+	}
+
+	@Test
+	public void detectorsAreReadOneAfterTheOtherByDefault() {
+		assertFalse(system.isConcurrentReadout());
+	}
+
+	@Test
+	public void detectorsAreMergedInTypeOrder() throws Exception {
+		addDetectorsInReverseOrder();
+		assertEquals(Arrays.asList("saxs", "waxs", "calib"), detectorNames(system.readout()));
+	}
+
+	@Test
+	public void concurrentlyReadDetectorsAreMergedInTypeOrder() throws Exception {
+		system.setConcurrentReadout(true);
+		addDetectorsInReverseOrder();
+		assertEquals(Arrays.asList("saxs", "waxs", "calib"), detectorNames(system.readout()));
+	}
+
+	@Test
+	public void errorStopsSequentialReadout() throws Exception {
+		DeviceException failure = new DeviceException("saxs failed");
+		addDetector("saxs", NcdDetectorSystem.SAXS_DETECTOR, invocation -> {
+			throw failure;
+		});
+		INcdSubDetector waxs = addDetector("waxs", NcdDetectorSystem.WAXS_DETECTOR, invocation -> null);
+
+		try {
+			system.readout();
+			fail("Readout should have failed");
+		} catch (DeviceException e) {
+			assertSame(failure, e);
+		}
+		verify(waxs, never()).writeout(anyInt(), any(NXDetectorData.class));
+	}
+
+	@Test
+	public void concurrentErrorIsReportedOnceAllDetectorsAreRead() throws Exception {
+		system.setConcurrentReadout(true);
+		DeviceException failure = new DeviceException("saxs failed");
+		AtomicBoolean waxsRead = new AtomicBoolean();
+		addDetector("saxs", NcdDetectorSystem.SAXS_DETECTOR, invocation -> {
+			throw failure;
+		});
+		addDetector("waxs", NcdDetectorSystem.WAXS_DETECTOR, invocation -> {
+			Thread.sleep(200);
+			waxsRead.set(true);
+			return null;
+		});
+
+		try {
+			system.readout();
+			fail("Readout should have failed");
+		} catch (DeviceException e) {
+			assertSame(failure, e);
+		}
+		assertTrue(waxsRead.get());
+	}
+
+	@Test
+	public void collectDataWaitsForPendingReadout() throws Exception {
+		system.setConcurrentReadout(true);
+		CountDownLatch readoutReleased = new CountDownLatch(1);
+		INcdSubDetector saxs = addDetector("saxs", NcdDetectorSystem.SAXS_DETECTOR, invocation -> {
+			readoutReleased.await(5, SECONDS);
+			return writeDetector("saxs", invocation);
+		});
+		CountDownLatch cleared = new CountDownLatch(1);
+		doAnswer(invocation -> {
+			cleared.countDown();
+			return null;
+		}).when(saxs).clear();
+
+		Callable<NexusTreeProvider> point = system.getPositionCallable();
+		Future<?> nextPoint = executor.submit(() -> {
+			system.collectData();
+			return null;
+		});
+		assertFalse("Detectors cleared while still being read", cleared.await(200, MILLISECONDS));
+
+		readoutReleased.countDown();
+		assertTrue(cleared.await(5, SECONDS));
+		nextPoint.get(5, SECONDS);
+		assertEquals(Arrays.asList("saxs"), detectorNames(point.call()));
+	}
+
+	@Test
+	public void atScanEndWaitsForPendingReadout() throws Exception {
+		system.setConcurrentReadout(true);
+		CountDownLatch readoutReleased = new CountDownLatch(1);
+		INcdSubDetector saxs = addDetector("saxs", NcdDetectorSystem.SAXS_DETECTOR, invocation -> {
+			readoutReleased.await(5, SECONDS);
+			return writeDetector("saxs", invocation);
+		});
+		CountDownLatch ended = new CountDownLatch(1);
+		doAnswer(invocation -> {
+			ended.countDown();
+			return null;
+		}).when(saxs).atScanEnd();
+
+		system.getPositionCallable();
+		Future<?> scanEnd = executor.submit(() -> {
+			system.atScanEnd();
+			return null;
+		});
+		assertFalse("Scan ended while detectors still being read", ended.await(200, MILLISECONDS));
+
+		readoutReleased.countDown();
+		assertTrue(ended.await(5, SECONDS));
+		scanEnd.get(5, SECONDS);
+	}
+
+	@Test
+	public void failedReadoutDoesNotStopTheNextPoint() throws Exception {
+		system.setConcurrentReadout(true);
+		INcdSubDetector saxs = addDetector("saxs", NcdDetectorSystem.SAXS_DETECTOR, invocation -> {
+			throw new DeviceException("saxs failed");
+		});
+
+		system.getPositionCallable();
+		system.collectData();
+		verify(saxs).clear();
+	}
+
+	/**
+	 * Add WAXS, SAXS and calibration detectors, whose readouts finish in the reverse of detector type order when read
+	 * concurrently
+	 */
+	private void addDetectorsInReverseOrder() throws DeviceException {
+		CountDownLatch calibRead = new CountDownLatch(1);
+		CountDownLatch waxsRead = new CountDownLatch(1);
+		addDetector("calib", NcdDetectorSystem.CALIBRATION_DETECTOR, invocation -> {
+			writeDetector("calib", invocation);
+			calibRead.countDown();
+			return null;
+		});
+		addDetector("waxs", NcdDetectorSystem.WAXS_DETECTOR, invocation -> {
+			if (system.isConcurrentReadout()) {
+				calibRead.await(5, SECONDS);
+			}
+			writeDetector("waxs", invocation);
+			waxsRead.countDown();
+			return null;
+		});
+		addDetector("saxs", NcdDetectorSystem.SAXS_DETECTOR, invocation -> {
+			if (system.isConcurrentReadout()) {
+				waxsRead.await(5, SECONDS);
+			}
+			return writeDetector("saxs", invocation);
+		});
+	}
+
+	private INcdSubDetector addDetector(String name, String type, Answer<?> readout) throws DeviceException {
+		INcdSubDetector detector = mock(INcdSubDetector.class);
+		when(detector.getName()).thenReturn(name);
+		when(detector.getDetectorType()).thenReturn(type);
+		doAnswer(readout).when(detector).writeout(anyInt(), any(NXDetectorData.class));
+		system.addDetector(detector);
+		return detector;
+	}
+
+	private static Object writeDetector(String name, InvocationOnMock invocation) {
+		assertEquals(FRAMES, invocation.getArguments()[0]);
+		((NXDetectorData) invocation.getArguments()[1]).getDetTree(name);
+		return null;
+	}
+
+	private static List<String> detectorNames(NexusTreeProvider data) {
+		List<String> names = new ArrayList<>();
+		for (INexusTree branch : data.getNexusTree()) {
+			if (branch.getNxClass().equals(NexusExtractor.NXDetectorClassName)) {
+				names.add(branch.getName());
+			}
+		}
+		return names;
+	}
+}
@@ -22,12 +22,18 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashSet;
+import java.util.List;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import gda.configuration.properties.LocalProperties;
+import gda.data.nexus.extractor.NexusExtractor;
+import gda.data.nexus.tree.INexusTree;
 import gda.data.nexus.tree.NexusTreeProvider;
 import gda.device.Detector;
 import gda.device.DeviceException;
@@ -37,15 +43,24 @@ import gda.device.detector.NXDetectorData;
 import gda.device.scannable.PositionCallableProvider;
 import gda.factory.FactoryException;
 import gda.observable.IObserver;
+import uk.ac.diamond.daq.concurrent.Async;
 import uk.ac.gda.api.remoting.ServiceInterface;
 import uk.ac.gda.server.ncd.actions.NcdAction;
 import uk.ac.gda.server.ncd.beans.CalibLabel;
 import uk.ac.gda.server.ncd.beans.CalibrationLabels;
+import uk.ac.gda.server.ncd.plotting.DetectorRates;
 import uk.ac.gda.server.ncd.subdetector.IHaveExtraNames;
 import uk.ac.gda.server.ncd.subdetector.INcdSubDetector;
 
 /**
  * Detector system of non crystalline diffraction to allow scans to take time series at each point.
+ * <p>
+ * The physical sub detectors are read out one after the other in detector type order. With
+ * {@link #setConcurrentReadout(boolean)} they are instead read out concurrently, each into its own
+ * {@link NXDetectorData}, and the results merged in detector type order. That readout runs in the background so that
+ * the scan can move on to the next point while it completes; it is waited for before the detectors are next cleared,
+ * read or ended, and an error reading any detector is reported once all the others have been read. The time taken to
+ * read each sub detector is published to observers as {@link DetectorRates}.
  */
 @ServiceInterface(NcdDetector.class)
 public class NcdDetectorSystem extends DetectorBase implements NcdDetector, PositionCallableProvider<NexusTreeProvider> {
@@ -82,6 +97,11 @@ public class NcdDetectorSystem extends DetectorBase implements NcdDetector, Posi
 	private Collection<NcdAction> scanStartActions = new HashSet<>();
 	private Collection<NcdAction> scanEndActions = new HashSet<>();
 
+	private boolean concurrentReadout = false;
+
+	/** Readout of the last point, which may still be running. Guarded by this */
+	private Future<NXDetectorData> pendingReadout;
+
 	@Override
 	public void configure() throws FactoryException {
 		for (INcdSubDetector det : subDetectors) {
@@ -113,10 +133,11 @@ public class NcdDetectorSystem extends DetectorBase implements NcdDetector, Posi
 	@Override
 	public Callable<NexusTreeProvider> getPositionCallable() throws DeviceException {
 		final int frames = getNumberOfFrames();
-		final NXDetectorData detectorData = readoutPhysicalDetectors(frames);
+		final Future<NXDetectorData> readout = readoutPhysicalDetectors(frames);
 		Callable<NexusTreeProvider> callable = new Callable<NexusTreeProvider>() {
 			@Override
 			public NexusTreeProvider call() throws Exception {
+				NXDetectorData detectorData = waitForReadout(readout);
 				postProcess(frames, detectorData);
 				return detectorData;
 			}
@@ -146,26 +167,158 @@ public class NcdDetectorSystem extends DetectorBase implements NcdDetector, Posi
 		}
 	}
 
-	private synchronized NXDetectorData readoutPhysicalDetectors(int frames) throws DeviceException {
-		NXDetectorData nxdata = new NXDetectorData(this);
+	private synchronized Future<NXDetectorData> readoutPhysicalDetectors(int frames) throws DeviceException {
 		if (frames == 0) {
 			throw new DeviceException("trying to read out 0 frames");
 		}
+		awaitPendingReadout();
 
-		nxdata.setPlottableValue(getName(), (double) frames);
-
-		logger.debug("starting to read physical detectors");
+		List<INcdSubDetector> physical = new ArrayList<>();
 		for (String detectorType : physicalDetectors) {
 			for (INcdSubDetector det : subDetectors) {
 				if (detectorType.equalsIgnoreCase(det.getDetectorType())) {
-					det.writeout(frames, nxdata);
+					physical.add(det);
+				}
+			}
+		}
+
+		if (!concurrentReadout) {
+			NXDetectorData nxdata = new NXDetectorData(this);
+			nxdata.setPlottableValue(getName(), (double) frames);
+			logger.debug("starting to read physical detectors");
+			Collection<Object> readoutTimes = new ArrayList<>();
+			for (INcdSubDetector det : physical) {
+				long start = System.nanoTime();
+				det.writeout(frames, nxdata);
+				readoutTimes.add(readoutTime(det, start));
+			}
+			logger.debug("done reading physical detectors");
+			notifyRateCollection(readoutTimes);
+			return CompletableFuture.completedFuture(nxdata);
+		}
+
+		List<Future<NXDetectorData>> fragments = new ArrayList<>();
+		List<Future<DetectorRates>> readoutTimes = new ArrayList<>();
+		for (INcdSubDetector det : physical) {
+			CompletableFuture<DetectorRates> readoutTime = new CompletableFuture<>();
+			fragments.add(Async.submit(() -> {
+				NXDetectorData fragment = new NXDetectorData();
+				long start = System.nanoTime();
+				try {
+					det.writeout(frames, fragment);
+				} finally {
+					readoutTime.complete(readoutTime(det, start));
+				}
+				return fragment;
+			}, "%s readout of %s", getName(), det.getName()));
+			readoutTimes.add(readoutTime);
+		}
+		logger.debug("reading {} physical detectors", fragments.size());
+		pendingReadout = Async.submit(() -> mergeFragments(frames, physical, fragments, readoutTimes),
+				"%s readout", getName());
+		return pendingReadout;
+	}
+
+	private NXDetectorData mergeFragments(int frames, List<INcdSubDetector> physical,
+			List<Future<NXDetectorData>> fragments, List<Future<DetectorRates>> readoutTimes) throws DeviceException {
+		NXDetectorData nxdata = new NXDetectorData(this);
+		nxdata.setPlottableValue(getName(), (double) frames);
+		DeviceException failure = null;
+		for (int i = 0; i < fragments.size(); i++) {
+			try {
+				mergeTree(nxdata, waitForReadout(fragments.get(i)));
+			} catch (DeviceException e) {
+				// keep waiting for the other detectors so none is still being read when this readout is over
+				logger.error("{} - error reading out {}", getName(), physical.get(i).getName(), e);
+				if (failure == null) {
+					failure = e;
 				}
 			}
 		}
+		Collection<Object> rates = new ArrayList<>();
+		for (Future<DetectorRates> readoutTime : readoutTimes) {
+			rates.add(waitForReadout(readoutTime));
+		}
 		logger.debug("done reading physical detectors");
+		notifyRateCollection(rates);
+		if (failure != null) {
+			throw failure;
+		}
 		return nxdata;
 	}
 
+	/**
+	 * Move the detector branches of a fragment into the tree of the whole system
+	 */
+	private static void mergeTree(NXDetectorData nxdata, NXDetectorData fragment) {
+		for (INexusTree branch : fragment.getNexusTree()) {
+			if (branch.getNxClass().equals(NexusExtractor.NXDetectorClassName)) {
+				INexusTree detTree = nxdata.getDetTree(branch.getName());
+				for (INexusTree detTreeBranch : branch) {
+					detTree.addChildNode(detTreeBranch);
+				}
+			} else {
+				nxdata.getNexusTree().addChildNode(branch);
+			}
+		}
+	}
+
+	private static DetectorRates readoutTime(INcdSubDetector det, long startNanos) {
+		String type;
+		try {
+			type = det.getDetectorType();
+		} catch (DeviceException e) {
+			type = null;
+		}
+		return DetectorRates.readoutTime(det.getName(), type, (System.nanoTime() - startNanos) / 1e9f);
+	}
+
+	private static <T> T waitForReadout(Future<T> readout) throws DeviceException {
+		try {
+			return readout.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new DeviceException("Interrupted waiting for detector readout", e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof DeviceException) {
+				throw (DeviceException) e.getCause();
+			}
+			throw new DeviceException("Error reading out detector", e.getCause());
+		}
+	}
+
+	/**
+	 * Wait for the readout of the last point to finish. Any error is left for its position callable to report.
+	 */
+	private synchronized void awaitPendingReadout() throws DeviceException {
+		if (pendingReadout == null) {
+			return;
+		}
+		try {
+			waitForReadout(pendingReadout);
+		} catch (DeviceException e) {
+			if (Thread.currentThread().isInterrupted()) {
+				throw e;
+			}
+			logger.debug("{} - last readout failed", getName(), e);
+		}
+		pendingReadout = null;
+	}
+
+	/**
+	 * @param concurrentReadout
+	 *            true to read out the physical sub detectors concurrently and in the background, false (the default)
+	 *            to read them one after the other before the scan moves on. Only set this if the sub detectors can be
+	 *            read from different threads at the same time.
+	 */
+	public void setConcurrentReadout(boolean concurrentReadout) {
+		this.concurrentReadout = concurrentReadout;
+	}
+
+	public boolean isConcurrentReadout() {
+		return concurrentReadout;
+	}
+
 	@Override
 	public boolean createsOwnFiles() throws DeviceException {
 		return false;
@@ -174,6 +327,7 @@ public class NcdDetectorSystem extends DetectorBase implements NcdDetector, Posi
 	@Override
 	public synchronized void clear() throws DeviceException {
 		logger.debug("being cleared");
+		awaitPendingReadout();
 		for (INcdSubDetector det : subDetectors) {
 			// This is a kludge for detectors which require partial clearing due to excessive
 			// clear times.
@@ -350,6 +504,7 @@ public class NcdDetectorSystem extends DetectorBase implements NcdDetector, Posi
 
 	@Override
 	public void atScanEnd() throws DeviceException {
+		awaitPendingReadout();
 		scanEndActions.stream().forEach(NcdAction::run);
 		for (INcdSubDetector det : subDetectors) {
 			det.atScanEnd();
@@ -34,8 +34,29 @@ public class DetectorRates implements Serializable {
 	public String detName, detType;
 	public float countingTime, maxCounts, integratedCounts;
 	public List<HighCount> highCounts = new ArrayList<>();
+	/** Seconds taken to read the detector out at the end of a point, or negative if this is a count rate update */
+	public float readoutTime = -1;
+
+	/**
+	 * @return rates reporting only the time taken to read out a detector
+	 */
+	public static DetectorRates readoutTime(String detName, String detType, float seconds) {
+		DetectorRates dr = new DetectorRates();
+		dr.detName = detName;
+		dr.detType = detType;
+		dr.readoutTime = seconds;
+		return dr;
+	}
+
+	public boolean isReadoutTime() {
+		return readoutTime >= 0;
+	}
+
 	@Override
 	public String toString() {
+		if (isReadoutTime()) {
+			return String.format("%s detector %s took %5.3f seconds to read out", detType, detName, readoutTime);
+		}
 		return String.format("%s detector %s has been counting for %5.3f seconds and aquired %5.5g total counts (%5.5g in the peak)",
 				detType, detName, countingTime, integratedCounts, maxCounts);
 	}